@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.api.composite;
+
+/**
+ * Set one of these in MetaInfo of a composite declaration to choose how the method instances of the composite,
+ * ie. the concern and side-effect chains used for each invocation, are pooled.
+ * <pre><code>
+ * module.services( MyService.class ).setMetaInfo( InstancePooling.PER_THREAD );
+ * </code></pre>
+ * <p>
+ * Composites that declare an InstancePooling also report pool hits and misses, a miss creating a new method
+ * instance, for each of their methods through the MetricsProvider service of their module, if any.
+ * Composites without an InstancePooling use a {@link #SHARED} pool and do not report metrics.
+ * </p>
+ */
+public enum InstancePooling
+{
+    /**
+     * One lock-free pool shared by all threads.
+     */
+    SHARED,
+
+    /**
+     * One pool per thread, without any contention between threads. Each thread keeps the method instances it has
+     * used, so prefer this for composites invoked by a bounded set of threads.
+     */
+    PER_THREAD,
+
+    /**
+     * Lock-free pools striped by thread, to lower contention between threads on heavily used composites.
+     */
+    STRIPED
+}
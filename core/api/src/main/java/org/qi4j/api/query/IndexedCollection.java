@@ -0,0 +1,465 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.api.query;
+
+import java.lang.reflect.AccessibleObject;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.value.ValueComposite;
+
+/**
+ * Collection of composites to be queried in memory, see {@link QueryBuilder#newQuery(Iterable)}, maintaining
+ * indexes over some of their Properties.
+ * <p>
+ * Hash indexes serve equality where clauses, range indexes serve equality and comparison where clauses. Only
+ * Properties of the queried composites themselves can be indexed, not Properties reached through other Properties
+ * or Associations. Indexes are kept up to date as elements are added and removed.
+ * </p>
+ * <p>
+ * Indexed values are read when an element is added, and are not read again when querying. After changing an
+ * indexed Property of an element, call {@link #update(Object)}. Until then, queries matching the new value of the
+ * Property may miss the element, while the where clause still keeps it out of the results of queries matching
+ * only its old value. Elements that never change, such as {@link ValueComposite}s, need no updates.
+ * </p>
+ * <p>
+ * Elements are unique, according to their equals method, and iterated in the order they were added.
+ * IndexedCollection is not thread safe.
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * Person template = templateFor( Person.class );
+ * IndexedCollection&lt;Person&gt; persons = new IndexedCollection&lt;Person&gt;()
+ *     .withHashIndex( template.name() )
+ *     .withRangeIndex( template.yearOfBirth() );
+ * persons.addAll( ... );
+ * Query&lt;Person&gt; query = module.newQueryBuilder( Person.class )
+ *     .where( ge( template.yearOfBirth(), 1970 ) )
+ *     .newQuery( persons );
+ * </pre>
+ *
+ * @param <T> Type of the elements
+ */
+public class IndexedCollection<T>
+    extends AbstractCollection<T>
+{
+    // Elements and the order they were added in
+    private final Map<T, Long> elements = new LinkedHashMap<T, Long>();
+    private final Map<AccessibleObject, PropertyIndex<T>> indexes = new HashMap<AccessibleObject, PropertyIndex<T>>();
+    private long sequence;
+    private int parallelFilteringThreshold;
+
+    public IndexedCollection()
+    {
+    }
+
+    public IndexedCollection( Iterable<? extends T> elements )
+    {
+        for( T element : elements )
+        {
+            add( element );
+        }
+    }
+
+    /**
+     * Index the values of a Property by hash, for equality where clauses.
+     *
+     * @param property Property of a template, see {@link QueryExpressions#templateFor(Class)}
+     *
+     * @return this
+     */
+    public IndexedCollection<T> withHashIndex( Property<?> property )
+    {
+        return withIndex( new PropertyIndex<T>( propertyFunction( property ), new HashMap<Object, Set<T>>() ) );
+    }
+
+    /**
+     * Index the values of a Property in order, for equality and comparison where clauses. Values of the Property
+     * must be {@link Comparable} with each other.
+     *
+     * @param property Property of a template, see {@link QueryExpressions#templateFor(Class)}
+     *
+     * @return this
+     */
+    public IndexedCollection<T> withRangeIndex( Property<?> property )
+    {
+        return withIndex( new PropertyIndex<T>( propertyFunction( property ), new TreeMap<Object, Set<T>>() ) );
+    }
+
+    /**
+     * Filter the elements of this collection in parallel when querying it, once it holds at least the given number
+     * of elements. Where clauses are then evaluated concurrently and must not depend on state that is not safe to
+     * read from many threads, such as Associations of entities in a UnitOfWork.
+     *
+     * @param threshold Minimum number of elements filtered in parallel, 0 to always filter sequentially
+     *
+     * @return this
+     */
+    public IndexedCollection<T> withParallelFiltering( int threshold )
+    {
+        this.parallelFilteringThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @return Minimum number of elements filtered in parallel when querying this collection, 0 if never
+     */
+    public int parallelFilteringThreshold()
+    {
+        return parallelFilteringThreshold;
+    }
+
+    /**
+     * Update the indexes after indexed Properties of an element changed, queries do not read indexed Properties
+     * again.
+     *
+     * @param element Element of this collection
+     *
+     * @return true if the element is in this collection
+     */
+    public boolean update( T element )
+    {
+        if( !elements.containsKey( element ) )
+        {
+            return false;
+        }
+        for( PropertyIndex<T> index : indexes.values() )
+        {
+            index.remove( element );
+            index.add( element );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add( T element )
+    {
+        if( elements.containsKey( element ) )
+        {
+            return false;
+        }
+        elements.put( element, sequence++ );
+        for( PropertyIndex<T> index : indexes.values() )
+        {
+            index.add( element );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove( Object element )
+    {
+        if( elements.remove( element ) == null )
+        {
+            return false;
+        }
+        for( PropertyIndex<T> index : indexes.values() )
+        {
+            index.remove( element );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains( Object element )
+    {
+        return elements.containsKey( element );
+    }
+
+    @Override
+    public void clear()
+    {
+        elements.clear();
+        for( PropertyIndex<T> index : indexes.values() )
+        {
+            index.clear();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return elements.size();
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        final Iterator<T> iterator = elements.keySet().iterator();
+        return new Iterator<T>()
+        {
+            private T current;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next()
+            {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove()
+            {
+                iterator.remove();
+                for( PropertyIndex<T> index : indexes.values() )
+                {
+                    index.remove( current );
+                }
+            }
+        };
+    }
+
+    /**
+     * @param property Property of the queried composites
+     *
+     * @return true if the values of the Property are indexed, so that {@link #lookup} can be used
+     */
+    public boolean isIndexed( PropertyFunction<?> property )
+    {
+        return index( property ) != null;
+    }
+
+    /**
+     * @param property Property of the queried composites
+     *
+     * @return true if the values of the Property are indexed in order, so that {@link #range} can be used
+     */
+    public boolean isRangeIndexed( PropertyFunction<?> property )
+    {
+        PropertyIndex<T> index = index( property );
+        return index != null && index.isRange();
+    }
+
+    /**
+     * Elements whose indexed Property value may equal the given value, in the order they were added.
+     *
+     * @param property Indexed Property
+     * @param value    Property value
+     *
+     * @return the candidate elements, a superset of those whose Property value equals the given value
+     */
+    public List<T> lookup( PropertyFunction<?> property, Object value )
+    {
+        PropertyIndex<T> index = index( property );
+        if( index == null )
+        {
+            throw new IllegalArgumentException( property + " is not indexed" );
+        }
+        return inOrder( index.lookup( value ) );
+    }
+
+    /**
+     * Elements whose indexed Property value may be in the given range, in the order they were added.
+     *
+     * @param property      Range indexed Property
+     * @param from          Lower bound, or null
+     * @param fromInclusive true if the lower bound is in the range
+     * @param to            Upper bound, or null
+     * @param toInclusive   true if the upper bound is in the range
+     *
+     * @return the candidate elements, a superset of those whose Property value is in the given range
+     */
+    public List<T> range( PropertyFunction<?> property,
+                          Object from,
+                          boolean fromInclusive,
+                          Object to,
+                          boolean toInclusive
+    )
+    {
+        PropertyIndex<T> index = index( property );
+        if( index == null || !index.isRange() )
+        {
+            throw new IllegalArgumentException( property + " is not range indexed" );
+        }
+        return inOrder( index.range( from, fromInclusive, to, toInclusive ) );
+    }
+
+    private IndexedCollection<T> withIndex( PropertyIndex<T> index )
+    {
+        for( T element : elements.keySet() )
+        {
+            index.add( element );
+        }
+        indexes.put( index.property.accessor(), index );
+        return this;
+    }
+
+    private PropertyIndex<T> index( PropertyFunction<?> property )
+    {
+        if( property.traversedProperty() != null
+            || property.traversedAssociation() != null
+            || property.traversedManyAssociation() != null )
+        {
+            return null;
+        }
+        return indexes.get( property.accessor() );
+    }
+
+    private List<T> inOrder( Collection<T> candidates )
+    {
+        List<T> ordered = new ArrayList<T>( candidates );
+        if( ordered.size() > 1 )
+        {
+            Collections.sort( ordered, new Comparator<T>()
+            {
+                @Override
+                public int compare( T first, T second )
+                {
+                    return elements.get( first ).compareTo( elements.get( second ) );
+                }
+            } );
+        }
+        return ordered;
+    }
+
+    private static PropertyFunction<?> propertyFunction( Property<?> property )
+    {
+        PropertyFunction<?> propertyFunction = QueryExpressions.property( property );
+        if( propertyFunction.traversedProperty() != null
+            || propertyFunction.traversedAssociation() != null
+            || propertyFunction.traversedManyAssociation() != null )
+        {
+            throw new IllegalArgumentException( "Only Properties of the elements themselves can be indexed: "
+                                                + propertyFunction );
+        }
+        return propertyFunction;
+    }
+
+    private static class PropertyIndex<T>
+    {
+        private final PropertyFunction<?> property;
+        private final Map<Object, Set<T>> buckets;
+        // Indexed value of each element, elements without value are not indexed
+        private final Map<T, Object> values = new HashMap<T, Object>();
+
+        private PropertyIndex( PropertyFunction<?> property, Map<Object, Set<T>> buckets )
+        {
+            this.property = property;
+            this.buckets = buckets;
+        }
+
+        private boolean isRange()
+        {
+            return buckets instanceof NavigableMap;
+        }
+
+        private void add( T element )
+        {
+            Object value = valueOf( element );
+            if( value == null )
+            {
+                return;
+            }
+            if( isRange() && !( value instanceof Comparable ) )
+            {
+                throw new IllegalArgumentException( "Values of range indexed " + property + " must be Comparable" );
+            }
+            Set<T> bucket = buckets.get( value );
+            if( bucket == null )
+            {
+                bucket = new LinkedHashSet<T>();
+                buckets.put( value, bucket );
+            }
+            bucket.add( element );
+            values.put( element, value );
+        }
+
+        private void remove( Object element )
+        {
+            if( !values.containsKey( element ) )
+            {
+                return;
+            }
+            Object value = values.remove( element );
+            Set<T> bucket = buckets.get( value );
+            bucket.remove( element );
+            if( bucket.isEmpty() )
+            {
+                buckets.remove( value );
+            }
+        }
+
+        private void clear()
+        {
+            buckets.clear();
+            values.clear();
+        }
+
+        private Collection<T> lookup( Object value )
+        {
+            Set<T> bucket = buckets.get( value );
+            if( bucket == null )
+            {
+                return Collections.emptySet();
+            }
+            return bucket;
+        }
+
+        private Collection<T> range( Object from, boolean fromInclusive, Object to, boolean toInclusive )
+        {
+            NavigableMap<Object, Set<T>> range = (NavigableMap<Object, Set<T>>) buckets;
+            if( from != null )
+            {
+                range = range.tailMap( from, fromInclusive );
+            }
+            if( to != null )
+            {
+                range = range.headMap( to, toInclusive );
+            }
+            List<T> candidates = new ArrayList<T>();
+            for( Set<T> bucket : range.values() )
+            {
+                candidates.addAll( bucket );
+            }
+            return candidates;
+        }
+
+        private Object valueOf( T element )
+        {
+            if( !( element instanceof Composite ) )
+            {
+                return null;
+            }
+            try
+            {
+                Property<?> value = property.map( (Composite) element );
+                return value == null ? null : value.get();
+            }
+            catch( IllegalArgumentException e )
+            {
+                // Element without this Property
+                return null;
+            }
+        }
+    }
+}
@@ -2,8 +2,8 @@ package org.qi4j.api.query.grammar;
 
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Member;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import org.qi4j.api.Qi4j;
 import org.qi4j.api.association.Association;
 import org.qi4j.api.association.AssociationStateHolder;
 import org.qi4j.api.association.GenericAssociationInfo;
@@ -88,7 +88,7 @@ public class AssociationFunction<T>
                 return null;
             }
 
-            CompositeInstance handler = (CompositeInstance) Proxy.getInvocationHandler( target );
+            CompositeInstance handler = Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) target );
             return ( (AssociationStateHolder) handler.state() ).associationFor( accessor );
         }
         catch( IllegalArgumentException e )
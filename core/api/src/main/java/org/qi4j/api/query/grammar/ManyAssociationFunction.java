@@ -2,7 +2,7 @@ package org.qi4j.api.query.grammar;
 
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Member;
-import java.lang.reflect.Proxy;
+import org.qi4j.api.Qi4j;
 import org.qi4j.api.association.AssociationStateHolder;
 import org.qi4j.api.association.ManyAssociation;
 import org.qi4j.api.composite.Composite;
@@ -59,7 +59,7 @@ public class ManyAssociationFunction<T>
                 throw new IllegalArgumentException( "Cannot traverse ManyAssociations" );
             }
 
-            CompositeInstance handler = (CompositeInstance) Proxy.getInvocationHandler( target );
+            CompositeInstance handler = Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) target );
             return ( (AssociationStateHolder) handler.state() ).manyAssociationFor( accessor );
         }
         catch( IllegalArgumentException e )
@@ -3,8 +3,8 @@ package org.qi4j.api.query.grammar;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Member;
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import org.qi4j.api.Qi4j;
 import org.qi4j.api.association.Association;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.composite.CompositeInstance;
@@ -116,7 +116,7 @@ public class PropertyFunction<T>
                 return null;
             }
 
-            CompositeInstance handler = (CompositeInstance) Proxy.getInvocationHandler( target );
+            CompositeInstance handler = Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) target );
             return handler.state().propertyFor( accessor );
         }
         catch( IllegalArgumentException e )
@@ -4,19 +4,33 @@ package org.qi4j.api.unitofwork;
  * Set instances of this in MetaInfo on UnitOfWork or the associated Usecase.
  *
  * Options: <br/>
- * "pruneOnPause": if true, then clear out all instances that have been loaded in the UoW but not modified
+ * "pruneOnPause": if true, then clear out all instances that have been loaded in the UoW but not modified<br/>
+ * "prefetchSize": number of query results whose state is loaded from the EntityStore in one batch while
+ * iterating a Query, 1 or less loads results one by one
  */
 public class UnitOfWorkOptions
 {
     private boolean pruneOnPause = false;
+    private int prefetchSize = 1;
 
     public UnitOfWorkOptions( boolean pruneOnPause )
     {
         this.pruneOnPause = pruneOnPause;
     }
 
+    public UnitOfWorkOptions( boolean pruneOnPause, int prefetchSize )
+    {
+        this.pruneOnPause = pruneOnPause;
+        this.prefetchSize = prefetchSize;
+    }
+
     public boolean isPruneOnPause()
     {
         return pruneOnPause;
     }
+
+    public int getPrefetchSize()
+    {
+        return prefetchSize;
+    }
 }
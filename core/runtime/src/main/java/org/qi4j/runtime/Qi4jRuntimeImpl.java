@@ -59,7 +59,7 @@ import org.qi4j.runtime.value.ValueInstance;
 import org.qi4j.spi.Qi4jSPI;
 import org.qi4j.spi.entity.EntityState;
 
-import static java.lang.reflect.Proxy.getInvocationHandler;
+import static org.qi4j.runtime.composite.ProxyGenerator.invocationHandlerOf;
 import static org.qi4j.runtime.composite.TransientInstance.compositeInstanceOf;
 
 /**
@@ -106,7 +106,7 @@ public final class Qi4jRuntimeImpl
     @Override
     public <T> T dereference( T composite )
     {
-        InvocationHandler handler = getInvocationHandler( composite );
+        InvocationHandler handler = invocationHandlerOf( composite );
         if( handler instanceof ProxyReferenceInvocationHandler )
         {
             return (T) ( (ProxyReferenceInvocationHandler) handler ).proxy();
@@ -139,7 +139,7 @@ public final class Qi4jRuntimeImpl
         else if( compositeOrServiceReferenceOrUow instanceof ServiceComposite )
         {
             ServiceComposite composite = (ServiceComposite) compositeOrServiceReferenceOrUow;
-            InvocationHandler handler = getInvocationHandler( composite );
+            InvocationHandler handler = invocationHandlerOf( composite );
             if( handler instanceof ServiceInstance )
             {
                 return ( (ServiceInstance) handler ).module();
@@ -188,7 +188,7 @@ public final class Qi4jRuntimeImpl
         else if( compositeOrServiceReference instanceof ServiceComposite )
         {
             ServiceComposite composite = (ServiceComposite) compositeOrServiceReference;
-            InvocationHandler handler = getInvocationHandler( composite );
+            InvocationHandler handler = invocationHandlerOf( composite );
             if( handler instanceof ServiceInstance )
             {
                 return ( (ServiceInstance) handler ).descriptor();
@@ -241,7 +241,7 @@ public final class Qi4jRuntimeImpl
     {
         if( entity instanceof EntityComposite )
         {
-            EntityInstance entityInstance = (EntityInstance) getInvocationHandler( entity );
+            EntityInstance entityInstance = (EntityInstance) invocationHandlerOf( entity );
             return entityInstance.entityModel();
         }
         throw new IllegalArgumentException( "Wrong type. Must be subtype of " + EntityComposite.class );
@@ -20,6 +20,7 @@ import org.qi4j.api.common.Optional;
 import org.qi4j.api.common.QualifiedName;
 import org.qi4j.api.common.UseDefaults;
 import org.qi4j.api.common.Visibility;
+import org.qi4j.api.composite.InstancePooling;
 import org.qi4j.api.composite.InvalidCompositeException;
 import org.qi4j.api.concern.Concerns;
 import org.qi4j.api.constraint.Constraint;
@@ -192,7 +193,9 @@ public abstract class CompositeAssemblyImpl
                         constraints,
                         concernsModel,
                         sideEffectsModel,
-                        mixinsModel
+                        mixinsModel,
+                        this.types.get( 0 ),
+                        metaInfo.get( InstancePooling.class )
                     );
 
                     // Implement @This references
@@ -23,13 +23,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.qi4j.api.common.ConstructionException;
+import org.qi4j.api.composite.InstancePooling;
 import org.qi4j.api.composite.MethodDescriptor;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
 import org.qi4j.api.util.NullArgumentException;
 import org.qi4j.functional.HierarchicalVisitor;
 import org.qi4j.functional.VisitableHierarchy;
 import org.qi4j.runtime.injection.Dependencies;
 import org.qi4j.runtime.injection.DependencyModel;
 import org.qi4j.runtime.structure.ModuleInstance;
+import org.qi4j.spi.metrics.DefaultMetric;
 
 import static org.qi4j.functional.Iterables.filter;
 import static org.qi4j.functional.Iterables.flattenIterables;
@@ -53,7 +58,9 @@ public final class CompositeMethodModel
 
     // Context
 //    private final SynchronizedCompositeMethodInstancePool instancePool = new SynchronizedCompositeMethodInstancePool();
-    private final AtomicInstancePool instancePool = new AtomicInstancePool();
+    private final InstancePool<CompositeMethodInstance> instancePool;
+    private final Class<?> compositeType; // origin of the pool metrics
+    private volatile PoolCounters poolCounters; // null until resolved from the MetricsProvider
     private ConstraintsInstance constraintsInstance;
 
     public CompositeMethodModel( Method method,
@@ -62,16 +69,44 @@ public final class CompositeMethodModel
                                  SideEffectsModel sideEffectsModel,
                                  MixinsModel mixinsModel
     )
+    {
+        this( method, constraintsModel, concernsModel, sideEffectsModel, mixinsModel, method.getDeclaringClass(), null );
+    }
+
+    public CompositeMethodModel( Method method,
+                                 ConstraintsModel constraintsModel,
+                                 ConcernsModel concernsModel,
+                                 SideEffectsModel sideEffectsModel,
+                                 MixinsModel mixinsModel,
+                                 Class<?> compositeType,
+                                 InstancePooling pooling
+    )
     {
         this.method = method;
+        this.compositeType = compositeType;
         mixins = mixinsModel;
         concerns = concernsModel;
         sideEffects = sideEffectsModel;
         constraints = constraintsModel;
         constraintsInstance = constraints.newInstance();
+        instancePool = newInstancePool( pooling );
+        poolCounters = pooling == null ? PoolCounters.NONE : null;
         initialize();
     }
 
+    private static InstancePool<CompositeMethodInstance> newInstancePool( InstancePooling pooling )
+    {
+        if( pooling == InstancePooling.PER_THREAD )
+        {
+            return new ThreadLocalInstancePool();
+        }
+        else if( pooling == InstancePooling.STRIPED )
+        {
+            return new StripedInstancePool();
+        }
+        return new AtomicInstancePool();
+    }
+
     private void initialize()
     {
         annotations = new CompositeMethodAnnotatedElement();
@@ -118,15 +153,62 @@ public final class CompositeMethodModel
 
     private CompositeMethodInstance getInstance( ModuleInstance moduleInstance )
     {
+        PoolCounters counters = poolCounters;
+        if( counters == null )
+        {
+            counters = resolvePoolCounters( moduleInstance );
+        }
+
         CompositeMethodInstance methodInstance = instancePool.obtainInstance();
         if( methodInstance == null )
         {
+            counters.misses.increment();
             methodInstance = newCompositeMethodInstance( moduleInstance );
         }
+        else
+        {
+            counters.hits.increment();
+        }
 
         return methodInstance;
     }
 
+    private PoolCounters resolvePoolCounters( ModuleInstance moduleInstance )
+    {
+        // The MetricsProvider is a service, don't count the invocations made while resolving it
+        poolCounters = PoolCounters.NONE;
+        PoolCounters counters;
+        try
+        {
+            MetricsCounterFactory factory = moduleInstance.metricsProvider().createFactory( MetricsCounterFactory.class );
+            // Composites sharing a mixin type, and overloaded methods, get their own counters
+            String name = signature( method );
+            counters = new PoolCounters( factory.createCounter( compositeType, name + " Pool Hits" ),
+                                         factory.createCounter( compositeType, name + " Pool Misses" ) );
+        }
+        catch( MetricsNotSupportedException e )
+        {
+            counters = PoolCounters.NONE;
+        }
+        poolCounters = counters;
+        return counters;
+    }
+
+    private static String signature( Method method )
+    {
+        StringBuilder signature = new StringBuilder( method.getName() ).append( '(' );
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for( int idx = 0; idx < parameterTypes.length; idx++ )
+        {
+            if( idx > 0 )
+            {
+                signature.append( ',' );
+            }
+            signature.append( parameterTypes[ idx ].getSimpleName() );
+        }
+        return signature.append( ')' ).toString();
+    }
+
     private CompositeMethodInstance newCompositeMethodInstance( ModuleInstance moduleInstance )
         throws ConstructionException
     {
@@ -317,4 +399,18 @@ public final class CompositeMethodModel
             return (T[]) Array.newInstance( annotationClass, 0 );
         }
     }
+
+    private static final class PoolCounters
+    {
+        private static final PoolCounters NONE = new PoolCounters( DefaultMetric.NULL, DefaultMetric.NULL );
+
+        private final MetricsCounter hits;
+        private final MetricsCounter misses;
+
+        private PoolCounters( MetricsCounter hits, MetricsCounter misses )
+        {
+            this.hits = hits;
+            this.misses = misses;
+        }
+    }
 }
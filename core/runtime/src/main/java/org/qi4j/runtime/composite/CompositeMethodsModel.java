@@ -15,7 +15,10 @@
 package org.qi4j.runtime.composite;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.qi4j.api.composite.MissingMethodException;
 import org.qi4j.functional.HierarchicalVisitor;
 import org.qi4j.functional.Iterables;
@@ -34,6 +37,9 @@ public final class CompositeMethodsModel
 {
     private HashMap<Method, CompositeMethodModel> methods;
     private final MixinsModel mixinsModel;
+    // Methods of generated proxies, by method index
+    private Method[] indexedMethods;
+    private CompositeMethodModel[] indexedCompositeMethods;
 
     public CompositeMethodsModel( MixinsModel mixinsModel )
     {
@@ -92,6 +98,54 @@ public final class CompositeMethodsModel
         }
     }
 
+    public Object invoke( MixinsInstance mixins,
+                          Object proxy,
+                          int methodIndex,
+                          Object[] args,
+                          ModuleInstance moduleInstance
+    )
+        throws Throwable
+    {
+        CompositeMethodModel compositeMethod = indexedCompositeMethods[ methodIndex ];
+        if( compositeMethod == null )
+        {
+            throw new MissingMethodException( "Method '" + indexedMethods[ methodIndex ] + "' is not implemented" );
+        }
+        return compositeMethod.invoke( proxy, args, mixins, moduleInstance );
+    }
+
+    /**
+     * Index the composite methods of a generated proxy class.
+     *
+     * @param proxyMethods Methods of the proxy class, by method index
+     */
+    public void indexMethods( List<Method> proxyMethods )
+    {
+        indexedMethods = proxyMethods.toArray( new Method[ proxyMethods.size() ] );
+        indexedCompositeMethods = new CompositeMethodModel[ indexedMethods.length ];
+        for( int i = 0; i < indexedMethods.length; i++ )
+        {
+            Method method = indexedMethods[ i ];
+            CompositeMethodModel compositeMethod = methods.get( method );
+            if( compositeMethod == null )
+            {
+                // Same method declared by another composite type
+                for( Map.Entry<Method, CompositeMethodModel> entry : methods.entrySet() )
+                {
+                    Method candidate = entry.getKey();
+                    if( candidate.getName().equals( method.getName() )
+                        && candidate.getReturnType().equals( method.getReturnType() )
+                        && Arrays.equals( candidate.getParameterTypes(), method.getParameterTypes() ) )
+                    {
+                        compositeMethod = entry.getValue();
+                        break;
+                    }
+                }
+            }
+            indexedCompositeMethods[ i ] = compositeMethod;
+        }
+    }
+
     public void addMethod( CompositeMethodModel methodModel )
     {
         methods.put( methodModel.method(), methodModel );
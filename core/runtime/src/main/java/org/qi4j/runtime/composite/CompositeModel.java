@@ -18,6 +18,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.qi4j.api.common.ConstructionException;
 import org.qi4j.api.common.MetaInfo;
@@ -42,6 +43,12 @@ import static org.qi4j.functional.Iterables.toList;
 public abstract class CompositeModel
     implements VisitableHierarchy<Object, Object>, Dependencies, CompositeDescriptor
 {
+    /**
+     * System property enabling proxies generated by {@link CompositeProxyClassLoader} instead of
+     * {@link java.lang.reflect.Proxy} for the composites that support them.
+     */
+    public static final String GENERATED_PROXIES = "qi4j.generatedproxies";
+
     protected final MixinsModel mixinsModel;
     protected final CompositeMethodsModel compositeMethodsModel;
     private final Set<Class<?>> types;
@@ -158,6 +165,15 @@ public abstract class CompositeModel
         return visitor.visitLeave( this );
     }
 
+    /**
+     * @return true if proxies of this composite may be generated by {@link CompositeProxyClassLoader}, which requires
+     *         the instances given to {@link #newProxy(InvocationHandler)} to be {@link IndexedInvocationHandler}s
+     */
+    protected boolean supportsGeneratedProxy()
+    {
+        return false;
+    }
+
     @SuppressWarnings( "unchecked" )
     private void createProxyClass()
     {
@@ -167,6 +183,26 @@ public abstract class CompositeModel
             ClassLoader proxyClassloader = mainType.getClassLoader();
 
             Class<?>[] interfaces = Iterables.toArray( Class.class, Iterables.<Class>cast( types ) );
+            if( supportsGeneratedProxy() && Boolean.getBoolean( GENERATED_PROXIES ) )
+            {
+                CompositeProxyClassLoader generator = new CompositeProxyClassLoader( ProxyGenerator.effectiveClassLoader( proxyClassloader ) );
+                if( generator.canGenerateProxyClass( interfaces ) )
+                {
+                    List<Method> proxyMethods = CompositeProxyClassLoader.proxyMethods( interfaces );
+                    compositeMethodsModel.indexMethods( proxyMethods );
+                    proxyClass = (Class<? extends Composite>) generator.generateProxyClass( interfaces, proxyMethods );
+                    try
+                    {
+                        proxyConstructor = proxyClass.getConstructor( IndexedInvocationHandler.class );
+                    }
+                    catch( NoSuchMethodException e )
+                    {
+                        throw (InvalidCompositeException) new InvalidCompositeException( "Could not get proxy constructor" ).initCause( e );
+                    }
+                    return;
+                }
+            }
+
             proxyClass = (Class<? extends Composite>) ProxyGenerator.createProxyClass( proxyClassloader, interfaces );
 
             try
@@ -205,6 +241,17 @@ public abstract class CompositeModel
         return compositeMethodsModel.invoke( mixins, proxy, method, args, moduleInstance );
     }
 
+    public final Object invoke( MixinsInstance mixins,
+                                Object proxy,
+                                int methodIndex,
+                                Object[] args,
+                                ModuleInstance moduleInstance
+    )
+        throws Throwable
+    {
+        return compositeMethodsModel.invoke( mixins, proxy, methodIndex, args, moduleInstance );
+    }
+
     public Composite newProxy( InvocationHandler invocationHandler )
         throws ConstructionException
     {
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Base class of the composite proxies generated by {@link CompositeProxyClassLoader}.
+ * <p>
+ * The public {@code _instance} field follows the convention of the proxies of class based composites, so that
+ * {@link org.qi4j.api.Qi4j#FUNCTION_COMPOSITE_INSTANCE_OF} finds the composite instance of generated proxies.
+ * As in {@link java.lang.reflect.Proxy}, equals, hashCode and toString are dispatched to the InvocationHandler with
+ * the Methods of Object.
+ * </p>
+ */
+public abstract class CompositeProxy
+{
+    private static final Method EQUALS;
+    private static final Method HASH_CODE;
+    private static final Method TO_STRING;
+
+    static
+    {
+        try
+        {
+            EQUALS = Object.class.getMethod( "equals", Object.class );
+            HASH_CODE = Object.class.getMethod( "hashCode" );
+            TO_STRING = Object.class.getMethod( "toString" );
+        }
+        catch( NoSuchMethodException e )
+        {
+            throw new InternalError( e.getMessage() );
+        }
+    }
+
+    public final IndexedInvocationHandler _instance;
+
+    protected CompositeProxy( IndexedInvocationHandler instance )
+    {
+        _instance = instance;
+    }
+
+    @Override
+    public final boolean equals( Object obj )
+    {
+        return (Boolean) invokeObject( EQUALS, new Object[]{ obj } );
+    }
+
+    @Override
+    public final int hashCode()
+    {
+        return (Integer) invokeObject( HASH_CODE, null );
+    }
+
+    @Override
+    public final String toString()
+    {
+        return (String) invokeObject( TO_STRING, null );
+    }
+
+    private Object invokeObject( Method method, Object[] args )
+    {
+        try
+        {
+            return _instance.invoke( this, method, args );
+        }
+        catch( RuntimeException e )
+        {
+            throw e;
+        }
+        catch( Error e )
+        {
+            throw e;
+        }
+        catch( Throwable e )
+        {
+            throw new UndeclaredThrowableException( e );
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DRETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP_X1;
+import static org.objectweb.asm.Opcodes.FLOAD;
+import static org.objectweb.asm.Opcodes.FRETURN;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LRETURN;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Type.getInternalName;
+
+/**
+ * Generate proxy classes for interface based composites.
+ * <p>
+ * The generated class extends {@link CompositeProxy} and implements all the composite types. Each method boxes its
+ * arguments and calls {@link IndexedInvocationHandler#invoke(Object, int, Object[])} with the index of the method in
+ * the list returned by {@link #proxyMethods(Class[])}. Exceptions are handled as in {@link java.lang.reflect.Proxy}:
+ * checked exceptions not declared by the method are wrapped in an UndeclaredThrowableException.
+ * </p>
+ */
+public final class CompositeProxyClassLoader
+    extends ClassLoader
+{
+    public static final String GENERATED_POSTFIX = "_CompositeProxy";
+
+    private static final String COMPOSITE_PROXY = getInternalName( CompositeProxy.class );
+    private static final String INVOCATION_HANDLER = getInternalName( IndexedInvocationHandler.class );
+    private static final String INVOCATION_HANDLER_DESC = Type.getDescriptor( IndexedInvocationHandler.class );
+
+    public CompositeProxyClassLoader( ClassLoader parent )
+    {
+        super( parent );
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass( String name, boolean resolve )
+        throws ClassNotFoundException
+    {
+        // The generated class must link to the Qi4j runtime classes, whatever the parent classloader sees
+        if( name.equals( CompositeProxy.class.getName() ) )
+        {
+            return CompositeProxy.class;
+        }
+        if( name.equals( IndexedInvocationHandler.class.getName() ) )
+        {
+            return IndexedInvocationHandler.class;
+        }
+        return super.loadClass( name, resolve );
+    }
+
+    /**
+     * @param interfaces Composite types
+     *
+     * @return true if a proxy class can be generated by this classloader for the given types, that is if they and the
+     *         return and exception types of their methods are public and visible from the parent classloader
+     */
+    public boolean canGenerateProxyClass( Class<?>[] interfaces )
+    {
+        for( Class<?> type : interfaces )
+        {
+            if( !type.isInterface() || !isPublic( type ) || !isVisible( type ) )
+            {
+                return false;
+            }
+        }
+        for( Method method : proxyMethods( interfaces ) )
+        {
+            if( !isPublic( method.getReturnType() ) )
+            {
+                return false;
+            }
+            for( Class<?> exceptionType : method.getExceptionTypes() )
+            {
+                if( !isPublic( exceptionType ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate and load the proxy class of a composite.
+     *
+     * @param interfaces Composite types, the first one names the generated class
+     * @param methods    Methods to implement, as returned by {@link #proxyMethods(Class[])}
+     *
+     * @return the generated class, with a public constructor taking an {@link IndexedInvocationHandler}
+     */
+    @SuppressWarnings( "unchecked" )
+    public Class<? extends CompositeProxy> generateProxyClass( Class<?>[] interfaces, List<Method> methods )
+    {
+        String name = interfaces[ 0 ].getName().replace( '$', '_' ) + GENERATED_POSTFIX;
+        if( name.startsWith( "java." ) )
+        {
+            // Classes may not be defined in java packages
+            name = CompositeProxy.class.getPackage().getName() + "." + name.replace( '.', '_' );
+        }
+        byte[] b = generateClass( name, interfaces, methods );
+        return (Class<? extends CompositeProxy>) defineClass( name, b, 0, b.length,
+                                                             interfaces[ 0 ].getProtectionDomain() );
+    }
+
+    /**
+     * Methods implemented by the proxy class of the given types, in method index order.
+     * <p>
+     * One Method is returned per distinct name and descriptor, equals, hashCode and toString are not included as
+     * they are handled by {@link CompositeProxy}.
+     * </p>
+     *
+     * @param interfaces Composite types
+     *
+     * @return Proxy methods by index
+     */
+    public static List<Method> proxyMethods( Class<?>[] interfaces )
+    {
+        Map<String, Method> methods = new LinkedHashMap<String, Method>();
+        for( Class<?> type : interfaces )
+        {
+            for( Method method : type.getMethods() )
+            {
+                if( isObjectMethod( method ) )
+                {
+                    continue;
+                }
+                String key = method.getName() + Type.getMethodDescriptor( method );
+                if( !methods.containsKey( key ) )
+                {
+                    methods.put( key, method );
+                }
+            }
+        }
+        return new ArrayList<Method>( methods.values() );
+    }
+
+    private static byte[] generateClass( String name, Class<?>[] interfaces, List<Method> methods )
+    {
+        String classSlash = name.replace( '.', '/' );
+        String[] interfaceNames = new String[ interfaces.length ];
+        for( int i = 0; i < interfaces.length; i++ )
+        {
+            interfaceNames[ i ] = getInternalName( interfaces[ i ] );
+        }
+
+        ClassWriter cw = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+        MethodVisitor mv;
+
+        // Class definition start, no stack map frames are needed for 1.5 classes
+        cw.visit( Opcodes.V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, classSlash, null, COMPOSITE_PROXY, interfaceNames );
+
+        // Constructor
+        {
+            String desc = "(" + INVOCATION_HANDLER_DESC + ")V";
+            mv = cw.visitMethod( ACC_PUBLIC, "<init>", desc, null, null );
+            mv.visitCode();
+            mv.visitVarInsn( ALOAD, 0 );
+            mv.visitVarInsn( ALOAD, 1 );
+            mv.visitMethodInsn( INVOKESPECIAL, COMPOSITE_PROXY, "<init>", desc );
+            mv.visitInsn( RETURN );
+            mv.visitMaxs( 0, 0 );
+            mv.visitEnd();
+        }
+
+        // Composite methods
+        int methodIndex = 0;
+        for( Method method : methods )
+        {
+            String[] exceptions = new String[ method.getExceptionTypes().length ];
+            for( int i = 0; i < exceptions.length; i++ )
+            {
+                exceptions[ i ] = getInternalName( method.getExceptionTypes()[ i ] );
+            }
+
+            mv = cw.visitMethod( ACC_PUBLIC + ACC_FINAL, method.getName(), Type.getMethodDescriptor( method ),
+                                 null, exceptions );
+            mv.visitCode();
+            Label start = new Label();
+            Label end = new Label();
+            Label rethrow = new Label();
+            Label undeclared = new Label();
+            for( String exception : exceptions )
+            {
+                mv.visitTryCatchBlock( start, end, rethrow, exception );
+            }
+            mv.visitTryCatchBlock( start, end, rethrow, "java/lang/RuntimeException" );
+            mv.visitTryCatchBlock( start, end, rethrow, "java/lang/Error" );
+            mv.visitTryCatchBlock( start, end, undeclared, "java/lang/Throwable" );
+
+            mv.visitLabel( start );
+            mv.visitVarInsn( ALOAD, 0 );
+            mv.visitFieldInsn( GETFIELD, COMPOSITE_PROXY, "_instance", INVOCATION_HANDLER_DESC );
+            mv.visitVarInsn( ALOAD, 0 );
+            push( mv, methodIndex++ );
+
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if( parameterTypes.length == 0 )
+            {
+                mv.visitInsn( ACONST_NULL );
+            }
+            else
+            {
+                push( mv, parameterTypes.length );
+                mv.visitTypeInsn( ANEWARRAY, "java/lang/Object" );
+                int localIdx = 1;
+                for( int i = 0; i < parameterTypes.length; i++ )
+                {
+                    mv.visitInsn( DUP );
+                    push( mv, i );
+                    localIdx = wrapParameter( mv, parameterTypes[ i ], localIdx );
+                    mv.visitInsn( AASTORE );
+                }
+            }
+
+            mv.visitMethodInsn( INVOKEINTERFACE, INVOCATION_HANDLER, "invoke",
+                                "(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;" );
+            returnResult( mv, method.getReturnType() );
+            mv.visitLabel( end );
+
+            // Unchecked and declared exceptions
+            mv.visitLabel( rethrow );
+            mv.visitInsn( ATHROW );
+
+            // Undeclared checked exceptions
+            mv.visitLabel( undeclared );
+            mv.visitTypeInsn( NEW, "java/lang/reflect/UndeclaredThrowableException" );
+            mv.visitInsn( DUP_X1 );
+            mv.visitInsn( SWAP );
+            mv.visitMethodInsn( INVOKESPECIAL, "java/lang/reflect/UndeclaredThrowableException", "<init>",
+                                "(Ljava/lang/Throwable;)V" );
+            mv.visitInsn( ATHROW );
+
+            mv.visitMaxs( 0, 0 );
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static boolean isObjectMethod( Method method )
+    {
+        String name = method.getName();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if( parameterTypes.length == 0 )
+        {
+            return name.equals( "hashCode" ) || name.equals( "toString" );
+        }
+        return parameterTypes.length == 1 && parameterTypes[ 0 ].equals( Object.class ) && name.equals( "equals" );
+    }
+
+    private static boolean isPublic( Class<?> type )
+    {
+        while( type.isArray() )
+        {
+            type = type.getComponentType();
+        }
+        if( type.isPrimitive() )
+        {
+            return true;
+        }
+        for( Class<?> aClass = type; aClass != null; aClass = aClass.getEnclosingClass() )
+        {
+            if( !Modifier.isPublic( aClass.getModifiers() ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isVisible( Class<?> type )
+    {
+        try
+        {
+            return loadClass( type.getName() ) == type;
+        }
+        catch( ClassNotFoundException e )
+        {
+            return false;
+        }
+    }
+
+    private static int wrapParameter( MethodVisitor mv, Class<?> aClass, int idx )
+    {
+        if( aClass.equals( Integer.TYPE ) )
+        {
+            mv.visitVarInsn( ILOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;" );
+        }
+        else if( aClass.equals( Long.TYPE ) )
+        {
+            mv.visitVarInsn( LLOAD, idx++ );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;" );
+        }
+        else if( aClass.equals( Short.TYPE ) )
+        {
+            mv.visitVarInsn( ILOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Short", "valueOf", "(S)Ljava/lang/Short;" );
+        }
+        else if( aClass.equals( Byte.TYPE ) )
+        {
+            mv.visitVarInsn( ILOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Byte", "valueOf", "(B)Ljava/lang/Byte;" );
+        }
+        else if( aClass.equals( Double.TYPE ) )
+        {
+            mv.visitVarInsn( DLOAD, idx++ );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;" );
+        }
+        else if( aClass.equals( Float.TYPE ) )
+        {
+            mv.visitVarInsn( FLOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;" );
+        }
+        else if( aClass.equals( Boolean.TYPE ) )
+        {
+            mv.visitVarInsn( ILOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;" );
+        }
+        else if( aClass.equals( Character.TYPE ) )
+        {
+            mv.visitVarInsn( ILOAD, idx );
+            mv.visitMethodInsn( INVOKESTATIC, "java/lang/Character", "valueOf", "(C)Ljava/lang/Character;" );
+        }
+        else
+        {
+            mv.visitVarInsn( ALOAD, idx );
+        }
+
+        return idx + 1;
+    }
+
+    private static void returnResult( MethodVisitor mv, Class<?> aClass )
+    {
+        if( aClass.equals( Void.TYPE ) )
+        {
+            mv.visitInsn( POP );
+            mv.visitInsn( RETURN );
+        }
+        else if( aClass.equals( Integer.TYPE ) )
+        {
+            unbox( mv, "java/lang/Integer", "intValue", "()I" );
+            mv.visitInsn( IRETURN );
+        }
+        else if( aClass.equals( Long.TYPE ) )
+        {
+            unbox( mv, "java/lang/Long", "longValue", "()J" );
+            mv.visitInsn( LRETURN );
+        }
+        else if( aClass.equals( Short.TYPE ) )
+        {
+            unbox( mv, "java/lang/Short", "shortValue", "()S" );
+            mv.visitInsn( IRETURN );
+        }
+        else if( aClass.equals( Byte.TYPE ) )
+        {
+            unbox( mv, "java/lang/Byte", "byteValue", "()B" );
+            mv.visitInsn( IRETURN );
+        }
+        else if( aClass.equals( Double.TYPE ) )
+        {
+            unbox( mv, "java/lang/Double", "doubleValue", "()D" );
+            mv.visitInsn( DRETURN );
+        }
+        else if( aClass.equals( Float.TYPE ) )
+        {
+            unbox( mv, "java/lang/Float", "floatValue", "()F" );
+            mv.visitInsn( FRETURN );
+        }
+        else if( aClass.equals( Boolean.TYPE ) )
+        {
+            unbox( mv, "java/lang/Boolean", "booleanValue", "()Z" );
+            mv.visitInsn( IRETURN );
+        }
+        else if( aClass.equals( Character.TYPE ) )
+        {
+            unbox( mv, "java/lang/Character", "charValue", "()C" );
+            mv.visitInsn( IRETURN );
+        }
+        else
+        {
+            if( !aClass.equals( Object.class ) )
+            {
+                mv.visitTypeInsn( CHECKCAST, getInternalName( aClass ) );
+            }
+            mv.visitInsn( ARETURN );
+        }
+    }
+
+    private static void unbox( MethodVisitor mv, String wrapperType, String method, String desc )
+    {
+        mv.visitTypeInsn( CHECKCAST, wrapperType );
+        mv.visitMethodInsn( INVOKEVIRTUAL, wrapperType, method, desc );
+    }
+
+    private static void push( MethodVisitor mv, int value )
+    {
+        if( value <= 5 )
+        {
+            mv.visitInsn( ICONST_0 + value );
+        }
+        else if( value <= Byte.MAX_VALUE )
+        {
+            mv.visitIntInsn( BIPUSH, value );
+        }
+        else if( value <= Short.MAX_VALUE )
+        {
+            mv.visitIntInsn( SIPUSH, value );
+        }
+        else
+        {
+            mv.visitLdcInsn( value );
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+import java.lang.reflect.InvocationHandler;
+
+/**
+ * InvocationHandler of generated composite proxies.
+ * <p>
+ * Generated proxies call composite methods by their index in the proxy class, see {@link CompositeProxyClassLoader},
+ * so that no Method lookup is needed to find the composite method to invoke.
+ * </p>
+ */
+public interface IndexedInvocationHandler
+    extends InvocationHandler
+{
+    Object invoke( Object proxy, int methodIndex, Object[] args )
+        throws Throwable;
+}
@@ -1,5 +1,6 @@
 package org.qi4j.runtime.composite;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 
 /**
@@ -7,10 +8,31 @@ import java.lang.reflect.Proxy;
  */
 public class ProxyGenerator {
     public static Class<?> createProxyClass(ClassLoader mainTypeClassLoader, Class<?>[] interfaces) {
+        return Proxy.getProxyClass(effectiveClassLoader(mainTypeClassLoader), interfaces);
+    }
+
+    static ClassLoader effectiveClassLoader(ClassLoader mainTypeClassLoader) {
         ClassLoader effectiveClassLoader = Thread.currentThread().getContextClassLoader();
         if (effectiveClassLoader == null) {
             effectiveClassLoader = mainTypeClassLoader;
         }
-        return Proxy.getProxyClass(effectiveClassLoader, interfaces);
+        return effectiveClassLoader;
+    }
+
+    /**
+     * @return true if the object is a {@link Proxy} or a {@link CompositeProxy}
+     */
+    public static boolean isProxy(Object object) {
+        return object instanceof CompositeProxy || Proxy.isProxyClass(object.getClass());
+    }
+
+    /**
+     * Same as {@link Proxy#getInvocationHandler(Object)}, for both {@link Proxy} and {@link CompositeProxy} instances.
+     */
+    public static InvocationHandler invocationHandlerOf(Object proxy) {
+        if (proxy instanceof CompositeProxy) {
+            return ((CompositeProxy) proxy)._instance;
+        }
+        return Proxy.getInvocationHandler(proxy);
     }
 }
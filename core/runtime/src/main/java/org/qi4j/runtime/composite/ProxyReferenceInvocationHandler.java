@@ -17,7 +17,6 @@ package org.qi4j.runtime.composite;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.UndeclaredThrowableException;
 import org.qi4j.api.composite.CompositeInvoker;
 
@@ -47,7 +46,7 @@ public final class ProxyReferenceInvocationHandler
     {
         try
         {
-            InvocationHandler invocationHandler = Proxy.getInvocationHandler( this.proxy );
+            InvocationHandler invocationHandler = ProxyGenerator.invocationHandlerOf( this.proxy );
             return invocationHandler.invoke( this.proxy, method, args );
         }
         catch( InvocationTargetException e )
@@ -66,7 +65,7 @@ public final class ProxyReferenceInvocationHandler
     {
         try
         {
-            InvocationHandler invocationHandler = Proxy.getInvocationHandler( this.proxy );
+            InvocationHandler invocationHandler = ProxyGenerator.invocationHandlerOf( this.proxy );
             return invocationHandler.invoke( this.proxy, method, args );
         }
         catch( InvocationTargetException e )
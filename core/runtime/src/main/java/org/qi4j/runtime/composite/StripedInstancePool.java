@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+/**
+ * Method instance pool striped over several {@link AtomicInstancePool}s.
+ * Threads are spread over the stripes by their id, so that concurrent
+ * threads seldom compete for the same linked list.
+ */
+public final class StripedInstancePool
+    implements InstancePool<CompositeMethodInstance>
+{
+    private final AtomicInstancePool[] stripes;
+    private final int mask;
+
+    public StripedInstancePool()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    public StripedInstancePool( int concurrency )
+    {
+        int size = 1;
+        while( size < concurrency )
+        {
+            size <<= 1;
+        }
+        stripes = new AtomicInstancePool[ size ];
+        for( int i = 0; i < size; i++ )
+        {
+            stripes[ i ] = new AtomicInstancePool();
+        }
+        mask = size - 1;
+    }
+
+    @Override
+    public CompositeMethodInstance obtainInstance()
+    {
+        return stripe().obtainInstance();
+    }
+
+    @Override
+    public void releaseInstance( CompositeMethodInstance compositeMethodInstance )
+    {
+        stripe().releaseInstance( compositeMethodInstance );
+    }
+
+    private AtomicInstancePool stripe()
+    {
+        return stripes[ (int) Thread.currentThread().getId() & mask ];
+    }
+}
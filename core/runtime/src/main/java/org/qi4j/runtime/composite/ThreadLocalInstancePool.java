@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+/**
+ * Method instance pool that keeps a linked list per thread, so that
+ * instances are acquired and returned without any synchronization.
+ */
+public final class ThreadLocalInstancePool
+    implements InstancePool<CompositeMethodInstance>
+{
+    private final ThreadLocal<Head> heads = new ThreadLocal<Head>()
+    {
+        @Override
+        protected Head initialValue()
+        {
+            return new Head();
+        }
+    };
+
+    @Override
+    public CompositeMethodInstance obtainInstance()
+    {
+        Head head = heads.get();
+        CompositeMethodInstance firstInstance = head.first;
+        if( firstInstance != null )
+        {
+            head.first = firstInstance.getNext();
+        }
+        return firstInstance;
+    }
+
+    @Override
+    public void releaseInstance( CompositeMethodInstance compositeMethodInstance )
+    {
+        Head head = heads.get();
+        compositeMethodInstance.setNext( head.first );
+        head.first = compositeMethodInstance;
+    }
+
+    private static final class Head
+    {
+        private CompositeMethodInstance first;
+    }
+}
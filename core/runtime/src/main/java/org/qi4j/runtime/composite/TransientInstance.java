@@ -18,7 +18,6 @@ package org.qi4j.runtime.composite;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import org.qi4j.api.Qi4j;
 import org.qi4j.api.composite.Composite;
@@ -30,11 +29,11 @@ import org.qi4j.runtime.structure.ModuleInstance;
  * InvocationHandler for proxy objects.
  */
 public class TransientInstance
-    implements CompositeInstance, MixinsInstance
+    implements CompositeInstance, MixinsInstance, IndexedInvocationHandler
 {
     public static TransientInstance compositeInstanceOf( Composite composite )
     {
-        InvocationHandler handler = Proxy.getInvocationHandler( composite );
+        InvocationHandler handler = ProxyGenerator.invocationHandlerOf( composite );
         return (TransientInstance) handler;
     }
 
@@ -65,6 +64,13 @@ public class TransientInstance
         return compositeModel.invoke( this, proxy, method, args, moduleInstance );
     }
 
+    @Override
+    public Object invoke( Object proxy, int methodIndex, Object[] args )
+        throws Throwable
+    {
+        return compositeModel.invoke( this, proxy, methodIndex, args, moduleInstance );
+    }
+
     @Override
     public <T> T proxy()
     {
@@ -137,7 +143,7 @@ public class TransientInstance
         {
             return false;
         }
-        if( !Proxy.isProxyClass( o.getClass() ) )
+        if( !ProxyGenerator.isProxy( o ) )
         {
             return false;
         }
@@ -39,6 +39,12 @@ public class TransientModel
         super( types, visibility, metaInfo, mixinsModel, stateModel, compositeMethodsModel );
     }
 
+    @Override
+    protected boolean supportsGeneratedProxy()
+    {
+        return true;
+    }
+
     public TransientInstance newInstance( ModuleInstance moduleInstance,
                                           UsesInstance uses,
                                           TransientStateInstance state
@@ -17,7 +17,6 @@ package org.qi4j.runtime.injection;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Proxy;
 import java.util.Collection;
 import org.qi4j.api.composite.InjectedFieldDescriptor;
 import org.qi4j.api.util.Classes;
@@ -26,6 +25,7 @@ import org.qi4j.bootstrap.InjectionException;
 import org.qi4j.functional.HierarchicalVisitor;
 import org.qi4j.functional.Specification;
 import org.qi4j.functional.VisitableHierarchy;
+import org.qi4j.runtime.composite.ProxyGenerator;
 import org.qi4j.runtime.composite.TransientInstance;
 import org.qi4j.runtime.model.Resolution;
 
@@ -80,9 +80,9 @@ public final class InjectedFieldModel
         catch( IllegalArgumentException e )
         {
             String valueClassName;
-            if( Proxy.isProxyClass( value.getClass() ) )
+            if( ProxyGenerator.isProxy( value ) )
             {
-                InvocationHandler invocationHandler = Proxy.getInvocationHandler( value );
+                InvocationHandler invocationHandler = ProxyGenerator.invocationHandlerOf( value );
                 if( invocationHandler instanceof TransientInstance )
                 {
                     TransientInstance handler = (TransientInstance) invocationHandler;
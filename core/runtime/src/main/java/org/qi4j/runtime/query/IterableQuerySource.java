@@ -14,26 +14,58 @@
 
 package org.qi4j.runtime.query;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.IndexedCollection;
+import org.qi4j.api.query.QueryExecutionException;
+import org.qi4j.api.query.grammar.AndSpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.EqSpecification;
+import org.qi4j.api.query.grammar.GeSpecification;
+import org.qi4j.api.query.grammar.GtSpecification;
+import org.qi4j.api.query.grammar.LeSpecification;
+import org.qi4j.api.query.grammar.LtSpecification;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.query.grammar.Variable;
 import org.qi4j.api.util.Classes;
-import org.qi4j.functional.Iterables;
 import org.qi4j.functional.Specification;
-import org.qi4j.functional.Specifications;
 import org.qi4j.spi.query.QuerySource;
 
 /**
- * JAVADOC
+ * QuerySource evaluating queries against the objects of an Iterable, in memory.
+ * <p>
+ * Queries stop reading the Iterable as soon as they can: {@link #find} returns the first match of unordered queries,
+ * and unordered queries limited to a number of results stop once they are found. Ordered queries limited to a number
+ * of results keep only the best ones while reading, instead of sorting all matches. Values queries are ordered by
+ * are read once per object.
+ * </p>
+ * <p>
+ * Queries against an {@link IndexedCollection} read only the candidates its indexes give for an equality or
+ * comparison where clause, or one of the operands of an and where clause, and filter its elements in parallel once
+ * it is large enough, see {@link IndexedCollection#withParallelFiltering(int)}.
+ * </p>
  */
 public class IterableQuerySource
     implements QuerySource
 {
+    private static final Object NO_PROPERTY = new Object();
+
     private Iterable iterable;
 
     /**
@@ -55,12 +87,21 @@ public class IterableQuerySource
                        Map<String, Object> variables
     )
     {
-        final Iterator<T> iterator = iterator( resultType, whereClause, orderBySegments, firstResult, maxResults, variables );
-        if( iterator.hasNext() )
+        if( maxResults != null && maxResults <= 0 )
         {
-            return iterator.next();
+            return null;
         }
-        return null;
+        int skip = firstResult == null ? 0 : firstResult;
+        List<T> found;
+        if( orderBySegments == null )
+        {
+            found = filter( resultType, whereClause, skip + 1, false );
+        }
+        else
+        {
+            found = top( filter( resultType, whereClause, null, true ), orderBySegments, skip + 1 );
+        }
+        return found.size() > skip ? found.get( skip ) : null;
     }
 
     @Override
@@ -72,7 +113,17 @@ public class IterableQuerySource
                            Map<String, Object> variables
     )
     {
-        return list( resultType, whereClause, orderBySegments, firstResult, maxResults, variables ).size();
+        // Counts do not depend on the order
+        long count = filter( resultType, whereClause, null, true ).size();
+        if( firstResult != null )
+        {
+            count = Math.max( 0, count - firstResult );
+        }
+        if( maxResults != null )
+        {
+            count = Math.min( count, maxResults );
+        }
+        return count;
     }
 
     @Override
@@ -95,64 +146,258 @@ public class IterableQuerySource
                               Map<String, Object> variables
     )
     {
-        // Ensure it's a list first
-        List<T> list = filter( resultType, whereClause );
+        int skip = firstResult == null ? 0 : firstResult;
+        Integer limit = maxResults == null ? null : skip + Math.max( 0, maxResults );
 
-        // Order list
-        if( orderBySegments != null )
+        List<T> list;
+        if( orderBySegments == null )
+        {
+            list = filter( resultType, whereClause, limit, limit == null );
+        }
+        else if( limit != null )
+        {
+            list = top( filter( resultType, whereClause, null, true ), orderBySegments, limit );
+        }
+        else
         {
-            // Sort it
-            Collections.sort( list, new OrderByComparator( orderBySegments ) );
+            list = sort( filter( resultType, whereClause, null, true ), orderBySegments );
         }
 
         // Cut results
-        if( firstResult != null )
+        if( skip >= list.size() )
+        {
+            return Collections.emptyList();
+        }
+        return list.subList( skip, list.size() );
+    }
+
+    /**
+     * @param limit    Maximum number of matches, or null
+     * @param parallel true if matches may be found in parallel
+     */
+    private <T> List<T> filter( Class<T> resultType, final Specification<Composite> whereClause, Integer limit,
+                                boolean parallel
+    )
+    {
+        final Specification<Object> instanceOf = Classes.instanceOf( resultType );
+        Specification<Object> specification = instanceOf;
+        if( whereClause != null )
+        {
+            specification = new Specification<Object>()
+            {
+                @Override
+                public boolean satisfiedBy( Object item )
+                {
+                    return instanceOf.satisfiedBy( item ) && whereClause.satisfiedBy( (Composite) item );
+                }
+            };
+        }
+
+        Iterable<?> candidates = iterable;
+        int parallelThreshold = 0;
+        if( iterable instanceof IndexedCollection )
         {
-            if( firstResult > list.size() )
+            IndexedCollection<?> collection = (IndexedCollection<?>) iterable;
+            Collection<?> indexed = candidates( collection, whereClause );
+            if( indexed != null )
             {
-                return Collections.emptyList();
+                candidates = indexed;
             }
+            parallelThreshold = collection.parallelFilteringThreshold();
+        }
 
-            int toIdx;
-            if( maxResults != null )
+        if( parallel && parallelThreshold > 0 && candidates instanceof Collection
+            && ( (Collection<?>) candidates ).size() >= parallelThreshold )
+        {
+            return parallelFilter( resultType, specification, candidates instanceof List
+                                                              ? (List<?>) candidates
+                                                              : new ArrayList<Object>( (Collection<?>) candidates ) );
+        }
+
+        List<T> matches = new ArrayList<T>();
+        if( limit != null && limit <= 0 )
+        {
+            return matches;
+        }
+        for( Object candidate : candidates )
+        {
+            if( specification.satisfiedBy( candidate ) )
             {
-                toIdx = Math.min( firstResult + maxResults, list.size() );
+                matches.add( resultType.cast( candidate ) );
+                if( limit != null && matches.size() >= limit )
+                {
+                    break;
+                }
             }
-            else
+        }
+        return matches;
+    }
+
+    /**
+     * @return Candidates given by the indexes of the collection for the where clause, or null if none applies
+     */
+    private static Collection<?> candidates( IndexedCollection<?> collection, Specification<Composite> whereClause )
+    {
+        if( whereClause instanceof AndSpecification )
+        {
+            Collection<?> best = null;
+            for( Specification<Composite> operand : ( (AndSpecification) whereClause ).operands() )
             {
-                toIdx = list.size();
+                Collection<?> candidates = candidates( collection, operand );
+                if( candidates != null && ( best == null || candidates.size() < best.size() ) )
+                {
+                    best = candidates;
+                }
             }
+            return best;
+        }
+        if( !( whereClause instanceof ComparisonSpecification ) )
+        {
+            return null;
+        }
+        ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) whereClause;
+        PropertyFunction<?> property = comparison.property();
+        Object value = comparison.value();
+        if( value == null || value instanceof Variable || !collection.isIndexed( property ) )
+        {
+            return null;
+        }
+        if( comparison instanceof EqSpecification )
+        {
+            return collection.lookup( property, value );
+        }
+        if( !collection.isRangeIndexed( property ) || !( value instanceof Comparable ) )
+        {
+            return null;
+        }
+        if( comparison instanceof GtSpecification )
+        {
+            return collection.range( property, value, false, null, false );
+        }
+        else if( comparison instanceof GeSpecification )
+        {
+            return collection.range( property, value, true, null, false );
+        }
+        else if( comparison instanceof LtSpecification )
+        {
+            return collection.range( property, null, false, value, false );
+        }
+        else if( comparison instanceof LeSpecification )
+        {
+            return collection.range( property, null, false, value, true );
+        }
+        return null;
+    }
 
-            list = list.subList( firstResult, toIdx );
+    private static <T> List<T> parallelFilter( final Class<T> resultType,
+                                               final Specification<Object> specification,
+                                               final List<?> candidates
+    )
+    {
+        int chunks = Runtime.getRuntime().availableProcessors();
+        int chunkSize = ( candidates.size() + chunks - 1 ) / chunks;
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>( chunks );
+        for( int start = 0; start < candidates.size(); start += chunkSize )
+        {
+            final List<?> chunk = candidates.subList( start, Math.min( start + chunkSize, candidates.size() ) );
+            futures.add( FilterExecutor.EXECUTOR.submit( new Callable<List<T>>()
+            {
+                @Override
+                public List<T> call()
+                {
+                    List<T> matches = new ArrayList<T>();
+                    for( Object candidate : chunk )
+                    {
+                        if( specification.satisfiedBy( candidate ) )
+                        {
+                            matches.add( resultType.cast( candidate ) );
+                        }
+                    }
+                    return matches;
+                }
+            } ) );
         }
-        else
+
+        List<T> matches = new ArrayList<T>();
+        try
         {
-            int toIdx;
-            if( maxResults != null )
+            for( Future<List<T>> future : futures )
             {
-                toIdx = Math.min( maxResults, list.size() );
+                matches.addAll( future.get() );
             }
-            else
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new QueryExecutionException( "Interrupted while filtering", e );
+        }
+        catch( ExecutionException e )
+        {
+            if( e.getCause() instanceof RuntimeException )
             {
-                toIdx = list.size();
+                throw (RuntimeException) e.getCause();
             }
-
-            list = list.subList( 0, toIdx );
+            throw new QueryExecutionException( "Could not filter", e.getCause() );
         }
+        return matches;
+    }
 
-        return list;
+    /**
+     * @return the first matches according to the order, in order
+     */
+    private static <T> List<T> top( List<T> matches, Iterable<OrderBy> orderBySegments, int count )
+    {
+        if( count <= 0 )
+        {
+            return Collections.emptyList();
+        }
+        if( count >= matches.size() )
+        {
+            return sort( matches, orderBySegments );
+        }
+        OrderByComparator comparator = new OrderByComparator( orderBySegments );
+        // Keep the best matches, the worst of them at the head of the queue
+        PriorityQueue<Sortable<T>> best = new PriorityQueue<Sortable<T>>( count + 1, Collections.reverseOrder( comparator ) );
+        int position = 0;
+        for( T match : matches )
+        {
+            Sortable<T> sortable = comparator.sortable( match, position++ );
+            if( best.size() < count )
+            {
+                best.add( sortable );
+            }
+            else if( comparator.compare( sortable, best.peek() ) < 0 )
+            {
+                best.poll();
+                best.add( sortable );
+            }
+        }
+        List<Sortable<T>> sorted = new ArrayList<Sortable<T>>( best );
+        Collections.sort( sorted, comparator );
+        return elements( sorted );
     }
 
-    private <T> List<T> filter( Class<T> resultType, Specification whereClause )
+    private static <T> List<T> sort( List<T> matches, Iterable<OrderBy> orderBySegments )
     {
-        if( whereClause == null )
+        OrderByComparator comparator = new OrderByComparator( orderBySegments );
+        List<Sortable<T>> sorted = new ArrayList<Sortable<T>>( matches.size() );
+        int position = 0;
+        for( T match : matches )
         {
-            return Iterables.toList( Iterables.filter( Classes.instanceOf( resultType ), iterable ) );
+            sorted.add( comparator.sortable( match, position++ ) );
         }
-        else
+        Collections.sort( sorted, comparator );
+        return elements( sorted );
+    }
+
+    private static <T> List<T> elements( List<Sortable<T>> sorted )
+    {
+        List<T> elements = new ArrayList<T>( sorted.size() );
+        for( Sortable<T> sortable : sorted )
         {
-            return Iterables.toList( Iterables.filter( Specifications.and( Classes.instanceOf( resultType ), whereClause ), iterable ) );
+            elements.add( sortable.element );
         }
+        return elements;
     }
 
     @Override
@@ -161,75 +406,141 @@ public class IterableQuerySource
         return "IterableQuerySource{" + iterable + '}';
     }
 
-    private static class OrderByComparator<T extends Composite>
-        implements Comparator<T>
+    /**
+     * Object to sort, with the values it is ordered by.
+     */
+    private static class Sortable<T>
     {
+        private final T element;
+        private final Object[] values;
+        // Position among the matches, so that equal elements keep their relative order
+        private final int position;
 
-        private Iterable<OrderBy> orderBySegments;
+        private Sortable( T element, Object[] values, int position )
+        {
+            this.element = element;
+            this.values = values;
+            this.position = position;
+        }
+    }
+
+    private static class OrderByComparator
+        implements Comparator<Sortable<?>>
+    {
+        private final OrderBy[] orderBySegments;
 
         private OrderByComparator( Iterable<OrderBy> orderBySegments )
         {
-            this.orderBySegments = orderBySegments;
+            List<OrderBy> segments = new ArrayList<OrderBy>();
+            for( OrderBy orderBySegment : orderBySegments )
+            {
+                segments.add( orderBySegment );
+            }
+            this.orderBySegments = segments.toArray( new OrderBy[ segments.size() ] );
         }
 
-        @Override
-        public int compare( T o1, T o2 )
+        private <T> Sortable<T> sortable( T element, int position )
         {
-            for( OrderBy orderBySegment : orderBySegments )
+            Object[] values = new Object[ orderBySegments.length ];
+            for( int idx = 0; idx < orderBySegments.length; idx++ )
             {
                 try
                 {
-                    final Property prop1 = orderBySegment.property().map( o1 );
-                    final Property prop2 = orderBySegment.property().map( o2 );
-                    if( prop1 == null || prop2 == null )
+                    Property<?> property = orderBySegments[ idx ].property().map( (Composite) element );
+                    values[ idx ] = property == null ? NO_PROPERTY : property.get();
+                }
+                catch( Exception e )
+                {
+                    values[ idx ] = e;
+                }
+            }
+            return new Sortable<T>( element, values, position );
+        }
+
+        @Override
+        public int compare( Sortable<?> o1, Sortable<?> o2 )
+        {
+            int result = compareValues( o1, o2 );
+            return result != 0 ? result : o1.position < o2.position ? -1 : ( o1.position == o2.position ? 0 : 1 );
+        }
+
+        private int compareValues( Sortable<?> o1, Sortable<?> o2 )
+        {
+            for( int idx = 0; idx < orderBySegments.length; idx++ )
+            {
+                final Object value1 = o1.values[ idx ];
+                final Object value2 = o2.values[ idx ];
+                if( value1 instanceof Exception || value2 instanceof Exception )
+                {
+                    return 0;
+                }
+                if( value1 == NO_PROPERTY || value2 == NO_PROPERTY )
+                {
+                    if( value1 == value2 )
                     {
-                        if( prop1 == null && prop2 == null )
-                        {
-                            return 0;
-                        }
-                        else if( prop1 != null )
-                        {
-                            return 1;
-                        }
-                        return -1;
+                        return 0;
                     }
-                    final Object value1 = prop1.get();
-                    final Object value2 = prop2.get();
-                    if( value1 == null || value2 == null )
+                    return value1 == NO_PROPERTY ? -1 : 1;
+                }
+                if( value1 == null || value2 == null )
+                {
+                    if( value1 == null && value2 == null )
                     {
-                        if( value1 == null && value2 == null )
-                        {
-                            return 0;
-                        }
-                        else if( value1 != null )
-                        {
-                            return 1;
-                        }
-                        return -1;
+                        return 0;
                     }
-                    if( value1 instanceof Comparable )
+                    else if( value1 != null )
                     {
-                        int result = ( (Comparable) value1 ).compareTo( value2 );
-                        if( result != 0 )
-                        {
-                            if( orderBySegment.order() == OrderBy.Order.ASCENDING )
-                            {
-                                return result;
-                            }
-                            else
-                            {
-                                return -result;
-                            }
-                        }
+                        return 1;
                     }
+                    return -1;
                 }
-                catch( Exception e )
+                if( value1 instanceof Comparable )
                 {
-                    return 0;
+                    int result;
+                    try
+                    {
+                        result = ( (Comparable) value1 ).compareTo( value2 );
+                    }
+                    catch( Exception e )
+                    {
+                        return 0;
+                    }
+                    if( result != 0 )
+                    {
+                        if( orderBySegments[ idx ].order() == OrderBy.Order.ASCENDING )
+                        {
+                            return result;
+                        }
+                        else
+                        {
+                            return -result;
+                        }
+                    }
                 }
             }
 
             return 0;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Daemon threads filtering large collections, created on first use.
+     */
+    private static class FilterExecutor
+    {
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "qi4j-query-filter-" + count.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+    }
+}
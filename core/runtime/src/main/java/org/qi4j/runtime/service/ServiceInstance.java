@@ -14,7 +14,6 @@
 
 package org.qi4j.runtime.service;
 
-import java.lang.reflect.Proxy;
 import org.qi4j.api.activation.Activation;
 import org.qi4j.api.activation.ActivationException;
 import org.qi4j.api.activation.PassivationException;
@@ -23,6 +22,7 @@ import org.qi4j.api.configuration.Enabled;
 import org.qi4j.api.service.Availability;
 import org.qi4j.api.service.ServiceComposite;
 import org.qi4j.api.util.Classes;
+import org.qi4j.runtime.composite.ProxyGenerator;
 import org.qi4j.runtime.composite.TransientInstance;
 import org.qi4j.runtime.composite.TransientStateInstance;
 import org.qi4j.runtime.structure.ModuleInstance;
@@ -36,7 +36,7 @@ public class ServiceInstance
 {
     public static TransientInstance serviceInstanceOf( ServiceComposite composite )
     {
-        return (TransientInstance) Proxy.getInvocationHandler( composite );
+        return (TransientInstance) ProxyGenerator.invocationHandlerOf( composite );
     }
 
     private boolean implementsServiceAvailable;
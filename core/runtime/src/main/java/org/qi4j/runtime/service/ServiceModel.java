@@ -94,6 +94,12 @@ public final class ServiceModel extends CompositeModel
         this.configurationType = calculateConfigurationType();
     }
 
+    @Override
+    protected boolean supportsGeneratedProxy()
+    {
+        return true;
+    }
+
     @Override
     public boolean isInstantiateOnStartup()
     {
@@ -30,6 +30,7 @@ import org.qi4j.api.service.ServiceUnavailableException;
 import org.qi4j.api.structure.Module;
 import org.qi4j.runtime.activation.ActivationDelegate;
 import org.qi4j.runtime.activation.ActivationEventListenerSupport;
+import org.qi4j.runtime.composite.IndexedInvocationHandler;
 import org.qi4j.runtime.structure.ModuleInstance;
 
 /**
@@ -43,6 +44,8 @@ public final class ServiceReferenceInstance<T>
     implements ServiceReference<T>, Activation
 {
     private volatile ServiceInstance instance;
+    // Only set once the instance is activated, so that other threads do not use it while it is activating
+    private volatile ServiceInstance activatedInstance;
     private final T serviceProxy;
     private final ModuleInstance module;
     private final ServiceModel serviceModel;
@@ -77,7 +80,7 @@ public final class ServiceReferenceInstance<T>
     }
 
     @Override
-    public synchronized T get()
+    public T get()
     {
         return serviceProxy;
     }
@@ -115,6 +118,7 @@ public final class ServiceReferenceInstance<T>
     {
         if( instance != null )
         {
+            activatedInstance = null;
             try {
                 activationEventSupport.fireEvent( new ActivationEvent( this, ActivationEvent.EventType.PASSIVATING ) );
                 activation.passivate( new Runnable()
@@ -139,39 +143,42 @@ public final class ServiceReferenceInstance<T>
         throws ServiceImporterException
     {
         // DCL that works with Java 1.5 volatile semantics
-        if( instance == null )
+        ServiceInstance activated = activatedInstance;
+        if( activated != null )
         {
-            synchronized( this )
+            return activated;
+        }
+        synchronized( this )
+        {
+            // Other threads wait here while the instance is activating, only the activating thread re-enters
+            if( instance == null )
             {
-                if( instance == null )
-                {
-                    instance = serviceModel.newInstance( module );
+                instance = serviceModel.newInstance( module );
 
-                    try
+                try
+                {
+                    activationEventSupport.fireEvent( new ActivationEvent( this, ActivationEvent.EventType.ACTIVATING ) );
+                    activation.activate( serviceModel.newActivatorsInstance(), instance, new Runnable()
                     {
-                        activationEventSupport.fireEvent( new ActivationEvent( this, ActivationEvent.EventType.ACTIVATING ) );
-                        activation.activate( serviceModel.newActivatorsInstance(), instance, new Runnable()
-                        {
 
-                            @Override
-                            public void run()
-                            {
-                                active = true;
-                            }
+                        @Override
+                        public void run()
+                        {
+                            active = true;
+                        }
 
-                        } );
-                        activationEventSupport.fireEvent( new ActivationEvent( this, ActivationEvent.EventType.ACTIVATED ) );
-                    }
-                    catch( Exception e )
-                    {
-                        instance = null;
-                        throw new ServiceUnavailableException( "Could not activate service " + serviceModel.identity(), e );
-                    }
+                    } );
+                    activationEventSupport.fireEvent( new ActivationEvent( this, ActivationEvent.EventType.ACTIVATED ) );
+                    activatedInstance = instance;
+                }
+                catch( Exception e )
+                {
+                    instance = null;
+                    throw new ServiceUnavailableException( "Could not activate service " + serviceModel.identity(), e );
                 }
             }
+            return instance;
         }
-
-        return instance;
     }
 
     @Override
@@ -191,7 +198,7 @@ public final class ServiceReferenceInstance<T>
     }
 
     public final class ServiceInvocationHandler
-        implements CompositeInstance
+        implements CompositeInstance, IndexedInvocationHandler
     {
         @Override
         public <T> T proxy()
@@ -270,6 +277,13 @@ public final class ServiceReferenceInstance<T>
             return instance.invoke( object, method, objects );
         }
 
+        @Override
+        public Object invoke( Object object, int methodIndex, Object[] objects )
+            throws Throwable
+        {
+            return getInstance().invoke( object, methodIndex, objects );
+        }
+
         @Override
         public String toString()
         {
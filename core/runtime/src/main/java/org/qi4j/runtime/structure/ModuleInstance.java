@@ -97,6 +97,7 @@ import org.qi4j.runtime.value.ValueStateModel;
 import org.qi4j.runtime.value.ValuesModel;
 import org.qi4j.spi.entitystore.EntityStore;
 import org.qi4j.spi.metrics.MetricsProviderAdapter;
+import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.valueserialization.orgjson.OrgJsonValueSerialization;
 
 import static org.qi4j.api.util.Classes.*;
@@ -126,10 +127,11 @@ public class ModuleInstance
     private final ClassLoader classLoader;
     private final EntityFunction entityFunction;
     // Lazy assigned on accessors
-    private EntityStore store;
-    private IdentityGenerator generator;
-    private ValueSerialization valueSerialization;
-    private MetricsProvider metrics;
+    private volatile EntityStore store;
+    private volatile IdentityGenerator generator;
+    private volatile ValueSerialization valueSerialization;
+    private volatile MetricsProvider metrics;
+    private volatile EntityFinder finder;
 
     @SuppressWarnings( "LeakingThisInConstructor" )
     public ModuleInstance( ModuleModel moduleModel, LayerInstance layerInstance, TransientsModel transientsModel,
@@ -633,16 +635,20 @@ public class ModuleInstance
 
     public EntityStore entityStore()
     {
-        synchronized( this )
+        // DCL that works with Java 1.5 volatile semantics
+        if( store == null )
         {
-            if( store == null )
+            synchronized( this )
             {
-                ServiceReference<EntityStore> service = findService( EntityStore.class );
-                if( service == null )
+                if( store == null )
                 {
-                    throw new UnitOfWorkException( "No EntityStore service available in module " + name() );
+                    ServiceReference<EntityStore> service = findService( EntityStore.class );
+                    if( service == null )
+                    {
+                        throw new UnitOfWorkException( "No EntityStore service available in module " + name() );
+                    }
+                    store = service.get();
                 }
-                store = service.get();
             }
         }
         return store;
@@ -650,51 +656,80 @@ public class ModuleInstance
 
     /* package */ IdentityGenerator identityGenerator()
     {
-        synchronized( this )
+        // DCL that works with Java 1.5 volatile semantics
+        if( generator == null )
         {
-            if( generator == null )
+            synchronized( this )
             {
-                ServiceReference<IdentityGenerator> service = findService( IdentityGenerator.class );
-                generator = service.get();
+                if( generator == null )
+                {
+                    ServiceReference<IdentityGenerator> service = findService( IdentityGenerator.class );
+                    generator = service.get();
+                }
             }
-            return generator;
         }
+        return generator;
     }
 
     public ValueSerialization valueSerialization()
     {
-        synchronized( this )
+        // DCL that works with Java 1.5 volatile semantics
+        if( valueSerialization == null )
         {
-            if( valueSerialization == null )
+            synchronized( this )
             {
-                try
-                {
-                    ServiceReference<ValueSerialization> service = findService( ValueSerialization.class );
-                    valueSerialization = service.get();
-                }
-                catch( NoSuchServiceException e )
+                if( valueSerialization == null )
                 {
-                    valueSerialization = new OrgJsonValueSerialization( layer.applicationInstance(), this, this );
+                    try
+                    {
+                        ServiceReference<ValueSerialization> service = findService( ValueSerialization.class );
+                        valueSerialization = service.get();
+                    }
+                    catch( NoSuchServiceException e )
+                    {
+                        valueSerialization = new OrgJsonValueSerialization( layer.applicationInstance(), this, this );
+                    }
                 }
             }
         }
         return valueSerialization;
     }
 
-    /* package */ MetricsProvider metricsProvider()
+    /* package */ EntityFinder entityFinder()
     {
-        synchronized( this )
+        // DCL that works with Java 1.5 volatile semantics
+        if( finder == null )
         {
-            if( metrics == null )
+            synchronized( this )
             {
-                try
+                if( finder == null )
                 {
-                    ServiceReference<MetricsProvider> service = findService( MetricsProvider.class );
-                    metrics = service.get();
+                    ServiceReference<EntityFinder> service = findService( EntityFinder.class );
+                    finder = service.get();
                 }
-                catch( NoSuchServiceException e )
+            }
+        }
+        return finder;
+    }
+
+    public MetricsProvider metricsProvider()
+    {
+        // DCL that works with Java 1.5 volatile semantics
+        if( metrics == null )
+        {
+            synchronized( this )
+            {
+                if( metrics == null )
                 {
-                    metrics = new MetricsProviderAdapter();
+                    try
+                    {
+                        ServiceReference<MetricsProvider> service = findService( MetricsProvider.class );
+                        metrics = service.get();
+                    }
+                    catch( NoSuchServiceException e )
+                    {
+                        metrics = new MetricsProviderAdapter();
+                    }
                 }
             }
         }
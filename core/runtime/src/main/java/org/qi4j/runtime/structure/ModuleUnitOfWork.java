@@ -14,9 +14,12 @@
 
 package org.qi4j.runtime.structure;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import org.qi4j.api.common.QualifiedName;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityBuilder;
@@ -322,6 +325,12 @@ public class ModuleUnitOfWork
         uow.addEntity( instance );
     }
 
+    /* package */ void prefetch( Class<?> type, Iterable<EntityReference> identities )
+    {
+        Iterable<ModelModule<EntityModel>> models = moduleInstance.typeLookup().lookupEntityModels( type );
+        uow.prefetch( identities, this, models );
+    }
+
     private static class UoWQuerySource implements QuerySource
     {
         private ModuleUnitOfWork moduleUnitOfWork;
@@ -340,7 +349,7 @@ public class ModuleUnitOfWork
                            Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = moduleUnitOfWork.module().entityFinder();
 
             try
             {
@@ -375,7 +384,7 @@ public class ModuleUnitOfWork
                                Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = moduleUnitOfWork.module().entityFinder();
 
             try
             {
@@ -397,7 +406,7 @@ public class ModuleUnitOfWork
                                          Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = moduleUnitOfWork.module().entityFinder();
 
             try
             {
@@ -410,18 +419,23 @@ public class ModuleUnitOfWork
                                                                                                .<String, Object>emptyMap() : variables )
                     .iterator();
 
+                final int prefetchSize = moduleUnitOfWork.instance().prefetchSize();
                 return new Iterator<T>()
                 {
+                    // References of the current prefetch window
+                    private final List<EntityReference> window = new ArrayList<EntityReference>();
+                    private int position;
+
                     @Override
                     public boolean hasNext()
                     {
-                        return foundEntities.hasNext();
+                        return position < window.size() || foundEntities.hasNext();
                     }
 
                     @Override
                     public T next()
                     {
-                        final EntityReference foundEntity = foundEntities.next();
+                        final EntityReference foundEntity = nextReference();
                         try
                         {
                             return moduleUnitOfWork.get( resultType, foundEntity.identity() );
@@ -438,6 +452,30 @@ public class ModuleUnitOfWork
                     {
                         throw new UnsupportedOperationException();
                     }
+
+                    private EntityReference nextReference()
+                    {
+                        if( prefetchSize <= 1 )
+                        {
+                            return foundEntities.next();
+                        }
+                        if( position == window.size() )
+                        {
+                            // Pull the next references from the finder and load their states in one batch
+                            window.clear();
+                            position = 0;
+                            while( window.size() < prefetchSize && foundEntities.hasNext() )
+                            {
+                                window.add( foundEntities.next() );
+                            }
+                            if( window.isEmpty() )
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            moduleUnitOfWork.prefetch( resultType, window );
+                        }
+                        return window.get( position++ );
+                    }
                 };
             }
             catch( EntityFinderException e )
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.TimeUnit;
 import org.qi4j.api.common.MetaInfo;
@@ -186,6 +187,62 @@ public final class UnitOfWorkInstance
         return entityInstance.proxy();
     }
 
+    /**
+     * Load the state of many entities at once, one bulk read per EntityStore.
+     * <p>
+     * Loaded entities are put in the instance cache, so that following {@link #get} calls for them do not hit the
+     * EntityStores. Entities that are already loaded or that are not found are skipped.
+     * </p>
+     */
+    public void prefetch( Iterable<EntityReference> identities,
+                          ModuleUnitOfWork uow,
+                          Iterable<ModelModule<EntityModel>> potentialModels
+    )
+    {
+        checkOpen();
+
+        List<EntityReference> missing = new ArrayList<EntityReference>();
+        for( EntityReference identity : identities )
+        {
+            if( !instanceCache.containsKey( identity ) )
+            {
+                missing.add( identity );
+            }
+        }
+        if( missing.isEmpty() )
+        {
+            return;
+        }
+
+        // Same resolution as get(), the last potential model whose store has the entity wins
+        Map<EntityStore, Map<EntityReference, EntityState>> statesByStore = new HashMap<EntityStore, Map<EntityReference, EntityState>>();
+        Map<EntityReference, EntityState> states = new HashMap<EntityReference, EntityState>();
+        Map<EntityReference, ModuleInstance> modules = new HashMap<EntityReference, ModuleInstance>();
+        for( ModelModule<EntityModel> potentialModel : potentialModels )
+        {
+            EntityStore store = potentialModel.module().entityStore();
+            Map<EntityReference, EntityState> storeStates = statesByStore.get( store );
+            if( storeStates == null )
+            {
+                EntityStoreUnitOfWork storeUow = getEntityStoreUnitOfWork( store, potentialModel.module() );
+                storeStates = storeUow.entityStatesOf( missing );
+                statesByStore.put( store, storeStates );
+            }
+            for( Map.Entry<EntityReference, EntityState> storeState : storeStates.entrySet() )
+            {
+                states.put( storeState.getKey(), storeState.getValue() );
+                modules.put( storeState.getKey(), potentialModel.module() );
+            }
+        }
+
+        for( Map.Entry<EntityReference, EntityState> state : states.entrySet() )
+        {
+            EntityModel model = (EntityModel) state.getValue().entityDescriptor();
+            EntityInstance entityInstance = new EntityInstance( uow, modules.get( state.getKey() ), model, state.getValue() );
+            instanceCache.put( state.getKey(), entityInstance );
+        }
+    }
+
     public Usecase usecase()
     {
         return usecase;
@@ -201,6 +258,25 @@ public final class UnitOfWorkInstance
         return metaInfo;
     }
 
+    /**
+     * @return Number of query results to load in one batch, 1 or less if results should be loaded one by one
+     */
+    public int prefetchSize()
+    {
+        UnitOfWorkOptions unitOfWorkOptions = unitOfWorkOptions();
+        return unitOfWorkOptions == null ? 1 : unitOfWorkOptions.getPrefetchSize();
+    }
+
+    private UnitOfWorkOptions unitOfWorkOptions()
+    {
+        UnitOfWorkOptions unitOfWorkOptions = metaInfo().get( UnitOfWorkOptions.class );
+        if( unitOfWorkOptions == null )
+        {
+            unitOfWorkOptions = usecase().metaInfo( UnitOfWorkOptions.class );
+        }
+        return unitOfWorkOptions;
+    }
+
     public void pause()
     {
         if( !paused )
@@ -208,12 +284,7 @@ public final class UnitOfWorkInstance
             paused = true;
             getCurrent().pop();
 
-            UnitOfWorkOptions unitOfWorkOptions = metaInfo().get( UnitOfWorkOptions.class );
-            if( unitOfWorkOptions == null )
-            {
-                unitOfWorkOptions = usecase().metaInfo( UnitOfWorkOptions.class );
-            }
-
+            UnitOfWorkOptions unitOfWorkOptions = unitOfWorkOptions();
             if( unitOfWorkOptions != null )
             {
                 if( unitOfWorkOptions.isPruneOnPause() )
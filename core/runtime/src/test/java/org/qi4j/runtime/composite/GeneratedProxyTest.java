@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+import java.io.IOException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.qi4j.api.Qi4j;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.composite.TransientComposite;
+import org.qi4j.api.concern.ConcernOf;
+import org.qi4j.api.concern.Concerns;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GeneratedProxyTest
+    extends AbstractQi4jTest
+{
+    @BeforeClass
+    public static void enableGeneratedProxies()
+    {
+        System.setProperty( CompositeModel.GENERATED_PROXIES, "true" );
+    }
+
+    @AfterClass
+    public static void disableGeneratedProxies()
+    {
+        System.clearProperty( CompositeModel.GENERATED_PROXIES );
+    }
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.transients( CalculatorComposite.class );
+        module.services( CalculatorService.class );
+    }
+
+    @Test
+    public void givenGeneratedProxyWhenInvokingMethodsExpectArgumentsAndResultsPassedThrough()
+        throws IOException
+    {
+        Calculator calculator = module.newTransient( CalculatorComposite.class );
+
+        assertThat( calculator, instanceOf( CompositeProxy.class ) );
+        assertThat( calculator.add( 40, 2 ), equalTo( 42 ) );
+        assertThat( calculator.add( 1L << 40, 2L ), equalTo( ( 1L << 40 ) + 3L ) );
+        assertThat( calculator.half( 5.0 ), equalTo( 2.5 ) );
+        assertThat( calculator.isPositive( (short) -1 ), equalTo( false ) );
+        assertThat( calculator.concat( new String[]{ "a", "b" }, 'c' ), equalTo( "abc" ) );
+        calculator.reset();
+    }
+
+    @Test
+    public void givenGeneratedProxyWhenMixinThrowsExpectSameExceptions()
+    {
+        Calculator calculator = module.newTransient( CalculatorComposite.class );
+        try
+        {
+            calculator.fail( "checked" );
+            fail( "IOException expected" );
+        }
+        catch( IOException e )
+        {
+            assertThat( e.getMessage(), equalTo( "checked" ) );
+        }
+        try
+        {
+            calculator.fail( null );
+            fail( "IllegalArgumentException expected" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // Expected
+        }
+        catch( IOException e )
+        {
+            fail( "IllegalArgumentException expected" );
+        }
+    }
+
+    @Test
+    public void givenGeneratedProxiesWhenComparingExpectCompositeInstanceEquality()
+    {
+        Calculator calculator = module.newTransient( CalculatorComposite.class );
+        Calculator other = module.newTransient( CalculatorComposite.class );
+
+        assertThat( calculator.equals( calculator ), equalTo( true ) );
+        assertThat( calculator.equals( other ), equalTo( false ) );
+        assertThat( calculator.hashCode(), equalTo( calculator.hashCode() ) );
+        assertThat( calculator.toString(), not( equalTo( other.toString() ) ) );
+        assertThat( Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) calculator ),
+                    sameInstance( ProxyGenerator.invocationHandlerOf( calculator ) ) );
+        assertThat( module.newTransient( CalculatorComposite.class ).add( 1, 1 ), equalTo( 2 ) );
+    }
+
+    @Test
+    public void givenGeneratedServiceProxyWhenInvokingExpectConcernsApplied()
+        throws IOException
+    {
+        Calculator calculator = module.findService( Calculator.class ).get();
+
+        assertThat( calculator, instanceOf( CompositeProxy.class ) );
+        assertThat( calculator.add( 40, 2 ), equalTo( 42 ) );
+        assertThat( calculator.add( 1L, 2L ), equalTo( 4L ) );
+    }
+
+    @Mixins( CalculatorMixin.class )
+    @Concerns( AddOneConcern.class )
+    public interface CalculatorComposite
+        extends Calculator, TransientComposite
+    {
+    }
+
+    @Mixins( CalculatorMixin.class )
+    @Concerns( AddOneConcern.class )
+    public interface CalculatorService
+        extends Calculator, ServiceComposite
+    {
+    }
+
+    public interface Calculator
+    {
+        int add( int a, int b );
+
+        long add( long a, long b );
+
+        double half( double value );
+
+        boolean isPositive( short value );
+
+        String concat( String[] values, char last );
+
+        void reset();
+
+        void fail( String message )
+            throws IOException;
+    }
+
+    public static abstract class AddOneConcern
+        extends ConcernOf<Calculator>
+        implements Calculator
+    {
+        @Override
+        public long add( long a, long b )
+        {
+            return next.add( a, b ) + 1;
+        }
+    }
+
+    public static class CalculatorMixin
+        implements Calculator
+    {
+        @Override
+        public int add( int a, int b )
+        {
+            return a + b;
+        }
+
+        @Override
+        public long add( long a, long b )
+        {
+            return a + b;
+        }
+
+        @Override
+        public double half( double value )
+        {
+            return value / 2;
+        }
+
+        @Override
+        public boolean isPositive( short value )
+        {
+            return value > 0;
+        }
+
+        @Override
+        public String concat( String[] values, char last )
+        {
+            StringBuilder builder = new StringBuilder();
+            for( String value : values )
+            {
+                builder.append( value );
+            }
+            return builder.append( last ).toString();
+        }
+
+        @Override
+        public void reset()
+        {
+        }
+
+        @Override
+        public void fail( String message )
+            throws IOException
+        {
+            if( message == null )
+            {
+                throw new IllegalArgumentException();
+            }
+            throw new IOException( message );
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.composite;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.composite.InstancePooling;
+import org.qi4j.api.composite.TransientComposite;
+import org.qi4j.api.concern.ConcernOf;
+import org.qi4j.api.concern.Concerns;
+import org.qi4j.api.metrics.Metric;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.metrics.MetricsProviderAdapter;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class InstancePoolingTest
+    extends AbstractQi4jTest
+{
+    private static final Map<String, AtomicLong> COUNTS = new ConcurrentHashMap<String, AtomicLong>();
+
+    @Before
+    public void clearCounts()
+    {
+        COUNTS.clear();
+    }
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.services( CountingMetricsProviderService.class );
+        module.transients( PerThreadComposite.class ).setMetaInfo( InstancePooling.PER_THREAD );
+        module.transients( StripedComposite.class ).setMetaInfo( InstancePooling.STRIPED );
+        module.transients( SharedComposite.class );
+    }
+
+    @Test
+    public void givenPerThreadPoolingWhenInvokingFromTwoThreadsExpectOneInstancePerThread()
+        throws InterruptedException
+    {
+        final Greeter greeter = module.newTransient( PerThreadComposite.class );
+        assertThat( greeter.greet( "World" ), equalTo( "Hello World!" ) );
+        assertThat( greeter.greet( "World" ), equalTo( "Hello World!" ) );
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                greeter.greet( "Thread" );
+                greeter.greet( "Thread" );
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertThat( count( PerThreadComposite.class, "greet(String) Pool Hits" ), equalTo( 2L ) );
+        assertThat( count( PerThreadComposite.class, "greet(String) Pool Misses" ), equalTo( 2L ) );
+    }
+
+    @Test
+    public void givenStripedPoolingWhenInvokingExpectInstancesReused()
+    {
+        Greeter greeter = module.newTransient( StripedComposite.class );
+        assertThat( greeter.greet( "World" ), equalTo( "Hello World!" ) );
+        assertThat( greeter.greet( "World" ), equalTo( "Hello World!" ) );
+        assertThat( greeter.greetTwice( greeter, "World" ), equalTo( "Hello World!Hello World!" ) );
+
+        assertThat( count( StripedComposite.class, "greet(String) Pool Hits" ), equalTo( 3L ) );
+        assertThat( count( StripedComposite.class, "greet(String) Pool Misses" ), equalTo( 1L ) );
+        assertThat( count( StripedComposite.class, "greetTwice(Greeter,String) Pool Misses" ), equalTo( 1L ) );
+    }
+
+    @Test
+    public void givenCompositesSharingAMixinTypeWhenInvokingExpectSeparateMetrics()
+    {
+        module.newTransient( StripedComposite.class ).greet( "World" );
+        module.newTransient( PerThreadComposite.class ).greet( "World" );
+        module.newTransient( PerThreadComposite.class ).greet( "World" );
+
+        assertThat( count( StripedComposite.class, "greet(String) Pool Misses" ), equalTo( 1L ) );
+        assertThat( count( StripedComposite.class, "greet(String) Pool Hits" ), equalTo( 0L ) );
+        assertThat( count( PerThreadComposite.class, "greet(String) Pool Misses" ), equalTo( 1L ) );
+        assertThat( count( PerThreadComposite.class, "greet(String) Pool Hits" ), equalTo( 1L ) );
+    }
+
+    @Test
+    public void givenNoPoolingDeclaredWhenInvokingExpectNoMetrics()
+    {
+        Greeter greeter = module.newTransient( SharedComposite.class );
+        assertThat( greeter.greet( "World" ), equalTo( "Hello World!" ) );
+        assertThat( count( SharedComposite.class, "greet(String) Pool Misses" ), equalTo( 0L ) );
+    }
+
+    private static long count( Class<?> origin, String name )
+    {
+        AtomicLong count = COUNTS.get( origin.getName() + " " + name );
+        return count == null ? 0L : count.get();
+    }
+
+    @Mixins( GreeterMixin.class )
+    @Concerns( ExclamationConcern.class )
+    public interface PerThreadComposite
+        extends Greeter, TransientComposite
+    {
+    }
+
+    @Mixins( GreeterMixin.class )
+    @Concerns( ExclamationConcern.class )
+    public interface StripedComposite
+        extends Greeter, TransientComposite
+    {
+    }
+
+    @Mixins( GreeterMixin.class )
+    @Concerns( ExclamationConcern.class )
+    public interface SharedComposite
+        extends Greeter, TransientComposite
+    {
+    }
+
+    public interface Greeter
+    {
+        String greet( String name );
+
+        String greetTwice( Greeter self, String name );
+    }
+
+    public static abstract class ExclamationConcern
+        extends ConcernOf<Greeter>
+        implements Greeter
+    {
+        @Override
+        public String greet( String name )
+        {
+            return next.greet( name ) + "!";
+        }
+    }
+
+    public static class GreeterMixin
+        implements Greeter
+    {
+        @Override
+        public String greet( String name )
+        {
+            return "Hello " + name;
+        }
+
+        @Override
+        public String greetTwice( Greeter self, String name )
+        {
+            return self.greet( name ) + self.greet( name );
+        }
+    }
+
+    @Mixins( CountingMetricsProvider.class )
+    public interface CountingMetricsProviderService
+        extends MetricsProvider, ServiceComposite
+    {
+    }
+
+    public static class CountingMetricsProvider
+        extends MetricsProviderAdapter
+    {
+        @Override
+        protected MetricsCounterFactory createMetricsCounterFactory()
+        {
+            return new MetricsCounterFactory()
+            {
+                @Override
+                public MetricsCounter createCounter( Class<?> origin, String name )
+                {
+                    String key = origin.getName() + " " + name;
+                    AtomicLong count = COUNTS.get( key );
+                    if( count == null )
+                    {
+                        count = new AtomicLong();
+                        COUNTS.put( key, count );
+                    }
+                    return new CountingCounter( count );
+                }
+
+                @Override
+                public Iterable<Metric> registered()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    private static class CountingCounter
+        implements MetricsCounter
+    {
+        private final AtomicLong count;
+
+        private CountingCounter( AtomicLong count )
+        {
+            this.count = count;
+        }
+
+        @Override
+        public void increment()
+        {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void increment( int steps )
+        {
+            count.addAndGet( steps );
+        }
+
+        @Override
+        public void decrement()
+        {
+            count.decrementAndGet();
+        }
+
+        @Override
+        public void decrement( int steps )
+        {
+            count.addAndGet( -steps );
+        }
+    }
+}
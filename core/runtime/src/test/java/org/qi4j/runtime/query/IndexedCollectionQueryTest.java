@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.composite.TransientComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.IndexedCollection;
+import org.qi4j.api.query.Query;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.and;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.ge;
+import static org.qi4j.api.query.QueryExpressions.lt;
+import static org.qi4j.api.query.QueryExpressions.orderBy;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * Test in memory queries against IndexedCollections.
+ */
+public class IndexedCollectionQueryTest
+    extends AbstractQi4jTest
+{
+    private Product template;
+    private IndexedCollection<Product> products;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.transients( Product.class );
+    }
+
+    @Before
+    public void createProducts()
+    {
+        template = templateFor( Product.class );
+        products = new IndexedCollection<Product>()
+            .withHashIndex( template.category() )
+            .withRangeIndex( template.price() );
+        for( int idx = 0; idx < 100; idx++ )
+        {
+            products.add( newProduct( "Product " + idx, idx % 2 == 0 ? "even" : "odd", idx ) );
+        }
+    }
+
+    @Test
+    public void givenHashIndexWhenQueryingByEqualityThenReturnMatchesInCollectionOrder()
+    {
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( eq( template.category(), "odd" ) )
+            .newQuery( products );
+
+        assertThat( query.count(), equalTo( 50L ) );
+        assertThat( names( query ).get( 0 ), equalTo( "Product 1" ) );
+        assertThat( names( query ).get( 49 ), equalTo( "Product 99" ) );
+    }
+
+    @Test
+    public void givenRangeIndexWhenQueryingByComparisonThenReturnMatches()
+    {
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( and( ge( template.price(), 10 ), lt( template.price(), 13 ), eq( template.category(), "even" ) ) )
+            .newQuery( products );
+
+        assertThat( names( query ).toString(), equalTo( "[Product 10, Product 12]" ) );
+    }
+
+    @Test
+    public void givenUpdatedElementWhenQueryingThenIndexReflectsNewValue()
+    {
+        Product product = products.iterator().next();
+        product.category().set( "special" );
+        products.update( product );
+
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( eq( template.category(), "special" ) )
+            .newQuery( products );
+        assertThat( names( query ).toString(), equalTo( "[Product 0]" ) );
+
+        products.remove( product );
+        assertThat( query.count(), equalTo( 0L ) );
+        assertThat( query.find(), nullValue() );
+    }
+
+    @Test
+    public void givenChangedElementWhenQueryingBeforeAndAfterUpdateThenIndexesReflectValueOfLastUpdate()
+    {
+        Product product = products.iterator().next();
+        product.category().set( "special" );
+        product.price().set( 1000 );
+
+        Query<Product> byCategory = module.newQueryBuilder( Product.class )
+            .where( eq( template.category(), "special" ) )
+            .newQuery( products );
+        Query<Product> byPrice = module.newQueryBuilder( Product.class )
+            .where( ge( template.price(), 1000 ) )
+            .newQuery( products );
+        Query<Product> previousCategory = module.newQueryBuilder( Product.class )
+            .where( eq( template.category(), "even" ) )
+            .newQuery( products );
+
+        // Not updated yet, the where clause still excludes the element from the results of its previous value
+        assertThat( byCategory.count(), equalTo( 0L ) );
+        assertThat( byPrice.count(), equalTo( 0L ) );
+        assertThat( previousCategory.count(), equalTo( 49L ) );
+
+        products.update( product );
+        assertThat( names( byCategory ).toString(), equalTo( "[Product 0]" ) );
+        assertThat( names( byPrice ).toString(), equalTo( "[Product 0]" ) );
+        assertThat( previousCategory.count(), equalTo( 49L ) );
+    }
+
+    @Test
+    public void givenOrderedLimitedQueryThenReturnBestMatchesInOrder()
+    {
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( eq( template.category(), "even" ) )
+            .newQuery( products );
+        query.orderBy( orderBy( template.price(), OrderBy.Order.DESCENDING ) );
+        query.firstResult( 1 );
+        query.maxResults( 3 );
+
+        assertThat( names( query ).toString(), equalTo( "[Product 96, Product 94, Product 92]" ) );
+        assertThat( query.find().name().get(), equalTo( "Product 96" ) );
+        assertThat( query.count(), equalTo( 3L ) );
+    }
+
+    @Test
+    public void givenUnorderedQueryWhenFindingThenStopAtFirstMatch()
+    {
+        final List<Product> read = new ArrayList<Product>();
+        Iterable<Product> iterable = new Iterable<Product>()
+        {
+            @Override
+            public Iterator<Product> iterator()
+            {
+                final Iterator<Product> iterator = products.iterator();
+                return new Iterator<Product>()
+                {
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Product next()
+                    {
+                        Product next = iterator.next();
+                        read.add( next );
+                        return next;
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( ge( template.price(), 5 ) )
+            .newQuery( iterable );
+
+        assertThat( query.find().name().get(), equalTo( "Product 5" ) );
+        assertThat( read.size(), equalTo( 6 ) );
+    }
+
+    @Test
+    public void givenParallelFilteringWhenQueryingThenReturnMatchesInCollectionOrder()
+    {
+        products.withParallelFiltering( 10 );
+        Query<Product> query = module.newQueryBuilder( Product.class )
+            .where( lt( template.price(), 50 ) )
+            .newQuery( products );
+        List<String> names = names( query );
+
+        assertThat( names.size(), equalTo( 50 ) );
+        for( int idx = 0; idx < 50; idx++ )
+        {
+            assertThat( names.get( idx ), equalTo( "Product " + idx ) );
+        }
+    }
+
+    private Product newProduct( String name, String category, int price )
+    {
+        Product product = module.newTransient( Product.class );
+        product.name().set( name );
+        product.category().set( category );
+        product.price().set( price );
+        return product;
+    }
+
+    private static List<String> names( Query<Product> query )
+    {
+        List<String> names = new ArrayList<String>();
+        for( Product product : query )
+        {
+            names.add( product.name().get() );
+        }
+        return names;
+    }
+
+    public interface Product
+        extends TransientComposite
+    {
+        @Optional
+        Property<String> name();
+
+        @Optional
+        Property<String> category();
+
+        @Optional
+        Property<Integer> price();
+    }
+}
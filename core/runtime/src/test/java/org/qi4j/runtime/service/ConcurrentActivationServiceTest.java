@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.runtime.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test that threads calling a lazily activated service while it is activating wait for the activation to complete.
+ */
+public class ConcurrentActivationServiceTest
+    extends AbstractQi4jTest
+{
+    private static final CountDownLatch ACTIVATING = new CountDownLatch( 1 );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.services( SlowActivationService.class );
+    }
+
+    @Test
+    public void givenServiceActivatingWhenCallingFromAnotherThreadExpectCallAfterActivation()
+        throws Exception
+    {
+        final SlowActivationService service = module.findService( SlowActivationService.class ).get();
+        final AtomicReference<Boolean> firstCall = new AtomicReference<Boolean>();
+        Thread first = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                firstCall.set( service.isActivated() );
+            }
+        };
+        first.start();
+
+        assertThat( ACTIVATING.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( service.isActivated(), equalTo( true ) );
+
+        first.join();
+        assertThat( firstCall.get(), equalTo( true ) );
+    }
+
+    @Mixins( SlowActivationMixin.class )
+    public interface SlowActivationService
+        extends SlowActivation, ServiceActivation, ServiceComposite
+    {
+    }
+
+    public interface SlowActivation
+    {
+        boolean isActivated();
+    }
+
+    public static class SlowActivationMixin
+        implements SlowActivation, ServiceActivation
+    {
+        private boolean activated;
+
+        @Override
+        public void activateService()
+            throws Exception
+        {
+            ACTIVATING.countDown();
+            // Give the other thread time to call the service while it is activating
+            Thread.sleep( 500 );
+            activated = true;
+        }
+
+        @Override
+        public void passivateService()
+            throws Exception
+        {
+            activated = false;
+        }
+
+        @Override
+        public boolean isActivated()
+        {
+            return activated;
+        }
+    }
+}
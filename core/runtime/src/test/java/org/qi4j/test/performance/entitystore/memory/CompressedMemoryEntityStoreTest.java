@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.memory.BinaryMemoryEntityStoreService;
+import org.qi4j.io.Inputs;
+import org.qi4j.io.Outputs;
+import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.spi.entitystore.helpers.StateCompression;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test of BinaryMemoryEntityStoreService compressing states.
+ */
+public class CompressedMemoryEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+
+        module.services( BinaryMemoryEntityStoreService.class ).setMetaInfo( StateCompression.deflate().withMinimumSize( 0 ) );
+        module.services( UuidIdentityGeneratorService.class );
+        module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+    }
+
+    @Test
+    public void givenCompressedStatesWhenBackupAndRestoreThenStatesAreKept()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        String identity = createEntity( unitOfWork ).identity().get();
+        unitOfWork.complete();
+
+        BackupRestore backupRestore = module.findService( BackupRestore.class ).get();
+        List<String> backup = new ArrayList<String>();
+        backupRestore.backup().transferTo( Outputs.collection( backup ) );
+        assertThat( backup.size(), equalTo( 1 ) );
+        assertThat( backup.get( 0 ).startsWith( "{" ), equalTo( true ) );
+
+        Inputs.iterable( backup ).transferTo( backupRestore.restore() );
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( TestEntity.class, identity ).intValue().get(), equalTo( 42 ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+}
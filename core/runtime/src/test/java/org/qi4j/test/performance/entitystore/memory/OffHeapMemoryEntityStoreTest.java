@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.memory;
+
+import org.junit.Test;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.memory.MemoryEntityStoreService;
+import org.qi4j.entitystore.memory.MemoryStorage;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test of MemoryEntityStoreService keeping states off-heap.
+ */
+public class OffHeapMemoryEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+
+        module.services( MemoryEntityStoreService.class ).setMetaInfo( MemoryStorage.OFF_HEAP );
+        module.services( UuidIdentityGeneratorService.class );
+        module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+    }
+
+    @Test
+    public void givenManyUpdatesWhenSlabsAreCompactedThenLatestStatesAreKept()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        String first = createEntity( unitOfWork ).identity().get();
+        String second = createEntity( unitOfWork ).identity().get();
+        unitOfWork.complete();
+
+        // Enough overwritten states for several slabs to be compacted
+        for( int i = 0; i < 5000; i++ )
+        {
+            unitOfWork = module.newUnitOfWork();
+            unitOfWork.get( TestEntity.class, first ).intValue().set( i );
+            unitOfWork.complete();
+        }
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( TestEntity.class, first ).intValue().get(), equalTo( 4999 ) );
+            assertThat( unitOfWork.get( TestEntity.class, second ).intValue().get(), equalTo( 42 ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+/**
+ * Count-Min sketch estimating how often keys were accessed recently, the TinyLFU admission filter of
+ * {@link MemoryCache}.
+ * <p>
+ * Counters saturate at 15 and are all halved once the number of increments reaches ten times the width of the
+ * sketch, so that old popularity fades away. Not thread-safe.
+ * </p>
+ */
+final class FrequencySketch
+{
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch( int expectedEntries )
+    {
+        int width = Integer.highestOneBit( Math.max( 1024, Math.min( expectedEntries, 1 << 20 ) ) - 1 ) << 1;
+        counters = new byte[ DEPTH * width ];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment( Object key )
+    {
+        int hash = spread( key.hashCode() );
+        boolean added = false;
+        for( int row = 0; row < DEPTH; row++ )
+        {
+            int index = indexOf( hash, row );
+            if( counters[ index ] < MAX_COUNT )
+            {
+                counters[ index ]++;
+                added = true;
+            }
+        }
+        if( added && ++additions >= sampleSize )
+        {
+            reset();
+        }
+    }
+
+    int frequency( Object key )
+    {
+        int hash = spread( key.hashCode() );
+        int frequency = MAX_COUNT;
+        for( int row = 0; row < DEPTH; row++ )
+        {
+            frequency = Math.min( frequency, counters[ indexOf( hash, row ) ] );
+        }
+        return frequency;
+    }
+
+    private void reset()
+    {
+        for( int idx = 0; idx < counters.length; idx++ )
+        {
+            counters[ idx ] = (byte) ( counters[ idx ] >>> 1 );
+        }
+        additions /= 2;
+    }
+
+    private int indexOf( int hash, int row )
+    {
+        long h = ( hash + SEEDS[ row ] ) * SEEDS[ row ];
+        h += h >>> 32;
+        return row * ( mask + 1 ) + ( (int) h & mask );
+    }
+
+    private static int spread( int hash )
+    {
+        hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+        hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+        return ( hash >>> 16 ) ^ hash;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.Cacheable;
+
+/**
+ * Size bounded Cache of {@link MemoryCachePoolService}.
+ * <p>
+ * Entries are held in a ConcurrentHashMap and reads never block. Eviction follows W-TinyLFU: new entries enter a
+ * small LRU window, about 1% of the maximum weight. Entries leaving the window enter the main LRU region only if
+ * they were accessed more often than the entry they would evict from it, according to a {@link FrequencySketch}.
+ * So that one-time scans do not flush frequently used entries out of the cache.
+ * </p>
+ * <p>
+ * Eviction structures are guarded by a lock. Reads record accesses only if the lock is free, under contention
+ * some accesses are not recorded, which only makes the policy slightly less accurate.
+ * </p>
+ */
+final class MemoryCache<T>
+    implements Cache<T>
+{
+    private final String cacheId;
+    private final Class<T> valueType;
+    private final MemoryCachePolicy policy;
+    private final MemoryCachePoolMixin.Statistics statistics;
+    private final ConcurrentMap<String, Node> data = new ConcurrentHashMap<String, Node>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Node window = new Node( null, null, 0, 0L );
+    private final Node main = new Node( null, null, 0, 0L );
+    private final FrequencySketch sketch;
+    private final long windowMaxWeight;
+    private final long mainMaxWeight;
+    private long windowWeight;
+    private long mainWeight;
+    private int refCount;
+
+    MemoryCache( String cacheId, Class<T> valueType, MemoryCachePolicy policy, MemoryCachePoolMixin.Statistics statistics )
+    {
+        this.cacheId = cacheId;
+        this.valueType = valueType;
+        this.policy = policy;
+        this.statistics = statistics;
+        windowMaxWeight = Math.max( 1L, policy.maxWeight() / 100 );
+        mainMaxWeight = Math.max( 1L, policy.maxWeight() - windowMaxWeight );
+        // Assume entries of about 1KB
+        sketch = new FrequencySketch( (int) Math.min( Integer.MAX_VALUE, policy.maxWeight() / 1024 ) );
+        window.prev = window.next = window;
+        main.prev = main.next = main;
+    }
+
+    @Override
+    public T get( String key )
+    {
+        Node node = data.get( key );
+        if( node == null )
+        {
+            statistics.misses.increment();
+            return null;
+        }
+        if( node.isExpired( System.currentTimeMillis() ) )
+        {
+            remove( key, node );
+            statistics.misses.increment();
+            return null;
+        }
+        statistics.hits.increment();
+        if( evictionLock.tryLock() )
+        {
+            try
+            {
+                sketch.increment( key );
+                if( node.prev != null )
+                {
+                    moveToTail( node, node.region );
+                }
+            }
+            finally
+            {
+                evictionLock.unlock();
+            }
+        }
+        return valueType.cast( node.value );
+    }
+
+    @Override
+    public T remove( String key )
+    {
+        Node node = data.get( key );
+        if( node == null )
+        {
+            return null;
+        }
+        remove( key, node );
+        return valueType.cast( node.value );
+    }
+
+    @Override
+    public void put( String key, T value )
+    {
+        String category = null;
+        int weight;
+        if( value instanceof Cacheable )
+        {
+            Cacheable cacheable = (Cacheable) value;
+            category = cacheable.cacheCategory();
+            weight = cacheable.cacheWeight();
+        }
+        else
+        {
+            weight = String.valueOf( value ).length();
+        }
+        if( !policy.isCached( category ) )
+        {
+            remove( key );
+            return;
+        }
+        long timeToLive = policy.timeToLive( category );
+        Node node = new Node( key, value, Math.max( 1, weight ),
+                              timeToLive == 0 ? 0L : System.currentTimeMillis() + timeToLive );
+        evictionLock.lock();
+        try
+        {
+            Node old = data.put( key, node );
+            if( old != null )
+            {
+                unlink( old );
+            }
+            sketch.increment( key );
+            node.region = window;
+            linkTail( node, window );
+            windowWeight += node.weight;
+            statistics.weight.addAndGet( node.weight );
+            evict();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists( String key )
+    {
+        Node node = data.get( key );
+        return node != null && !node.isExpired( System.currentTimeMillis() );
+    }
+
+    String cacheId()
+    {
+        return cacheId;
+    }
+
+    synchronized void incRefCount()
+    {
+        refCount++;
+    }
+
+    synchronized boolean decRefCount()
+    {
+        return --refCount <= 0;
+    }
+
+    void clear()
+    {
+        evictionLock.lock();
+        try
+        {
+            for( Node node : data.values() )
+            {
+                unlink( node );
+            }
+            data.clear();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private void remove( String key, Node node )
+    {
+        evictionLock.lock();
+        try
+        {
+            if( data.remove( key, node ) )
+            {
+                unlink( node );
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    // Must be called while holding evictionLock
+    private void evict()
+    {
+        while( windowWeight > windowMaxWeight )
+        {
+            Node candidate = window.next;
+            detach( candidate );
+            windowWeight -= candidate.weight;
+            candidate.region = main;
+            linkTail( candidate, main );
+            mainWeight += candidate.weight;
+            while( mainWeight > mainMaxWeight )
+            {
+                Node victim = main.next;
+                if( victim != candidate && sketch.frequency( candidate.key ) > sketch.frequency( victim.key ) )
+                {
+                    evict( victim );
+                }
+                else
+                {
+                    evict( candidate );
+                    break;
+                }
+            }
+        }
+    }
+
+    private void evict( Node node )
+    {
+        data.remove( node.key, node );
+        unlink( node );
+        statistics.evictions.increment();
+    }
+
+    private void unlink( Node node )
+    {
+        if( node.prev == null )
+        {
+            return;
+        }
+        Node region = node.region;
+        detach( node );
+        if( region == window )
+        {
+            windowWeight -= node.weight;
+        }
+        else
+        {
+            mainWeight -= node.weight;
+        }
+        statistics.weight.addAndGet( -node.weight );
+    }
+
+    private static void detach( Node node )
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static void linkTail( Node node, Node region )
+    {
+        node.prev = region.prev;
+        node.next = region;
+        region.prev.next = node;
+        region.prev = node;
+    }
+
+    private static void moveToTail( Node node, Node region )
+    {
+        detach( node );
+        linkTail( node, region );
+    }
+
+    private static final class Node
+    {
+        private final String key;
+        private final Object value;
+        private final int weight;
+        private final long expiresAt;
+        // Guarded by evictionLock
+        private Node region;
+        private Node prev;
+        private Node next;
+
+        private Node( String key, Object value, int weight, long expiresAt )
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired( long now )
+        {
+            return expiresAt != 0L && now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.qi4j.spi.cache.Cacheable;
+
+/**
+ * Bounds and expiration of the caches of {@link MemoryCachePoolService}, set as MetaInfo of the service.
+ * <p>
+ * Values are weighted by their {@link Cacheable#cacheWeight()}, or the length of their String representation.
+ * Policies can be set for categories of values, that is entity type names for entity states.
+ * </p>
+ */
+public final class MemoryCachePolicy
+{
+    /**
+     * 64MB per cache, entries never expire.
+     */
+    public static final MemoryCachePolicy DEFAULT = maxWeight( 64L * 1024 * 1024 );
+
+    private static final long NOT_CACHED = -1L;
+
+    private final long maxWeight;
+    private final long timeToLive;
+    private final Map<String, Long> categoryTimeToLive;
+
+    public static MemoryCachePolicy maxWeight( long maxWeight )
+    {
+        return new MemoryCachePolicy( maxWeight, 0L, Collections.<String, Long>emptyMap() );
+    }
+
+    private MemoryCachePolicy( long maxWeight, long timeToLive, Map<String, Long> categoryTimeToLive )
+    {
+        if( maxWeight <= 0 )
+        {
+            throw new IllegalArgumentException( "Cache maximum weight must be positive, was " + maxWeight );
+        }
+        this.maxWeight = maxWeight;
+        this.timeToLive = timeToLive;
+        this.categoryTimeToLive = categoryTimeToLive;
+    }
+
+    /**
+     * @param timeToLive Time in milliseconds after which entries expire, 0 for never
+     *
+     * @return a copy of this policy with the given time to live
+     */
+    public MemoryCachePolicy withTimeToLive( long timeToLive )
+    {
+        return new MemoryCachePolicy( maxWeight, Math.max( 0L, timeToLive ), categoryTimeToLive );
+    }
+
+    /**
+     * @param category   Category of values, ie. an entity type name
+     * @param timeToLive Time in milliseconds after which entries of this category expire, 0 for never
+     *
+     * @return a copy of this policy with the given time to live for the category
+     */
+    public MemoryCachePolicy withTimeToLive( String category, long timeToLive )
+    {
+        return withCategory( category, Math.max( 0L, timeToLive ) );
+    }
+
+    /**
+     * @param category Category of values, ie. an entity type name
+     *
+     * @return a copy of this policy not caching values of the category
+     */
+    public MemoryCachePolicy withoutCaching( String category )
+    {
+        return withCategory( category, NOT_CACHED );
+    }
+
+    public long maxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * @param category Category of a value, may be null
+     *
+     * @return whether values of the category are cached
+     */
+    public boolean isCached( String category )
+    {
+        Long categoryPolicy = category == null ? null : categoryTimeToLive.get( category );
+        return categoryPolicy == null || categoryPolicy != NOT_CACHED;
+    }
+
+    /**
+     * @param category Category of a value, may be null
+     *
+     * @return Time in milliseconds after which values of the category expire, 0 for never
+     */
+    public long timeToLive( String category )
+    {
+        Long categoryPolicy = category == null ? null : categoryTimeToLive.get( category );
+        return categoryPolicy == null ? timeToLive : categoryPolicy;
+    }
+
+    private MemoryCachePolicy withCategory( String category, long policy )
+    {
+        Map<String, Long> policies = new HashMap<String, Long>( categoryTimeToLive );
+        policies.put( category, policy );
+        return new MemoryCachePolicy( maxWeight, timeToLive, Collections.unmodifiableMap( policies ) );
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.api.util.NullArgumentException;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CachePool;
+import org.qi4j.spi.metrics.DefaultMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link MemoryCachePoolService}.
+ */
+public class MemoryCachePoolMixin
+    implements CachePool, ServiceActivation
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( MemoryCachePoolMixin.class );
+
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    @Optional
+    @Service
+    private MetricsProvider metrics;
+
+    private final Map<String, MemoryCache<?>> caches = new HashMap<String, MemoryCache<?>>();
+    private final Statistics statistics = new Statistics();
+    private MemoryCachePolicy policy;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        policy = descriptor.metaInfo( MemoryCachePolicy.class );
+        if( policy == null )
+        {
+            policy = MemoryCachePolicy.DEFAULT;
+        }
+        registerMetrics();
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        synchronized( caches )
+        {
+            for( MemoryCache<?> cache : caches.values() )
+            {
+                cache.clear();
+            }
+            caches.clear();
+        }
+    }
+
+    @Override
+    public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType )
+    {
+        NullArgumentException.validateNotEmpty( "cacheId", cacheId );
+        synchronized( caches )
+        {
+            @SuppressWarnings( "unchecked" )
+            MemoryCache<T> cache = (MemoryCache<T>) caches.get( cacheId );
+            if( cache == null )
+            {
+                cache = new MemoryCache<T>( cacheId, valueType, policy, statistics );
+                caches.put( cacheId, cache );
+            }
+            cache.incRefCount();
+            return cache;
+        }
+    }
+
+    @Override
+    public void returnCache( Cache cache )
+    {
+        MemoryCache<?> memoryCache = (MemoryCache<?>) cache;
+        synchronized( caches )
+        {
+            if( memoryCache.decRefCount() && caches.get( memoryCache.cacheId() ) == memoryCache )
+            {
+                caches.remove( memoryCache.cacheId() );
+                memoryCache.clear();
+            }
+        }
+    }
+
+    private void registerMetrics()
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        try
+        {
+            MetricsCounterFactory counters = metrics.createFactory( MetricsCounterFactory.class );
+            statistics.hits = counters.createCounter( MemoryCachePoolService.class, "Cache Hits" );
+            statistics.misses = counters.createCounter( MemoryCachePoolService.class, "Cache Misses" );
+            statistics.evictions = counters.createCounter( MemoryCachePoolService.class, "Cache Evictions" );
+            MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+            gauges.registerGauge( MemoryCachePoolService.class, "Cache Weight", new MetricsGauge<Long>()
+            {
+                @Override
+                public Long value()
+                {
+                    return statistics.weight.get();
+                }
+            } );
+        }
+        catch( MetricsNotSupportedException e )
+        {
+            LOGGER.debug( "Metrics not supported by {}, cache metrics disabled", metrics );
+        }
+    }
+
+    /**
+     * Metrics shared by all caches of the pool.
+     */
+    static final class Statistics
+    {
+        volatile MetricsCounter hits = DefaultMetric.NULL;
+        volatile MetricsCounter misses = DefaultMetric.NULL;
+        volatile MetricsCounter evictions = DefaultMetric.NULL;
+        final AtomicLong weight = new AtomicLong();
+    }
+}
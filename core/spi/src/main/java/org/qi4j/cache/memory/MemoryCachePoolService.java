@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.spi.cache.CachePool;
+
+/**
+ * In-memory, size bounded CachePool service.
+ * <p>
+ * Each Cache fetched from the pool holds at most the weight set by the {@link MemoryCachePolicy} MetaInfo of the
+ * service, {@link MemoryCachePolicy#DEFAULT} if none, evicting entries with a W-TinyLFU policy:
+ * </p>
+ * <pre>
+ * module.services( MemoryCachePoolService.class ).setMetaInfo( MemoryCachePolicy.maxWeight( 32 * 1024 * 1024 ) );
+ * </pre>
+ * <p>
+ * If a MetricsProvider is visible, hits, misses and evictions are exported as counters, and the total weight of
+ * the cached entries as a gauge.
+ * </p>
+ */
+@Mixins( MemoryCachePoolMixin.class )
+public interface MemoryCachePoolService
+    extends CachePool, ServiceActivation, ServiceComposite
+{
+}
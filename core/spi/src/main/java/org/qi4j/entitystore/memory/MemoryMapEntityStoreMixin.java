@@ -1,17 +1,29 @@
 package org.qi4j.entitystore.memory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.mixin.Initializable;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.io.Input;
 import org.qi4j.io.Output;
 import org.qi4j.io.Receiver;
@@ -20,20 +32,51 @@ import org.qi4j.spi.entitystore.BackupRestore;
 import org.qi4j.spi.entitystore.EntityAlreadyExistsException;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStoreActivation;
 
 /**
  * In-memory implementation of MapEntityStore.
+ * <p>
+ * States are kept as UTF-8 bytes, on the heap or in direct ByteBuffer slabs depending on the {@link MemoryStorage}
+ * MetaInfo of the service. The changes of a UnitOfWork are checked and applied as a whole: either all of them are
+ * applied or none is. Reads never block, and {@link #entityStates()} and {@link #backup()} are weakly consistent,
+ * they see some of the changes applied while they iterate.
+ * </p>
+ * <p>
+ * States are also accessible as bytes through {@link BinaryMapEntityStore}, see
+ * {@link BinaryMemoryEntityStoreService}.
+ * </p>
  */
 public class MemoryMapEntityStoreMixin
-    implements MapEntityStore, BackupRestore, MapEntityStoreActivation
+    implements MapEntityStore, BinaryMapEntityStore, BackupRestore, MapEntityStoreActivation, Initializable
 {
-    private final Map<EntityReference, String> store;
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    private final ConcurrentMap<EntityReference, Object> store;
+    private final Object writeLock = new Object();
+    private StateStorage storage;
 
     public MemoryMapEntityStoreMixin()
     {
-        store = new HashMap<EntityReference, String>();
+        store = new ConcurrentHashMap<EntityReference, Object>();
+    }
+
+    @Override
+    public void initialize()
+    {
+        if( descriptor.metaInfo( MemoryStorage.class ) == MemoryStorage.OFF_HEAP )
+        {
+            storage = new OffHeapStorage();
+        }
+        else
+        {
+            storage = new HeapStorage();
+        }
     }
 
     @Override
@@ -53,20 +96,131 @@ public class MemoryMapEntityStoreMixin
     public Reader get( EntityReference entityReference )
         throws EntityStoreException
     {
-        String state = store.get( entityReference );
+        Object state = store.get( entityReference );
+        if( state == null )
+        {
+            throw new EntityNotFoundException( entityReference );
+        }
+
+        return reader( state );
+    }
+
+    @Override
+    public byte[] getBinary( EntityReference entityReference )
+        throws EntityStoreException
+    {
+        Object state = store.get( entityReference );
         if( state == null )
         {
             throw new EntityNotFoundException( entityReference );
         }
 
-        return new StringReader( state );
+        return storage.load( state );
+    }
+
+    @Override
+    public Map<EntityReference, byte[]> getBinaries( Iterable<EntityReference> entityReferences )
+    {
+        Map<EntityReference, byte[]> states = new LinkedHashMap<EntityReference, byte[]>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            Object state = store.get( entityReference );
+            if( state != null )
+            {
+                states.put( entityReference, storage.load( state ) );
+            }
+        }
+        return states;
     }
 
     @Override
     public void applyChanges( MapEntityStore.MapChanges changes )
         throws IOException
     {
-        changes.visitMap( new MemoryMapChanger() );
+        MemoryMapChanger changer = new MemoryMapChanger();
+        changes.visitMap( changer );
+        apply( changer.changes );
+    }
+
+    @Override
+    public void applyBinaryChanges( BinaryMapChanges changes )
+        throws IOException
+    {
+        final List<Change> binaryChanges = new ArrayList<Change>();
+        changes.visitMap( new BinaryMapChanger()
+        {
+            @Override
+            public void newEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            {
+                binaryChanges.add( new Change( ChangeKind.NEW, ref, state ) );
+            }
+
+            @Override
+            public void updateEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            {
+                binaryChanges.add( new Change( ChangeKind.UPDATE, ref, state ) );
+            }
+
+            @Override
+            public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+            {
+                binaryChanges.add( new Change( ChangeKind.REMOVE, ref, null ) );
+            }
+        } );
+        apply( binaryChanges );
+    }
+
+    private void apply( List<Change> changes )
+    {
+        synchronized( writeLock )
+        {
+            // Check the whole batch before applying any of it
+            Map<EntityReference, Boolean> exists = new HashMap<EntityReference, Boolean>();
+            for( Change change : changes )
+            {
+                Boolean batchExists = exists.get( change.ref );
+                boolean present = batchExists == null ? store.containsKey( change.ref ) : batchExists;
+                if( change.kind == ChangeKind.NEW )
+                {
+                    if( present )
+                    {
+                        throw new EntityAlreadyExistsException( change.ref );
+                    }
+                    exists.put( change.ref, Boolean.TRUE );
+                }
+                else if( change.kind == ChangeKind.UPDATE )
+                {
+                    if( !present )
+                    {
+                        throw new EntityNotFoundException( change.ref );
+                    }
+                }
+                else
+                {
+                    // Ignore if the entity didn't already exist, as that can happen if it is both created and
+                    // removed within the same UnitOfWork.
+                    exists.put( change.ref, Boolean.FALSE );
+                }
+            }
+
+            for( Change change : changes )
+            {
+                Object old;
+                if( change.kind == ChangeKind.REMOVE )
+                {
+                    old = store.remove( change.ref );
+                }
+                else
+                {
+                    old = store.put( change.ref, storage.store( change.state ) );
+                }
+                if( old != null )
+                {
+                    storage.release( old );
+                }
+            }
+            storage.compact( store );
+        }
     }
 
     @Override
@@ -84,9 +238,34 @@ public class MemoryMapEntityStoreMixin
                     public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super Reader, ReceiverThrowableType> receiver )
                         throws ReceiverThrowableType, IOException
                     {
-                        for( String state : store.values() )
+                        for( Object state : store.values() )
+                        {
+                            receiver.receive( reader( state ) );
+                        }
+                    }
+                } );
+            }
+        };
+    }
+
+    @Override
+    public Input<byte[], IOException> binaryEntityStates()
+    {
+        return new Input<byte[], IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super byte[], ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                output.receiveFrom( new Sender<byte[], IOException>()
+                {
+                    @Override
+                    public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super byte[], ReceiverThrowableType> receiver )
+                        throws ReceiverThrowableType, IOException
+                    {
+                        for( Object state : store.values() )
                         {
-                            receiver.receive( new StringReader( state ) );
+                            receiver.receive( storage.load( state ) );
                         }
                     }
                 } );
@@ -109,9 +288,9 @@ public class MemoryMapEntityStoreMixin
                     public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super String, ReceiverThrowableType> receiver )
                         throws ReceiverThrowableType, IOException
                     {
-                        for( String state : store.values() )
+                        for( Object state : store.values() )
                         {
-                            receiver.receive( state );
+                            receiver.receive( backupState( storage.load( state ) ) );
                         }
                     }
                 } );
@@ -128,94 +307,302 @@ public class MemoryMapEntityStoreMixin
             public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends String, SenderThrowableType> sender )
                 throws IOException, SenderThrowableType
             {
-                store.clear();
-
-                try
+                synchronized( writeLock )
                 {
-                    sender.sendTo( new Receiver<String, IOException>()
+                    clear();
+
+                    try
                     {
-                        @Override
-                        public void receive( String item )
-                            throws IOException
+                        sender.sendTo( new Receiver<String, IOException>()
                         {
-                            try
+                            @Override
+                            public void receive( String item )
+                                throws IOException
                             {
-                                JSONTokener tokener = new JSONTokener( item );
-                                JSONObject entity = (JSONObject) tokener.nextValue();
-                                String id = entity.getString( JSONKeys.identity.name() );
-                                store.put( new EntityReference( id ), item );
+                                try
+                                {
+                                    JSONTokener tokener = new JSONTokener( item );
+                                    JSONObject entity = (JSONObject) tokener.nextValue();
+                                    String id = entity.getString( JSONKeys.identity.name() );
+                                    Object old = store.put( new EntityReference( id ), storage.store( restoreState( entity, item ) ) );
+                                    if( old != null )
+                                    {
+                                        storage.release( old );
+                                    }
+                                }
+                                catch( JSONException e )
+                                {
+                                    throw new IOException( e );
+                                }
                             }
-                            catch( JSONException e )
-                            {
-                                throw new IOException( e );
-                            }
-                        }
-                    } );
-                }
-                catch( IOException e )
-                {
-                    store.clear();
-                    throw e;
+                        } );
+                    }
+                    catch( IOException e )
+                    {
+                        clear();
+                        throw e;
+                    }
                 }
             }
         };
     }
 
-    private class MemoryMapChanger
+    /**
+     * @param state Stored state
+     *
+     * @return the state as JSON text
+     */
+    protected String backupState( byte[] state )
+    {
+        return new String( state, UTF_8 );
+    }
+
+    /**
+     * @param state     State to restore
+     * @param stateText State as JSON text
+     *
+     * @return the state to store
+     */
+    protected byte[] restoreState( JSONObject state, String stateText )
+    {
+        return stateText.getBytes( UTF_8 );
+    }
+
+    // Must be called while holding writeLock
+    private void clear()
+    {
+        for( Object state : store.values() )
+        {
+            storage.release( state );
+        }
+        store.clear();
+    }
+
+    private Reader reader( Object state )
+    {
+        return new InputStreamReader( new ByteArrayInputStream( storage.load( state ) ), UTF_8 );
+    }
+
+    private enum ChangeKind
+    {
+        NEW, UPDATE, REMOVE
+    }
+
+    private static final class Change
+    {
+        private final ChangeKind kind;
+        private final EntityReference ref;
+        private final byte[] state;
+
+        private Change( ChangeKind kind, EntityReference ref, byte[] state )
+        {
+            this.kind = kind;
+            this.ref = ref;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Collects the changes of a UnitOfWork, so that they can be applied as a whole.
+     */
+    private static class MemoryMapChanger
         implements MapChanger
     {
+        private final List<Change> changes = new ArrayList<Change>();
+
         @Override
         public Writer newEntity( final EntityReference ref, EntityDescriptor descriptor )
         {
-            return new StringWriter( 1000 )
+            return stateWriter( ChangeKind.NEW, ref );
+        }
+
+        @Override
+        public Writer updateEntity( final EntityReference ref, EntityDescriptor descriptor )
+            throws IOException
+        {
+            return stateWriter( ChangeKind.UPDATE, ref );
+        }
+
+        @Override
+        public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
+            throws EntityNotFoundException
+        {
+            changes.add( new Change( ChangeKind.REMOVE, ref, null ) );
+        }
+
+        private Writer stateWriter( final ChangeKind kind, final EntityReference ref )
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1000 );
+            return new OutputStreamWriter( bytes, UTF_8 )
             {
                 @Override
                 public void close()
                     throws IOException
                 {
                     super.close();
-                    String old = store.put( ref, toString() );
-                    if( old != null )
-                    {
-                        store.put( ref, old );
-                        throw new EntityAlreadyExistsException( ref );
-                    }
+                    changes.add( new Change( kind, ref, bytes.toByteArray() ) );
                 }
             };
         }
+    }
+
+    /**
+     * How serialized states are held in the store map.
+     * <p>
+     * Only {@link #load(Object)} may be called concurrently, other methods are called while holding the write lock.
+     * </p>
+     */
+    private interface StateStorage
+    {
+        Object store( byte[] state );
+
+        byte[] load( Object stored );
+
+        void release( Object stored );
+
+        void compact( ConcurrentMap<EntityReference, Object> store );
+    }
+
+    private static final class HeapStorage
+        implements StateStorage
+    {
+        @Override
+        public Object store( byte[] state )
+        {
+            return state;
+        }
 
         @Override
-        public Writer updateEntity( final EntityReference ref, EntityDescriptor descriptor )
-            throws IOException
+        public byte[] load( Object stored )
+        {
+            return (byte[]) stored;
+        }
+
+        @Override
+        public void release( Object stored )
+        {
+        }
+
+        @Override
+        public void compact( ConcurrentMap<EntityReference, Object> store )
+        {
+        }
+    }
+
+    /**
+     * States are appended to direct ByteBuffer slabs and never overwritten, so concurrent readers can always load
+     * a state they got from the store map. A slab is freed by the garbage collector once no state refers to it.
+     * Slabs mostly holding released states are compacted by copying their live states to the current slab.
+     */
+    private static final class OffHeapStorage
+        implements StateStorage
+    {
+        private static final int SLAB_SIZE = 1024 * 1024;
+        private static final int MAX_SLAB_STATE_SIZE = SLAB_SIZE / 4;
+        private static final int MIN_COMPACTION_SIZE = 4 * SLAB_SIZE;
+
+        private Slab current;
+        private long liveBytes;
+        private long retainedBytes;
+
+        @Override
+        public Object store( byte[] state )
         {
-            return new StringWriter( 1000 )
+            Slab slab;
+            if( state.length > MAX_SLAB_STATE_SIZE )
             {
-                @Override
-                public void close()
-                    throws IOException
+                slab = new Slab( state.length );
+                retainedBytes += state.length;
+            }
+            else
+            {
+                if( current == null || current.buffer.capacity() - current.top < state.length )
                 {
-                    super.close();
-                    String old = store.put( ref, toString() );
-                    if( old == null )
+                    if( current != null && current.live == 0 )
                     {
-                        store.remove( ref );
-                        throw new EntityNotFoundException( ref );
+                        retainedBytes -= current.buffer.capacity();
                     }
+                    current = new Slab( SLAB_SIZE );
+                    retainedBytes += SLAB_SIZE;
                 }
-            };
+                slab = current;
+            }
+            ByteBuffer writer = slab.buffer.duplicate();
+            writer.position( slab.top );
+            writer.put( state );
+            Slot slot = new Slot( slab, slab.top, state.length );
+            slab.top += state.length;
+            slab.live += state.length;
+            liveBytes += state.length;
+            return slot;
         }
 
         @Override
-        public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
-            throws EntityNotFoundException
+        public byte[] load( Object stored )
+        {
+            Slot slot = (Slot) stored;
+            byte[] state = new byte[ slot.length ];
+            ByteBuffer reader = slot.slab.buffer.duplicate();
+            reader.position( slot.position );
+            reader.get( state );
+            return state;
+        }
+
+        @Override
+        public void release( Object stored )
+        {
+            Slot slot = (Slot) stored;
+            slot.slab.live -= slot.length;
+            liveBytes -= slot.length;
+            if( slot.slab.live == 0 && slot.slab != current )
+            {
+                retainedBytes -= slot.slab.buffer.capacity();
+            }
+        }
+
+        @Override
+        public void compact( ConcurrentMap<EntityReference, Object> store )
+        {
+            if( retainedBytes < MIN_COMPACTION_SIZE || liveBytes * 2 >= retainedBytes )
+            {
+                return;
+            }
+            for( Map.Entry<EntityReference, Object> entry : store.entrySet() )
+            {
+                Slot slot = (Slot) entry.getValue();
+                if( slot.slab != current && slot.slab.live * 2 < slot.slab.buffer.capacity() )
+                {
+                    Object moved = store( load( slot ) );
+                    store.put( entry.getKey(), moved );
+                    release( slot );
+                }
+            }
+        }
+    }
+
+    private static final class Slab
+    {
+        private final ByteBuffer buffer;
+        private int top;
+        private int live;
+
+        private Slab( int capacity )
+        {
+            buffer = ByteBuffer.allocateDirect( capacity );
+        }
+    }
+
+    private static final class Slot
+    {
+        private final Slab slab;
+        private final int position;
+        private final int length;
+
+        private Slot( Slab slab, int position, int length )
         {
-            String state = store.remove( ref );
-            // Ignore if the entity didn't already exist, as that can happen if it is both created and removed
-            // within the same UnitOfWork.
-//            if( state == null )
-//            {
-//                throw new EntityNotFoundException( ref );
-//            }
+            this.slab = slab;
+            this.position = position;
+            this.length = length;
         }
     }
-}
\ No newline at end of file
+}
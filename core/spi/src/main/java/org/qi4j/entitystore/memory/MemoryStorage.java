@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.memory;
+
+/**
+ * Where the {@link MemoryEntityStoreService} keeps serialized entity states.
+ * <p>
+ * Set as MetaInfo of the service, defaults to {@link #HEAP}:
+ * </p>
+ * <pre>
+ * module.services( MemoryEntityStoreService.class ).setMetaInfo( MemoryStorage.OFF_HEAP );
+ * </pre>
+ */
+public enum MemoryStorage
+{
+    /**
+     * UTF-8 byte arrays on the Java heap.
+     */
+    HEAP,
+
+    /**
+     * UTF-8 bytes in direct ByteBuffer slabs, outside of the Java heap.
+     * <p>
+     * Use for large read-mostly data sets, to keep them out of the way of the garbage collector. Direct memory
+     * is limited by the -XX:MaxDirectMemorySize JVM option.
+     * </p>
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.cache;
+
+/**
+ * Cache value able to tell its size and category to bounded Cache implementations.
+ */
+public interface Cacheable
+{
+    /**
+     * @return Approximate serialized size of the value, in bytes
+     */
+    int cacheWeight();
+
+    /**
+     * @return Category of the value, ie. the entity type name, or null
+     */
+    String cacheCategory();
+}
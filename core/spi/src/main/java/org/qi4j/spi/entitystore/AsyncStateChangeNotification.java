@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.concurrent.TimeUnit;
+import org.qi4j.spi.entity.EntityState;
+
+/**
+ * Asynchronous delivery of state changes to StateChangeListeners.
+ * <p>
+ * When a service of this type is visible from an EntityStore, {@link StateChangeNotificationConcern} commits
+ * changes first and then hands them to this service, instead of notifying listeners synchronously before
+ * committing. Indexing latency is then taken off UnitOfWork completion.
+ * </p>
+ * @see AsyncStateChangeNotificationService
+ */
+public interface AsyncStateChangeNotification
+{
+    /**
+     * Queue committed changes for delivery to the given listeners.
+     *
+     * @param listeners     StateChangeListeners to notify
+     * @param changedStates Committed EntityStates
+     */
+    void notifyChanges( Iterable<StateChangeListener> listeners, Iterable<EntityState> changedStates );
+
+    /**
+     * Wait until all changes queued so far have been delivered to their listeners.
+     * <p>
+     * Useful in tests that query indexes right after completing a UnitOfWork.
+     * </p>
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of timeout
+     *
+     * @return true if all changes queued so far have been delivered, false if the timeout elapsed
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitNotifications( long timeout, TimeUnit unit )
+        throws InterruptedException;
+}
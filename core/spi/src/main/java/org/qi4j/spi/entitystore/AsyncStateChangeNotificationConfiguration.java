@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.configuration.ConfigurationComposite;
+import org.qi4j.api.property.Property;
+
+/**
+ * Configuration of {@link AsyncStateChangeNotificationService}.
+ */
+public interface AsyncStateChangeNotificationConfiguration
+    extends ConfigurationComposite
+{
+    /**
+     * @return Maximum number of committed UnitOfWork changes queued for each listener, defaults to 1000
+     */
+    @Optional
+    Property<Integer> queueSize();
+
+    /**
+     * @return Maximum number of committed UnitOfWork changes delivered to a listener at once, defaults to 100
+     */
+    @Optional
+    Property<Integer> maxBatchSize();
+
+    /**
+     * @return Milliseconds to wait for more changes before delivering a batch that is not full, defaults to 0
+     * ie. deliver what is queued as soon as the listener is ready
+     */
+    @Optional
+    Property<Long> flushInterval();
+
+    /**
+     * @return What to do when committing while the queue of a listener is full
+     */
+    @UseDefaults
+    Property<Backpressure> backpressure();
+
+    /**
+     * @return true to wait for changes to be delivered to all listeners before returning from commit, so that
+     * indexes are up to date when a UnitOfWork completion returns, as in synchronous mode
+     */
+    @UseDefaults
+    Property<Boolean> awaitNotifications();
+
+    enum Backpressure
+    {
+        /** Block the committing thread until the listener queue has room */
+        BLOCK,
+        /** Discard the changes for the listener, log and count them, indexes must then be rebuilt */
+        DISCARD
+    }
+}
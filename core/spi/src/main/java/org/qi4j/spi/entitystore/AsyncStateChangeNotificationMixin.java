@@ -0,0 +1,486 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.AsyncStateChangeNotificationConfiguration.Backpressure;
+import org.qi4j.spi.metrics.DefaultMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AsyncStateChangeNotification with a bounded queue and a worker thread per StateChangeListener.
+ * <p>
+ * Before activation and after passivation, changes are delivered synchronously in the committing thread.
+ * On passivation, changes still queued are delivered before worker threads stop, changes committed while
+ * stopping are delivered synchronously once queued ones are.
+ * </p>
+ */
+public class AsyncStateChangeNotificationMixin
+    implements AsyncStateChangeNotification, ServiceActivation
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( AsyncStateChangeNotificationMixin.class );
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    @This
+    private Configuration<AsyncStateChangeNotificationConfiguration> configuration;
+
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    @Optional
+    @Service
+    private MetricsProvider metrics;
+
+    private final List<Channel> channels = new CopyOnWriteArrayList<Channel>();
+    private volatile boolean active;
+    private int queueSize;
+    private int maxBatchSize;
+    private long flushInterval;
+    private Backpressure backpressure;
+    private boolean awaitOnCommit;
+    private MetricsCounter discarded = DefaultMetric.NULL;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        configuration.refresh();
+        AsyncStateChangeNotificationConfiguration config = configuration.get();
+        Integer configuredQueueSize = config.queueSize().get();
+        queueSize = configuredQueueSize == null || configuredQueueSize <= 0 ? DEFAULT_QUEUE_SIZE : configuredQueueSize;
+        Integer configuredMaxBatchSize = config.maxBatchSize().get();
+        maxBatchSize = configuredMaxBatchSize == null || configuredMaxBatchSize <= 0
+                       ? DEFAULT_MAX_BATCH_SIZE
+                       : configuredMaxBatchSize;
+        Long configuredFlushInterval = config.flushInterval().get();
+        flushInterval = configuredFlushInterval == null ? 0L : Math.max( 0L, configuredFlushInterval );
+        backpressure = config.backpressure().get();
+        awaitOnCommit = config.awaitNotifications().get();
+        registerMetrics();
+        synchronized( channels )
+        {
+            active = true;
+        }
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        synchronized( channels )
+        {
+            active = false;
+        }
+        for( Channel channel : channels )
+        {
+            channel.stop();
+        }
+        channels.clear();
+    }
+
+    @Override
+    public void notifyChanges( Iterable<StateChangeListener> listeners, Iterable<EntityState> changedStates )
+    {
+        List<EntityState> states = new ArrayList<EntityState>();
+        for( EntityState changedState : changedStates )
+        {
+            states.add( changedState );
+        }
+        ChangeSet changeSet = new ChangeSet( states );
+        boolean queued = false;
+        for( StateChangeListener listener : listeners )
+        {
+            Channel channel = channelFor( listener );
+            if( channel == null )
+            {
+                listener.notifyChanges( states );
+            }
+            else if( channel.enqueue( changeSet ) )
+            {
+                queued = true;
+            }
+        }
+
+        if( queued && awaitOnCommit )
+        {
+            try
+            {
+                awaitNotifications( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitNotifications( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        long now = System.currentTimeMillis();
+        long millis = unit.toMillis( timeout );
+        long deadline = Long.MAX_VALUE - now < millis ? Long.MAX_VALUE : now + millis;
+        for( Channel channel : channels )
+        {
+            if( !channel.await( deadline ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Channel channelFor( StateChangeListener listener )
+    {
+        for( Channel channel : channels )
+        {
+            if( channel.listener == listener )
+            {
+                return channel;
+            }
+        }
+        synchronized( channels )
+        {
+            if( !active )
+            {
+                return null;
+            }
+            for( Channel channel : channels )
+            {
+                if( channel.listener == listener )
+                {
+                    return channel;
+                }
+            }
+            Channel channel = new Channel( listener, channels.size() );
+            channels.add( channel );
+            return channel;
+        }
+    }
+
+    private void registerMetrics()
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        try
+        {
+            MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+            gauges.registerGauge( AsyncStateChangeNotificationService.class, "State Change Queue Depth", new MetricsGauge<Integer>()
+            {
+                @Override
+                public Integer value()
+                {
+                    int depth = 0;
+                    for( Channel channel : channels )
+                    {
+                        depth += channel.queue.size();
+                    }
+                    return depth;
+                }
+            } );
+            gauges.registerGauge( AsyncStateChangeNotificationService.class, "State Change Lag", new MetricsGauge<Long>()
+            {
+                @Override
+                public Long value()
+                {
+                    long now = System.currentTimeMillis();
+                    long lag = 0;
+                    for( Channel channel : channels )
+                    {
+                        lag = Math.max( lag, channel.lag( now ) );
+                    }
+                    return lag;
+                }
+            } );
+            MetricsCounterFactory counters = metrics.createFactory( MetricsCounterFactory.class );
+            discarded = counters.createCounter( AsyncStateChangeNotificationService.class, "State Changes Discarded" );
+        }
+        catch( MetricsNotSupportedException e )
+        {
+            LOGGER.debug( "Metrics not supported by {}, state change notification metrics disabled", metrics );
+        }
+    }
+
+    private static final class ChangeSet
+    {
+        private final List<EntityState> states;
+        private final long committedAt;
+
+        private ChangeSet( List<EntityState> states )
+        {
+            this.states = states;
+            this.committedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Queue and worker thread of a single listener.
+     */
+    private final class Channel
+        implements Runnable
+    {
+        private final StateChangeListener listener;
+        private final BlockingQueue<ChangeSet> queue;
+        private final Thread worker;
+        // Enqueuing holds the read lock, stopping the write lock, so that no change is enqueued once stopped
+        private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+        private final CountDownLatch terminated = new CountDownLatch( 1 );
+        private volatile boolean stopped;
+        private volatile long deliveringSince;
+        private long enqueued;
+        private long delivered;
+
+        private Channel( StateChangeListener listener, int index )
+        {
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<ChangeSet>( queueSize );
+            this.worker = new Thread( this, descriptor.identity() + "-" + index );
+            this.worker.setDaemon( true );
+            this.worker.start();
+        }
+
+        /**
+         * @return true if the changes were queued, false if they were discarded or delivered synchronously
+         */
+        private boolean enqueue( ChangeSet changeSet )
+        {
+            boolean queued = false;
+            boolean synchronous = false;
+            stopLock.readLock().lock();
+            try
+            {
+                if( stopped )
+                {
+                    synchronous = true;
+                }
+                else if( backpressure == Backpressure.DISCARD )
+                {
+                    queued = queue.offer( changeSet );
+                }
+                else
+                {
+                    try
+                    {
+                        // The worker keeps consuming until stopped, which waits for this put to return
+                        queue.put( changeSet );
+                        queued = true;
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                if( queued )
+                {
+                    synchronized( this )
+                    {
+                        enqueued++;
+                    }
+                }
+            }
+            finally
+            {
+                stopLock.readLock().unlock();
+            }
+
+            if( synchronous )
+            {
+                deliverAfterStop( changeSet );
+            }
+            else if( !queued )
+            {
+                discarded.increment();
+                LOGGER.warn( "Discarded changes of {} entities for {}, indexes must be rebuilt",
+                             changeSet.states.size(), listener );
+            }
+            return queued;
+        }
+
+        @Override
+        public void run()
+        {
+            List<ChangeSet> batch = new ArrayList<ChangeSet>();
+            while( !stopped || !queue.isEmpty() )
+            {
+                try
+                {
+                    ChangeSet first = queue.poll( 100, TimeUnit.MILLISECONDS );
+                    if( first == null )
+                    {
+                        continue;
+                    }
+                    deliveringSince = first.committedAt;
+                    batch.add( first );
+                    long deadline = first.committedAt + flushInterval;
+                    while( batch.size() < maxBatchSize && !stopped )
+                    {
+                        long wait = deadline - System.currentTimeMillis();
+                        if( wait <= 0 )
+                        {
+                            break;
+                        }
+                        ChangeSet next = queue.poll( wait, TimeUnit.MILLISECONDS );
+                        if( next == null )
+                        {
+                            break;
+                        }
+                        batch.add( next );
+                    }
+                    queue.drainTo( batch, maxBatchSize - batch.size() );
+                    deliver( batch );
+                }
+                catch( InterruptedException e )
+                {
+                    if( !batch.isEmpty() )
+                    {
+                        deliver( batch );
+                    }
+                }
+                finally
+                {
+                    batch.clear();
+                    deliveringSince = 0;
+                }
+            }
+        }
+
+        private void deliver( List<ChangeSet> batch )
+        {
+            List<EntityState> states = new ArrayList<EntityState>();
+            for( ChangeSet changeSet : batch )
+            {
+                states.addAll( changeSet.states );
+            }
+            try
+            {
+                listener.notifyChanges( states );
+            }
+            catch( RuntimeException e )
+            {
+                LOGGER.error( "Could not notify " + listener + " of changes of " + states.size() + " entities", e );
+            }
+            synchronized( this )
+            {
+                delivered += batch.size();
+                notifyAll();
+            }
+        }
+
+        private synchronized boolean await( long deadline )
+            throws InterruptedException
+        {
+            long target = enqueued;
+            while( delivered < target )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if( remaining <= 0 )
+                {
+                    return false;
+                }
+                wait( remaining );
+            }
+            return true;
+        }
+
+        private long lag( long now )
+        {
+            long oldest = deliveringSince;
+            if( oldest == 0 )
+            {
+                ChangeSet head = queue.peek();
+                oldest = head == null ? 0 : head.committedAt;
+            }
+            return oldest == 0 ? 0 : now - oldest;
+        }
+
+        private void deliverAfterStop( ChangeSet changeSet )
+        {
+            // Changes queued before stopping are delivered first, unless the listener itself is committing
+            if( Thread.currentThread() != worker )
+            {
+                try
+                {
+                    terminated.await();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try
+            {
+                listener.notifyChanges( changeSet.states );
+            }
+            catch( RuntimeException e )
+            {
+                LOGGER.error( "Could not notify " + listener + " of changes of " + changeSet.states.size() + " entities", e );
+            }
+        }
+
+        private void stop()
+            throws InterruptedException
+        {
+            stopLock.writeLock().lock();
+            try
+            {
+                stopped = true;
+            }
+            finally
+            {
+                stopLock.writeLock().unlock();
+            }
+            try
+            {
+                worker.join();
+
+                // Deliver changes queued while stopping
+                List<ChangeSet> remaining = new ArrayList<ChangeSet>();
+                queue.drainTo( remaining );
+                if( !remaining.isEmpty() )
+                {
+                    deliver( remaining );
+                }
+            }
+            finally
+            {
+                terminated.countDown();
+            }
+        }
+    }
+}
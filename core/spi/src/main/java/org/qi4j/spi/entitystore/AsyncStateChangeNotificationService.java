@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceComposite;
+
+/**
+ * Asynchronous, batched StateChangeListener notification service.
+ * <p>
+ * Assemble it, and its {@link AsyncStateChangeNotificationConfiguration} entity, where EntityStores using
+ * {@link StateChangeNotificationConcern} can see it to notify StateChangeListeners, ie. indexing services, after
+ * commit and in the background. Each listener gets a bounded queue and a worker thread that delivers changes of
+ * several UnitOfWorks in one {@link StateChangeListener#notifyChanges(Iterable)} call.
+ * </p>
+ * <p>
+ * If a MetricsProvider is visible, the total queue depth and the lag, in milliseconds, of the oldest undelivered
+ * change are exported as gauges, and discarded changes as a counter.
+ * </p>
+ */
+@Mixins( AsyncStateChangeNotificationMixin.class )
+public interface AsyncStateChangeNotificationService
+    extends AsyncStateChangeNotification, ServiceActivation, Configuration, ServiceComposite
+{
+}
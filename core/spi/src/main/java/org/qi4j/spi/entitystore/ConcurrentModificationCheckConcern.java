@@ -16,6 +16,7 @@ package org.qi4j.spi.entitystore;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.qi4j.api.Qi4j;
 import org.qi4j.api.concern.ConcernOf;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -140,5 +141,18 @@ public abstract class ConcurrentModificationCheckConcern
             loaded.add( entityState );
             return entityState;
         }
+
+        @Override
+        public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+            throws EntityStoreException
+        {
+            Map<EntityReference, EntityState> entityStates = uow.entityStatesOf( identities );
+            for( EntityState entityState : entityStates.values() )
+            {
+                versions.rememberVersion( entityState.identity(), entityState.version() );
+                loaded.add( entityState );
+            }
+            return entityStates;
+        }
     }
 }
@@ -15,6 +15,7 @@
 package org.qi4j.spi.entitystore;
 
 import java.util.LinkedList;
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.structure.Module;
@@ -90,6 +91,15 @@ public final class DefaultEntityStoreUnitOfWork
         return entityState;
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+        throws EntityStoreException
+    {
+        Map<EntityReference, EntityState> entityStates = entityStoreSPI.entityStatesOf( this, identities );
+        states.addAll( entityStates.values() );
+        return entityStates;
+    }
+
     @Override
     public StateCommitter applyChanges()
         throws EntityStoreException
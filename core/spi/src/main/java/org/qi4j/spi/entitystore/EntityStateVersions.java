@@ -15,6 +15,7 @@
 package org.qi4j.spi.entitystore;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -41,38 +42,63 @@ public interface EntityStateVersions
 
     /**
      * Entity versions state mixin.
+     * <p>
+     * Remembered versions are kept in lock striped maps so that concurrent UnitOfWorks do not contend on a
+     * single lock. Versions that are not remembered are fetched in one call when the store implements
+     * {@link EntityStoreVersionLookup}, otherwise each entity is loaded in its own store UnitOfWork.
+     * </p>
      */
     class EntityStateVersionsMixin
         implements EntityStateVersions
     {
+        private static final int STRIPES = 16;
+
         @This
         private EntityStore store;
 
-        private final Map<EntityReference, String> versions = new WeakHashMap<EntityReference, String>();
+        private final List<Map<EntityReference, String>> versions;
+
+        public EntityStateVersionsMixin()
+        {
+            versions = new ArrayList<Map<EntityReference, String>>( STRIPES );
+            for( int i = 0; i < STRIPES; i++ )
+            {
+                versions.add( new WeakHashMap<EntityReference, String>() );
+            }
+        }
 
         @Override
-        public synchronized void forgetVersions( Iterable<EntityState> states )
+        public void forgetVersions( Iterable<EntityState> states )
         {
             for( EntityState state : states )
             {
-                versions.remove( state.identity() );
+                Map<EntityReference, String> stripe = stripeOf( state.identity() );
+                synchronized( stripe )
+                {
+                    stripe.remove( state.identity() );
+                }
             }
         }
 
         @Override
-        public synchronized void rememberVersion( EntityReference identity, String version )
+        public void rememberVersion( EntityReference identity, String version )
         {
-            versions.put( identity, version );
+            Map<EntityReference, String> stripe = stripeOf( identity );
+            synchronized( stripe )
+            {
+                stripe.put( identity, version );
+            }
         }
 
         @Override
-        public synchronized void checkForConcurrentModification( Iterable<EntityState> loaded,
-                                                                 Module module,
-                                                                 long currentTime
+        public void checkForConcurrentModification( Iterable<EntityState> loaded,
+                                                    Module module,
+                                                    long currentTime
         )
             throws ConcurrentEntityStateModificationException
         {
             List<EntityReference> changed = null;
+            List<EntityState> unknown = null;
             for( EntityState entityState : loaded )
             {
                 if( entityState.status().equals( EntityStatus.NEW ) )
@@ -80,16 +106,16 @@ public interface EntityStateVersions
                     continue;
                 }
 
-                String storeVersion = versions.get( entityState.identity() );
+                String storeVersion = rememberedVersion( entityState.identity() );
                 if( storeVersion == null )
                 {
-                    EntityStoreUnitOfWork unitOfWork = store.newUnitOfWork( Usecase.DEFAULT, module, currentTime );
-                    EntityState state = unitOfWork.entityStateOf( entityState.identity() );
-                    storeVersion = state.version();
-                    unitOfWork.discard();
+                    if( unknown == null )
+                    {
+                        unknown = new ArrayList<EntityState>();
+                    }
+                    unknown.add( entityState );
                 }
-
-                if( !entityState.version().equals( storeVersion ) )
+                else if( !entityState.version().equals( storeVersion ) )
                 {
                     if( changed == null )
                     {
@@ -99,10 +125,73 @@ public interface EntityStateVersions
                 }
             }
 
+            if( unknown != null )
+            {
+                Map<EntityReference, String> storeVersions = storeVersionsOf( unknown, module, currentTime );
+                for( EntityState entityState : unknown )
+                {
+                    if( !entityState.version().equals( storeVersions.get( entityState.identity() ) ) )
+                    {
+                        if( changed == null )
+                        {
+                            changed = new ArrayList<EntityReference>();
+                        }
+                        changed.add( entityState.identity() );
+                    }
+                }
+            }
+
             if( changed != null )
             {
                 throw new ConcurrentEntityStateModificationException( changed );
             }
         }
+
+        private String rememberedVersion( EntityReference identity )
+        {
+            Map<EntityReference, String> stripe = stripeOf( identity );
+            synchronized( stripe )
+            {
+                return stripe.get( identity );
+            }
+        }
+
+        private Map<EntityReference, String> storeVersionsOf( List<EntityState> states,
+                                                              Module module,
+                                                              long currentTime
+        )
+        {
+            List<EntityReference> references = new ArrayList<EntityReference>( states.size() );
+            for( EntityState state : states )
+            {
+                references.add( state.identity() );
+            }
+            if( store instanceof EntityStoreVersionLookup )
+            {
+                return ( (EntityStoreVersionLookup) store ).versionsOf( references );
+            }
+
+            Map<EntityReference, String> storeVersions = new HashMap<EntityReference, String>();
+            EntityStoreUnitOfWork unitOfWork = store.newUnitOfWork( Usecase.DEFAULT, module, currentTime );
+            try
+            {
+                for( EntityReference reference : references )
+                {
+                    storeVersions.put( reference, unitOfWork.entityStateOf( reference ).version() );
+                }
+            }
+            finally
+            {
+                unitOfWork.discard();
+            }
+            return storeVersions;
+        }
+
+        private Map<EntityReference, String> stripeOf( EntityReference identity )
+        {
+            int hash = identity.hashCode();
+            hash ^= ( hash >>> 16 );
+            return versions.get( hash & ( STRIPES - 1 ) );
+        }
     }
 }
@@ -14,6 +14,7 @@
 
 package org.qi4j.spi.entitystore;
 
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.EntityState;
@@ -29,6 +30,13 @@ public interface EntityStoreSPI
 
     EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity );
 
+    /**
+     * @return States of the given entities by identity, entities not found are absent
+     */
+    Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                      Iterable<EntityReference> identities
+    );
+
     StateCommitter applyChanges( EntityStoreUnitOfWork unitOfWork, Iterable<EntityState> state
     );
 }
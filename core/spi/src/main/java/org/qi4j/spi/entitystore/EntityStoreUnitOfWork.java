@@ -14,6 +14,7 @@
 
 package org.qi4j.spi.entitystore;
 
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.EntityState;
@@ -57,6 +58,19 @@ public interface EntityStoreUnitOfWork
     EntityState entityStateOf( EntityReference anIdentity )
         throws EntityStoreException, EntityNotFoundException;
 
+    /**
+     * Get the EntityStates for many identities at once. Entities that are not found are absent from the result,
+     * no {@link EntityNotFoundException} is thrown.
+     *
+     * @param identities The entity identities.
+     *
+     * @return Entity states by identity.
+     *
+     * @throws EntityStoreException thrown if retrieval failed.
+     */
+    Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+        throws EntityStoreException;
+
     StateCommitter applyChanges()
         throws EntityStoreException;
 
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.Map;
+import org.qi4j.api.entity.EntityReference;
+
+/**
+ * Optional EntityStore extension answering the current versions of many entities in one call.
+ * <p>
+ * Add it to the EntityStore service type to let the {@link ConcurrentModificationCheckConcern} check all
+ * the entities of a UnitOfWork at once instead of loading each unknown one in its own store UnitOfWork.
+ * </p>
+ */
+public interface EntityStoreVersionLookup
+{
+    /**
+     * @param references Entity references
+     *
+     * @return Current store versions by reference, entities not present in the store are absent from the map
+     *
+     * @throws EntityStoreException if the versions could not be read
+     */
+    Map<EntityReference, String> versionsOf( Iterable<EntityReference> references )
+        throws EntityStoreException;
+}
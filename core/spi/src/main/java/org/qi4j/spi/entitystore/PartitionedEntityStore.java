@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import org.qi4j.api.structure.Module;
+import org.qi4j.spi.entity.EntityState;
+
+/**
+ * Optional EntityStore extension splitting {@link EntityStore#entityStates(Module)} in partitions.
+ * <p>
+ * Add it to the EntityStore service type to let bulk consumers, such as reindexing, migration or backup,
+ * transfer the partitions concurrently. Stores able to read from a point-in-time view of their content make all
+ * partitions read the same view, others may return a single partition.
+ * </p>
+ */
+public interface PartitionedEntityStore
+{
+    /**
+     * @param module     Module used to resolve entity types
+     * @param partitions Wanted number of partitions, the store may return fewer
+     *
+     * @return Entity state partitions, to be closed once transferred
+     *
+     * @throws EntityStoreException if the partitions could not be created
+     */
+    StatePartitions<EntityState, EntityStoreException> entityStatePartitions( Module module, int partitions )
+        throws EntityStoreException;
+}
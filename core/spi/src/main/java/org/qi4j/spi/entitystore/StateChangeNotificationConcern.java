@@ -14,12 +14,17 @@
 
 package org.qi4j.spi.entitystore;
 
+import org.qi4j.api.common.Optional;
 import org.qi4j.api.concern.ConcernOf;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.spi.entity.EntityState;
 
 /**
  * State change notification Concern.
+ * <p>
+ * StateChangeListeners are notified synchronously before commit, unless an {@link AsyncStateChangeNotification}
+ * service is visible, in which case they are notified through it after commit.
+ * </p>
  */
 public abstract class StateChangeNotificationConcern
     extends ConcernOf<EntityStoreSPI>
@@ -28,6 +33,10 @@ public abstract class StateChangeNotificationConcern
     @Service
     Iterable<StateChangeListener> listeners;
 
+    @Optional
+    @Service
+    AsyncStateChangeNotification asyncNotification;
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitofwork,
                                         final Iterable<EntityState> state
@@ -39,6 +48,12 @@ public abstract class StateChangeNotificationConcern
             @Override
             public void commit()
             {
+                if( asyncNotification != null )
+                {
+                    committer.commit();
+                    asyncNotification.notifyChanges( listeners, state );
+                    return;
+                }
                 for( StateChangeListener listener : listeners )
                 {
                     listener.notifyChanges( state );
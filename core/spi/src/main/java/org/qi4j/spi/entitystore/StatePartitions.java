@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.List;
+import org.qi4j.io.Input;
+
+/**
+ * Partitions of the entity states of a store, as returned by {@link PartitionedEntityStore}.
+ * <p>
+ * Each partition is an independent {@link Input} that can be transferred from its own thread. Together they
+ * deliver every entity state exactly once. Resources shared by the partitions, such as a store snapshot, are
+ * held until {@link #close()} is called, which must be done once all partitions have been transferred.
+ * </p>
+ *
+ * @param <T>             Type of the states
+ * @param <ThrowableType> Type of exception thrown by the partitions
+ */
+public interface StatePartitions<T, ThrowableType extends Throwable>
+{
+    /**
+     * @return Partitions, at least one
+     */
+    List<Input<T, ThrowableType>> partitions();
+
+    /**
+     * Release the resources shared by the partitions.
+     */
+    void close();
+}
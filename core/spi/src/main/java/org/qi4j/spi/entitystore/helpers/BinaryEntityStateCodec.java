@@ -0,0 +1,424 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.qi4j.api.association.AssociationDescriptor;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.property.PropertyDescriptor;
+import org.qi4j.api.structure.Module;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+/**
+ * Default {@link EntityStateCodec}, a compact binary form of the JSON state tree.
+ * <pre>
+ * state  = MAGIC | FORMAT_VERSION | value
+ * value  = NULL | FALSE | TRUE | LONG zigzag-varint | DOUBLE 8 bytes | STRING string | NUMBER string
+ *        | ARRAY varint-count value* | OBJECT varint-count (key value)*
+ * key    = varint-index of a well known key, or 0 | string
+ * string = varint-length | UTF-8 bytes
+ * </pre>
+ * <p>
+ * Property and association names are written as they are, not as indexes in the EntityDescriptor, so that states
+ * written before a change of the entity type can still be decoded and migrated. When decoding, they are canonicalized
+ * against the names of the EntityDescriptor, so that cached states share their key strings.
+ * </p>
+ * <p>
+ * States that do not start with MAGIC are parsed as JSON text.
+ * </p>
+ */
+public class BinaryEntityStateCodec
+    implements EntityStateCodec
+{
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte NUMBER = 6;
+    private static final byte ARRAY = 7;
+    private static final byte OBJECT = 8;
+
+    // Order is part of the format, only append
+    private static final List<String> KEYS = Arrays.asList(
+        JSONEntityState.JSON_KEY_IDENTITY,
+        JSONEntityState.JSON_KEY_APPLICATION_VERSION,
+        JSONEntityState.JSON_KEY_TYPE,
+        "types",
+        JSONEntityState.JSON_KEY_VERSION,
+        JSONEntityState.JSON_KEY_MODIFIED,
+        JSONEntityState.JSON_KEY_PROPERTIES,
+        JSONEntityState.JSON_KEY_ASSOCIATIONS,
+        JSONEntityState.JSON_KEY_MANYASSOCIATIONS );
+    private static final Map<String, Integer> KEY_INDEXES = new HashMap<String, Integer>();
+
+    static
+    {
+        for( int idx = 0; idx < KEYS.size(); idx++ )
+        {
+            KEY_INDEXES.put( KEYS.get( idx ), idx + 1 );
+        }
+    }
+
+    private final ConcurrentMap<EntityDescriptor, Map<String, String>> stateNames = new ConcurrentHashMap<EntityDescriptor, Map<String, String>>();
+
+    @Override
+    public byte[] encode( JSONObject state )
+        throws EntityStoreException
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream( 512 );
+            out.write( MAGIC );
+            out.write( FORMAT_VERSION );
+            // Well known keys first, so that the type is known before decoding properties and associations
+            List<String> keys = new ArrayList<String>();
+            for( String key : KEYS )
+            {
+                if( state.has( key ) )
+                {
+                    keys.add( key );
+                }
+            }
+            Iterator<?> stateKeys = state.keys();
+            while( stateKeys.hasNext() )
+            {
+                String key = (String) stateKeys.next();
+                if( !KEY_INDEXES.containsKey( key ) )
+                {
+                    keys.add( key );
+                }
+            }
+            out.write( OBJECT );
+            writeVarint( out, keys.size() );
+            for( String key : keys )
+            {
+                writeKey( out, key );
+                writeValue( out, state.get( key ) );
+            }
+            return out.toByteArray();
+        }
+        catch( JSONException e )
+        {
+            throw new EntityStoreException( "Could not encode EntityState", e );
+        }
+    }
+
+    @Override
+    public JSONObject decode( byte[] state, Module module )
+        throws EntityStoreException
+    {
+        try
+        {
+            if( state.length == 0 || state[ 0 ] != MAGIC )
+            {
+                return new JSONObject( new JSONTokener( new String( state, UTF_8 ) ) );
+            }
+            if( state.length < 3 || state[ 1 ] != FORMAT_VERSION || state[ 2 ] != OBJECT )
+            {
+                throw new EntityStoreException( "Unsupported EntityState encoding" );
+            }
+            Decoder decoder = new Decoder( state, 3 );
+            JSONObject jsonState = new JSONObject();
+            Map<String, String> names = null;
+            int count = decoder.readVarint();
+            for( int idx = 0; idx < count; idx++ )
+            {
+                String key = decoder.readKey( null );
+                Object value;
+                if( names != null
+                    && ( JSONEntityState.JSON_KEY_PROPERTIES.equals( key )
+                         || JSONEntityState.JSON_KEY_ASSOCIATIONS.equals( key )
+                         || JSONEntityState.JSON_KEY_MANYASSOCIATIONS.equals( key ) ) )
+                {
+                    value = decoder.readValue( names );
+                }
+                else
+                {
+                    value = decoder.readValue( null );
+                }
+                if( module != null && JSONEntityState.JSON_KEY_TYPE.equals( key ) && value instanceof String )
+                {
+                    names = stateNames( module, (String) value );
+                }
+                jsonState.put( key, value );
+            }
+            return jsonState;
+        }
+        catch( JSONException e )
+        {
+            throw new EntityStoreException( "Could not decode EntityState", e );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            throw new EntityStoreException( "Truncated EntityState", e );
+        }
+    }
+
+    private Map<String, String> stateNames( Module module, String type )
+    {
+        EntityDescriptor descriptor = module.entityDescriptor( type );
+        if( descriptor == null )
+        {
+            return null;
+        }
+        Map<String, String> names = stateNames.get( descriptor );
+        if( names == null )
+        {
+            names = new HashMap<String, String>();
+            for( PropertyDescriptor property : descriptor.state().properties() )
+            {
+                String name = property.qualifiedName().name();
+                names.put( name, name );
+            }
+            for( AssociationDescriptor association : descriptor.state().associations() )
+            {
+                String name = association.qualifiedName().name();
+                names.put( name, name );
+            }
+            for( AssociationDescriptor association : descriptor.state().manyAssociations() )
+            {
+                String name = association.qualifiedName().name();
+                names.put( name, name );
+            }
+            stateNames.putIfAbsent( descriptor, names );
+        }
+        return names;
+    }
+
+    private static void writeKey( ByteArrayOutputStream out, String key )
+    {
+        Integer index = KEY_INDEXES.get( key );
+        if( index == null )
+        {
+            out.write( 0 );
+            writeString( out, key );
+        }
+        else
+        {
+            writeVarint( out, index );
+        }
+    }
+
+    private static void writeValue( ByteArrayOutputStream out, Object value )
+        throws JSONException
+    {
+        if( value == null || JSONObject.NULL.equals( value ) )
+        {
+            out.write( NULL );
+        }
+        else if( value instanceof Boolean )
+        {
+            out.write( (Boolean) value ? TRUE : FALSE );
+        }
+        else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte )
+        {
+            out.write( LONG );
+            long number = ( (Number) value ).longValue();
+            writeVarlong( out, ( number << 1 ) ^ ( number >> 63 ) );
+        }
+        else if( value instanceof Double || value instanceof Float )
+        {
+            out.write( DOUBLE );
+            long bits = Double.doubleToLongBits( ( (Number) value ).doubleValue() );
+            for( int shift = 56; shift >= 0; shift -= 8 )
+            {
+                out.write( (int) ( bits >>> shift ) );
+            }
+        }
+        else if( value instanceof Number )
+        {
+            out.write( NUMBER );
+            writeString( out, JSONObject.numberToString( (Number) value ) );
+        }
+        else if( value instanceof JSONArray )
+        {
+            JSONArray array = (JSONArray) value;
+            out.write( ARRAY );
+            writeVarint( out, array.length() );
+            for( int idx = 0; idx < array.length(); idx++ )
+            {
+                writeValue( out, array.opt( idx ) );
+            }
+        }
+        else if( value instanceof JSONObject )
+        {
+            JSONObject object = (JSONObject) value;
+            out.write( OBJECT );
+            writeVarint( out, object.length() );
+            Iterator<?> keys = object.keys();
+            while( keys.hasNext() )
+            {
+                String key = (String) keys.next();
+                writeKey( out, key );
+                writeValue( out, object.get( key ) );
+            }
+        }
+        else
+        {
+            out.write( STRING );
+            writeString( out, value.toString() );
+        }
+    }
+
+    private static void writeString( ByteArrayOutputStream out, String value )
+    {
+        byte[] bytes = value.getBytes( UTF_8 );
+        writeVarint( out, bytes.length );
+        out.write( bytes, 0, bytes.length );
+    }
+
+    private static void writeVarint( ByteArrayOutputStream out, int value )
+    {
+        writeVarlong( out, value & 0xFFFFFFFFL );
+    }
+
+    private static void writeVarlong( ByteArrayOutputStream out, long value )
+    {
+        while( ( value & ~0x7FL ) != 0 )
+        {
+            out.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        out.write( (int) value );
+    }
+
+    private static final class Decoder
+    {
+        private final byte[] bytes;
+        private int position;
+
+        private Decoder( byte[] bytes, int position )
+        {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private Object readValue( Map<String, String> names )
+            throws JSONException
+        {
+            byte tag = bytes[ position++ ];
+            switch( tag )
+            {
+            case NULL:
+                return JSONObject.NULL;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case LONG:
+                long zigzag = readVarlong();
+                long number = ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+                if( number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE )
+                {
+                    return (int) number;
+                }
+                return number;
+            case DOUBLE:
+                long bits = 0;
+                for( int idx = 0; idx < 8; idx++ )
+                {
+                    bits = ( bits << 8 ) | ( bytes[ position++ ] & 0xFF );
+                }
+                return Double.longBitsToDouble( bits );
+            case STRING:
+                return readString();
+            case NUMBER:
+                return JSONObject.stringToValue( readString() );
+            case ARRAY:
+                int length = readVarint();
+                JSONArray array = new JSONArray();
+                for( int idx = 0; idx < length; idx++ )
+                {
+                    array.put( readValue( null ) );
+                }
+                return array;
+            case OBJECT:
+                int count = readVarint();
+                JSONObject object = new JSONObject();
+                for( int idx = 0; idx < count; idx++ )
+                {
+                    String key = readKey( names );
+                    object.put( key, readValue( null ) );
+                }
+                return object;
+            default:
+                throw new EntityStoreException( "Unknown EntityState value tag " + tag );
+            }
+        }
+
+        private String readKey( Map<String, String> names )
+        {
+            int index = readVarint();
+            if( index > 0 )
+            {
+                return KEYS.get( index - 1 );
+            }
+            String key = readString();
+            if( names != null )
+            {
+                String name = names.get( key );
+                if( name != null )
+                {
+                    return name;
+                }
+            }
+            return key;
+        }
+
+        private String readString()
+        {
+            int length = readVarint();
+            String value = new String( bytes, position, length, UTF_8 );
+            position += length;
+            return value;
+        }
+
+        private int readVarint()
+        {
+            return (int) readVarlong();
+        }
+
+        private long readVarlong()
+        {
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do
+            {
+                current = bytes[ position++ ];
+                value |= (long) ( current & 0x7F ) << shift;
+                shift += 7;
+            }
+            while( ( current & 0x80 ) != 0 );
+            return value;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.util.Map;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.io.Input;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+/**
+ * Byte oriented counterpart of {@link MapEntityStore}.
+ * <p>
+ * Implement this interface and add {@link BinaryMapEntityStoreMixin} to the service to store entity states
+ * encoded by an {@link EntityStateCodec} instead of JSON text.
+ * </p>
+ */
+public interface BinaryMapEntityStore
+{
+    /**
+     * Read the encoded state of an Entity.
+     * <p>
+     * Implementations must support concurrent reads, also while changes are being applied.
+     * </p>
+     *
+     * @return Encoded entity state
+     */
+    byte[] getBinary( EntityReference entityReference )
+        throws EntityStoreException;
+
+    /**
+     * Read the encoded state of many Entities, in as few round trips as the underlying store allows.
+     *
+     * @return Encoded entity states by reference, entities not found are absent from the map
+     */
+    Map<EntityReference, byte[]> getBinaries( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException;
+
+    /**
+     * @return Encoded states of all entities
+     */
+    Input<byte[], IOException> binaryEntityStates();
+
+    void applyBinaryChanges( BinaryMapChanges changes )
+        throws IOException;
+
+    interface BinaryMapChanges
+    {
+        void visitMap( BinaryMapChanger changer )
+            throws IOException;
+    }
+
+    interface BinaryMapChanger
+    {
+        void newEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            throws IOException;
+
+        void updateEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            throws IOException;
+
+        void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+            throws EntityNotFoundException;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.api.structure.Module;
+import org.qi4j.functional.Function;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.StatePartitions;
+import org.slf4j.LoggerFactory;
+
+import static org.qi4j.functional.Iterables.first;
+
+/**
+ * {@link JSONMapEntityStoreMixin} storing entity states through a {@link BinaryMapEntityStore}.
+ * <p>
+ * States are encoded by the {@link EntityStateCodec} set as MetaInfo of the service, {@link BinaryEntityStateCodec}
+ * by default. States stored as JSON text are still read, and written back encoded once updated or migrated.
+ * </p>
+ * <p>
+ * Set a {@link StateCompression} as MetaInfo of the service to compress encoded states. Compression ratio and
+ * mean compression and decompression times are then registered as gauges if a MetricsProvider is available.
+ * </p>
+ * <p>
+ * This mixin also implements {@link MapEntityStore} on top of the {@link BinaryMapEntityStore}, exposing states as
+ * JSON text, so it must come before the BinaryMapEntityStore implementation in the list of mixins of the service.
+ * </p>
+ */
+public class BinaryMapEntityStoreMixin
+    extends JSONMapEntityStoreMixin
+    implements MapEntityStore
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    @This
+    private BinaryMapEntityStore binaryMapEntityStore;
+
+    @Uses
+    private ServiceDescriptor serviceDescriptor;
+
+    @Optional
+    @Service
+    private MetricsProvider metrics;
+
+    private EntityStateCodec codec;
+
+    @Override
+    public void setUpJSONMapES()
+        throws Exception
+    {
+        codec = stateCodec( serviceDescriptor );
+        if( codec instanceof CompressingEntityStateCodec )
+        {
+            registerMetrics( (CompressingEntityStateCodec) codec );
+        }
+        super.setUpJSONMapES();
+    }
+
+    /**
+     * @param descriptor EntityStore service descriptor
+     *
+     * @return the EntityStateCodec set as MetaInfo of the service, or a BinaryEntityStateCodec, compressing states
+     *         if a StateCompression is set as MetaInfo of the service
+     */
+    public static EntityStateCodec stateCodec( ServiceDescriptor descriptor )
+    {
+        EntityStateCodec codec = descriptor.metaInfo( EntityStateCodec.class );
+        if( codec == null )
+        {
+            codec = new BinaryEntityStateCodec();
+        }
+        StateCompression compression = descriptor.metaInfo( StateCompression.class );
+        if( compression != null )
+        {
+            codec = new CompressingEntityStateCodec( codec, compression );
+        }
+        return codec;
+    }
+
+    private void registerMetrics( final CompressingEntityStateCodec compressingCodec )
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        try
+        {
+            Class<?> origin = first( serviceDescriptor.types() );
+            MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+            gauges.registerGauge( origin, "State Compression Ratio", new MetricsGauge<Double>()
+            {
+                @Override
+                public Double value()
+                {
+                    return compressingCodec.compressionRatio();
+                }
+            } );
+            gauges.registerGauge( origin, "State Compression Time", new MetricsGauge<Long>()
+            {
+                @Override
+                public Long value()
+                {
+                    return compressingCodec.meanCompressionNanos();
+                }
+            } );
+            gauges.registerGauge( origin, "State Decompression Time", new MetricsGauge<Long>()
+            {
+                @Override
+                public Long value()
+                {
+                    return compressingCodec.meanDecompressionNanos();
+                }
+            } );
+        }
+        catch( MetricsNotSupportedException e )
+        {
+            LoggerFactory.getLogger( serviceDescriptor.identity() )
+                .debug( "Metrics not supported by {}, state compression metrics disabled", metrics );
+        }
+    }
+
+    // JSONMapEntityStoreMixin
+
+    @Override
+    protected JSONObject readState( Module module, EntityReference reference )
+        throws EntityStoreException
+    {
+        return codec.decode( binaryMapEntityStore.getBinary( reference ), module );
+    }
+
+    @Override
+    protected Map<EntityReference, JSONObject> readStates( Module module, List<EntityReference> references )
+        throws EntityStoreException
+    {
+        Map<EntityReference, JSONObject> states = new LinkedHashMap<EntityReference, JSONObject>();
+        for( Map.Entry<EntityReference, byte[]> in : binaryMapEntityStore.getBinaries( references ).entrySet() )
+        {
+            states.put( in.getKey(), codec.decode( in.getValue(), module ) );
+        }
+        return states;
+    }
+
+    @Override
+    protected void writeStates( final Iterable<JSONEntityState> states )
+        throws IOException
+    {
+        binaryMapEntityStore.applyBinaryChanges( new BinaryMapEntityStore.BinaryMapChanges()
+        {
+            @Override
+            public void visitMap( BinaryMapEntityStore.BinaryMapChanger changer )
+                throws IOException
+            {
+                for( JSONEntityState state : states )
+                {
+                    if( state.status().equals( EntityStatus.NEW ) )
+                    {
+                        changer.newEntity( state.identity(), state.entityDescriptor(), codec.encode( state.state() ) );
+                    }
+                    else if( state.status().equals( EntityStatus.UPDATED ) )
+                    {
+                        changer.updateEntity( state.identity(), state.entityDescriptor(), codec.encode( state.state() ) );
+                    }
+                    else
+                    {
+                        changer.removeEntity( state.identity(), state.entityDescriptor() );
+                    }
+                }
+            }
+        } );
+    }
+
+    @Override
+    public Input<EntityState, EntityStoreException> entityStates( final Module module )
+    {
+        return entityStates( module, binaryMapEntityStore.binaryEntityStates(), decodeFunction( module ) );
+    }
+
+    @Override
+    public StatePartitions<EntityState, EntityStoreException> entityStatePartitions( Module module, int partitions )
+    {
+        final List<Input<EntityState, EntityStoreException>> single = Collections.singletonList( entityStates( module ) );
+        return new StatePartitions<EntityState, EntityStoreException>()
+        {
+            @Override
+            public List<Input<EntityState, EntityStoreException>> partitions()
+            {
+                return single;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    @Override
+    public Map<EntityReference, String> versionsOf( Iterable<EntityReference> references )
+    {
+        Map<EntityReference, String> versions = new HashMap<EntityReference, String>();
+        for( Map.Entry<EntityReference, byte[]> in : binaryMapEntityStore.getBinaries( references ).entrySet() )
+        {
+            try
+            {
+                versions.put( in.getKey(), codec.decode( in.getValue(), null ).getString( JSONEntityState.JSON_KEY_VERSION ) );
+            }
+            catch( JSONException e )
+            {
+                throw new EntityStoreException( e );
+            }
+        }
+        return versions;
+    }
+
+    // MapEntityStore
+
+    @Override
+    public Reader get( EntityReference entityReference )
+        throws EntityStoreException
+    {
+        return reader( codec.decode( binaryMapEntityStore.getBinary( entityReference ), null ) );
+    }
+
+    @Override
+    public Input<Reader, IOException> entityStates()
+    {
+        return new Input<Reader, IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( final Output<? super Reader, ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                binaryMapEntityStore.binaryEntityStates().transferTo( new Output<byte[], ReceiverThrowableType>()
+                {
+                    @Override
+                    public <SenderThrowableType extends Throwable> void receiveFrom( final Sender<? extends byte[], SenderThrowableType> sender )
+                        throws ReceiverThrowableType, SenderThrowableType
+                    {
+                        output.receiveFrom( new Sender<Reader, SenderThrowableType>()
+                        {
+                            @Override
+                            public <ReceiverThrowableType extends Throwable> void sendTo( final Receiver<? super Reader, ReceiverThrowableType> receiver )
+                                throws ReceiverThrowableType, SenderThrowableType
+                            {
+                                sender.sendTo( new Receiver<byte[], ReceiverThrowableType>()
+                                {
+                                    @Override
+                                    public void receive( byte[] item )
+                                        throws ReceiverThrowableType
+                                    {
+                                        receiver.receive( reader( codec.decode( item, null ) ) );
+                                    }
+                                } );
+                            }
+                        } );
+                    }
+                } );
+            }
+        };
+    }
+
+    @Override
+    public void applyChanges( final MapChanges changes )
+        throws IOException
+    {
+        binaryMapEntityStore.applyBinaryChanges( new BinaryMapEntityStore.BinaryMapChanges()
+        {
+            @Override
+            public void visitMap( final BinaryMapEntityStore.BinaryMapChanger changer )
+                throws IOException
+            {
+                changes.visitMap( new MapChanger()
+                {
+                    @Override
+                    public Writer newEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                    {
+                        return stateWriter( changer, ref, entityDescriptor, true );
+                    }
+
+                    @Override
+                    public Writer updateEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                    {
+                        return stateWriter( changer, ref, entityDescriptor, false );
+                    }
+
+                    @Override
+                    public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                        throws EntityNotFoundException
+                    {
+                        changer.removeEntity( ref, entityDescriptor );
+                    }
+                } );
+            }
+        } );
+    }
+
+    private Writer stateWriter( final BinaryMapEntityStore.BinaryMapChanger changer,
+                                final EntityReference ref,
+                                final EntityDescriptor entityDescriptor,
+                                final boolean newEntity
+    )
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1000 );
+        return new OutputStreamWriter( bytes, UTF_8 )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                super.close();
+                byte[] state;
+                try
+                {
+                    state = codec.encode( new JSONObject( new JSONTokener( new String( bytes.toByteArray(), UTF_8 ) ) ) );
+                }
+                catch( JSONException e )
+                {
+                    throw new IOException( e );
+                }
+                if( newEntity )
+                {
+                    changer.newEntity( ref, entityDescriptor, state );
+                }
+                else
+                {
+                    changer.updateEntity( ref, entityDescriptor, state );
+                }
+            }
+        };
+    }
+
+    private Function<byte[], JSONObject> decodeFunction( final Module module )
+    {
+        return new Function<byte[], JSONObject>()
+        {
+            @Override
+            public JSONObject map( byte[] state )
+            {
+                return codec.decode( state, module );
+            }
+        };
+    }
+
+    private static Reader reader( JSONObject state )
+    {
+        return new StringReader( state.toString() );
+    }
+}
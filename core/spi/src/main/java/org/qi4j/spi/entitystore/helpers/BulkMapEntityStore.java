@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+/**
+ * Bulk reads on a MapEntityStore.
+ * <p>
+ * Used by {@link JSONMapEntityStoreMixin} and {@link MapEntityStoreMixin} to load many entities at once.
+ * MapEntityStore implementations able to fetch many keys in a single round trip implement this interface
+ * alongside {@link MapEntityStore}, others get the {@link ReadEachMixin} that reads entities one by one.
+ * </p>
+ */
+@Mixins( BulkMapEntityStore.ReadEachMixin.class )
+public interface BulkMapEntityStore
+{
+    /**
+     * Read the state of many Entities.
+     *
+     * @param entityReferences Entity references
+     *
+     * @return Entity state Readers by reference, entities not found are absent from the map
+     */
+    Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException;
+
+    /**
+     * Read entities one by one through {@link MapEntityStore#get(EntityReference)}.
+     */
+    class ReadEachMixin
+        implements BulkMapEntityStore
+    {
+        @This
+        private MapEntityStore mapEntityStore;
+
+        @Override
+        public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        {
+            Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+            for( EntityReference entityReference : entityReferences )
+            {
+                try
+                {
+                    states.put( entityReference, mapEntityStore.get( entityReference ) );
+                }
+                catch( EntityNotFoundException e )
+                {
+                    // Absent from the result
+                }
+            }
+            return states;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.json.JSONObject;
+import org.qi4j.api.structure.Module;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+/**
+ * {@link EntityStateCodec} compressing the states encoded by another codec.
+ * <pre>
+ * state = MAGIC | varint uncompressed length | zlib stream
+ * </pre>
+ * <p>
+ * States that do not start with MAGIC, written before compression was enabled or too small to be compressed,
+ * are decoded by the wrapped codec. Sizes and time spent compressing and decompressing are accumulated for
+ * monitoring.
+ * </p>
+ */
+public class CompressingEntityStateCodec
+    implements EntityStateCodec
+{
+    public static final byte MAGIC = (byte) 0xC1;
+
+    private final EntityStateCodec codec;
+    private final StateCompression compression;
+    private final byte[] dictionary;
+    private final int dictionaryId;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters;
+
+    private final AtomicLong compressions = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong decompressions = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    public CompressingEntityStateCodec( EntityStateCodec codec, final StateCompression compression )
+    {
+        this.codec = codec;
+        this.compression = compression;
+        dictionary = compression.dictionary();
+        if( dictionary != null )
+        {
+            Adler32 adler = new Adler32();
+            adler.update( dictionary );
+            dictionaryId = (int) adler.getValue();
+        }
+        else
+        {
+            dictionaryId = 0;
+        }
+        deflaters = new ThreadLocal<Deflater>()
+        {
+            @Override
+            protected Deflater initialValue()
+            {
+                return new Deflater( compression.level() );
+            }
+        };
+        inflaters = new ThreadLocal<Inflater>()
+        {
+            @Override
+            protected Inflater initialValue()
+            {
+                return new Inflater();
+            }
+        };
+    }
+
+    @Override
+    public byte[] encode( JSONObject state )
+        throws EntityStoreException
+    {
+        byte[] encoded = codec.encode( state );
+        if( encoded.length < compression.minimumSize() )
+        {
+            return encoded;
+        }
+
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if( dictionary != null )
+        {
+            deflater.setDictionary( dictionary );
+        }
+        deflater.setInput( encoded );
+        deflater.finish();
+        byte[] buffer = new byte[ 6 + encoded.length ];
+        buffer[ 0 ] = MAGIC;
+        int length = writeVarint( buffer, 1, encoded.length );
+        while( !deflater.finished() && length < buffer.length )
+        {
+            length += deflater.deflate( buffer, length, buffer.length - length );
+        }
+        compressionNanos.addAndGet( System.nanoTime() - start );
+        compressions.incrementAndGet();
+        uncompressedBytes.addAndGet( encoded.length );
+        if( !deflater.finished() )
+        {
+            // Not worth it
+            compressedBytes.addAndGet( encoded.length );
+            return encoded;
+        }
+        compressedBytes.addAndGet( length );
+        byte[] compressed = new byte[ length ];
+        System.arraycopy( buffer, 0, compressed, 0, length );
+        return compressed;
+    }
+
+    @Override
+    public JSONObject decode( byte[] state, Module module )
+        throws EntityStoreException
+    {
+        if( state.length == 0 || state[ 0 ] != MAGIC )
+        {
+            return codec.decode( state, module );
+        }
+
+        long start = System.nanoTime();
+        int length = 0;
+        int position = 1;
+        int shift = 0;
+        byte current;
+        do
+        {
+            current = state[ position++ ];
+            length |= ( current & 0x7F ) << shift;
+            shift += 7;
+        }
+        while( ( current & 0x80 ) != 0 );
+
+        byte[] encoded = new byte[ length ];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput( state, position, state.length - position );
+        try
+        {
+            int inflated = 0;
+            while( !inflater.finished() )
+            {
+                int count = inflater.inflate( encoded, inflated, length - inflated );
+                inflated += count;
+                if( count == 0 )
+                {
+                    if( inflater.needsDictionary() )
+                    {
+                        if( dictionary == null || inflater.getAdler() != dictionaryId )
+                        {
+                            throw new EntityStoreException( "EntityState was compressed with another dictionary" );
+                        }
+                        inflater.setDictionary( dictionary );
+                    }
+                    else if( inflater.needsInput() || inflated == length )
+                    {
+                        break;
+                    }
+                }
+            }
+            if( !inflater.finished() || inflated != length )
+            {
+                throw new EntityStoreException( "Truncated compressed EntityState" );
+            }
+        }
+        catch( DataFormatException e )
+        {
+            throw new EntityStoreException( "Could not decompress EntityState", e );
+        }
+        decompressionNanos.addAndGet( System.nanoTime() - start );
+        decompressions.incrementAndGet();
+        return codec.decode( encoded, module );
+    }
+
+    /**
+     * @return Uncompressed size divided by compressed size of the states encoded so far, 1 if none
+     */
+    public double compressionRatio()
+    {
+        long compressed = compressedBytes.get();
+        return compressed == 0 ? 1D : (double) uncompressedBytes.get() / compressed;
+    }
+
+    /**
+     * @return Mean time spent compressing a state, in nanoseconds
+     */
+    public long meanCompressionNanos()
+    {
+        long count = compressions.get();
+        return count == 0 ? 0L : compressionNanos.get() / count;
+    }
+
+    /**
+     * @return Mean time spent decompressing a state, in nanoseconds
+     */
+    public long meanDecompressionNanos()
+    {
+        long count = decompressions.get();
+        return count == 0 ? 0L : decompressionNanos.get() / count;
+    }
+
+    private static int writeVarint( byte[] buffer, int position, int value )
+    {
+        while( ( value & ~0x7F ) != 0 )
+        {
+            buffer[ position++ ] = (byte) ( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        buffer[ position++ ] = (byte) value;
+        return position;
+    }
+}
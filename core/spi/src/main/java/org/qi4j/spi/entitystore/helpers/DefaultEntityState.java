@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.qi4j.api.common.QualifiedName;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
@@ -47,6 +48,7 @@ public final class DefaultEntityState
     protected final Map<QualifiedName, Object> properties;
     protected final Map<QualifiedName, EntityReference> associations;
     protected final Map<QualifiedName, List<EntityReference>> manyAssociations;
+    private Map<QualifiedName, Set<EntityReference>> manyAssociationIndexes;
 
     public DefaultEntityState( DefaultEntityStoreUnitOfWork unitOfWork,
                                EntityReference identity,
@@ -140,7 +142,23 @@ public final class DefaultEntityState
             manyAssociationState = new ArrayList<EntityReference>();
             manyAssociations.put( stateName, manyAssociationState );
         }
-        return new DefaultManyAssociationState( this, manyAssociationState );
+        return new DefaultManyAssociationState( this, manyAssociationState,
+                                                manyAssociationIndex( stateName, manyAssociationState ) );
+    }
+
+    private Set<EntityReference> manyAssociationIndex( QualifiedName stateName, List<EntityReference> references )
+    {
+        if( manyAssociationIndexes == null )
+        {
+            manyAssociationIndexes = new HashMap<QualifiedName, Set<EntityReference>>();
+        }
+        Set<EntityReference> index = manyAssociationIndexes.get( stateName );
+        if( index == null )
+        {
+            index = DefaultManyAssociationState.newIndex( references );
+            manyAssociationIndexes.put( stateName, index );
+        }
+        return index;
     }
 
     public void copyTo( DefaultEntityState entityState )
@@ -159,11 +177,13 @@ public final class DefaultEntityState
             entityState.associations.put( stateNameStringEntry.getKey(), stateNameStringEntry.getValue() );
         }
 
-        // Copy many-associations
+        // Copy many-associations, the lists are copied as each state keeps its own index of them
         entityState.manyAssociations.clear();
+        entityState.manyAssociationIndexes = null;
         for( Map.Entry<QualifiedName, List<EntityReference>> stateNameStringEntry : manyAssociations.entrySet() )
         {
-            entityState.manyAssociations.put( stateNameStringEntry.getKey(), stateNameStringEntry.getValue() );
+            entityState.manyAssociations.put( stateNameStringEntry.getKey(),
+                                              new ArrayList<EntityReference>( stateNameStringEntry.getValue() ) );
         }
 
         // Set version and timestamp
@@ -14,24 +14,37 @@
 
 package org.qi4j.spi.entitystore.helpers;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.ManyAssociationState;
 
 /**
- * Default implementation of ManyAssociationState. Backed by ArrayList.
+ * Default implementation of ManyAssociationState. Backed by ArrayList, membership is answered by a hash index
+ * of the references.
  */
 public final class DefaultManyAssociationState
     implements ManyAssociationState
 {
     private DefaultEntityState entityState;
     private List<EntityReference> references;
+    private Set<EntityReference> index;
 
     public DefaultManyAssociationState( DefaultEntityState entityState, List<EntityReference> references )
+    {
+        this( entityState, references, newIndex( references ) );
+    }
+
+    /* package */ DefaultManyAssociationState( DefaultEntityState entityState,
+                                               List<EntityReference> references,
+                                               Set<EntityReference> index
+    )
     {
         this.entityState = entityState;
         this.references = references;
+        this.index = index;
     }
 
     @Override
@@ -43,18 +56,19 @@ public final class DefaultManyAssociationState
     @Override
     public boolean contains( EntityReference entityReference )
     {
-        return references.contains( entityReference );
+        return index.contains( entityReference );
     }
 
     @Override
     public boolean add( int i, EntityReference entityReference )
     {
-        if( references.contains( entityReference ) )
+        if( index.contains( entityReference ) )
         {
             return false;
         }
 
         references.add( i, entityReference );
+        index.add( entityReference );
         entityState.markUpdated();
         return true;
     }
@@ -62,7 +76,11 @@ public final class DefaultManyAssociationState
     @Override
     public boolean remove( EntityReference entity )
     {
-        boolean removed = references.remove( entity );
+        boolean removed = index.contains( entity ) && references.remove( entity );
+        if( removed )
+        {
+            index.remove( entity );
+        }
         entityState.markUpdated();
         return removed;
     }
@@ -99,8 +117,19 @@ public final class DefaultManyAssociationState
             public void remove()
             {
                 iter.remove();
+                index.remove( current );
                 entityState.markUpdated();
             }
         };
     }
+
+    /**
+     * @return a new hash index of the given references
+     */
+    /* package */ static Set<EntityReference> newIndex( List<EntityReference> references )
+    {
+        Set<EntityReference> index = new HashSet<EntityReference>( Math.max( 16, references.size() * 2 ) );
+        index.addAll( references );
+        return index;
+    }
 }
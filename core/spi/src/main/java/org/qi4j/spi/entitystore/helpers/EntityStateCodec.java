@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import org.json.JSONObject;
+import org.qi4j.api.structure.Module;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+/**
+ * Encoding of entity states stored through a {@link BinaryMapEntityStore}.
+ * <p>
+ * Set an instance as MetaInfo of the EntityStore service to replace the default {@link BinaryEntityStateCodec}.
+ * Implementations must be thread-safe and able to decode every state they ever encoded, and JSON text, so that
+ * stores holding states written by a {@link MapEntityStore} can still be read and migrated.
+ * </p>
+ */
+public interface EntityStateCodec
+{
+    /**
+     * @param state Entity state, as handled by {@link JSONMapEntityStoreMixin}
+     *
+     * @return the encoded state
+     */
+    byte[] encode( JSONObject state )
+        throws EntityStoreException;
+
+    /**
+     * @param state  Encoded state, or JSON text encoded in UTF-8
+     * @param module Module used to resolve the entity type, may be null
+     *
+     * @return the entity state
+     */
+    JSONObject decode( byte[] state, Module module )
+        throws EntityStoreException;
+}
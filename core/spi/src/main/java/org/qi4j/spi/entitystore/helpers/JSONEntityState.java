@@ -19,6 +19,11 @@
  */
 package org.qi4j.spi.entitystore.helpers;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -27,6 +32,7 @@ import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.property.PropertyDescriptor;
 import org.qi4j.api.type.ValueType;
+import org.qi4j.api.value.ValueComposite;
 import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.api.value.ValueSerializationException;
 import org.qi4j.spi.entity.EntityState;
@@ -34,6 +40,7 @@ import org.qi4j.spi.entity.EntityStatus;
 import org.qi4j.spi.entity.ManyAssociationState;
 import org.qi4j.spi.entitystore.DefaultEntityStoreUnitOfWork;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueNodeDeserializer;
 
 /**
  * Standard implementation of EntityState.
@@ -67,6 +74,8 @@ public final class JSONEntityState
     private EntityStatus status;
     private long lastModified;
     private JSONObject state;
+    private Map<QualifiedName, Object> propertyValues;
+    private Map<String, Set<String>> manyAssociationIndexes;
 
     /* package */ JSONEntityState( DefaultEntityStoreUnitOfWork unitOfWork,
                                    ValueSerialization valueSerialization,
@@ -127,6 +136,10 @@ public final class JSONEntityState
     @Override
     public Object propertyValueOf( QualifiedName stateName )
     {
+        if( propertyValues != null && propertyValues.containsKey( stateName ) )
+        {
+            return propertyValues.get( stateName );
+        }
         try
         {
             Object json = state.getJSONObject( JSON_KEY_PROPERTIES ).opt( stateName.name() );
@@ -141,7 +154,25 @@ public final class JSONEntityState
                 {
                     return null;
                 }
-                return valueSerialization.deserialize( descriptor.valueType(), json.toString() );
+                Object value;
+                if( valueSerialization instanceof OrgJsonValueNodeDeserializer )
+                {
+                    // Deserialize straight from the JSON node, skipping the String round trip
+                    value = ( (OrgJsonValueNodeDeserializer) valueSerialization ).deserializeNode( descriptor.valueType(), json );
+                }
+                else
+                {
+                    value = valueSerialization.deserialize( descriptor.valueType(), json.toString() );
+                }
+                if( isMemoizable( value ) )
+                {
+                    if( propertyValues == null )
+                    {
+                        propertyValues = new HashMap<QualifiedName, Object>();
+                    }
+                    propertyValues.put( stateName, value );
+                }
+                return value;
             }
         }
         catch( ValueSerializationException e )
@@ -182,6 +213,10 @@ public final class JSONEntityState
             }
             cloneStateIfGlobalStateLoaded();
             state.getJSONObject( JSON_KEY_PROPERTIES ).put( stateName.name(), jsonValue );
+            if( propertyValues != null )
+            {
+                propertyValues.remove( stateName );
+            }
             markUpdated();
         }
         catch( ValueSerializationException e )
@@ -194,6 +229,30 @@ public final class JSONEntityState
         }
     }
 
+    /**
+     * Only immutable values are memoized, callers get a fresh copy of any other value, such as a Date, a Collection
+     * or an array, on each read.
+     */
+    private static boolean isMemoizable( Object value )
+    {
+        if( value instanceof ValueComposite || value instanceof Enum )
+        {
+            return true;
+        }
+        Class<?> type = value.getClass();
+        return type == String.class
+               || type == Boolean.class
+               || type == Character.class
+               || type == Byte.class
+               || type == Short.class
+               || type == Integer.class
+               || type == Long.class
+               || type == Float.class
+               || type == Double.class
+               || type == BigDecimal.class
+               || type == BigInteger.class;
+    }
+
     private JSONObject cloneJSON( JSONObject jsonObject )
         throws JSONException
     {
@@ -247,14 +306,7 @@ public final class JSONEntityState
     {
         try
         {
-            JSONObject manyAssociations = state.getJSONObject( JSON_KEY_MANYASSOCIATIONS );
-            JSONArray jsonValues = manyAssociations.optJSONArray( stateName.name() );
-            if( jsonValues == null )
-            {
-                jsonValues = new JSONArray();
-                manyAssociations.put( stateName.name(), jsonValues );
-            }
-            return new JSONManyAssociationState( this, jsonValues );
+            return new JSONManyAssociationState( this, stateName.name(), manyAssociationReferences( stateName.name() ) );
         }
         catch( JSONException e )
         {
@@ -305,6 +357,43 @@ public final class JSONEntityState
         }
     }
 
+    /**
+     * @return the references of the named ManyAssociation, attached to the state only if it is not shared
+     */
+    JSONArray manyAssociationReferences( String name )
+        throws JSONException
+    {
+        JSONObject manyAssociations = state.getJSONObject( JSON_KEY_MANYASSOCIATIONS );
+        JSONArray jsonValues = manyAssociations.optJSONArray( name );
+        if( jsonValues == null )
+        {
+            jsonValues = new JSONArray();
+            if( !isStateNotCloned() )
+            {
+                manyAssociations.put( name, jsonValues );
+            }
+        }
+        return jsonValues;
+    }
+
+    /**
+     * @return the hash index of the named ManyAssociation references, shared by all its ManyAssociationStates
+     */
+    Set<String> manyAssociationIndex( String name, JSONArray references )
+    {
+        if( manyAssociationIndexes == null )
+        {
+            manyAssociationIndexes = new HashMap<String, Set<String>>();
+        }
+        Set<String> index = manyAssociationIndexes.get( name );
+        if( index == null )
+        {
+            index = JSONManyAssociationState.newIndex( references );
+            manyAssociationIndexes.put( name, index );
+        }
+        return index;
+    }
+
     boolean isStateNotCloned()
     {
         return status == EntityStatus.LOADED;
@@ -312,7 +401,7 @@ public final class JSONEntityState
 
     void cloneStateIfGlobalStateLoaded()
     {
-        if( isStateNotCloned() )
+        if( !isStateNotCloned() )
         {
             return;
         }
@@ -322,6 +411,24 @@ public final class JSONEntityState
             JSONObject newProperties = cloneJSON( state.getJSONObject( JSON_KEY_PROPERTIES ) );
             JSONObject newAssoc = cloneJSON( state.getJSONObject( JSON_KEY_ASSOCIATIONS ) );
             JSONObject newManyAssoc = cloneJSON( state.getJSONObject( JSON_KEY_MANYASSOCIATIONS ) );
+            String[] manyAssocNames = JSONObject.getNames( newManyAssoc );
+            if( manyAssocNames != null )
+            {
+                // ManyAssociations are mutated in place, do not share their arrays
+                for( String manyAssocName : manyAssocNames )
+                {
+                    JSONArray references = newManyAssoc.optJSONArray( manyAssocName );
+                    if( references != null )
+                    {
+                        JSONArray newReferences = new JSONArray();
+                        for( int idx = 0; idx < references.length(); idx++ )
+                        {
+                            newReferences.put( references.opt( idx ) );
+                        }
+                        newManyAssoc.put( manyAssocName, newReferences );
+                    }
+                }
+            }
             JSONObject stateClone = new JSONObject( state, CLONE_NAMES );
             stateClone.put( JSON_KEY_PROPERTIES, newProperties );
             stateClone.put( JSON_KEY_ASSOCIATIONS, newAssoc );
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.Reader;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+/**
+ * Reads the version, and optionally the identity, of a JSON serialized EntityState.
+ * <p>
+ * Only the top level keys are scanned, and scanning stops as soon as the requested keys are found, so no EntityState
+ * is built and no property value is deserialized.
+ * </p>
+ */
+public final class JSONEntityVersions
+{
+    /**
+     * @param state JSON serialized EntityState
+     *
+     * @return The version of the state, or null if it has none
+     *
+     * @throws JSONException if the state is not a JSON object
+     */
+    public static String readVersion( Reader state )
+        throws JSONException
+    {
+        return readValues( state, JSONEntityState.JSON_KEY_VERSION )[ 0 ];
+    }
+
+    /**
+     * Read the identity and the version of a state, for stores that look states up without knowing their identity.
+     *
+     * @param state JSON serialized EntityState
+     *
+     * @return The identity and the version of the state, in that order, either null if missing
+     *
+     * @throws JSONException if the state is not a JSON object
+     */
+    public static String[] readIdentityAndVersion( Reader state )
+        throws JSONException
+    {
+        return readValues( state, JSONEntityState.JSON_KEY_IDENTITY, JSONEntityState.JSON_KEY_VERSION );
+    }
+
+    private static String[] readValues( Reader state, String... keys )
+        throws JSONException
+    {
+        String[] values = new String[ keys.length ];
+        int missing = keys.length;
+        JSONTokener tokener = new JSONTokener( state );
+        if( tokener.nextClean() != '{' )
+        {
+            throw tokener.syntaxError( "A JSONObject text must begin with '{'" );
+        }
+        char c = tokener.nextClean();
+        while( c != '}' )
+        {
+            tokener.back();
+            String key = tokener.nextValue().toString();
+            if( tokener.nextClean() != ':' )
+            {
+                throw tokener.syntaxError( "Expected a ':' after a key" );
+            }
+            Object value = tokener.nextValue();
+            for( int i = 0; i < keys.length; i++ )
+            {
+                if( values[ i ] == null && keys[ i ].equals( key ) )
+                {
+                    values[ i ] = value.toString();
+                    if( --missing == 0 )
+                    {
+                        return values;
+                    }
+                }
+            }
+            c = tokener.nextClean();
+            if( c == ',' || c == ';' )
+            {
+                c = tokener.nextClean();
+            }
+            else if( c != '}' )
+            {
+                throw tokener.syntaxError( "Expected a ',' or '}'" );
+            }
+        }
+        return values;
+    }
+
+    private JSONEntityVersions()
+    {
+    }
+}
@@ -13,41 +13,54 @@
  */
 package org.qi4j.spi.entitystore.helpers;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.ManyAssociationState;
 import org.qi4j.spi.entitystore.EntityStoreException;
 
 /**
  * JSON implementation of ManyAssociationState.
- * <p>Backed by a JSONArray.</p>
+ * <p>Backed by a JSONArray, membership is answered by a lazily built hash index of the references.</p>
  */
 public final class JSONManyAssociationState
     implements ManyAssociationState
 {
 
     private JSONEntityState entityState;
+    private String name;
+    private JSONObject entityJson;
     private JSONArray references;
+    private Set<String> index;
 
     public JSONManyAssociationState( JSONEntityState entityState, JSONArray references )
+    {
+        this( entityState, null, references );
+    }
+
+    /* package */ JSONManyAssociationState( JSONEntityState entityState, String name, JSONArray references )
     {
         this.entityState = entityState;
+        this.name = name;
+        this.entityJson = entityState.state();
         this.references = references;
     }
 
     @Override
     public int count()
     {
-        return references.length();
+        return references().length();
     }
 
     @Override
     public boolean contains( EntityReference entityReference )
     {
-        return indexOfReference( entityReference.identity() ) != -1;
+        return index().contains( entityReference.identity() );
     }
 
     @Override
@@ -55,12 +68,14 @@ public final class JSONManyAssociationState
     {
         try
         {
-            if( indexOfReference( entityReference.identity() ) != -1 )
+            String identity = entityReference.identity();
+            if( index().contains( identity ) )
             {
                 return false;
             }
-            entityState.cloneStateIfGlobalStateLoaded();
-            insertReference( idx, entityReference.identity() );
+            cloneStateIfGlobalStateLoaded();
+            insertReference( idx, identity );
+            index().add( identity );
             entityState.markUpdated();
             return true;
         }
@@ -73,11 +88,17 @@ public final class JSONManyAssociationState
     @Override
     public boolean remove( EntityReference entityReference )
     {
-        int refIndex = indexOfReference( entityReference.identity() );
+        String identity = entityReference.identity();
+        if( !index().contains( identity ) )
+        {
+            return false;
+        }
+        int refIndex = indexOfReference( identity );
         if( refIndex != -1 )
         {
-            entityState.cloneStateIfGlobalStateLoaded();
-            references.remove( refIndex );
+            cloneStateIfGlobalStateLoaded();
+            references().remove( refIndex );
+            index().remove( identity );
             entityState.markUpdated();
             return true;
         }
@@ -89,7 +110,7 @@ public final class JSONManyAssociationState
     {
         try
         {
-            return new EntityReference( references.getString( i ) );
+            return new EntityReference( references().getString( i ) );
         }
         catch( JSONException e )
         {
@@ -107,7 +128,7 @@ public final class JSONManyAssociationState
             @Override
             public boolean hasNext()
             {
-                return idx < references.length();
+                return idx < references().length();
             }
 
             @Override
@@ -115,7 +136,7 @@ public final class JSONManyAssociationState
             {
                 try
                 {
-                    EntityReference ref = new EntityReference( references.getString( idx ) );
+                    EntityReference ref = new EntityReference( references().getString( idx ) );
                     idx++;
                     return ref;
                 }
@@ -136,14 +157,67 @@ public final class JSONManyAssociationState
     @Override
     public String toString()
     {
-        return references.toString();
+        return references().toString();
     }
 
-    private int indexOfReference( Object item )
+    private void cloneStateIfGlobalStateLoaded()
     {
+        if( entityState.isStateNotCloned() )
+        {
+            entityState.cloneStateIfGlobalStateLoaded();
+            entityState.markUpdated();
+        }
+    }
+
+    private JSONArray references()
+    {
+        if( name != null && entityJson != entityState.state() )
+        {
+            // Entity state has been cloned, switch to its references
+            try
+            {
+                entityJson = entityState.state();
+                references = entityState.manyAssociationReferences( name );
+            }
+            catch( JSONException e )
+            {
+                throw new EntityStoreException( e );
+            }
+        }
+        return references;
+    }
+
+    private Set<String> index()
+    {
+        if( name != null )
+        {
+            return entityState.manyAssociationIndex( name, references() );
+        }
+        if( index == null )
+        {
+            index = newIndex( references() );
+        }
+        return index;
+    }
+
+    /**
+     * @return a new hash index of the identities held by the given references
+     */
+    /* package */ static Set<String> newIndex( JSONArray references )
+    {
+        Set<String> index = new HashSet<String>( Math.max( 16, references.length() * 2 ) );
         for( int idx = 0; idx < references.length(); idx++ )
         {
-            if( item.equals( references.opt( idx ) ) )
+            index.add( references.optString( idx ) );
+        }
+        return index;
+    }
+
+    private int indexOfReference( Object item )
+    {
+        for( int idx = 0; idx < references().length(); idx++ )
+        {
+            if( item.equals( references().opt( idx ) ) )
             {
                 return idx;
             }
@@ -154,10 +228,11 @@ public final class JSONManyAssociationState
     private void insertReference( int insert, Object item )
         throws JSONException
     {
-        if( insert < 0 || insert > references.length() )
+        if( insert < 0 || insert > references().length() )
         {
             throw new JSONException( "JSONArray[" + insert + "] is out of bounds." );
         }
+        JSONArray references = references();
         if( insert == references.length() )
         {
             // append
@@ -165,20 +240,12 @@ public final class JSONManyAssociationState
         }
         else
         {
-            // insert (copy/insert/apply)
-            JSONArray output = new JSONArray();
-            for( int idx = 0; idx < references.length(); idx++ )
-            {
-                if( idx == insert )
-                {
-                    output.put( item );
-                }
-                output.put( references.opt( idx ) );
-            }
-            for( int idx = 0; idx < output.length(); idx++ )
+            // insert, shifting the tail by one
+            for( int idx = references.length(); idx > insert; idx-- )
             {
-                references.put( idx, output.opt( idx ) );
+                references.put( idx, references.opt( idx - 1 ) );
             }
+            references.put( insert, item );
         }
     }
-}
\ No newline at end of file
+}
@@ -26,8 +26,14 @@ import java.io.ObjectOutput;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
@@ -48,21 +54,27 @@ import org.qi4j.api.usecase.Usecase;
 import org.qi4j.api.usecase.UsecaseBuilder;
 import org.qi4j.api.util.Classes;
 import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.functional.Function;
 import org.qi4j.io.Input;
 import org.qi4j.io.Output;
 import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.spi.cache.Cache;
 import org.qi4j.spi.cache.CachePool;
+import org.qi4j.spi.cache.Cacheable;
 import org.qi4j.spi.cache.NullCache;
 import org.qi4j.spi.entity.EntityState;
 import org.qi4j.spi.entity.EntityStatus;
 import org.qi4j.spi.entitystore.DefaultEntityStoreUnitOfWork;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStore;
 import org.qi4j.spi.entitystore.EntityStoreException;
 import org.qi4j.spi.entitystore.EntityStoreSPI;
 import org.qi4j.spi.entitystore.EntityStoreUnitOfWork;
+import org.qi4j.spi.entitystore.EntityStoreVersionLookup;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
 import org.qi4j.spi.entitystore.StateCommitter;
+import org.qi4j.spi.entitystore.StatePartitions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,11 +89,18 @@ import static org.qi4j.functional.Iterables.*;
  * <p>MapEntityStore implementations will get their values as JSON.</p>
  */
 public class JSONMapEntityStoreMixin
-    implements EntityStore, EntityStoreSPI, StateStore, JSONMapEntityStoreActivation
+    implements EntityStore, EntityStoreSPI, EntityStoreVersionLookup, PartitionedEntityStore, StateStore,
+               JSONMapEntityStoreActivation
 {
     @This
     private MapEntityStore mapEntityStore;
 
+    @This
+    private BulkMapEntityStore bulkMapEntityStore;
+
+    @This
+    private PartitionedMapEntityStore partitionedMapEntityStore;
+
     @This
     private EntityStoreSPI entityStoreSpi;
 
@@ -105,7 +124,7 @@ public class JSONMapEntityStoreMixin
     private Cache<CacheState> cache;
 
     protected String uuid;
-    private int count;
+    private final AtomicInteger count = new AtomicInteger();
 
     private Logger logger;
 
@@ -178,7 +197,7 @@ public class JSONMapEntityStoreMixin
     }
 
     @Override
-    public synchronized EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity )
+    public EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity )
     {
         EntityState state = fetchCachedState( identity, (DefaultEntityStoreUnitOfWork) unitOfWork );
         if( state != null )
@@ -186,15 +205,54 @@ public class JSONMapEntityStoreMixin
             return state;
         }
         // Get state
-        Reader in = mapEntityStore.get( identity );
-        JSONEntityState loadedState = readEntityState( (DefaultEntityStoreUnitOfWork) unitOfWork, in );
-        if( doCacheOnRead( (DefaultEntityStoreUnitOfWork) unitOfWork ) )
+        DefaultEntityStoreUnitOfWork uow = (DefaultEntityStoreUnitOfWork) unitOfWork;
+        JSONEntityState loadedState = readEntityState( uow, readState( uow.module(), identity ) );
+        // Migrated states are private to this UnitOfWork until written back, only share pristine ones
+        if( loadedState.status() == EntityStatus.LOADED && doCacheOnRead( uow ) )
         {
             cache.put( identity.identity(), new CacheState( loadedState.state() ) );
         }
         return loadedState;
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                             Iterable<EntityReference> identities
+    )
+    {
+        DefaultEntityStoreUnitOfWork uow = (DefaultEntityStoreUnitOfWork) unitOfWork;
+        Map<EntityReference, EntityState> states = new LinkedHashMap<EntityReference, EntityState>();
+        List<EntityReference> missing = new ArrayList<EntityReference>();
+        for( EntityReference identity : identities )
+        {
+            EntityState state = fetchCachedState( identity, uow );
+            if( state == null )
+            {
+                missing.add( identity );
+            }
+            else
+            {
+                states.put( identity, state );
+            }
+        }
+        if( missing.isEmpty() )
+        {
+            return states;
+        }
+        // Get states, missing ones being absent
+        boolean cacheOnRead = doCacheOnRead( uow );
+        for( Map.Entry<EntityReference, JSONObject> in : readStates( uow.module(), missing ).entrySet() )
+        {
+            JSONEntityState loadedState = readEntityState( uow, in.getValue() );
+            if( loadedState.status() == EntityStatus.LOADED && cacheOnRead )
+            {
+                cache.put( in.getKey().identity(), new CacheState( loadedState.state() ) );
+            }
+            states.put( in.getKey(), loadedState );
+        }
+        return states;
+    }
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitOfWork, final Iterable<EntityState> state
     )
@@ -205,59 +263,57 @@ public class JSONMapEntityStoreMixin
             @Override
             public void commit()
             {
-                try
+                DefaultEntityStoreUnitOfWork uow = (DefaultEntityStoreUnitOfWork) unitOfWork;
+                CacheOptions options = uow.usecase().metaInfo( CacheOptions.class );
+                if( options == null )
                 {
-                    mapEntityStore.applyChanges( new MapEntityStore.MapChanges()
-                    {
-                        @Override
-                        public void visitMap( MapEntityStore.MapChanger changer )
-                            throws IOException
-                        {
-                            DefaultEntityStoreUnitOfWork uow = (DefaultEntityStoreUnitOfWork) unitOfWork;
-                            CacheOptions options = uow.usecase().metaInfo( CacheOptions.class );
-                            if( options == null )
-                            {
-                                options = CacheOptions.ALWAYS;
-                            }
+                    options = CacheOptions.ALWAYS;
+                }
 
-                            for( EntityState entityState : state )
-                            {
-                                JSONEntityState state = (JSONEntityState) entityState;
-                                if( state.status().equals( EntityStatus.NEW ) )
-                                {
-                                    Writer writer = changer.newEntity( state.identity(),
-                                                                       state.entityDescriptor() );
-                                    writeEntityState( state, writer, unitOfWork.identity(), unitOfWork.currentTime() );
-                                    writer.close();
-                                    if( options.cacheOnNew() )
-                                    {
-                                        cache.put( state.identity().identity(), new CacheState( state.state() ) );
-                                    }
-                                }
-                                else if( state.status().equals( EntityStatus.UPDATED ) )
-                                {
-                                    Writer writer = changer.updateEntity( state.identity(),
-                                                                          state.entityDescriptor() );
-                                    writeEntityState( state, writer, unitOfWork.identity(), unitOfWork.currentTime() );
-                                    writer.close();
-                                    if( options.cacheOnWrite() )
-                                    {
-                                        cache.put( state.identity().identity(), new CacheState( state.state() ) );
-                                    }
-                                }
-                                else if( state.status().equals( EntityStatus.REMOVED ) )
-                                {
-                                    changer.removeEntity( state.identity(), state.entityDescriptor() );
-                                    cache.remove( state.identity().identity() );
-                                }
-                            }
-                        }
-                    } );
+                List<JSONEntityState> changed = new ArrayList<JSONEntityState>();
+                for( EntityState entityState : state )
+                {
+                    JSONEntityState state = (JSONEntityState) entityState;
+                    if( state.status().equals( EntityStatus.NEW ) || state.status().equals( EntityStatus.UPDATED ) )
+                    {
+                        stampEntityState( state, unitOfWork.identity(), unitOfWork.currentTime() );
+                        changed.add( state );
+                    }
+                    else if( state.status().equals( EntityStatus.REMOVED ) )
+                    {
+                        changed.add( state );
+                    }
+                }
+                try
+                {
+                    writeStates( changed );
                 }
                 catch( IOException e )
                 {
                     throw new EntityStoreException( e );
                 }
+
+                for( JSONEntityState state : changed )
+                {
+                    if( state.status().equals( EntityStatus.NEW ) )
+                    {
+                        if( options.cacheOnNew() )
+                        {
+                            cache.put( state.identity().identity(), new CacheState( state.state() ) );
+                        }
+                    }
+                    else if( state.status().equals( EntityStatus.UPDATED ) )
+                    {
+                        if( options.cacheOnWrite() )
+                        {
+                            cache.put( state.identity().identity(), new CacheState( state.state() ) );
+                        }
+                    }
+                    else
+                    {
+                        cache.remove( state.identity().identity() );
+                    }
+                }
             }
 
             @Override
@@ -269,6 +325,59 @@ public class JSONMapEntityStoreMixin
 
     @Override
     public Input<EntityState, EntityStoreException> entityStates( final Module module )
+    {
+        return entityStates( module, mapEntityStore.entityStates(), parseFunction() );
+    }
+
+    // PartitionedEntityStore
+
+    @Override
+    public StatePartitions<EntityState, EntityStoreException> entityStatePartitions( Module module, int partitions )
+    {
+        final StatePartitions<Reader, IOException> mapPartitions;
+        try
+        {
+            mapPartitions = partitionedMapEntityStore.entityStatePartitions( partitions );
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+        // Each partition reads its states in its own store UnitOfWork as they are transferred concurrently
+        final List<Input<EntityState, EntityStoreException>> statePartitions = new ArrayList<Input<EntityState, EntityStoreException>>();
+        for( Input<Reader, IOException> mapPartition : mapPartitions.partitions() )
+        {
+            statePartitions.add( entityStates( module, mapPartition, parseFunction() ) );
+        }
+        return new StatePartitions<EntityState, EntityStoreException>()
+        {
+            @Override
+            public List<Input<EntityState, EntityStoreException>> partitions()
+            {
+                return statePartitions;
+            }
+
+            @Override
+            public void close()
+            {
+                mapPartitions.close();
+            }
+        };
+    }
+
+    /**
+     * Read stored states as EntityStates, synchronizing back the ones that were migrated.
+     *
+     * @param module  Module used to resolve entity types
+     * @param records Stored states
+     * @param decoder Decoder of stored states
+     * @param <T>     Type of stored states
+     *
+     * @return EntityStates input
+     */
+    protected <T> Input<EntityState, EntityStoreException> entityStates( final Module module,
+                                                                       final Input<T, IOException> records,
+                                                                       final Function<? super T, JSONObject> decoder )
     {
         return new Input<EntityState, EntityStoreException>()
         {
@@ -295,19 +404,19 @@ public class JSONMapEntityStoreMixin
 
                         try
                         {
-                            mapEntityStore.entityStates().transferTo( new Output<Reader, ReceiverThrowableType>()
+                            records.transferTo( new Output<T, ReceiverThrowableType>()
                             {
                                 @Override
-                                public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends Reader, SenderThrowableType> sender )
+                                public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends T, SenderThrowableType> sender )
                                     throws ReceiverThrowableType, SenderThrowableType
                                 {
-                                    sender.sendTo( new Receiver<Reader, ReceiverThrowableType>()
+                                    sender.sendTo( new Receiver<T, ReceiverThrowableType>()
                                     {
                                         @Override
-                                        public void receive( Reader item )
+                                        public void receive( T item )
                                             throws ReceiverThrowableType
                                         {
-                                            final EntityState entity = readEntityState( uow, item );
+                                            final EntityState entity = readEntityState( uow, decoder.map( item ) );
                                             if( entity.status() == EntityStatus.UPDATED )
                                             {
                                                 migrated.add( entity );
@@ -340,26 +449,49 @@ public class JSONMapEntityStoreMixin
         };
     }
 
-    private void synchMigratedEntities( final List<EntityState> migratedEntities )
+    // EntityStoreVersionLookup
+
+    @Override
+    public Map<EntityReference, String> versionsOf( Iterable<EntityReference> references )
     {
-        try
+        Map<EntityReference, String> versions = new HashMap<EntityReference, String>();
+        for( Map.Entry<EntityReference, Reader> in : bulkMapEntityStore.get( references ).entrySet() )
         {
-            mapEntityStore.applyChanges( new MapEntityStore.MapChanges()
+            try
+            {
+                versions.put( in.getKey(), JSONEntityVersions.readVersion( in.getValue() ) );
+            }
+            catch( JSONException e )
+            {
+                throw new EntityStoreException( e );
+            }
+            finally
             {
-                @Override
-                public void visitMap( MapEntityStore.MapChanger changer )
-                    throws IOException
+                try
                 {
-                    for( EntityState migratedEntity : migratedEntities )
-                    {
-                        JSONEntityState state = (JSONEntityState) migratedEntity;
-                        Writer writer = changer.updateEntity( state.identity(),
-                                                              state.entityDescriptor() );
-                        writeEntityState( state, writer, state.version(), state.lastModified() );
-                        writer.close();
-                    }
+                    in.getValue().close();
+                }
+                catch( IOException e )
+                {
+                    // Ignore
                 }
-            } );
+            }
+        }
+        return versions;
+    }
+
+    private void synchMigratedEntities( final List<EntityState> migratedEntities )
+    {
+        try
+        {
+            List<JSONEntityState> states = new ArrayList<JSONEntityState>();
+            for( EntityState migratedEntity : migratedEntities )
+            {
+                JSONEntityState state = (JSONEntityState) migratedEntity;
+                stampEntityState( state, state.version(), state.lastModified() );
+                states.add( state );
+            }
+            writeStates( states );
             migratedEntities.clear();
         }
         catch( IOException e )
@@ -370,32 +502,144 @@ public class JSONMapEntityStoreMixin
 
     protected String newUnitOfWorkId()
     {
-        return uuid + Integer.toHexString( count++ );
+        return uuid + Integer.toHexString( count.getAndIncrement() );
     }
 
-    protected void writeEntityState( JSONEntityState state, Writer writer, String identity, long lastModified )
+    private void stampEntityState( JSONEntityState state, String version, long lastModified )
         throws EntityStoreException
     {
         try
         {
             JSONObject jsonState = state.state();
-            jsonState.put( "version", identity );
+            jsonState.put( "version", version );
             jsonState.put( "modified", lastModified );
-            writer.append( jsonState.toString() );
         }
-        catch( Exception e )
+        catch( JSONException e )
         {
             throw new EntityStoreException( "Could not store EntityState", e );
         }
     }
 
+    /**
+     * Read the stored state of an entity.
+     *
+     * @param module    Module used to resolve entity types, null if not known
+     * @param reference Entity reference
+     *
+     * @return the stored state
+     *
+     * @throws EntityNotFoundException if the entity is not in the store
+     */
+    protected JSONObject readState( Module module, EntityReference reference )
+        throws EntityStoreException
+    {
+        return parseState( mapEntityStore.get( reference ) );
+    }
+
+    /**
+     * Read the stored state of many entities.
+     *
+     * @param module     Module used to resolve entity types
+     * @param references Entity references
+     *
+     * @return Stored states by reference, entities not found are absent from the map
+     */
+    protected Map<EntityReference, JSONObject> readStates( Module module, List<EntityReference> references )
+        throws EntityStoreException
+    {
+        Map<EntityReference, JSONObject> states = new LinkedHashMap<EntityReference, JSONObject>();
+        for( Map.Entry<EntityReference, Reader> in : bulkMapEntityStore.get( references ).entrySet() )
+        {
+            states.put( in.getKey(), parseState( in.getValue() ) );
+        }
+        return states;
+    }
+
+    /**
+     * Store new, updated and removed states, the JSON of new and updated ones holding their new version.
+     *
+     * @param states Changed states
+     */
+    protected void writeStates( final Iterable<JSONEntityState> states )
+        throws IOException
+    {
+        mapEntityStore.applyChanges( new MapEntityStore.MapChanges()
+        {
+            @Override
+            public void visitMap( MapEntityStore.MapChanger changer )
+                throws IOException
+            {
+                for( JSONEntityState state : states )
+                {
+                    Writer writer;
+                    if( state.status().equals( EntityStatus.NEW ) )
+                    {
+                        writer = changer.newEntity( state.identity(), state.entityDescriptor() );
+                    }
+                    else if( state.status().equals( EntityStatus.UPDATED ) )
+                    {
+                        writer = changer.updateEntity( state.identity(), state.entityDescriptor() );
+                    }
+                    else
+                    {
+                        changer.removeEntity( state.identity(), state.entityDescriptor() );
+                        continue;
+                    }
+                    writer.append( state.state().toString() );
+                    writer.close();
+                }
+            }
+        } );
+    }
+
+    private Function<Reader, JSONObject> parseFunction()
+    {
+        return new Function<Reader, JSONObject>()
+        {
+            @Override
+            public JSONObject map( Reader reader )
+            {
+                return parseState( reader );
+            }
+        };
+    }
+
+    private static JSONObject parseState( Reader reader )
+        throws EntityStoreException
+    {
+        try
+        {
+            return new JSONObject( new JSONTokener( reader ) );
+        }
+        catch( JSONException e )
+        {
+            throw new EntityStoreException( e );
+        }
+        finally
+        {
+            try
+            {
+                reader.close();
+            }
+            catch( IOException e )
+            {
+                // Ignore
+            }
+        }
+    }
+
     protected JSONEntityState readEntityState( DefaultEntityStoreUnitOfWork unitOfWork, Reader entityState )
         throws EntityStoreException
+    {
+        return readEntityState( unitOfWork, parseState( entityState ) );
+    }
+
+    protected JSONEntityState readEntityState( DefaultEntityStoreUnitOfWork unitOfWork, JSONObject jsonObject )
+        throws EntityStoreException
     {
         try
         {
             Module module = unitOfWork.module();
-            JSONObject jsonObject = new JSONObject( new JSONTokener( entityState ) );
             EntityStatus status = EntityStatus.LOADED;
 
             String version = jsonObject.getString( "version" );
@@ -453,18 +697,18 @@ public class JSONMapEntityStoreMixin
     public JSONObject jsonStateOf( String id )
         throws IOException
     {
-        Reader reader = mapEntityStore.get( EntityReference.parseEntityReference( id ) );
-        JSONObject jsonObject;
         try
         {
-            jsonObject = new JSONObject( new JSONTokener( reader ) );
+            return readState( null, EntityReference.parseEntityReference( id ) );
         }
-        catch( JSONException e )
+        catch( EntityNotFoundException e )
+        {
+            throw e;
+        }
+        catch( EntityStoreException e )
         {
             throw new IOException( e );
         }
-        reader.close();
-        return jsonObject;
     }
 
     private EntityState fetchCachedState( EntityReference identity, DefaultEntityStoreUnitOfWork unitOfWork )
@@ -475,9 +719,21 @@ public class JSONMapEntityStoreMixin
             JSONObject data = cacheState.json;
             try
             {
-                String type = data.getString( "type" );
+                String type = data.getString( JSONEntityState.JSON_KEY_TYPE );
                 EntityDescriptor entityDescriptor = unitOfWork.module().entityDescriptor( type );
-                return new JSONEntityState( unitOfWork, valueSerialization, identity, entityDescriptor, data );
+                if( entityDescriptor == null )
+                {
+                    throw new EntityTypeNotFoundException( type );
+                }
+                // Cached JSON is shared between concurrent UnitOfWorks, JSONEntityState clones it before any change
+                return new JSONEntityState( unitOfWork,
+                                            valueSerialization,
+                                            data.getString( JSONEntityState.JSON_KEY_VERSION ),
+                                            data.getLong( JSONEntityState.JSON_KEY_MODIFIED ),
+                                            identity,
+                                            EntityStatus.LOADED,
+                                            entityDescriptor,
+                                            data );
             }
             catch( JSONException e )
             {
@@ -495,7 +751,7 @@ public class JSONMapEntityStoreMixin
     }
 
     private static class CacheState
-        implements Externalizable
+        implements Externalizable, Cacheable
     {
         public JSONObject json;
 
@@ -508,6 +764,50 @@ public class JSONMapEntityStoreMixin
             json = state;
         }
 
+        @Override
+        public int cacheWeight()
+        {
+            return weightOf( json );
+        }
+
+        @Override
+        public String cacheCategory()
+        {
+            return json.optString( JSONEntityState.JSON_KEY_TYPE, null );
+        }
+
+        // Approximate serialized size, without serializing
+        private static int weightOf( Object value )
+        {
+            if( value instanceof JSONObject )
+            {
+                JSONObject object = (JSONObject) value;
+                int weight = 2;
+                Iterator<?> keys = object.keys();
+                while( keys.hasNext() )
+                {
+                    String key = (String) keys.next();
+                    weight += key.length() + 4 + weightOf( object.opt( key ) );
+                }
+                return weight;
+            }
+            else if( value instanceof JSONArray )
+            {
+                JSONArray array = (JSONArray) value;
+                int weight = 2;
+                for( int idx = 0; idx < array.length(); idx++ )
+                {
+                    weight += 1 + weightOf( array.opt( idx ) );
+                }
+                return weight;
+            }
+            else if( value instanceof String )
+            {
+                return ( (String) value ).length() + 2;
+            }
+            return 8;
+        }
+
         @Override
         public void writeExternal( ObjectOutput out )
             throws IOException
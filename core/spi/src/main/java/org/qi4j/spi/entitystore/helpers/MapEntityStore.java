@@ -69,6 +69,11 @@ public interface MapEntityStore
     }
 
     /**
+     * Read the state of an Entity.
+     * <p>
+     * Neither {@link MapEntityStoreMixin} nor {@link JSONMapEntityStoreMixin} serialize calls to this method,
+     * implementations must support concurrent reads, also while changes are being applied.
+     * </p>
      * @return Entity state Reader
      */
     Reader get( EntityReference entityReference )
@@ -5,9 +5,11 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -65,6 +67,9 @@ public class MapEntityStoreMixin
     @This
     private MapEntityStore mapEntityStore;
 
+    @This
+    private BulkMapEntityStore bulkMapEntityStore;
+
     @This
     private EntityStoreSPI entityStoreSpi;
 
@@ -83,7 +88,7 @@ public class MapEntityStoreMixin
     private ServiceDescriptor descriptor;
 
     protected String uuid;
-    private int count;
+    private final AtomicInteger count = new AtomicInteger();
 
     private Logger logger;
 
@@ -116,13 +121,27 @@ public class MapEntityStoreMixin
     }
 
     @Override
-    public synchronized EntityState entityStateOf( EntityStoreUnitOfWork unitofwork, EntityReference identity )
+    public EntityState entityStateOf( EntityStoreUnitOfWork unitofwork, EntityReference identity )
     {
         DefaultEntityStoreUnitOfWork unitOfWork = (DefaultEntityStoreUnitOfWork) unitofwork;
         Reader in = mapEntityStore.get( identity );
         return readEntityState( unitOfWork, in );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitofwork,
+                                                             Iterable<EntityReference> identities
+    )
+    {
+        DefaultEntityStoreUnitOfWork unitOfWork = (DefaultEntityStoreUnitOfWork) unitofwork;
+        Map<EntityReference, EntityState> states = new LinkedHashMap<EntityReference, EntityState>();
+        for( Map.Entry<EntityReference, Reader> in : bulkMapEntityStore.get( identities ).entrySet() )
+        {
+            states.put( in.getKey(), readEntityState( unitOfWork, in.getValue() ) );
+        }
+        return states;
+    }
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitofwork, final Iterable<EntityState> state
     )
@@ -282,7 +301,7 @@ public class MapEntityStoreMixin
 
     protected String newUnitOfWorkId()
     {
-        return uuid + Integer.toHexString( count++ );
+        return uuid + Integer.toHexString( count.getAndIncrement() );
     }
 
     protected void writeEntityState( DefaultEntityState state, Writer writer, String version, long lastModified )
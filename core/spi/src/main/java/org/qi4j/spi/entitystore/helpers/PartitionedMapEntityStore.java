@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.io.Input;
+import org.qi4j.spi.entitystore.StatePartitions;
+
+/**
+ * Partitioned scan of a MapEntityStore.
+ * <p>
+ * Used by {@link JSONMapEntityStoreMixin} to implement {@link org.qi4j.spi.entitystore.PartitionedEntityStore}.
+ * MapEntityStore implementations able to split their content in ranges implement this interface alongside
+ * {@link MapEntityStore}, others get the {@link SinglePartitionMixin} that returns
+ * {@link MapEntityStore#entityStates()} as a single partition.
+ * </p>
+ */
+@Mixins( PartitionedMapEntityStore.SinglePartitionMixin.class )
+public interface PartitionedMapEntityStore
+{
+    /**
+     * @param partitions Wanted number of partitions, implementations may return fewer
+     *
+     * @return Entity state Readers partitions, to be closed once transferred
+     */
+    StatePartitions<Reader, IOException> entityStatePartitions( int partitions )
+        throws IOException;
+
+    /**
+     * Whole MapEntityStore content as a single partition.
+     */
+    class SinglePartitionMixin
+        implements PartitionedMapEntityStore
+    {
+        @This
+        private MapEntityStore mapEntityStore;
+
+        @Override
+        public StatePartitions<Reader, IOException> entityStatePartitions( int partitions )
+        {
+            final List<Input<Reader, IOException>> single = Collections.singletonList( mapEntityStore.entityStates() );
+            return new StatePartitions<Reader, IOException>()
+            {
+                @Override
+                public List<Input<Reader, IOException>> partitions()
+                {
+                    return single;
+                }
+
+                @Override
+                public void close()
+                {
+                }
+            };
+        }
+    }
+}
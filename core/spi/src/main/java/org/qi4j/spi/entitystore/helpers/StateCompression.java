@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Compression of entity states stored through a {@link BinaryMapEntityStore}.
+ * <p>
+ * Set as MetaInfo of an EntityStore service based on {@link BinaryMapEntityStoreMixin} to compress states with
+ * Deflate, optionally primed with a dictionary of content shared by most states:
+ * </p>
+ * <pre>
+ * module.services( BinaryMemoryEntityStoreService.class )
+ *       .setMetaInfo( StateCompression.deflate().withDictionary( dictionary ) );
+ * </pre>
+ * <p>
+ * A dictionary can be trained from a sample of existing states with {@link #trainDictionary(Iterable, int)}.
+ * It must be kept as long as states compressed with it are stored.
+ * </p>
+ */
+public final class StateCompression
+{
+    private static final int GRAM_LENGTH = 8;
+    private static final int SEGMENT_LENGTH = 32;
+
+    private final int level;
+    private final int minimumSize;
+    private final byte[] dictionary;
+
+    public static StateCompression deflate()
+    {
+        return new StateCompression( Deflater.DEFAULT_COMPRESSION, 64, null );
+    }
+
+    private StateCompression( int level, int minimumSize, byte[] dictionary )
+    {
+        this.level = level;
+        this.minimumSize = minimumSize;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param level Deflate level, from 1 (fastest) to 9 (smallest)
+     *
+     * @return a copy of this StateCompression with the given level
+     */
+    public StateCompression withLevel( int level )
+    {
+        if( level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION )
+        {
+            throw new IllegalArgumentException( "Deflate level must be between 1 and 9, was " + level );
+        }
+        return new StateCompression( level, minimumSize, dictionary );
+    }
+
+    /**
+     * @param minimumSize Size in bytes under which states are stored uncompressed
+     *
+     * @return a copy of this StateCompression with the given minimum size
+     */
+    public StateCompression withMinimumSize( int minimumSize )
+    {
+        return new StateCompression( level, Math.max( 0, minimumSize ), dictionary );
+    }
+
+    /**
+     * @param dictionary Preset dictionary, most frequent content last, null or empty for none
+     *
+     * @return a copy of this StateCompression with the given dictionary
+     */
+    public StateCompression withDictionary( byte[] dictionary )
+    {
+        return new StateCompression( level, minimumSize,
+                                     dictionary == null || dictionary.length == 0 ? null : dictionary.clone() );
+    }
+
+    public int level()
+    {
+        return level;
+    }
+
+    public int minimumSize()
+    {
+        return minimumSize;
+    }
+
+    public byte[] dictionary()
+    {
+        return dictionary == null ? null : dictionary.clone();
+    }
+
+    /**
+     * Build a dictionary out of sample states.
+     * <p>
+     * Sample states are cut in segments, and the segments whose content appears in the most samples are kept,
+     * most frequent last as Deflate finds closer matches at a lower cost.
+     * </p>
+     *
+     * @param samples States, as stored
+     * @param size    Maximum dictionary size in bytes, Deflate only uses the last 32KB
+     *
+     * @return the dictionary
+     */
+    public static byte[] trainDictionary( Iterable<byte[]> samples, int size )
+    {
+        // In how many samples does each gram appear
+        Map<Gram, Integer> frequencies = new HashMap<Gram, Integer>();
+        for( byte[] sample : samples )
+        {
+            Set<Gram> grams = new HashSet<Gram>();
+            for( int offset = 0; offset + GRAM_LENGTH <= sample.length; offset++ )
+            {
+                grams.add( new Gram( sample, offset, GRAM_LENGTH ) );
+            }
+            for( Gram gram : grams )
+            {
+                Integer frequency = frequencies.get( gram );
+                frequencies.put( gram, frequency == null ? 1 : frequency + 1 );
+            }
+        }
+
+        // Score segments by the frequency of their grams
+        List<Segment> segments = new ArrayList<Segment>();
+        Set<Gram> seen = new HashSet<Gram>();
+        for( byte[] sample : samples )
+        {
+            for( int offset = 0; offset < sample.length; offset += SEGMENT_LENGTH )
+            {
+                int length = Math.min( SEGMENT_LENGTH, sample.length - offset );
+                Gram content = new Gram( sample, offset, length );
+                if( length < GRAM_LENGTH || !seen.add( content ) )
+                {
+                    continue;
+                }
+                long score = 0;
+                for( int gram = offset; gram + GRAM_LENGTH <= offset + length; gram++ )
+                {
+                    Integer frequency = frequencies.get( new Gram( sample, gram, GRAM_LENGTH ) );
+                    if( frequency > 1 )
+                    {
+                        score += frequency;
+                    }
+                }
+                if( score > 0 )
+                {
+                    segments.add( new Segment( content, score ) );
+                }
+            }
+        }
+        Collections.sort( segments, new Comparator<Segment>()
+        {
+            @Override
+            public int compare( Segment first, Segment second )
+            {
+                return first.score > second.score ? -1 : ( first.score == second.score ? 0 : 1 );
+            }
+        } );
+
+        // Fill from the end, best segments last
+        byte[] dictionary = new byte[ size ];
+        int start = size;
+        for( Segment segment : segments )
+        {
+            if( start < segment.content.length )
+            {
+                break;
+            }
+            start -= segment.content.length;
+            System.arraycopy( segment.content.bytes, segment.content.offset, dictionary, start, segment.content.length );
+        }
+        byte[] trained = new byte[ size - start ];
+        System.arraycopy( dictionary, start, trained, 0, trained.length );
+        return trained;
+    }
+
+    private static final class Gram
+    {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        private Gram( byte[] bytes, int offset, int length )
+        {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for( int idx = offset; idx < offset + length; idx++ )
+            {
+                h = 31 * h + bytes[ idx ];
+            }
+            hash = h;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( !( o instanceof Gram ) )
+            {
+                return false;
+            }
+            Gram other = (Gram) o;
+            if( hash != other.hash || length != other.length )
+            {
+                return false;
+            }
+            for( int idx = 0; idx < length; idx++ )
+            {
+                if( bytes[ offset + idx ] != other.bytes[ other.offset + idx ] )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final Gram content;
+        private final long score;
+
+        private Segment( Gram content, long score )
+        {
+            this.content = content;
+            this.score = score;
+        }
+    }
+}
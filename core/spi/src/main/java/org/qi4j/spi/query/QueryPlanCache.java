@@ -0,0 +1,408 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.query;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.query.grammar.AssociationFunction;
+import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
+import org.qi4j.api.query.grammar.AssociationNullSpecification;
+import org.qi4j.api.query.grammar.BinarySpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.ContainsAllSpecification;
+import org.qi4j.api.query.grammar.ContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationFunction;
+import org.qi4j.api.query.grammar.MatchesSpecification;
+import org.qi4j.api.query.grammar.NotSpecification;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.query.grammar.PropertyNotNullSpecification;
+import org.qi4j.api.query.grammar.PropertyNullSpecification;
+import org.qi4j.api.query.grammar.QuerySpecification;
+import org.qi4j.api.query.grammar.Variable;
+import org.qi4j.functional.Specification;
+
+/**
+ * Bounded cache of query plans, for {@link EntityFinder} implementations translating queries to another language.
+ * <p>
+ * Plans are keyed on the shape of the query, see {@link #shapeOf(Class, Specification, OrderBy[], Integer, Integer)}:
+ * executions of a query differing only by the values bound to its {@link Variable}s share the same plan. Least
+ * recently used plans are evicted once the cache is full. Hits and misses are counted, and can be registered as
+ * gauges with {@link #registerMetrics(MetricsProvider, Class)}.
+ * </p>
+ *
+ * @param <T> Type of the plans
+ */
+public final class QueryPlanCache<T>
+{
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final Map<String, T> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QueryPlanCache()
+    {
+        this( DEFAULT_MAX_SIZE );
+    }
+
+    public QueryPlanCache( final int maxSize )
+    {
+        plans = new LinkedHashMap<String, T>( 16, 0.75F, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, T> eldest )
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param shape Query shape
+     *
+     * @return the plan of the given shape, or null if not cached
+     */
+    public T get( String shape )
+    {
+        T plan;
+        synchronized( plans )
+        {
+            plan = plans.get( shape );
+        }
+        if( plan == null )
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        return plan;
+    }
+
+    public void put( String shape, T plan )
+    {
+        synchronized( plans )
+        {
+            plans.put( shape, plan );
+        }
+    }
+
+    public int size()
+    {
+        synchronized( plans )
+        {
+            return plans.size();
+        }
+    }
+
+    public long hits()
+    {
+        return hits.get();
+    }
+
+    public long misses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return Hits divided by lookups, 0 if none
+     */
+    public double hitRate()
+    {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0D : (double) hitCount / lookups;
+    }
+
+    /**
+     * Register "Query Plan Cache Hit Rate" and "Query Plan Cache Size" gauges.
+     *
+     * @param metrics MetricsProvider
+     * @param origin  Origin of the gauges
+     *
+     * @throws MetricsNotSupportedException if the MetricsProvider does not support gauges
+     */
+    public void registerMetrics( MetricsProvider metrics, Class<?> origin )
+        throws MetricsNotSupportedException
+    {
+        MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+        gauges.registerGauge( origin, "Query Plan Cache Hit Rate", new MetricsGauge<Double>()
+        {
+            @Override
+            public Double value()
+            {
+                return hitRate();
+            }
+        } );
+        gauges.registerGauge( origin, "Query Plan Cache Size", new MetricsGauge<Integer>()
+        {
+            @Override
+            public Integer value()
+            {
+                return size();
+            }
+        } );
+    }
+
+    /**
+     * Shape of a query, usable as a cache key.
+     * <p>
+     * Two queries have the same shape if they have the same result type, paging, ordering and where clause
+     * structure, with the same constants. {@link Variable}s are identified by name, their values are not part
+     * of the shape. Properties and associations are identified by their declaring type and name.
+     * </p>
+     *
+     * @return the shape of the query
+     */
+    public static String shapeOf( Class<?> resultType,
+                                  Specification<Composite> whereClause,
+                                  OrderBy[] orderBySegments,
+                                  Integer firstResult,
+                                  Integer maxResults
+    )
+    {
+        StringBuilder shape = new StringBuilder( 256 );
+        shape.append( resultType.getName() ).append( '|' );
+        appendSpecification( whereClause, shape, null );
+        shape.append( '|' );
+        if( orderBySegments != null )
+        {
+            for( OrderBy orderBy : orderBySegments )
+            {
+                appendProperty( orderBy.property(), shape );
+                shape.append( ' ' ).append( orderBy.order() ).append( ',' );
+            }
+        }
+        shape.append( '|' ).append( firstResult ).append( '|' ).append( maxResults );
+        return shape.toString();
+    }
+
+    /**
+     * @return Names of the {@link Variable}s of a where clause
+     */
+    public static Set<String> variableNamesOf( Specification<Composite> whereClause )
+    {
+        Set<String> variables = new LinkedHashSet<String>();
+        appendSpecification( whereClause, new StringBuilder(), variables );
+        return variables;
+    }
+
+    /**
+     * @return Names of the {@link Variable}s of a where clause, once per occurrence, in where clause order
+     */
+    public static List<String> variableOccurrencesOf( Specification<Composite> whereClause )
+    {
+        List<String> variables = new ArrayList<String>();
+        appendSpecification( whereClause, new StringBuilder(), variables );
+        return variables;
+    }
+
+    private static void appendSpecification( Specification<Composite> specification,
+                                             StringBuilder shape,
+                                             Collection<String> variables
+    )
+    {
+        if( specification == null )
+        {
+            shape.append( '*' );
+            return;
+        }
+        shape.append( specification.getClass().getSimpleName() ).append( '(' );
+        if( specification instanceof BinarySpecification )
+        {
+            for( Specification<Composite> operand : ( (BinarySpecification) specification ).operands() )
+            {
+                appendSpecification( operand, shape, variables );
+                shape.append( ',' );
+            }
+        }
+        else if( specification instanceof NotSpecification )
+        {
+            appendSpecification( ( (NotSpecification) specification ).operand(), shape, variables );
+        }
+        else if( specification instanceof ComparisonSpecification )
+        {
+            ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) specification;
+            appendProperty( comparison.property(), shape );
+            shape.append( ',' );
+            appendValue( comparison.value(), shape, variables );
+        }
+        else if( specification instanceof ContainsAllSpecification )
+        {
+            ContainsAllSpecification<?> containsAll = (ContainsAllSpecification<?>) specification;
+            appendProperty( containsAll.collectionProperty(), shape );
+            for( Object value : containsAll.containedValues() )
+            {
+                shape.append( ',' );
+                appendValue( value, shape, variables );
+            }
+        }
+        else if( specification instanceof ContainsSpecification )
+        {
+            ContainsSpecification<?> contains = (ContainsSpecification<?>) specification;
+            appendProperty( contains.collectionProperty(), shape );
+            shape.append( ',' );
+            appendValue( contains.value(), shape, variables );
+        }
+        else if( specification instanceof MatchesSpecification )
+        {
+            MatchesSpecification matches = (MatchesSpecification) specification;
+            appendProperty( matches.property(), shape );
+            shape.append( ',' );
+            appendValue( matches.value(), shape, variables );
+        }
+        else if( specification instanceof PropertyNullSpecification )
+        {
+            appendProperty( ( (PropertyNullSpecification<?>) specification ).property(), shape );
+        }
+        else if( specification instanceof PropertyNotNullSpecification )
+        {
+            appendProperty( ( (PropertyNotNullSpecification<?>) specification ).property(), shape );
+        }
+        else if( specification instanceof AssociationNullSpecification )
+        {
+            appendAssociation( ( (AssociationNullSpecification<?>) specification ).association(), shape );
+        }
+        else if( specification instanceof AssociationNotNullSpecification )
+        {
+            appendAssociation( ( (AssociationNotNullSpecification<?>) specification ).association(), shape );
+        }
+        else if( specification instanceof ManyAssociationContainsSpecification )
+        {
+            ManyAssociationContainsSpecification<?> contains = (ManyAssociationContainsSpecification<?>) specification;
+            appendManyAssociation( contains.manyAssociation(), shape );
+            shape.append( ',' );
+            appendValue( contains.value(), shape, variables );
+        }
+        else if( specification instanceof QuerySpecification )
+        {
+            QuerySpecification query = (QuerySpecification) specification;
+            shape.append( query.language() ).append( ',' ).append( query.query() );
+        }
+        else
+        {
+            // Unknown specification, never shared
+            shape.append( specification.getClass().getName() ).append( '@' )
+                .append( System.identityHashCode( specification ) );
+        }
+        shape.append( ')' );
+    }
+
+    private static void appendProperty( PropertyFunction<?> property, StringBuilder shape )
+    {
+        if( property.traversedProperty() != null )
+        {
+            appendProperty( property.traversedProperty(), shape );
+            shape.append( '.' );
+        }
+        else if( property.traversedAssociation() != null )
+        {
+            appendAssociation( property.traversedAssociation(), shape );
+            shape.append( '.' );
+        }
+        else if( property.traversedManyAssociation() != null )
+        {
+            appendManyAssociation( property.traversedManyAssociation(), shape );
+            shape.append( '.' );
+        }
+        appendAccessor( property.accessor(), shape );
+    }
+
+    private static void appendAssociation( AssociationFunction<?> association, StringBuilder shape )
+    {
+        if( association.traversedAssociation() != null )
+        {
+            appendAssociation( association.traversedAssociation(), shape );
+            shape.append( '.' );
+        }
+        else if( association.traversedManyAssociation() != null )
+        {
+            appendManyAssociation( association.traversedManyAssociation(), shape );
+            shape.append( '.' );
+        }
+        appendAccessor( association.accessor(), shape );
+    }
+
+    private static void appendManyAssociation( ManyAssociationFunction<?> manyAssociation, StringBuilder shape )
+    {
+        if( manyAssociation.traversedAssociation() != null )
+        {
+            appendAssociation( manyAssociation.traversedAssociation(), shape );
+            shape.append( '.' );
+        }
+        else if( manyAssociation.traversedManyAssociation() != null )
+        {
+            appendManyAssociation( manyAssociation.traversedManyAssociation(), shape );
+            shape.append( '.' );
+        }
+        appendAccessor( manyAssociation.accessor(), shape );
+    }
+
+    private static void appendAccessor( AccessibleObject accessor, StringBuilder shape )
+    {
+        Member member = (Member) accessor;
+        shape.append( member.getDeclaringClass().getName() ).append( '#' ).append( member.getName() );
+    }
+
+    private static void appendValue( Object value, StringBuilder shape, Collection<String> variables )
+    {
+        if( value instanceof Variable )
+        {
+            String name = ( (Variable) value ).variableName();
+            shape.append( '?' ).append( name );
+            if( variables != null )
+            {
+                variables.add( name );
+            }
+        }
+        else if( value == null )
+        {
+            shape.append( "null" );
+        }
+        else if( value instanceof Date )
+        {
+            // Date.toString() has no milliseconds
+            shape.append( "Date:" ).append( ( (Date) value ).getTime() );
+        }
+        else if( value instanceof Collection )
+        {
+            shape.append( value.getClass().getName() ).append( '[' );
+            for( Object item : (Collection<?>) value )
+            {
+                appendValue( item, shape, variables );
+                shape.append( ',' );
+            }
+            shape.append( ']' );
+        }
+        else
+        {
+            shape.append( value.getClass().getName() ).append( ':' ).append( value );
+        }
+    }
+}
@@ -423,6 +423,37 @@ public abstract class ValueDeserializerAdapter<InputType, InputNodeType>
         }
     }
 
+    /**
+     * Deserialize a value from an already parsed tree node.
+     *
+     * <p>
+     *     Use this when holding a node of the underlying tree-parser, it skips the serialize/parse round trip of
+     *     the {@link String} and {@link InputStream} based methods.
+     * </p>
+     *
+     * @param <T> Parametrized deserialized type
+     * @param valueType ValueType of the deserialized value
+     * @param inputNode Tree-parser node
+     * @return The deserialized value, or null if the node represents null
+     * @throws ValueSerializationException if the node could not be deserialized
+     */
+    public final <T> T deserializeNode( ValueType valueType, InputNodeType inputNode )
+        throws ValueSerializationException
+    {
+        try
+        {
+            return doDeserializeInputNodeValue( valueType, inputNode );
+        }
+        catch( ValueSerializationException ex )
+        {
+            throw ex;
+        }
+        catch( Exception ex )
+        {
+            throw new ValueSerializationException( "Could not deserialize value", ex );
+        }
+    }
+
     @SuppressWarnings( "unchecked" )
     private <T> T deserializeRoot( ValueType valueType, InputStream input )
         throws Exception
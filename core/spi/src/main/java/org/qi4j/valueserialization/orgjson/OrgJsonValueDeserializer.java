@@ -39,6 +39,7 @@ import org.qi4j.spi.value.ValueDeserializerAdapter;
  */
 public class OrgJsonValueDeserializer
     extends ValueDeserializerAdapter<JSONTokener, Object>
+    implements OrgJsonValueNodeDeserializer
 {
 
     public OrgJsonValueDeserializer(
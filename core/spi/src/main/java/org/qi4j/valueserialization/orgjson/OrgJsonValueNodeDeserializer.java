@@ -0,0 +1,18 @@
+package org.qi4j.valueserialization.orgjson;
+
+import org.qi4j.api.type.ValueType;
+import org.qi4j.api.value.ValueSerializationException;
+
+/**
+ * Deserialize Values from already parsed org.json nodes.
+ *
+ * <p>
+ *     Nodes are the values found in {@link org.json.JSONObject} and {@link org.json.JSONArray} instances:
+ *     JSONObject, JSONArray, JSONObject.NULL, String, Boolean or Number.
+ * </p>
+ */
+public interface OrgJsonValueNodeDeserializer
+{
+    <T> T deserializeNode( ValueType valueType, Object node )
+        throws ValueSerializationException;
+}
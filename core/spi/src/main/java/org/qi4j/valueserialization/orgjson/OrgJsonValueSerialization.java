@@ -37,7 +37,7 @@ import org.qi4j.functional.Function2;
  * </p>
  */
 public class OrgJsonValueSerialization
-    implements ValueSerialization
+    implements ValueSerialization, OrgJsonValueNodeDeserializer
 {
 
     private final OrgJsonValueSerializer serializer;
@@ -141,4 +141,11 @@ public class OrgJsonValueSerialization
     {
         return deserializer.deserialize( type, input );
     }
+
+    @Override
+    public <T> T deserializeNode( ValueType valueType, Object node )
+        throws ValueSerializationException
+    {
+        return deserializer.deserializeNode( valueType, node );
+    }
 }
@@ -23,6 +23,6 @@ import org.qi4j.api.value.ValueSerialization;
  */
 @Mixins( { OrgJsonValueSerializer.class, OrgJsonValueDeserializer.class } )
 public interface OrgJsonValueSerializationService
-    extends ValueSerialization
+    extends ValueSerialization, OrgJsonValueNodeDeserializer
 {
 }
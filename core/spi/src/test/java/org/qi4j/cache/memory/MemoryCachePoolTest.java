@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.cache.memory;
+
+import org.junit.Test;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CachePool;
+import org.qi4j.spi.cache.Cacheable;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MemoryCachePoolTest
+    extends AbstractQi4jTest
+{
+    private CachePool caching;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.services( MemoryCachePoolService.class ).setMetaInfo( MemoryCachePolicy.maxWeight( 10000 )
+                                                                         .withoutCaching( "Uncached" )
+                                                                         .withTimeToLive( "Expiring", 1 ) );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        caching = module.findService( CachePool.class ).get();
+    }
+
+    @Test
+    public void givenCacheWithAValueWhenRequestingThatValueExpectItBack()
+    {
+        Cache<String> cache = caching.fetchCache( "1", String.class );
+        cache.put( "Habba", "Zout" );
+        assertThat( cache.get( "Habba" ), equalTo( "Zout" ) );
+        cache.put( "Habba", "Zout2" );
+        assertThat( cache.get( "Habba" ), equalTo( "Zout2" ) );
+        assertThat( cache.remove( "Habba" ), equalTo( "Zout2" ) );
+        assertThat( cache.exists( "Habba" ), equalTo( false ) );
+        caching.returnCache( cache );
+    }
+
+    @Test
+    public void givenCacheWithValueWhenReturnedAndFetchedAgainExpectItToBeGone()
+    {
+        Cache<String> cache = caching.fetchCache( "2", String.class );
+        cache.put( "Habba", "Zout" );
+        caching.returnCache( cache );
+        cache = caching.fetchCache( "2", String.class );
+        assertThat( cache.get( "Habba" ), nullValue() );
+        caching.returnCache( cache );
+    }
+
+    @Test
+    public void givenManyValuesWhenExceedingMaxWeightExpectFrequentlyUsedValuesKept()
+    {
+        Cache<Value> cache = caching.fetchCache( "3", Value.class );
+        cache.put( "hot", new Value( "Hot", 100 ) );
+        for( int i = 0; i < 5; i++ )
+        {
+            cache.get( "hot" );
+        }
+        // A scan of values seen once, ten times the maximum weight
+        for( int i = 0; i < 1000; i++ )
+        {
+            cache.put( "cold-" + i, new Value( "Cold", 100 ) );
+        }
+
+        int cached = 0;
+        for( int i = 0; i < 1000; i++ )
+        {
+            if( cache.exists( "cold-" + i ) )
+            {
+                cached++;
+            }
+        }
+        assertThat( cached <= 100, equalTo( true ) );
+        assertThat( cache.get( "hot" ).category, equalTo( "Hot" ) );
+        caching.returnCache( cache );
+    }
+
+    @Test
+    public void givenCategoryPoliciesWhenPuttingValuesExpectPoliciesApplied()
+        throws InterruptedException
+    {
+        Cache<Value> cache = caching.fetchCache( "4", Value.class );
+        cache.put( "uncached", new Value( "Uncached", 10 ) );
+        cache.put( "expiring", new Value( "Expiring", 10 ) );
+        cache.put( "other", new Value( "Other", 10 ) );
+        Thread.sleep( 10 );
+
+        assertThat( cache.get( "uncached" ), nullValue() );
+        assertThat( cache.get( "expiring" ), nullValue() );
+        assertThat( cache.get( "other" ).category, equalTo( "Other" ) );
+        caching.returnCache( cache );
+    }
+
+    public static class Value
+        implements Cacheable
+    {
+        private final String category;
+        private final int weight;
+
+        public Value( String category, int weight )
+        {
+            this.category = category;
+            this.weight = weight;
+        }
+
+        @Override
+        public int cacheWeight()
+        {
+            return weight;
+        }
+
+        @Override
+        public String cacheCategory()
+        {
+            return category;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.activation.Activation;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class AsyncStateChangeNotificationTest
+    extends AbstractQi4jTest
+{
+    private static final List<List<String>> BATCHES = new ArrayList<List<String>>();
+    private static final List<Thread> THREADS = new ArrayList<Thread>();
+    private static volatile CountDownLatch gate;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.entities( TestEntity.class, AsyncStateChangeNotificationConfiguration.class );
+        module.services( RecordingListenerService.class );
+        module.services( AsyncStateChangeNotificationService.class ).instantiateOnStartup();
+    }
+
+    @Before
+    public void reset()
+    {
+        synchronized( BATCHES )
+        {
+            BATCHES.clear();
+            THREADS.clear();
+        }
+        gate = null;
+    }
+
+    @Test
+    public void givenAsyncNotificationWhenCompletingExpectListenerNotifiedInBackground()
+        throws Exception
+    {
+        String identity = newTestEntity();
+
+        assertThat( asyncNotification().awaitNotifications( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        synchronized( BATCHES )
+        {
+            assertThat( BATCHES.size(), equalTo( 1 ) );
+            assertThat( BATCHES.get( 0 ).get( 0 ), equalTo( identity ) );
+            assertThat( THREADS.get( 0 ), not( equalTo( Thread.currentThread() ) ) );
+        }
+    }
+
+    @Test
+    public void givenBusyListenerWhenCompletingSeveralUnitOfWorksExpectChangesDeliveredInOneBatch()
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        gate = release;
+        String first = newTestEntity();
+        List<String> others = new ArrayList<String>();
+        for( int i = 0; i < 4; i++ )
+        {
+            others.add( newTestEntity() );
+        }
+        release.countDown();
+
+        assertThat( asyncNotification().awaitNotifications( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        synchronized( BATCHES )
+        {
+            List<String> all = new ArrayList<String>();
+            for( List<String> batch : BATCHES )
+            {
+                all.addAll( batch );
+            }
+            assertThat( all.get( 0 ), equalTo( first ) );
+            assertThat( all.subList( 1, all.size() ), equalTo( others ) );
+            assertThat( BATCHES.size() <= 2, equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void givenConcurrentCommitsWhenPassivatingExpectNoChangesLost()
+        throws Exception
+    {
+        final List<String> committed = Collections.synchronizedList( new ArrayList<String>() );
+        final List<Exception> failures = Collections.synchronizedList( new ArrayList<Exception>() );
+        List<Thread> committers = new ArrayList<Thread>();
+        for( int i = 0; i < 4; i++ )
+        {
+            Thread committer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for( int j = 0; j < 50; j++ )
+                        {
+                            committed.add( newTestEntity() );
+                        }
+                    }
+                    catch( Exception e )
+                    {
+                        failures.add( e );
+                    }
+                }
+            };
+            committers.add( committer );
+            committer.start();
+        }
+        while( committed.size() < 20 )
+        {
+            Thread.sleep( 1 );
+        }
+        ( (Activation) module.findService( AsyncStateChangeNotificationService.class ) ).passivate();
+        for( Thread committer : committers )
+        {
+            committer.join( 10000 );
+            assertThat( committer.isAlive(), equalTo( false ) );
+        }
+
+        assertThat( failures.isEmpty(), equalTo( true ) );
+        assertThat( asyncNotification().awaitNotifications( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        synchronized( BATCHES )
+        {
+            Set<String> delivered = new HashSet<String>();
+            for( List<String> batch : BATCHES )
+            {
+                delivered.addAll( batch );
+            }
+            assertThat( delivered, equalTo( (Set<String>) new HashSet<String>( committed ) ) );
+        }
+    }
+
+    private AsyncStateChangeNotification asyncNotification()
+    {
+        return module.findService( AsyncStateChangeNotification.class ).get();
+    }
+
+    private String newTestEntity()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        String identity = uow.newEntity( TestEntity.class ).identity().get();
+        uow.complete();
+        return identity;
+    }
+
+    public interface TestEntity
+        extends EntityComposite
+    {
+    }
+
+    @Mixins( RecordingListenerMixin.class )
+    public interface RecordingListenerService
+        extends StateChangeListener
+    {
+    }
+
+    public static class RecordingListenerMixin
+        implements StateChangeListener
+    {
+        @Override
+        public void notifyChanges( Iterable<EntityState> changedStates )
+        {
+            List<String> batch = new ArrayList<String>();
+            for( EntityState changedState : changedStates )
+            {
+                if( changedState.entityDescriptor().isAssignableTo( TestEntity.class ) )
+                {
+                    batch.add( changedState.identity().identity() );
+                }
+            }
+            if( batch.isEmpty() )
+            {
+                return;
+            }
+            synchronized( BATCHES )
+            {
+                BATCHES.add( batch );
+                THREADS.add( Thread.currentThread() );
+            }
+            CountDownLatch waitFor = gate;
+            if( waitFor != null )
+            {
+                try
+                {
+                    waitFor.await( 10, TimeUnit.SECONDS );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
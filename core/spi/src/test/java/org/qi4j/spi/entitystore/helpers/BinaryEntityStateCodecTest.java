@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.math.BigDecimal;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BinaryEntityStateCodecTest
+{
+    private final BinaryEntityStateCodec codec = new BinaryEntityStateCodec();
+
+    @Test
+    public void givenStateWhenEncodingAndDecodingExpectSameState()
+        throws JSONException
+    {
+        JSONObject properties = new JSONObject();
+        properties.put( "version", "not-the-entity-version" );
+        properties.put( "name", "Ünïcødé €" );
+        properties.put( "small", -42 );
+        properties.put( "large", Long.MAX_VALUE );
+        properties.put( "ratio", 0.25D );
+        properties.put( "amount", new BigDecimal( "12345678901234567890.123" ) );
+        properties.put( "flag", true );
+        properties.put( "nothing", JSONObject.NULL );
+        properties.put( "list", new JSONArray().put( "a" ).put( new JSONObject().put( "b", "}" ) ) );
+        JSONObject state = new JSONObject();
+        state.put( JSONEntityState.JSON_KEY_IDENTITY, "123" );
+        state.put( JSONEntityState.JSON_KEY_PROPERTIES, properties );
+        state.put( JSONEntityState.JSON_KEY_ASSOCIATIONS, new JSONObject().put( "friend", "456" ) );
+        state.put( JSONEntityState.JSON_KEY_VERSION, "uow-42" );
+        state.put( JSONEntityState.JSON_KEY_MODIFIED, 1234L );
+        state.put( "custom", "kept" );
+
+        byte[] encoded = codec.encode( state );
+        JSONObject decoded = codec.decode( encoded, null );
+
+        assertThat( encoded[ 0 ], equalTo( BinaryEntityStateCodec.MAGIC ) );
+        assertThat( encoded.length < state.toString().length(), equalTo( true ) );
+        assertThat( decoded.toString(), equalTo( new JSONObject( state.toString() ).toString() ) );
+    }
+
+    @Test
+    public void givenJSONTextStateWhenDecodingExpectParsedState()
+        throws Exception
+    {
+        String state = "{\"identity\":\"123\",\"version\":\"uow-1\",\"properties\":{\"name\":\"foo\"}}";
+
+        JSONObject decoded = codec.decode( state.getBytes( "UTF-8" ), null );
+
+        assertThat( decoded.getString( "version" ), equalTo( "uow-1" ) );
+        assertThat( decoded.getJSONObject( "properties" ).getString( "name" ), equalTo( "foo" ) );
+    }
+}
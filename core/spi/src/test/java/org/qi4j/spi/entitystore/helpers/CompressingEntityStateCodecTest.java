@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.qi4j.spi.entitystore.EntityStoreException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CompressingEntityStateCodecTest
+{
+    private final BinaryEntityStateCodec binaryCodec = new BinaryEntityStateCodec();
+
+    @Test
+    public void givenStateWhenCompressingAndDecompressingExpectSameState()
+        throws JSONException
+    {
+        CompressingEntityStateCodec codec = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate() );
+        JSONObject state = state( 1 );
+
+        byte[] compressed = codec.encode( state );
+
+        assertThat( compressed[ 0 ], equalTo( CompressingEntityStateCodec.MAGIC ) );
+        assertThat( compressed.length < binaryCodec.encode( state ).length, equalTo( true ) );
+        assertThat( codec.decode( compressed, null ).toString(), equalTo( state.toString() ) );
+        assertThat( codec.compressionRatio() > 1D, equalTo( true ) );
+    }
+
+    @Test
+    public void givenUncompressedStatesWhenDecodingExpectStatesDecoded()
+        throws Exception
+    {
+        CompressingEntityStateCodec codec = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate() );
+        JSONObject state = state( 2 );
+
+        assertThat( codec.decode( binaryCodec.encode( state ), null ).toString(), equalTo( state.toString() ) );
+        assertThat( codec.decode( state.toString().getBytes( "UTF-8" ), null ).toString(), equalTo( state.toString() ) );
+    }
+
+    @Test
+    public void givenTrainedDictionaryWhenCompressingExpectSmallerStates()
+        throws JSONException
+    {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for( int idx = 0; idx < 50; idx++ )
+        {
+            samples.add( binaryCodec.encode( state( idx ) ) );
+        }
+        byte[] dictionary = StateCompression.trainDictionary( samples, 4096 );
+        CompressingEntityStateCodec plain = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate() );
+        CompressingEntityStateCodec primed = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate()
+            .withDictionary( dictionary ) );
+        JSONObject state = state( 100 );
+
+        byte[] compressed = primed.encode( state );
+
+        assertThat( compressed.length < plain.encode( state ).length, equalTo( true ) );
+        assertThat( primed.decode( compressed, null ).toString(), equalTo( state.toString() ) );
+    }
+
+    @Test( expected = EntityStoreException.class )
+    public void givenStateCompressedWithDictionaryWhenDecodingWithoutExpectException()
+        throws JSONException
+    {
+        byte[] dictionary = StateCompression.trainDictionary( Arrays.asList( binaryCodec.encode( state( 0 ) ),
+                                                                             binaryCodec.encode( state( 1 ) ) ), 1024 );
+        CompressingEntityStateCodec primed = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate()
+            .withDictionary( dictionary ) );
+        CompressingEntityStateCodec plain = new CompressingEntityStateCodec( binaryCodec, StateCompression.deflate() );
+
+        plain.decode( primed.encode( state( 1 ) ), null );
+    }
+
+    private static JSONObject state( int idx )
+        throws JSONException
+    {
+        JSONObject properties = new JSONObject();
+        properties.put( "name", "Entity number " + idx );
+        properties.put( "description", "A rather long description shared by all entities of this type" );
+        properties.put( "count", idx );
+        JSONObject state = new JSONObject();
+        state.put( JSONEntityState.JSON_KEY_IDENTITY, "entity-" + idx );
+        state.put( JSONEntityState.JSON_KEY_APPLICATION_VERSION, "1.0" );
+        state.put( JSONEntityState.JSON_KEY_TYPE, "org.qi4j.test.SomeEntityTypeWithALongName" );
+        state.put( JSONEntityState.JSON_KEY_VERSION, "uow-" + idx );
+        state.put( JSONEntityState.JSON_KEY_MODIFIED, 1234L + idx );
+        state.put( JSONEntityState.JSON_KEY_PROPERTIES, properties );
+        state.put( JSONEntityState.JSON_KEY_ASSOCIATIONS, new JSONObject() );
+        state.put( JSONEntityState.JSON_KEY_MANYASSOCIATIONS, new JSONObject() );
+        return state;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.entity.ManyAssociationState;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DefaultManyAssociationStateTest
+{
+    private static final QualifiedName REFS = QualifiedName.fromName( "Test", "refs" );
+
+    @Test
+    public void givenDefaultManyAssociationStateWhenChangingReferencesExpectCorrectBehavior()
+    {
+        DefaultEntityState entityState = newEntityState( "123" );
+        ManyAssociationState state = entityState.manyAssociationValueOf( REFS );
+
+        assertThat( state.add( 0, EntityReference.parseEntityReference( "0" ) ), is( true ) );
+        assertThat( state.add( 1, EntityReference.parseEntityReference( "1" ) ), is( true ) );
+        assertThat( state.add( 0, EntityReference.parseEntityReference( "1" ) ), is( false ) );
+        assertThat( state.count(), equalTo( 2 ) );
+        assertThat( state.contains( EntityReference.parseEntityReference( "1" ) ), is( true ) );
+
+        assertThat( state.remove( EntityReference.parseEntityReference( "1" ) ), is( true ) );
+        assertThat( state.contains( EntityReference.parseEntityReference( "1" ) ), is( false ) );
+        assertThat( state.count(), equalTo( 1 ) );
+        assertThat( state.get( 0 ).identity(), equalTo( "0" ) );
+        assertThat( entityState.status(), equalTo( EntityStatus.UPDATED ) );
+    }
+
+    @Test
+    public void givenCopiedEntityStateWhenChangingReferencesOfEitherExpectOtherUntouched()
+    {
+        DefaultEntityState source = newEntityState( "123" );
+        source.manyAssociationValueOf( REFS ).add( 0, EntityReference.parseEntityReference( "0" ) );
+        DefaultEntityState target = newEntityState( "123" );
+        source.copyTo( target );
+
+        ManyAssociationState sourceState = source.manyAssociationValueOf( REFS );
+        ManyAssociationState targetState = target.manyAssociationValueOf( REFS );
+        targetState.add( 1, EntityReference.parseEntityReference( "1" ) );
+        sourceState.remove( EntityReference.parseEntityReference( "0" ) );
+
+        assertThat( sourceState.count(), equalTo( 0 ) );
+        assertThat( sourceState.contains( EntityReference.parseEntityReference( "1" ) ), is( false ) );
+        assertThat( targetState.count(), equalTo( 2 ) );
+        assertThat( targetState.contains( EntityReference.parseEntityReference( "0" ) ), is( true ) );
+        assertThat( targetState.contains( EntityReference.parseEntityReference( "1" ) ), is( true ) );
+    }
+
+    private static DefaultEntityState newEntityState( String identity )
+    {
+        return new DefaultEntityState( null,
+                                       "0",
+                                       System.currentTimeMillis(),
+                                       EntityReference.parseEntityReference( identity ),
+                                       EntityStatus.LOADED,
+                                       null,
+                                       new HashMap<QualifiedName, Object>(),
+                                       new HashMap<QualifiedName, EntityReference>(),
+                                       new HashMap<QualifiedName, List<EntityReference>>() );
+    }
+}
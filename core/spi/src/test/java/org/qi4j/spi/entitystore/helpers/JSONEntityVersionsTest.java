@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.entitystore.helpers;
+
+import java.io.StringReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class JSONEntityVersionsTest
+{
+    @Test
+    public void givenSerializedStateWhenReadingVersionExpectVersion()
+        throws JSONException
+    {
+        JSONObject properties = new JSONObject();
+        properties.put( "version", "not-the-entity-version" );
+        properties.put( "list", new JSONArray().put( "a" ).put( new JSONObject().put( "b", "}" ) ) );
+        JSONObject state = new JSONObject();
+        state.put( JSONEntityState.JSON_KEY_IDENTITY, "123" );
+        state.put( JSONEntityState.JSON_KEY_PROPERTIES, properties );
+        state.put( JSONEntityState.JSON_KEY_VERSION, "uow-42" );
+        state.put( JSONEntityState.JSON_KEY_MODIFIED, 1234L );
+
+        assertThat( JSONEntityVersions.readVersion( new StringReader( state.toString() ) ), equalTo( "uow-42" ) );
+    }
+
+    @Test
+    public void givenSerializedStateWithoutVersionWhenReadingVersionExpectNull()
+        throws JSONException
+    {
+        String state = "{\"identity\":\"123\",\"properties\":{\"version\":\"nested\"}}";
+
+        assertThat( JSONEntityVersions.readVersion( new StringReader( state ) ), nullValue() );
+    }
+
+    @Test
+    public void givenSerializedStateWhenReadingIdentityAndVersionExpectBoth()
+        throws JSONException
+    {
+        String state = "{\"properties\":{\"identity\":\"nested\"},\"version\":\"uow-7\",\"identity\":\"123\",\"modified\":1}";
+
+        String[] identityAndVersion = JSONEntityVersions.readIdentityAndVersion( new StringReader( state ) );
+        assertThat( identityAndVersion[ 0 ], equalTo( "123" ) );
+        assertThat( identityAndVersion[ 1 ], equalTo( "uow-7" ) );
+    }
+}
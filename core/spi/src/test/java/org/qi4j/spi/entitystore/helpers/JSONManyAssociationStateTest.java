@@ -134,4 +134,83 @@ public class JSONManyAssociationStateTest
                 "C", "B", "A", "0", "2", "1"
             }, refList.toArray() );
     }
+
+    @Test
+    public void givenLoadedJSONManyAssociationStateWhenChangingReferencesExpectSharedStateUntouched()
+        throws JSONException
+    {
+        // Fake loaded, possibly cached, state
+        JSONObject state = new JSONObject();
+        state.put( JSONEntityState.JSON_KEY_PROPERTIES, new JSONObject() );
+        state.put( JSONEntityState.JSON_KEY_ASSOCIATIONS, new JSONObject() );
+        JSONObject manyAssociations = new JSONObject();
+        manyAssociations.put( "refs", new JSONArray().put( "0" ) );
+        state.put( JSONEntityState.JSON_KEY_MANYASSOCIATIONS, manyAssociations );
+        String sharedState = state.toString();
+        JSONEntityState entityState = new JSONEntityState( null,
+                                                           null,
+                                                           "0",
+                                                           System.currentTimeMillis(),
+                                                           EntityReference.parseEntityReference( "123" ),
+                                                           EntityStatus.LOADED,
+                                                           null,
+                                                           state );
+        JSONManyAssociationState jsonState = new JSONManyAssociationState( entityState,
+                                                                           "refs",
+                                                                           entityState.manyAssociationReferences( "refs" ) );
+        JSONManyAssociationState missingState = new JSONManyAssociationState( entityState,
+                                                                              "missing",
+                                                                              entityState.manyAssociationReferences( "missing" ) );
+
+        jsonState.add( 1, EntityReference.parseEntityReference( "1" ) );
+        missingState.add( 0, EntityReference.parseEntityReference( "A" ) );
+        jsonState.remove( EntityReference.parseEntityReference( "0" ) );
+
+        assertThat( state.toString(), equalTo( sharedState ) );
+        assertThat( entityState.status(), equalTo( EntityStatus.UPDATED ) );
+        assertThat( jsonState.count(), equalTo( 1 ) );
+        assertThat( jsonState.get( 0 ).identity(), equalTo( "1" ) );
+        assertThat( missingState.count(), equalTo( 1 ) );
+        assertThat( entityState.state().getJSONObject( JSONEntityState.JSON_KEY_MANYASSOCIATIONS )
+                        .getJSONArray( "missing" ).getString( 0 ), equalTo( "A" ) );
+    }
+
+    @Test
+    public void givenTwoJSONManyAssociationStatesOnSameReferencesWhenChangingOneExpectOtherConsistent()
+        throws JSONException
+    {
+        // Fake loaded state
+        JSONObject state = new JSONObject();
+        state.put( JSONEntityState.JSON_KEY_PROPERTIES, new JSONObject() );
+        state.put( JSONEntityState.JSON_KEY_ASSOCIATIONS, new JSONObject() );
+        JSONObject manyAssociations = new JSONObject();
+        manyAssociations.put( "refs", new JSONArray().put( "0" ).put( "1" ) );
+        state.put( JSONEntityState.JSON_KEY_MANYASSOCIATIONS, manyAssociations );
+        JSONEntityState entityState = new JSONEntityState( null,
+                                                           null,
+                                                           "0",
+                                                           System.currentTimeMillis(),
+                                                           EntityReference.parseEntityReference( "123" ),
+                                                           EntityStatus.LOADED,
+                                                           null,
+                                                           state );
+        JSONManyAssociationState first = new JSONManyAssociationState( entityState,
+                                                                       "refs",
+                                                                       entityState.manyAssociationReferences( "refs" ) );
+        JSONManyAssociationState second = new JSONManyAssociationState( entityState,
+                                                                        "refs",
+                                                                        entityState.manyAssociationReferences( "refs" ) );
+
+        assertThat( second.contains( EntityReference.parseEntityReference( "1" ) ), is( true ) );
+
+        first.remove( EntityReference.parseEntityReference( "1" ) );
+        first.add( 0, EntityReference.parseEntityReference( "2" ) );
+
+        assertThat( second.contains( EntityReference.parseEntityReference( "1" ) ), is( false ) );
+        assertThat( second.contains( EntityReference.parseEntityReference( "2" ) ), is( true ) );
+        assertThat( second.add( 0, EntityReference.parseEntityReference( "2" ) ), is( false ) );
+        assertThat( second.count(), equalTo( 2 ) );
+        assertThat( second.get( 0 ).identity(), equalTo( "2" ) );
+        assertThat( second.get( 1 ).identity(), equalTo( "0" ) );
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.spi.query;
+
+import java.util.Date;
+import org.junit.Test;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.OrderBy;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.and;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.gt;
+import static org.qi4j.api.query.QueryExpressions.orderBy;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+import static org.qi4j.api.query.QueryExpressions.variable;
+
+/**
+ * Test for QueryPlanCache
+ */
+public class QueryPlanCacheTest
+{
+    @Test
+    public void givenQueriesDifferingByVariableValuesOnlyThenShapesAreEqual()
+    {
+        Person person = templateFor( Person.class );
+        String first = QueryPlanCache.shapeOf( Person.class,
+                                               and( eq( person.name(), variable( "name" ) ), gt( person.age(), 18 ) ),
+                                               new OrderBy[]{ orderBy( person.name() ) }, 0, 10 );
+        person = templateFor( Person.class );
+        String second = QueryPlanCache.shapeOf( Person.class,
+                                                and( eq( person.name(), variable( "name" ) ), gt( person.age(), 18 ) ),
+                                                new OrderBy[]{ orderBy( person.name() ) }, 0, 10 );
+        assertThat( first, equalTo( second ) );
+    }
+
+    @Test
+    public void givenQueriesDifferingByStructureThenShapesDiffer()
+    {
+        Person person = templateFor( Person.class );
+        String shape = QueryPlanCache.shapeOf( Person.class, eq( person.name(), variable( "name" ) ), null, null, null );
+
+        assertThat( QueryPlanCache.shapeOf( Person.class, eq( person.name(), variable( "other" ) ), null, null, null ),
+                    not( equalTo( shape ) ) );
+        assertThat( QueryPlanCache.shapeOf( Person.class, eq( person.name(), "Jane" ), null, null, null ),
+                    not( equalTo( shape ) ) );
+        assertThat( QueryPlanCache.shapeOf( Person.class, gt( person.name(), variable( "name" ) ), null, null, null ),
+                    not( equalTo( shape ) ) );
+        assertThat( QueryPlanCache.shapeOf( Person.class, eq( person.name(), variable( "name" ) ), null, 10, null ),
+                    not( equalTo( shape ) ) );
+        assertThat( QueryPlanCache.shapeOf( Employee.class, eq( person.name(), variable( "name" ) ), null, null, null ),
+                    not( equalTo( shape ) ) );
+
+        Employee employee = templateFor( Employee.class );
+        assertThat( QueryPlanCache.shapeOf( Person.class, eq( employee.name(), variable( "name" ) ), null, null, null ),
+                    not( equalTo( shape ) ) );
+    }
+
+    @Test
+    public void givenDateConstantsInTheSameSecondThenShapesDiffer()
+    {
+        Person person = templateFor( Person.class );
+        assertThat( QueryPlanCache.shapeOf( Person.class, eq( person.birthDate(), new Date( 1000L ) ), null, null, null ),
+                    not( equalTo( QueryPlanCache.shapeOf( Person.class, eq( person.birthDate(), new Date( 1001L ) ),
+                                                          null, null, null ) ) ) );
+    }
+
+    @Test
+    public void givenFullCacheWhenPuttingThenLeastRecentlyUsedPlanIsEvicted()
+    {
+        QueryPlanCache<String> cache = new QueryPlanCache<String>( 2 );
+        cache.put( "a", "plan a" );
+        cache.put( "b", "plan b" );
+        assertThat( cache.get( "a" ), equalTo( "plan a" ) );
+        cache.put( "c", "plan c" );
+
+        assertThat( cache.size(), equalTo( 2 ) );
+        assertThat( cache.get( "b" ), nullValue() );
+        assertThat( cache.get( "a" ), equalTo( "plan a" ) );
+        assertThat( cache.get( "c" ), equalTo( "plan c" ) );
+        assertThat( cache.hits(), equalTo( 3L ) );
+        assertThat( cache.misses(), equalTo( 1L ) );
+        assertThat( cache.hitRate(), equalTo( 0.75D ) );
+    }
+
+    public interface Person
+    {
+        Property<String> name();
+
+        Property<Integer> age();
+
+        @Optional
+        Property<Date> birthDate();
+    }
+
+    public interface Employee
+    {
+        Property<String> name();
+    }
+}
@@ -21,6 +21,7 @@ package org.qi4j.test.entity;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -37,21 +38,26 @@ import org.qi4j.api.common.Optional;
 import org.qi4j.api.common.UseDefaults;
 import org.qi4j.api.entity.EntityBuilder;
 import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.property.Property;
 import org.qi4j.api.unitofwork.ConcurrentEntityModificationException;
 import org.qi4j.api.unitofwork.NoSuchEntityException;
 import org.qi4j.api.unitofwork.UnitOfWork;
 import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.api.usecase.Usecase;
 import org.qi4j.api.value.ValueBuilder;
 import org.qi4j.api.value.ValueComposite;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.entity.EntityState;
 import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreUnitOfWork;
 import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
 import org.qi4j.test.AbstractQi4jTest;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.joda.time.DateTimeZone.UTC;
 import static org.junit.Assert.assertThat;
@@ -443,6 +449,38 @@ public abstract class AbstractEntityStoreTest
         }
     }
 
+    @Test
+    public void givenEntitiesWhenGettingStatesInBulkThenFoundStatesAreReturned()
+        throws UnitOfWorkCompletionException
+    {
+        EntityReference first;
+        EntityReference second;
+        {
+            UnitOfWork unitOfWork = module.newUnitOfWork();
+            first = EntityReference.entityReferenceFor( createEntity( unitOfWork ) );
+            second = EntityReference.entityReferenceFor( createEntity( unitOfWork ) );
+            unitOfWork.complete();
+        }
+        EntityReference missing = EntityReference.parseEntityReference( "not-in-store" );
+
+        EntityStoreUnitOfWork storeUnitOfWork = store.newUnitOfWork( Usecase.DEFAULT, module,
+                                                                     System.currentTimeMillis() );
+        try
+        {
+            Map<EntityReference, EntityState> states = storeUnitOfWork.entityStatesOf( Arrays.asList( first,
+                                                                                                      missing,
+                                                                                                      second ) );
+            assertThat( "found states count", states.size(), equalTo( 2 ) );
+            assertThat( "first state", states.get( first ).identity(), equalTo( first ) );
+            assertThat( "second state", states.get( second ).identity(), equalTo( second ) );
+            assertThat( "missing state", states.containsKey( missing ), is( false ) );
+        }
+        finally
+        {
+            storeUnitOfWork.discard();
+        }
+    }
+
     public interface TestEntity
         extends EntityComposite
     {
@@ -30,6 +30,7 @@ import org.qi4j.api.query.NotQueryableException;
 import org.qi4j.api.query.Query;
 import org.qi4j.api.query.QueryBuilder;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.unitofwork.UnitOfWorkOptions;
 import org.qi4j.spi.query.EntityFinderException;
 import org.qi4j.spi.query.IndexExporter;
 import org.qi4j.test.indexing.model.City;
@@ -132,6 +133,18 @@ public abstract class AbstractQueryTest
         System.out.println( "*** script03: " + query );
     }
 
+    @Test
+    public void script03WithPrefetch()
+        throws EntityFinderException
+    {
+        unitOfWork.setMetaInfo( new UnitOfWorkOptions( false, 4 ) );
+        QueryBuilder<Nameable> qb = this.module.newQueryBuilder( Nameable.class );
+        Query<Nameable> query = unitOfWork.newQuery( qb );
+        verifyUnorderedResults( query, "Joe Doe", "Ann Doe", "Jack Doe", "Penang", "Kuala Lumpur", "Cooking", "Gaming",
+                                "Programming", "Cars" );
+        System.out.println( "*** script03WithPrefetch: " + query );
+    }
+
     @Test
     public void script04()
         throws EntityFinderException
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.file;
+
+import java.io.IOException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStoreMixin;
+import org.qi4j.spi.entitystore.helpers.EntityStateCodec;
+
+/**
+ * FileEntityStoreMixin holding encoded states, backed up and restored as JSON text.
+ */
+public class BinaryFileEntityStoreMixin
+    extends FileEntityStoreMixin
+{
+    @Uses
+    private ServiceDescriptor serviceDescriptor;
+
+    private EntityStateCodec codec;
+
+    @Override
+    public void initialize()
+        throws Exception
+    {
+        codec = BinaryMapEntityStoreMixin.stateCodec( serviceDescriptor );
+        super.initialize();
+    }
+
+    @Override
+    protected String backupState( byte[] state )
+    {
+        return codec.decode( state, null ).toString();
+    }
+
+    @Override
+    protected byte[] restoreState( String state )
+        throws IOException
+    {
+        try
+        {
+            return codec.encode( new JSONObject( state ) );
+        }
+        catch( JSONException e )
+        {
+            throw new IOException( e );
+        }
+    }
+}
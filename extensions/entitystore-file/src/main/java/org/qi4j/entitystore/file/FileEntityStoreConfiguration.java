@@ -54,5 +54,45 @@ public interface FileEntityStoreConfiguration
     // START SNIPPET: config
     @Optional @Range(min=1, max=10000)
     Property<Integer> slices();
+    // END SNIPPET: config
+
+    /**
+     * Size in bytes of the segment files of the SegmentedFileEntityStoreService.
+     * <p>
+     * Default: 64MB. A single commit larger than this gets a segment of its own.
+     * </p>
+     *
+     * @return the size of segment files
+     */
+    // START SNIPPET: config
+    @Optional @Range(min=4096, max=Integer.MAX_VALUE)
+    Property<Integer> segmentSize();
+    // END SNIPPET: config
+
+    /**
+     * Percentage of overwritten or removed state in sealed segments above which the
+     * SegmentedFileEntityStoreService compacts them in the background.
+     * <p>
+     * Default: 50.
+     * </p>
+     *
+     * @return the compaction threshold percentage
+     */
+    // START SNIPPET: config
+    @Optional @Range(min=1, max=100)
+    Property<Integer> compactionThreshold();
+    // END SNIPPET: config
+
+    /**
+     * Whether the SegmentedFileEntityStoreService forces every commit to disk before returning.
+     * <p>
+     * Default: false, commits are flushed by the operating system and on passivation.
+     * </p>
+     *
+     * @return true if commits are forced to disk
+     */
+    // START SNIPPET: config
+    @Optional
+    Property<Boolean> syncWrites();
 }
 // END SNIPPET: config
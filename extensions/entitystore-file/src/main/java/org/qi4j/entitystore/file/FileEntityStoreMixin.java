@@ -31,6 +31,8 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.qi4j.api.common.Optional;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -46,13 +48,17 @@ import org.qi4j.library.fileconfig.FileConfiguration;
 import org.qi4j.spi.entitystore.BackupRestore;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 
 /**
  * FileEntityStore implementation of MapEntityStore.
+ * <p>
+ * States are also accessible as bytes through {@link BinaryMapEntityStore}, see {@link BinaryFileEntityStoreService}.
+ * </p>
  */
 public class FileEntityStoreMixin
-    implements FileEntityStoreActivation, MapEntityStore, BackupRestore
+    implements FileEntityStoreActivation, MapEntityStore, BinaryMapEntityStore, BackupRestore
 {
     @Optional
     @Service
@@ -68,21 +74,7 @@ public class FileEntityStoreMixin
     public void initialize()
         throws Exception
     {
-        String pathName = config.get().directory().get();
-        if( pathName == null )
-        {
-            if( fileConfiguration != null )
-            {
-                pathName = new File( fileConfiguration.dataDirectory(), config.get()
-                    .identity()
-                    .get() ).getAbsolutePath();
-            }
-            else
-            {
-                pathName = System.getProperty( "user.dir" ) + "/qi4j/filestore/";
-            }
-        }
-        File rootDirectory = new File( pathName ).getAbsoluteFile();
+        File rootDirectory = rootDirectory( config.get(), fileConfiguration );
         dataDirectory = new File( rootDirectory, "data" );
         if( !dataDirectory.exists() )
         {
@@ -111,6 +103,25 @@ public class FileEntityStoreMixin
         }
     }
 
+    static File rootDirectory( FileEntityStoreConfiguration configuration, FileConfiguration fileConfiguration )
+    {
+        String pathName = configuration.directory().get();
+        if( pathName == null )
+        {
+            if( fileConfiguration != null )
+            {
+                pathName = new File( fileConfiguration.dataDirectory(), configuration
+                    .identity()
+                    .get() ).getAbsolutePath();
+            }
+            else
+            {
+                pathName = System.getProperty( "user.dir" ) + "/qi4j/filestore/";
+            }
+        }
+        return new File( pathName ).getAbsoluteFile();
+    }
+
     private void writeIntegerToFile( File file, int value )
         throws IOException
     {
@@ -163,6 +174,20 @@ public class FileEntityStoreMixin
     @Override
     public Reader get( EntityReference entityReference )
         throws EntityStoreException
+    {
+        try
+        {
+            return new StringReader( new String( getBinary( entityReference ), "UTF-8" ) );
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
+
+    @Override
+    public byte[] getBinary( EntityReference entityReference )
+        throws EntityStoreException
     {
         try
         {
@@ -173,8 +198,30 @@ public class FileEntityStoreMixin
                 throw new EntityNotFoundException( entityReference );
             }
 
-            byte[] serializedState = fetch( f );
-            return new StringReader( new String( serializedState, "UTF-8" ) );
+            return fetch( f );
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
+
+    @Override
+    public Map<EntityReference, byte[]> getBinaries( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Map<EntityReference, byte[]> states = new LinkedHashMap<EntityReference, byte[]>();
+        try
+        {
+            for( EntityReference entityReference : entityReferences )
+            {
+                File f = getDataFile( entityReference );
+                if( f.exists() )
+                {
+                    states.put( entityReference, fetch( f ) );
+                }
+            }
+            return states;
         }
         catch( IOException e )
         {
@@ -196,47 +243,88 @@ public class FileEntityStoreMixin
     }
 
     @Override
-    public void applyChanges( MapChanges changes )
+    public void applyChanges( final MapChanges changes )
+        throws IOException
+    {
+        applyBinaryChanges( new BinaryMapChanges()
+        {
+            @Override
+            public void visitMap( final BinaryMapChanger changer )
+                throws IOException
+            {
+                changes.visitMap( new MapChanger()
+                {
+                    @Override
+                    public Writer newEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws IOException
+                    {
+                        return stateWriter( changer, ref, descriptor, true );
+                    }
+
+                    @Override
+                    public Writer updateEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws IOException
+                    {
+                        return stateWriter( changer, ref, descriptor, false );
+                    }
+
+                    @Override
+                    public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws EntityNotFoundException
+                    {
+                        changer.removeEntity( ref, descriptor );
+                    }
+                } );
+            }
+        } );
+    }
+
+    private Writer stateWriter( final BinaryMapChanger changer,
+                                final EntityReference ref,
+                                final EntityDescriptor descriptor,
+                                final boolean newEntity
+    )
+    {
+        return new StringWriter( 1000 )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                super.close();
+                byte[] stateArray = this.toString().getBytes( "UTF-8" );
+                if( newEntity )
+                {
+                    changer.newEntity( ref, descriptor, stateArray );
+                }
+                else
+                {
+                    changer.updateEntity( ref, descriptor, stateArray );
+                }
+            }
+        };
+    }
+
+    @Override
+    public void applyBinaryChanges( BinaryMapChanges changes )
         throws IOException
     {
         try
         {
-            changes.visitMap( new MapChanger()
+            changes.visitMap( new BinaryMapChanger()
             {
                 @Override
-                public Writer newEntity( final EntityReference ref, EntityDescriptor descriptor )
+                public void newEntity( EntityReference ref, EntityDescriptor descriptor, byte[] state )
                     throws IOException
                 {
-                    return new StringWriter( 1000 )
-                    {
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-                            byte[] stateArray = this.toString().getBytes( "UTF-8" );
-                            File dataFile = getDataFile( ref );
-                            store( dataFile, stateArray );
-                        }
-                    };
+                    store( getDataFile( ref ), state );
                 }
 
                 @Override
-                public Writer updateEntity( final EntityReference ref, EntityDescriptor descriptor )
+                public void updateEntity( EntityReference ref, EntityDescriptor descriptor, byte[] state )
                     throws IOException
                 {
-                    return new StringWriter( 1000 )
-                    {
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-                            byte[] stateArray = this.toString().getBytes( "UTF-8" );
-                            File dataFile = getDataFile( ref );
-                            store( dataFile, stateArray );
-                        }
-                    };
+                    store( getDataFile( ref ), state );
                 }
 
                 @Override
@@ -282,10 +370,14 @@ public class FileEntityStoreMixin
                     {
                         for( File sliceDirectory : dataDirectory.listFiles() )
                         {
+                            if( !sliceDirectory.isDirectory() )
+                            {
+                                // The slices file
+                                continue;
+                            }
                             for( File file : sliceDirectory.listFiles() )
                             {
-                                byte[] stateArray = fetch( file );
-                                receiver.receive( new String( stateArray, "UTF-8" ) );
+                                receiver.receive( backupState( fetch( file ) ) );
                             }
                         }
                     }
@@ -311,8 +403,7 @@ public class FileEntityStoreMixin
                     {
                         String id = item.substring( "{\"identity\":\"".length() );
                         id = id.substring( 0, id.indexOf( '"' ) );
-                        byte[] stateArray = item.getBytes( "UTF-8" );
-                        store( getDataFile( id ), stateArray );
+                        store( getDataFile( id ), restoreState( item ) );
                     }
                 } );
             }
@@ -336,6 +427,11 @@ public class FileEntityStoreMixin
                     {
                         for( File sliceDirectory : dataDirectory.listFiles() )
                         {
+                            if( !sliceDirectory.isDirectory() )
+                            {
+                                // The slices file
+                                continue;
+                            }
                             for( File file : sliceDirectory.listFiles() )
                             {
                                 byte[] serializedState = fetch( file );
@@ -348,6 +444,61 @@ public class FileEntityStoreMixin
         };
     }
 
+    @Override
+    public Input<byte[], IOException> binaryEntityStates()
+    {
+        return new Input<byte[], IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super byte[], ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                output.receiveFrom( new Sender<byte[], IOException>()
+                {
+                    @Override
+                    public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super byte[], ReceiverThrowableType> receiver )
+                        throws ReceiverThrowableType, IOException
+                    {
+                        for( File sliceDirectory : dataDirectory.listFiles() )
+                        {
+                            if( !sliceDirectory.isDirectory() )
+                            {
+                                // The slices file
+                                continue;
+                            }
+                            for( File file : sliceDirectory.listFiles() )
+                            {
+                                receiver.receive( fetch( file ) );
+                            }
+                        }
+                    }
+                } );
+            }
+        };
+    }
+
+    /**
+     * @param state Stored state
+     *
+     * @return the state as JSON text
+     */
+    protected String backupState( byte[] state )
+        throws IOException
+    {
+        return new String( state, "UTF-8" );
+    }
+
+    /**
+     * @param state State as JSON text
+     *
+     * @return the state to store
+     */
+    protected byte[] restoreState( String state )
+        throws IOException
+    {
+        return state.getBytes( "UTF-8" );
+    }
+
     private File getDataFile( String identity )
     {
         String slice = "" + ( Math.abs( identity.hashCode() ) % slices );
@@ -0,0 +1,348 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segment file of the {@link SegmentedFileEntityStoreMixin}, memory-mapped for its whole capacity.
+ * <p>
+ * A segment is a sequence of records, each one holding the entries written by a single commit:
+ * </p>
+ * <pre>
+ * record  = payload length (int) | payload | CRC32 of payload (int)
+ * payload = entry*
+ * entry   = operation (byte) | identity length (int) | identity (UTF-8) | state length (int) | state (UTF-8)
+ * </pre>
+ * <p>
+ * The unused part of a segment is zeroed, so that a record of length 0, or whose checksum does not match, marks
+ * the end of the segment. A commit is then either entirely recovered or not at all.
+ * </p>
+ * <p>
+ * Segments are ordered by sequence, then by generation. Compaction writes the live entries of the segments it
+ * compacts to new segments with the sequence of the first compacted segment and generations above those of the
+ * compacted segments.
+ * </p>
+ */
+final class Segment
+    implements Comparable<Segment>
+{
+    static final String EXTENSION = ".log";
+    static final String COMPACTING_EXTENSION = ".compact";
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final int RECORD_OVERHEAD = 8;
+
+    private static final Pattern NAME = Pattern.compile( "segment-(\\d+)-(\\d+)(\\.log|\\.compact)" );
+    private static final byte[] ZEROES = new byte[ 8192 ];
+
+    private final long sequence;
+    private final int generation;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private File path;
+    private int writePosition;
+    private long garbage;
+
+    private Segment( File path, long sequence, int generation, int capacity )
+        throws IOException
+    {
+        this.path = path;
+        this.sequence = sequence;
+        this.generation = generation;
+        file = new RandomAccessFile( path, "rw" );
+        if( file.length() < capacity )
+        {
+            file.setLength( capacity );
+        }
+        this.capacity = (int) Math.min( Integer.MAX_VALUE, file.length() );
+        buffer = file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, this.capacity );
+    }
+
+    static String fileName( long sequence, int generation, String extension )
+    {
+        return String.format( "segment-%016d-%04d%s", sequence, generation, extension );
+    }
+
+    static boolean isSegment( File path, String extension )
+    {
+        Matcher matcher = NAME.matcher( path.getName() );
+        return matcher.matches() && matcher.group( 3 ).equals( extension );
+    }
+
+    static Segment open( File path, int capacity )
+        throws IOException
+    {
+        Matcher matcher = NAME.matcher( path.getName() );
+        if( !matcher.matches() )
+        {
+            throw new IOException( "Not a segment file: " + path );
+        }
+        return new Segment( path, Long.parseLong( matcher.group( 1 ) ), Integer.parseInt( matcher.group( 2 ) ), capacity );
+    }
+
+    static Segment create( File directory, long sequence, int generation, String extension, int capacity )
+        throws IOException
+    {
+        File path = new File( directory, fileName( sequence, generation, extension ) );
+        if( path.exists() && !path.delete() )
+        {
+            throw new IOException( "Could not delete stale segment " + path );
+        }
+        return new Segment( path, sequence, generation, capacity );
+    }
+
+    /**
+     * Encode entries as a record payload.
+     *
+     * @param entries      Entries to encode, their stateOffset is set to the offset of their state in the payload
+     *
+     * @return the payload
+     */
+    static byte[] encode( List<Entry> entries )
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1024 );
+        DataOutputStream out = new DataOutputStream( bytes );
+        for( Entry entry : entries )
+        {
+            out.writeByte( entry.operation );
+            out.writeInt( entry.identity.length );
+            out.write( entry.identity );
+            out.writeInt( entry.state.length );
+            entry.stateOffset = out.size();
+            out.write( entry.state );
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    long sequence()
+    {
+        return sequence;
+    }
+
+    int generation()
+    {
+        return generation;
+    }
+
+    File path()
+    {
+        return path;
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+
+    int size()
+    {
+        return writePosition;
+    }
+
+    long garbage()
+    {
+        return garbage;
+    }
+
+    void addGarbage( long bytes )
+    {
+        garbage += bytes;
+    }
+
+    boolean fits( int payloadLength )
+    {
+        return (long) writePosition + payloadLength + RECORD_OVERHEAD <= capacity;
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param payload Record payload
+     *
+     * @return position of the payload in this segment
+     */
+    int append( byte[] payload )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( payload );
+        ByteBuffer writer = buffer.duplicate();
+        writer.position( writePosition );
+        writer.putInt( payload.length );
+        writer.put( payload );
+        writer.putInt( (int) crc.getValue() );
+        int payloadPosition = writePosition + 4;
+        writePosition = writer.position();
+        return payloadPosition;
+    }
+
+    byte[] read( int position, int length )
+    {
+        byte[] bytes = new byte[ length ];
+        ByteBuffer reader = buffer.duplicate();
+        reader.position( position );
+        reader.get( bytes );
+        return bytes;
+    }
+
+    /**
+     * Visit the entries of the records of this segment, up to the given position.
+     *
+     * @param limit   Position where to stop reading
+     * @param visitor Entry visitor
+     *
+     * @return position of the end of the last valid record
+     */
+    int scan( int limit, EntryVisitor visitor )
+        throws IOException
+    {
+        ByteBuffer reader = buffer.duplicate();
+        int position = 0;
+        while( position + RECORD_OVERHEAD <= limit )
+        {
+            int length = reader.getInt( position );
+            if( length <= 0 || (long) position + length + RECORD_OVERHEAD > limit )
+            {
+                break;
+            }
+            byte[] payload = new byte[ length ];
+            reader.position( position + 4 );
+            reader.get( payload );
+            CRC32 crc = new CRC32();
+            crc.update( payload );
+            if( reader.getInt() != (int) crc.getValue() )
+            {
+                break;
+            }
+            ByteBuffer entries = ByteBuffer.wrap( payload );
+            while( entries.hasRemaining() )
+            {
+                byte operation = entries.get();
+                byte[] identity = new byte[ entries.getInt() ];
+                entries.get( identity );
+                int stateLength = entries.getInt();
+                int stateOffset = entries.position();
+                entries.position( stateOffset + stateLength );
+                visitor.visitEntry( operation, new String( identity, "UTF-8" ),
+                                    position + 4 + stateOffset, stateLength,
+                                    1 + 4 + identity.length + 4 + stateLength );
+            }
+            position += length + RECORD_OVERHEAD;
+        }
+        return position;
+    }
+
+    /**
+     * Recover this segment for appending: find the end of the last valid record and zero what follows it.
+     */
+    void recover( EntryVisitor visitor )
+        throws IOException
+    {
+        writePosition = scan( capacity, visitor );
+        ByteBuffer writer = buffer.duplicate();
+        writer.position( writePosition );
+        while( writer.hasRemaining() )
+        {
+            writer.put( ZEROES, 0, Math.min( ZEROES.length, writer.remaining() ) );
+        }
+        buffer.force();
+    }
+
+    void force()
+    {
+        buffer.force();
+    }
+
+    void renameTo( File target )
+        throws IOException
+    {
+        if( !path.renameTo( target ) )
+        {
+            throw new IOException( "Could not rename " + path + " to " + target );
+        }
+        path = target;
+    }
+
+    void close()
+        throws IOException
+    {
+        file.close();
+    }
+
+    boolean delete()
+        throws IOException
+    {
+        close();
+        return path.delete();
+    }
+
+    @Override
+    public int compareTo( Segment other )
+    {
+        if( sequence != other.sequence )
+        {
+            return sequence < other.sequence ? -1 : 1;
+        }
+        return generation < other.generation ? -1 : ( generation == other.generation ? 0 : 1 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return path.getName();
+    }
+
+    interface EntryVisitor
+    {
+        void visitEntry( byte operation, String identity, int statePosition, int stateLength, int entrySize )
+            throws IOException;
+    }
+
+    /**
+     * Entry to be written.
+     */
+    static final class Entry
+    {
+        final byte operation;
+        final String identityString;
+        final byte[] identity;
+        final byte[] state;
+        int stateOffset;
+
+        Entry( byte operation, String identity, byte[] state )
+            throws IOException
+        {
+            this.operation = operation;
+            this.identityString = identity;
+            this.identity = identity.getBytes( "UTF-8" );
+            this.state = state;
+        }
+
+        int size()
+        {
+            return 1 + 4 + identity.length + 4 + state.length;
+        }
+    }
+}
@@ -0,0 +1,813 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.file;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.library.fileconfig.FileConfiguration;
+import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.MapEntityStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log-structured FileEntityStore implementation of MapEntityStore.
+ * <p>
+ * Entity states are appended to memory-mapped {@link Segment} files, one record per commit, and located through an
+ * in-memory index from identity to position that is rebuilt from the segments on activation. Sealed segments are
+ * compacted in the background once the share of their bytes holding overwritten or removed states reaches the
+ * configured threshold.
+ * </p>
+ * <p>
+ * Scans of all states, for backups and {@link #entityStates()}, read the states live when they start. Compactions
+ * wait for scans in progress before replacing segments, so that the segments a scan reads are not deleted under it.
+ * </p>
+ */
+public class SegmentedFileEntityStoreMixin
+    implements ServiceActivation, MapEntityStore, BackupRestore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( SegmentedFileEntityStoreMixin.class );
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 50;
+    private static final int MAX_BATCH_SIZE = 1024 * 1024;
+    private static final String COMPACTION_MARKER = "compaction";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    @Optional
+    @Service
+    FileConfiguration fileConfiguration;
+
+    @This
+    private Configuration<FileEntityStoreConfiguration> config;
+
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+    private final Object writeLock = new Object();
+    private File segmentsDirectory;
+    private int segmentSize;
+    private int compactionThreshold;
+    private boolean syncWrites;
+
+    // Guarded by writeLock
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private Segment active;
+    private boolean compacting;
+    private boolean replacing;
+    private int scans;
+
+    private ExecutorService compactor;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        config.refresh();
+        FileEntityStoreConfiguration configuration = config.get();
+        segmentsDirectory = new File( FileEntityStoreMixin.rootDirectory( configuration, fileConfiguration ), "segments" );
+        if( !segmentsDirectory.exists() && !segmentsDirectory.mkdirs() )
+        {
+            throw new IOException( "Unable to create directory " + segmentsDirectory );
+        }
+        Integer segmentSizeConf = configuration.segmentSize().get();
+        segmentSize = segmentSizeConf == null ? DEFAULT_SEGMENT_SIZE : segmentSizeConf;
+        Integer thresholdConf = configuration.compactionThreshold().get();
+        compactionThreshold = thresholdConf == null ? DEFAULT_COMPACTION_THRESHOLD : thresholdConf;
+        syncWrites = Boolean.TRUE.equals( configuration.syncWrites().get() );
+
+        synchronized( writeLock )
+        {
+            recover();
+        }
+        compactor = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "Compaction of " + segmentsDirectory );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        compactor.shutdown();
+        compactor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+        synchronized( writeLock )
+        {
+            for( Segment segment : segments )
+            {
+                segment.force();
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+            active = null;
+        }
+    }
+
+    @Override
+    public Reader get( EntityReference entityReference )
+        throws EntityStoreException
+    {
+        Location location = index.get( entityReference.identity() );
+        if( location == null )
+        {
+            throw new EntityNotFoundException( entityReference );
+        }
+        return location.reader();
+    }
+
+    @Override
+    public void applyChanges( MapChanges changes )
+        throws IOException
+    {
+        final List<Segment.Entry> entries = new ArrayList<Segment.Entry>();
+        try
+        {
+            changes.visitMap( new MapChanger()
+            {
+                @Override
+                public Writer newEntity( EntityReference ref, EntityDescriptor descriptor )
+                    throws IOException
+                {
+                    return stateWriter( ref.identity(), entries );
+                }
+
+                @Override
+                public Writer updateEntity( EntityReference ref, EntityDescriptor descriptor )
+                    throws IOException
+                {
+                    return stateWriter( ref.identity(), entries );
+                }
+
+                @Override
+                public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
+                    throws EntityNotFoundException
+                {
+                    if( !index.containsKey( ref.identity() ) )
+                    {
+                        throw new EntityNotFoundException( ref );
+                    }
+                    try
+                    {
+                        entries.add( new Segment.Entry( Segment.DELETE, ref.identity(), new byte[ 0 ] ) );
+                    }
+                    catch( IOException e )
+                    {
+                        throw new EntityStoreException( e );
+                    }
+                }
+            } );
+        }
+        catch( RuntimeException e )
+        {
+            if( e instanceof EntityStoreException )
+            {
+                throw (EntityStoreException) e;
+            }
+            else
+            {
+                throw new IOException( e );
+            }
+        }
+
+        if( !entries.isEmpty() )
+        {
+            write( entries );
+        }
+    }
+
+    private Writer stateWriter( final String identity, final List<Segment.Entry> entries )
+    {
+        return new StringWriter( 1000 )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                super.close();
+                entries.add( new Segment.Entry( Segment.PUT, identity, toString().getBytes( "UTF-8" ) ) );
+            }
+        };
+    }
+
+    @Override
+    public Input<String, IOException> backup()
+    {
+        return new Input<String, IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super String, ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                output.receiveFrom( new Sender<String, IOException>()
+                {
+                    @Override
+                    public <ReceiverThrowableType extends Throwable> void sendTo( final Receiver<? super String, ReceiverThrowableType> receiver )
+                        throws ReceiverThrowableType, IOException
+                    {
+                        visitLiveStates( new StateVisitor<ReceiverThrowableType>()
+                        {
+                            @Override
+                            public void visitState( Location location )
+                                throws ReceiverThrowableType, IOException
+                            {
+                                receiver.receive( location.state() );
+                            }
+                        } );
+                    }
+                } );
+            }
+        };
+    }
+
+    @Override
+    public Output<String, IOException> restore()
+    {
+        return new Output<String, IOException>()
+        {
+            @Override
+            public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends String, SenderThrowableType> sender )
+                throws IOException, SenderThrowableType
+            {
+                final List<Segment.Entry> entries = new ArrayList<Segment.Entry>();
+                final int[] batchSize = { 0 };
+                sender.sendTo( new Receiver<String, IOException>()
+                {
+                    @Override
+                    public void receive( String item )
+                        throws IOException
+                    {
+                        String id = item.substring( "{\"identity\":\"".length() );
+                        id = id.substring( 0, id.indexOf( '"' ) );
+                        Segment.Entry entry = new Segment.Entry( Segment.PUT, id, item.getBytes( "UTF-8" ) );
+                        entries.add( entry );
+                        batchSize[ 0 ] += entry.size();
+                        if( batchSize[ 0 ] >= MAX_BATCH_SIZE )
+                        {
+                            write( entries );
+                            entries.clear();
+                            batchSize[ 0 ] = 0;
+                        }
+                    }
+                } );
+                if( !entries.isEmpty() )
+                {
+                    write( entries );
+                }
+            }
+        };
+    }
+
+    @Override
+    public Input<Reader, IOException> entityStates()
+    {
+        return new Input<Reader, IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super Reader, ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                output.receiveFrom( new Sender<Reader, IOException>()
+                {
+                    @Override
+                    public <ReceiverThrowableType extends Throwable> void sendTo( final Receiver<? super Reader, ReceiverThrowableType> receiver )
+                        throws ReceiverThrowableType, IOException
+                    {
+                        visitLiveStates( new StateVisitor<ReceiverThrowableType>()
+                        {
+                            @Override
+                            public void visitState( Location location )
+                                throws ReceiverThrowableType, IOException
+                            {
+                                receiver.receive( location.reader() );
+                            }
+                        } );
+                    }
+                } );
+            }
+        };
+    }
+
+    /**
+     * Visit the states live when the visit starts, ordered by segment and position so that segments are read
+     * sequentially.
+     */
+    private <ThrowableType extends Throwable> void visitLiveStates( final StateVisitor<ThrowableType> visitor )
+        throws ThrowableType, IOException
+    {
+        List<Location> live;
+        synchronized( writeLock )
+        {
+            // Let a compaction waiting for the scans in progress replace its segments first
+            while( replacing )
+            {
+                awaitWriteLock();
+            }
+            scans++;
+            live = new ArrayList<Location>( index.values() );
+        }
+        try
+        {
+            Collections.sort( live, new LocationOrder() );
+            for( Location location : live )
+            {
+                visitor.visitState( location );
+            }
+        }
+        finally
+        {
+            synchronized( writeLock )
+            {
+                scans--;
+                writeLock.notifyAll();
+            }
+        }
+    }
+
+    // Must be called while holding writeLock
+    private void awaitWriteLock()
+        throws InterruptedIOException
+    {
+        try
+        {
+            writeLock.wait();
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for " + segmentsDirectory );
+        }
+    }
+
+    private void write( List<Segment.Entry> entries )
+        throws IOException
+    {
+        byte[] payload = Segment.encode( entries );
+        synchronized( writeLock )
+        {
+            if( !active.fits( payload.length ) )
+            {
+                rollSegment( payload.length );
+            }
+            int payloadPosition = active.append( payload );
+            for( Segment.Entry entry : entries )
+            {
+                Location previous;
+                if( entry.operation == Segment.PUT )
+                {
+                    Location location = new Location( entry.identityString, active, payloadPosition + entry.stateOffset,
+                                                      entry.state.length, entry.size() );
+                    previous = index.put( entry.identityString, location );
+                }
+                else
+                {
+                    previous = index.remove( entry.identityString );
+                    active.addGarbage( entry.size() );
+                }
+                if( previous != null )
+                {
+                    previous.segment.addGarbage( previous.entrySize );
+                }
+            }
+            if( syncWrites )
+            {
+                active.force();
+            }
+        }
+    }
+
+    // Must be called while holding writeLock
+    private void rollSegment( int payloadLength )
+        throws IOException
+    {
+        active.force();
+        int capacity = Math.max( segmentSize, payloadLength + Segment.RECORD_OVERHEAD );
+        active = Segment.create( segmentsDirectory, active.sequence() + 1, 0, Segment.EXTENSION, capacity );
+        segments.add( active );
+
+        long size = 0;
+        long garbage = 0;
+        for( Segment segment : segments )
+        {
+            if( segment != active )
+            {
+                size += segment.size();
+                garbage += segment.garbage();
+            }
+        }
+        if( !compacting && size > 0 && garbage * 100 >= size * compactionThreshold )
+        {
+            compacting = true;
+            compactor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        compact();
+                    }
+                    catch( Exception e )
+                    {
+                        LOGGER.error( "Could not compact segments in " + segmentsDirectory, e );
+                    }
+                    finally
+                    {
+                        synchronized( writeLock )
+                        {
+                            compacting = false;
+                        }
+                    }
+                }
+            } );
+        }
+    }
+
+    /**
+     * Copy the live states of all sealed segments to new segments, then replace the sealed segments with them.
+     * <p>
+     * New segments take generations above those of the sealed segments, so that their names never collide with the
+     * names of the segments they replace. The replacement is recorded in a marker file, synced to disk before any
+     * segment is deleted, so that an interrupted compaction is rolled back on activation if the marker does not
+     * exist, and completed otherwise.
+     * </p>
+     * <p>
+     * Segments are replaced once no scan is in progress, scans starting after the replacement only locate states in
+     * the new segments.
+     * </p>
+     */
+    private void compact()
+        throws IOException
+    {
+        List<Segment> inputs;
+        synchronized( writeLock )
+        {
+            inputs = new ArrayList<Segment>( segments.subList( 0, segments.indexOf( active ) ) );
+        }
+        if( inputs.isEmpty() )
+        {
+            return;
+        }
+
+        final long sequence = inputs.get( 0 ).sequence();
+        int maxGeneration = 0;
+        for( Segment input : inputs )
+        {
+            maxGeneration = Math.max( maxGeneration, input.generation() );
+        }
+        final int generation = maxGeneration;
+        final List<Segment> outputs = new ArrayList<Segment>();
+        final List<Location[]> moves = new ArrayList<Location[]>();
+        final List<Segment.Entry> batch = new ArrayList<Segment.Entry>();
+        final List<Location> batchLocations = new ArrayList<Location>();
+        final int[] batchSize = { 0 };
+        for( final Segment input : inputs )
+        {
+            input.scan( input.size(), new Segment.EntryVisitor()
+            {
+                @Override
+                public void visitEntry( byte operation, String identity, int statePosition, int stateLength, int entrySize )
+                    throws IOException
+                {
+                    Location location = index.get( identity );
+                    if( location == null || location.segment != input || location.position != statePosition )
+                    {
+                        return;
+                    }
+                    Segment.Entry entry = new Segment.Entry( Segment.PUT, identity, location.bytes() );
+                    if( batchSize[ 0 ] + entry.size() > MAX_BATCH_SIZE && !batch.isEmpty() )
+                    {
+                        writeCompacted( sequence, generation, batch, batchLocations, outputs, moves );
+                        batchSize[ 0 ] = 0;
+                    }
+                    batch.add( entry );
+                    batchLocations.add( location );
+                    batchSize[ 0 ] += entry.size();
+                }
+            } );
+        }
+        if( !batch.isEmpty() )
+        {
+            writeCompacted( sequence, generation, batch, batchLocations, outputs, moves );
+        }
+        for( Segment output : outputs )
+        {
+            output.force();
+        }
+
+        File marker = new File( segmentsDirectory, COMPACTION_MARKER );
+        synchronized( writeLock )
+        {
+            replacing = true;
+            try
+            {
+                // Scans in progress may still read states located in the inputs
+                while( scans > 0 )
+                {
+                    awaitWriteLock();
+                }
+                writeCompactionMarker( marker, inputs, outputs );
+                for( Location[] move : moves )
+                {
+                    if( !index.replace( move[ 0 ].identity, move[ 0 ], move[ 1 ] ) )
+                    {
+                        // Changed while compacting
+                        move[ 1 ].segment.addGarbage( move[ 1 ].entrySize );
+                    }
+                }
+                segments.removeAll( inputs );
+                segments.addAll( 0, outputs );
+            }
+            finally
+            {
+                replacing = false;
+                writeLock.notifyAll();
+            }
+        }
+
+        for( Segment input : inputs )
+        {
+            if( !input.delete() )
+            {
+                LOGGER.warn( "Could not delete compacted segment {}", input.path() );
+            }
+        }
+        for( Segment output : outputs )
+        {
+            output.renameTo( new File( segmentsDirectory, Segment.fileName( output.sequence(), output.generation(), Segment.EXTENSION ) ) );
+        }
+        if( !marker.delete() )
+        {
+            throw new IOException( "Could not delete " + marker );
+        }
+        LOGGER.debug( "Compacted {} segments into {} segments", inputs.size(), outputs.size() );
+    }
+
+    private void writeCompacted( long sequence, int generation, List<Segment.Entry> batch,
+                                 List<Location> batchLocations, List<Segment> outputs, List<Location[]> moves )
+        throws IOException
+    {
+        byte[] payload = Segment.encode( batch );
+        Segment output = outputs.isEmpty() ? null : outputs.get( outputs.size() - 1 );
+        if( output == null || !output.fits( payload.length ) )
+        {
+            int capacity = Math.max( segmentSize, payload.length + Segment.RECORD_OVERHEAD );
+            output = Segment.create( segmentsDirectory, sequence, generation + outputs.size() + 1,
+                                     Segment.COMPACTING_EXTENSION, capacity );
+            outputs.add( output );
+        }
+        int payloadPosition = output.append( payload );
+        for( int i = 0; i < batch.size(); i++ )
+        {
+            Segment.Entry entry = batch.get( i );
+            Location moved = new Location( entry.identityString, output, payloadPosition + entry.stateOffset, entry.state.length, entry.size() );
+            moves.add( new Location[]{ batchLocations.get( i ), moved } );
+        }
+        batch.clear();
+        batchLocations.clear();
+    }
+
+    // Write the marker completely and sync it before it appears under its name, a partial marker would delete inputs
+    private void writeCompactionMarker( File marker, List<Segment> inputs, List<Segment> outputs )
+        throws IOException
+    {
+        File temporary = new File( segmentsDirectory, COMPACTION_MARKER + TEMPORARY_EXTENSION );
+        FileOutputStream out = new FileOutputStream( temporary );
+        BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( out, "UTF-8" ) );
+        try
+        {
+            for( Segment input : inputs )
+            {
+                writer.write( "-" + input.path().getName() );
+                writer.newLine();
+            }
+            for( Segment output : outputs )
+            {
+                writer.write( "+" + output.path().getName() );
+                writer.newLine();
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        finally
+        {
+            writer.close();
+        }
+        if( !temporary.renameTo( marker ) )
+        {
+            throw new IOException( "Could not rename " + temporary + " to " + marker );
+        }
+    }
+
+    /**
+     * Complete or roll back an interrupted compaction, then rebuild the index from the segments.
+     */
+    private void recover()
+        throws IOException
+    {
+        File temporaryMarker = new File( segmentsDirectory, COMPACTION_MARKER + TEMPORARY_EXTENSION );
+        if( temporaryMarker.exists() && !temporaryMarker.delete() )
+        {
+            throw new IOException( "Could not delete " + temporaryMarker );
+        }
+        File marker = new File( segmentsDirectory, COMPACTION_MARKER );
+        if( marker.exists() )
+        {
+            // Inputs and outputs have distinct names, whether or not outputs were already renamed
+            BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( marker ), "UTF-8" ) );
+            try
+            {
+                String line;
+                while( ( line = reader.readLine() ) != null )
+                {
+                    File file = new File( segmentsDirectory, line.substring( 1 ) );
+                    if( line.startsWith( "-" ) && file.exists() && !file.delete() )
+                    {
+                        throw new IOException( "Could not delete compacted segment " + file );
+                    }
+                    if( line.startsWith( "+" ) && file.exists() )
+                    {
+                        String name = file.getName();
+                        File target = new File( segmentsDirectory,
+                                                name.substring( 0, name.length() - Segment.COMPACTING_EXTENSION.length() )
+                                                + Segment.EXTENSION );
+                        if( !file.renameTo( target ) )
+                        {
+                            throw new IOException( "Could not rename " + file + " to " + target );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+            if( !marker.delete() )
+            {
+                throw new IOException( "Could not delete " + marker );
+            }
+        }
+
+        File[] files = segmentsDirectory.listFiles();
+        for( File file : files )
+        {
+            if( Segment.isSegment( file, Segment.COMPACTING_EXTENSION ) && !file.delete() )
+            {
+                throw new IOException( "Could not delete incomplete compaction segment " + file );
+            }
+        }
+
+        for( File file : files )
+        {
+            if( Segment.isSegment( file, Segment.EXTENSION ) )
+            {
+                segments.add( Segment.open( file, segmentSize ) );
+            }
+        }
+        Collections.sort( segments );
+        if( segments.isEmpty() )
+        {
+            segments.add( Segment.create( segmentsDirectory, 1, 0, Segment.EXTENSION, segmentSize ) );
+        }
+
+        for( final Segment segment : segments )
+        {
+            segment.recover( new Segment.EntryVisitor()
+            {
+                @Override
+                public void visitEntry( byte operation, String identity, int statePosition, int stateLength, int entrySize )
+                {
+                    Location previous;
+                    if( operation == Segment.PUT )
+                    {
+                        previous = index.put( identity, new Location( identity, segment, statePosition, stateLength, entrySize ) );
+                    }
+                    else
+                    {
+                        previous = index.remove( identity );
+                        segment.addGarbage( entrySize );
+                    }
+                    if( previous != null )
+                    {
+                        previous.segment.addGarbage( previous.entrySize );
+                    }
+                }
+            } );
+        }
+        active = segments.get( segments.size() - 1 );
+    }
+
+    /**
+     * Order of locations by segment, then by position in the segment.
+     */
+    private static final class LocationOrder
+        implements Comparator<Location>
+    {
+        @Override
+        public int compare( Location first, Location second )
+        {
+            int order = first.segment.compareTo( second.segment );
+            if( order != 0 )
+            {
+                return order;
+            }
+            return first.position < second.position ? -1 : ( first.position == second.position ? 0 : 1 );
+        }
+    }
+
+    private interface StateVisitor<ThrowableType extends Throwable>
+    {
+        void visitState( Location location )
+            throws ThrowableType, IOException;
+    }
+
+    /**
+     * Location of the state of an entity in a segment.
+     */
+    private final class Location
+    {
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private final int entrySize;
+        private final String identity;
+
+        private Location( String identity, Segment segment, int position, int length, int entrySize )
+        {
+            this.identity = identity;
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.entrySize = entrySize;
+        }
+
+        private byte[] bytes()
+        {
+            return segment.read( position, length );
+        }
+
+        private String state()
+            throws IOException
+        {
+            return new String( bytes(), "UTF-8" );
+        }
+
+        private Reader reader()
+        {
+            try
+            {
+                return new StringReader( state() );
+            }
+            catch( IOException e )
+            {
+                throw new EntityStoreException( e );
+            }
+        }
+    }
+}
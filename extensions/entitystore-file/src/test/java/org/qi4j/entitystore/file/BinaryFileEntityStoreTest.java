@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.spi.entitystore.helpers.StateCompression;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test of BinaryFileEntityStoreService compressing states.
+ */
+public class BinaryFileEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+        module.services( FileConfigurationService.class );
+        module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+        module.services( BinaryFileEntityStoreService.class ).setMetaInfo( StateCompression.deflate().withMinimumSize( 0 ) );
+
+        // Store writing JSON text into the same directory
+        ModuleAssembly legacy = module.layer().module( "legacy" );
+        legacy.entities( TestEntity.class );
+        legacy.values( TestValue.class, TestValue2.class, TjabbaValue.class );
+        legacy.services( UuidIdentityGeneratorService.class );
+        legacy.services( FileConfigurationService.class );
+        legacy.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+        legacy.services( FileEntityStoreService.class );
+
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+        config.entities( FileEntityStoreConfiguration.class ).visibleIn( Visibility.layer );
+        config.forMixin( FileEntityStoreConfiguration.class ).declareDefaults()
+            .directory().set( tmp.getRoot().getAbsolutePath() );
+    }
+
+    @Test
+    public void givenCompressionWhenStoringThenFileIsNotJsonText()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        String identity = createEntity( unitOfWork ).identity().get();
+        unitOfWork.complete();
+
+        assertThat( firstByte( dataFile( identity ) ), not( equalTo( (int) '{' ) ) );
+    }
+
+    @Test
+    public void givenStateStoredAsJsonTextWhenReadingThenStateIsDecoded()
+        throws Exception
+    {
+        Module legacy = application.findModule( "Layer 1", "legacy" );
+        UnitOfWork unitOfWork = legacy.newUnitOfWork();
+        EntityBuilder<TestEntity> builder = unitOfWork.newEntityBuilder( TestEntity.class, "legacy-entity" );
+        builder.instance().name().set( "Legacy" );
+        builder.instance().intValue().set( 17 );
+        builder.newInstance();
+        unitOfWork.complete();
+        assertThat( firstByte( dataFile( "legacy-entity" ) ), equalTo( (int) '{' ) );
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            TestEntity entity = unitOfWork.get( TestEntity.class, "legacy-entity" );
+            assertThat( entity.name().get(), equalTo( "Legacy" ) );
+            assertThat( entity.intValue().get(), equalTo( 17 ) );
+            entity.intValue().set( 18 );
+            unitOfWork.complete();
+        }
+        finally
+        {
+            if( unitOfWork.isOpen() )
+            {
+                unitOfWork.discard();
+            }
+        }
+
+        // Written back encoded once updated
+        assertThat( firstByte( dataFile( "legacy-entity" ) ), not( equalTo( (int) '{' ) ) );
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( TestEntity.class, "legacy-entity" ).intValue().get(), equalTo( 18 ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+
+    private File dataFile( String identity )
+    {
+        File slices = new File( tmp.getRoot(), "data" );
+        for( File slice : slices.listFiles() )
+        {
+            File dataFile = new File( slice, identity + ".json" );
+            if( dataFile.exists() )
+            {
+                return dataFile;
+            }
+        }
+        throw new AssertionError( "No data file for " + identity );
+    }
+
+    private static int firstByte( File file )
+        throws Exception
+    {
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            return in.read();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.file;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qi4j.api.activation.Activation;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Outputs;
+import org.qi4j.io.Receiver;
+import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.entitystore.file.assembly.SegmentedFileEntityStoreAssembler;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedFileEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Override
+    // START SNIPPET: assembly
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        // END SNIPPET: assembly
+        super.assemble( module );
+        module.services( FileConfigurationService.class );
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+        // START SNIPPET: assembly
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        new SegmentedFileEntityStoreAssembler().assemble( module );
+        config.entities( FileEntityStoreConfiguration.class ).visibleIn( Visibility.layer );
+        // END SNIPPET: assembly
+        // Small segments so that tests roll and compact them
+        FileEntityStoreConfiguration defaults = config.forMixin( FileEntityStoreConfiguration.class ).declareDefaults();
+        defaults.segmentSize().set( 16 * 1024 );
+        defaults.compactionThreshold().set( 10 );
+        defaults.directory().set( tmp.getRoot().getAbsolutePath() );
+        // START SNIPPET: assembly
+    }
+    // END SNIPPET: assembly
+
+    @Test
+    public void givenManyUpdatesAcrossSegmentsWhenReadingThenLatestStateIsReturned()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        String identity = createEntity( unitOfWork ).identity().get();
+        unitOfWork.complete();
+
+        for( int i = 0; i < 200; i++ )
+        {
+            unitOfWork = module.newUnitOfWork();
+            unitOfWork.get( TestEntity.class, identity ).intValue().set( i );
+            unitOfWork.complete();
+        }
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( TestEntity.class, identity ).intValue().get(), equalTo( 199 ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+
+    @Test
+    public void givenTwoCompactionsWhenReopeningThenLatestStatesAreRecovered()
+        throws Exception
+    {
+        // Unchanged entities stay in sealed segments and are copied by each compaction
+        List<String> unchanged = createEntities( 20 );
+        List<String> updated = createEntities( 20 );
+        int updates = updateUntilCompacted( updated, 2 );
+
+        reopen();
+
+        assertLatestStates( unchanged, 42 );
+        assertLatestStates( updated, updates - 1 );
+    }
+
+    @Test
+    public void givenMarkerLeftAfterRenamingCompactedSegmentsWhenReopeningThenLatestStatesAreRecovered()
+        throws Exception
+    {
+        List<String> unchanged = createEntities( 20 );
+        List<String> updated = createEntities( 20 );
+        int updates = updateUntilCompacted( updated, 2 );
+        passivate();
+
+        // Marker of the last compaction, as if the process died after renaming its output but before deleting
+        // the marker
+        File compacted = segmentFiles().get( 0 );
+        Segment segment = Segment.open( compacted, 0 );
+        segment.close();
+        long sequence = segment.sequence();
+        int generation = segment.generation();
+        FileWriter marker = new FileWriter( new File( compacted.getParentFile(), "compaction" ) );
+        marker.write( "-" + Segment.fileName( sequence, generation - 1, Segment.EXTENSION ) + "\n" );
+        marker.write( "+" + Segment.fileName( sequence, generation, Segment.COMPACTING_EXTENSION ) + "\n" );
+        marker.close();
+        activate();
+
+        assertLatestStates( unchanged, 42 );
+        assertLatestStates( updated, updates - 1 );
+        assertThat( compacted.exists(), equalTo( true ) );
+        assertThat( new File( compacted.getParentFile(), "compaction" ).exists(), equalTo( false ) );
+    }
+
+    @Test
+    public void givenCompactionDuringBackupWhenBackupCompletesThenEachEntityIsBackedUpOnce()
+        throws Exception
+    {
+        List<String> unchanged = createEntities( 20 );
+        final List<String> updated = createEntities( 20 );
+        final AtomicReference<Exception> updateFailure = new AtomicReference<Exception>();
+        final List<String> backedUp = new ArrayList<String>();
+        BackupRestore backupRestore = module.findService( SegmentedFileEntityStoreService.class ).get();
+        backupRestore.backup().transferTo( Outputs.withReceiver( new Receiver<String, Exception>()
+        {
+            @Override
+            public void receive( String state )
+                throws Exception
+            {
+                if( backedUp.isEmpty() )
+                {
+                    // Update until a compaction starts, then let it try to complete while the backup is in progress
+                    Thread updates = new Thread()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                for( int round = 0; round < 1000 && compactingSegmentFiles().isEmpty(); round++ )
+                                {
+                                    updateAll( updated, round );
+                                }
+                                Thread.sleep( 200 );
+                            }
+                            catch( Exception e )
+                            {
+                                updateFailure.set( e );
+                            }
+                        }
+                    };
+                    updates.start();
+                    updates.join();
+                }
+                backedUp.add( new JSONObject( state ).getString( "identity" ) );
+            }
+        } ) );
+        assertThat( updateFailure.get(), equalTo( null ) );
+
+        Set<String> expected = new HashSet<String>( unchanged );
+        expected.addAll( updated );
+        assertThat( backedUp.size(), equalTo( expected.size() ) );
+        assertThat( new HashSet<String>( backedUp ), equalTo( expected ) );
+
+        // The compaction completes once the backup ends
+        long timeout = System.currentTimeMillis() + 10000;
+        while( !compactingSegmentFiles().isEmpty() && System.currentTimeMillis() < timeout )
+        {
+            Thread.sleep( 10 );
+        }
+        assertThat( compactingSegmentFiles().isEmpty(), equalTo( true ) );
+        assertLatestStates( unchanged, 42 );
+    }
+
+    @Test
+    public void givenTornRecordWhenRecoveringSegmentThenOnlyCompleteRecordsAreVisited()
+        throws IOException
+    {
+        File directory = tmp.newFolder( "segments" );
+        Segment segment = Segment.create( directory, 1, 0, Segment.EXTENSION, 4096 );
+        segment.append( Segment.encode( Arrays.asList( new Segment.Entry( Segment.PUT, "first", "{}".getBytes( "UTF-8" ) ) ) ) );
+        int end = segment.size();
+        byte[] second = Segment.encode( Arrays.asList( new Segment.Entry( Segment.PUT, "second", "{}".getBytes( "UTF-8" ) ) ) );
+        int secondPosition = segment.append( second );
+        segment.close();
+
+        // Corrupt the second record, as if the process died while writing it
+        RandomAccessFile file = new RandomAccessFile( segment.path(), "rw" );
+        file.seek( secondPosition + second.length - 1 );
+        file.write( 0x7f );
+        file.close();
+
+        Segment reopened = Segment.open( segment.path(), 4096 );
+        final List<String> recovered = new ArrayList<String>();
+        reopened.recover( new Segment.EntryVisitor()
+        {
+            @Override
+            public void visitEntry( byte operation, String identity, int statePosition, int stateLength, int entrySize )
+            {
+                recovered.add( identity );
+            }
+        } );
+        reopened.close();
+
+        assertThat( recovered, equalTo( Arrays.asList( "first" ) ) );
+        assertThat( reopened.size(), equalTo( end ) );
+    }
+
+    private List<String> createEntities( int count )
+        throws Exception
+    {
+        List<String> identities = new ArrayList<String>();
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        for( int i = 0; i < count; i++ )
+        {
+            identities.add( createEntity( unitOfWork ).identity().get() );
+        }
+        unitOfWork.complete();
+        return identities;
+    }
+
+    /**
+     * Update all entities, reopening the store after each round of updates so that started compactions complete,
+     * until the given number of compactions happened.
+     *
+     * @return the number of rounds of updates
+     */
+    private int updateUntilCompacted( List<String> identities, int compactions )
+        throws Exception
+    {
+        int round = 0;
+        // Each compaction writes segments with generations above those it compacted
+        while( segmentFiles().isEmpty() || generation( segmentFiles().get( 0 ) ) < compactions )
+        {
+            assertTrue( "Segments not compacted", round < 1000 );
+            updateAll( identities, round );
+            round++;
+            reopen();
+        }
+        return round;
+    }
+
+    private void updateAll( List<String> identities, int value )
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        for( String identity : identities )
+        {
+            unitOfWork.get( TestEntity.class, identity ).intValue().set( value );
+        }
+        unitOfWork.complete();
+    }
+
+    private void assertLatestStates( List<String> identities, int value )
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        try
+        {
+            for( String identity : identities )
+            {
+                assertThat( unitOfWork.get( TestEntity.class, identity ).intValue().get(), equalTo( value ) );
+            }
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+
+    private void reopen()
+        throws Exception
+    {
+        passivate();
+        activate();
+    }
+
+    private void activate()
+        throws Exception
+    {
+        ( (Activation) module.findService( SegmentedFileEntityStoreService.class ) ).activate();
+    }
+
+    private void passivate()
+        throws Exception
+    {
+        ( (Activation) module.findService( SegmentedFileEntityStoreService.class ) ).passivate();
+    }
+
+    private List<File> segmentFiles()
+    {
+        return segmentFiles( Segment.EXTENSION );
+    }
+
+    private List<File> compactingSegmentFiles()
+    {
+        return segmentFiles( Segment.COMPACTING_EXTENSION );
+    }
+
+    private List<File> segmentFiles( String extension )
+    {
+        List<File> files = new ArrayList<File>();
+        File[] children = new File( tmp.getRoot(), "segments" ).listFiles();
+        if( children != null )
+        {
+            for( File file : children )
+            {
+                if( Segment.isSegment( file, extension ) )
+                {
+                    files.add( file );
+                }
+            }
+        }
+        Collections.sort( files );
+        return files;
+    }
+
+    private static int generation( File segment )
+        throws IOException
+    {
+        Segment opened = Segment.open( segment, 0 );
+        opened.close();
+        return opened.generation();
+    }
+}
@@ -19,7 +19,11 @@
 package org.qi4j.entitystore.gae;
 
 import com.google.appengine.api.datastore.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.structure.Module;
@@ -95,6 +99,30 @@ public class GaeEntityStoreUnitOfWork
         }
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> references )
+        throws EntityStoreException
+    {
+        List<Key> keys = new ArrayList<Key>();
+        for( EntityReference reference : references )
+        {
+            keys.add( KeyFactory.createKey( "qi4j-entity", reference.identity() ) );
+        }
+        Map<Key, Entity> entities = datastore.get( keys );
+        Map<EntityReference, EntityState> entityStates = new LinkedHashMap<EntityReference, EntityState>();
+        for( Key key : keys )
+        {
+            Entity entity = entities.get( key );
+            if( entity != null )
+            {
+                GaeEntityState state = new GaeEntityState( this, valueSerialization, entity, module );
+                states.add( state );
+                entityStates.put( new EntityReference( key.getName() ), state );
+            }
+        }
+        return entityStates;
+    }
+
     @Override
     public StateCommitter applyChanges()
         throws EntityStoreException
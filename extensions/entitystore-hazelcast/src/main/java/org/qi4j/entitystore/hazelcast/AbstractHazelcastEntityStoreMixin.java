@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.hazelcast;
+
+import com.hazelcast.config.ClasspathXmlConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.config.UrlXmlConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import java.io.IOException;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.service.ServiceActivation;
+
+/**
+ * Hazelcast member lifecycle shared by the Hazelcast EntityStore mixins.
+ * <p>
+ * Each activated service starts its own embedded Hazelcast member and stores entity states in a distributed map.
+ * If {@link HazelcastConfiguration#nearCacheMaxSize()} is set, a near cache is configured on that map, so that
+ * repeated reads of the same entities are served locally. Entries of the near cache are invalidated when the
+ * entity is changed on any member.
+ * </p>
+ *
+ * @param <V> Type of the values of the map
+ */
+public abstract class AbstractHazelcastEntityStoreMixin<V>
+    implements ServiceActivation, HazelcastAccessors
+{
+    static final String DEFAULT_MAPNAME = "qi4j:entitystore:data";
+    private static final String DEFAULT_CONFIGURATION = "org/qi4j/entitystore/hazelcast/defaultConfiguration.xml";
+
+    @This
+    private Configuration<HazelcastConfiguration> config;
+
+    protected IMap<String, V> map;
+    private HazelcastInstance hazelcastInstance;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        HazelcastConfiguration configuration = config.get();
+        String mapName = DEFAULT_MAPNAME;
+        if( configuration != null && configuration.mapName().get() != null )
+        {
+            mapName = configuration.mapName().get();
+        }
+        Config conf = createConfig( configuration, mapName );
+        hazelcastInstance = Hazelcast.newHazelcastInstance( conf );
+        map = hazelcastInstance.getMap( mapName );
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        map = null;
+        hazelcastInstance.getLifecycleService().shutdown();
+    }
+
+    @Override
+    public HazelcastInstance hazelcastInstanceUsed()
+    {
+        return hazelcastInstance;
+    }
+
+    @Override
+    public IMap hazelcastMapUsed()
+    {
+        return map;
+    }
+
+    private Config createConfig( HazelcastConfiguration configuration, String mapName )
+        throws IOException
+    {
+        String hzConfLocation = configuration.configXmlLocation().get();
+        if( hzConfLocation == null )
+        {
+            hzConfLocation = DEFAULT_CONFIGURATION;
+        }
+        Config conf;
+        if( hzConfLocation.contains( ":" ) )
+        {
+            conf = new UrlXmlConfig( hzConfLocation );
+        }
+        else
+        {
+            conf = new ClasspathXmlConfig( hzConfLocation );
+        }
+
+        Integer nearCacheMaxSize = configuration.nearCacheMaxSize().get();
+        if( nearCacheMaxSize != null && nearCacheMaxSize > 0 )
+        {
+            // Overrides any near cache of the XML configuration
+            NearCacheConfig nearCache = new NearCacheConfig();
+            nearCache.setMaxSize( nearCacheMaxSize );
+            nearCache.setEvictionPolicy( "LRU" );
+            nearCache.setInvalidateOnChange( true );
+            Integer timeToLive = configuration.nearCacheTimeToLive().get();
+            nearCache.setTimeToLiveSeconds( timeToLive == null ? 0 : timeToLive );
+            conf.getMapConfig( mapName ).setNearCacheConfig( nearCache );
+        }
+        return conf;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.hazelcast;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.spi.entitystore.EntityNotFoundException;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStore;
+
+/**
+ * Hazelcast implementation of BinaryMapEntityStore.
+ * <p>
+ * Encoded states are stored as byte arrays, smaller to hold, replicate and transfer than JSON text. States stored as
+ * JSON text by {@link HazelcastEntityStoreMixin} in the same map are still read, and written back encoded once
+ * updated.
+ * </p>
+ * <p>
+ * Entities loaded together are fetched with a single getAll, and the changes of a UnitOfWork are written with a
+ * single putAll.
+ * </p>
+ */
+public class BinaryHazelcastEntityStoreMixin
+    extends AbstractHazelcastEntityStoreMixin<Object>
+    implements BinaryMapEntityStore
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    @Override
+    public byte[] getBinary( EntityReference entityReference )
+        throws EntityStoreException
+    {
+        Object state = map.get( entityReference.identity() );
+        if( state == null )
+        {
+            throw new EntityNotFoundException( entityReference );
+        }
+        return bytes( state );
+    }
+
+    @Override
+    public Map<EntityReference, byte[]> getBinaries( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Set<String> identities = new LinkedHashSet<String>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            identities.add( entityReference.identity() );
+        }
+        Map<String, Object> stored = map.getAll( identities );
+        Map<EntityReference, byte[]> states = new LinkedHashMap<EntityReference, byte[]>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            Object state = stored.get( entityReference.identity() );
+            if( state != null )
+            {
+                states.put( entityReference, bytes( state ) );
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public Input<byte[], IOException> binaryEntityStates()
+    {
+        return new Input<byte[], IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super byte[], ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                output.receiveFrom( new Sender<byte[], IOException>()
+                {
+                    @Override
+                    public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super byte[], ReceiverThrowableType> receiver )
+                        throws ReceiverThrowableType, IOException
+                    {
+                        for( Object state : map.values() )
+                        {
+                            receiver.receive( bytes( state ) );
+                        }
+                    }
+                } );
+            }
+        };
+    }
+
+    @Override
+    public void applyBinaryChanges( BinaryMapChanges changes )
+        throws IOException
+    {
+        final Map<String, Object> updated = new HashMap<String, Object>();
+        final List<String> removed = new ArrayList<String>();
+        changes.visitMap( new BinaryMapChanger()
+        {
+            @Override
+            public void newEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            {
+                updated.put( ref.identity(), state );
+            }
+
+            @Override
+            public void updateEntity( EntityReference ref, EntityDescriptor entityDescriptor, byte[] state )
+            {
+                updated.put( ref.identity(), state );
+            }
+
+            @Override
+            public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                throws EntityNotFoundException
+            {
+                removed.add( ref.identity() );
+            }
+        } );
+        if( !updated.isEmpty() )
+        {
+            map.putAll( updated );
+        }
+        for( String identity : removed )
+        {
+            map.remove( identity );
+        }
+    }
+
+    private static byte[] bytes( Object state )
+    {
+        if( state instanceof String )
+        {
+            // Written by HazelcastEntityStoreMixin, decoded as JSON text
+            return ( (String) state ).getBytes( UTF_8 );
+        }
+        return (byte[]) state;
+    }
+}
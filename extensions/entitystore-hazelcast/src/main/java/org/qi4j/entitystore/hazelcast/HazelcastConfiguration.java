@@ -36,5 +36,11 @@ public interface HazelcastConfiguration
     @UseDefaults
     Property<String> mapName();
 
+    @UseDefaults
+    Property<Integer> nearCacheMaxSize();
+
+    @UseDefaults
+    Property<Integer> nearCacheTimeToLive();
+
 }
 // END SNIPPET: config
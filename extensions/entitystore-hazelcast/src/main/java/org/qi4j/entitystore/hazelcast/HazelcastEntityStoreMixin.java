@@ -18,97 +18,81 @@
  */
 package org.qi4j.entitystore.hazelcast;
 
-import com.hazelcast.config.ClasspathXmlConfig;
-import com.hazelcast.config.Config;
-import com.hazelcast.config.UrlXmlConfig;
-import com.hazelcast.core.Hazelcast;
-import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.core.IMap;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import org.qi4j.api.configuration.Configuration;
+import java.util.Set;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
-import org.qi4j.api.injection.scope.This;
-import org.qi4j.api.service.ServiceActivation;
 import org.qi4j.io.Input;
 import org.qi4j.io.Output;
 import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 
 /**
  * Hazelcast implementation of MapEntityStore.
+ * <p>
+ * Entities loaded together are fetched with a single getAll, and the changes of a UnitOfWork are written with a
+ * single putAll.
+ * </p>
  */
 public class HazelcastEntityStoreMixin
-    implements ServiceActivation, HazelcastAccessors, MapEntityStore
+    extends AbstractHazelcastEntityStoreMixin<String>
+    implements MapEntityStore, BulkMapEntityStore
 {
 
-    private static final String DEFAULT_MAPNAME = "qi4j:entitystore:data";
-
-    @This
-    private Configuration<HazelcastConfiguration> config;
-
-    private IMap<String, String> stringMap;
-    private HazelcastInstance hazelcastInstance;
-
     @Override
-    public void activateService()
-        throws Exception
+    public Reader get( EntityReference ref )
+        throws EntityStoreException
     {
-        HazelcastConfiguration configuration = config.get();
-        Config conf = createConfig( configuration );
-        hazelcastInstance = Hazelcast.newHazelcastInstance( conf );
-        String mapName = DEFAULT_MAPNAME;
-        if( configuration != null && configuration.mapName() != null )
+        final String serializedState = map.get( ref.identity() );
+        if( serializedState == null )
         {
-            mapName = configuration.mapName().get();
+            throw new EntityNotFoundException( ref );
         }
-        stringMap = hazelcastInstance.getMap( mapName );
-    }
-
-    @Override
-    public void passivateService()
-        throws Exception
-    {
-        stringMap = null;
-        hazelcastInstance.getLifecycleService().shutdown();
-    }
-
-    @Override
-    public HazelcastInstance hazelcastInstanceUsed()
-    {
-        return hazelcastInstance;
-    }
-
-    @Override
-    public IMap hazelcastMapUsed()
-    {
-        return stringMap;
+        return new StringReader( serializedState );
     }
 
     @Override
-    public Reader get( EntityReference ref )
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
         throws EntityStoreException
     {
-        final String serializedState = stringMap.get( ref.identity() );
-        if( serializedState == null )
+        Set<String> identities = new LinkedHashSet<String>();
+        for( EntityReference entityReference : entityReferences )
         {
-            throw new EntityNotFoundException( ref );
+            identities.add( entityReference.identity() );
         }
-        return new StringReader( serializedState );
+        Map<String, String> serializedStates = map.getAll( identities );
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            String serializedState = serializedStates.get( entityReference.identity() );
+            if( serializedState != null )
+            {
+                states.put( entityReference, new StringReader( serializedState ) );
+            }
+        }
+        return states;
     }
 
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
     {
+        final Map<String, String> updated = new HashMap<String, String>();
+        final List<String> removed = new ArrayList<String>();
         changes.visitMap( new MapChanger()
         {
 
@@ -124,7 +108,7 @@ public class HazelcastEntityStoreMixin
                         throws IOException
                     {
                         super.close();
-                        stringMap.put( ref.identity(), toString() );
+                        updated.put( ref.identity(), toString() );
                     }
                 };
             }
@@ -140,9 +124,17 @@ public class HazelcastEntityStoreMixin
             public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
                 throws EntityNotFoundException
             {
-                stringMap.remove( ref.identity() );
+                removed.add( ref.identity() );
             }
         } );
+        if( !updated.isEmpty() )
+        {
+            map.putAll( updated );
+        }
+        for( String identity : removed )
+        {
+            map.remove( identity );
+        }
     }
 
     @Override
@@ -160,7 +152,7 @@ public class HazelcastEntityStoreMixin
                     public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super Reader, ReceiverThrowableType> receiver )
                         throws ReceiverThrowableType, IOException
                     {
-                        for( Map.Entry<String, String> eachEntry : stringMap.entrySet() )
+                        for( Map.Entry<String, String> eachEntry : map.entrySet() )
                         {
                             receiver.receive( new StringReader( eachEntry.getValue() ) );
                         }
@@ -169,24 +161,4 @@ public class HazelcastEntityStoreMixin
             }
         };
     }
-
-    private Config createConfig( HazelcastConfiguration configuration )
-        throws IOException
-    {
-        String hzConfLocation = configuration.configXmlLocation().get();
-        if( hzConfLocation == null )
-        {
-            hzConfLocation = "org/qi4j/entitystore/hazelcast/defaultConfiguration.xml";
-        }
-        Config conf;
-        if( hzConfLocation.contains( ":" ) )
-        {
-            conf = new UrlXmlConfig( hzConfLocation );
-        }
-        else
-        {
-            conf = new ClasspathXmlConfig( hzConfLocation );
-        }
-        return conf;
-    }
 }
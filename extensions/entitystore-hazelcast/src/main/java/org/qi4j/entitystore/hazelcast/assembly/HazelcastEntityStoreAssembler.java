@@ -22,6 +22,7 @@ import org.qi4j.api.common.Visibility;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.hazelcast.BinaryHazelcastEntityStoreService;
 import org.qi4j.entitystore.hazelcast.HazelcastConfiguration;
 import org.qi4j.entitystore.hazelcast.HazelcastEntityStoreService;
 import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
@@ -33,6 +34,7 @@ public class HazelcastEntityStoreAssembler
     private final Visibility visibility;
     private ModuleAssembly config;
     private Visibility configVisibility;
+    private boolean binaryStates;
 
     public HazelcastEntityStoreAssembler()
     {
@@ -51,11 +53,27 @@ public class HazelcastEntityStoreAssembler
         return this;
     }
 
+    /**
+     * Store entity states binary encoded instead of as JSON text.
+     */
+    public HazelcastEntityStoreAssembler withBinaryStates()
+    {
+        this.binaryStates = true;
+        return this;
+    }
+
     @Override
     public void assemble( ModuleAssembly module )
         throws AssemblyException
     {
-        module.services( HazelcastEntityStoreService.class ).visibleIn( visibility ).instantiateOnStartup();
+        if( binaryStates )
+        {
+            module.services( BinaryHazelcastEntityStoreService.class ).visibleIn( visibility ).instantiateOnStartup();
+        }
+        else
+        {
+            module.services( HazelcastEntityStoreService.class ).visibleIn( visibility ).instantiateOnStartup();
+        }
         module.services( UuidIdentityGeneratorService.class ).visibleIn( visibility );
         if( config != null )
         {
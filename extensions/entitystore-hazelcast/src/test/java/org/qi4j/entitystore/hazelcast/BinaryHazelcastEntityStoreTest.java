@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.hazelcast;
+
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.hazelcast.assembly.HazelcastEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+public class BinaryHazelcastEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+        ModuleAssembly configModule = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( configModule );
+        HazelcastConfiguration defaults = configModule.forMixin( HazelcastConfiguration.class ).declareDefaults();
+        defaults.configXmlLocation().set( "org/qi4j/entitystore/hazelcast/localCluster.xml" );
+        defaults.nearCacheMaxSize().set( 1000 );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        // START SNIPPET: assembly
+        new HazelcastEntityStoreAssembler().withBinaryStates().withConfigIn( configModule, Visibility.layer ).assemble( module );
+        // END SNIPPET: assembly
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.hazelcast;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.entitystore.hazelcast.assembly.HazelcastEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Many Qi4j applications in one JVM, each embedding a Hazelcast member of the same cluster.
+ */
+public class HazelcastMultiMemberTest
+{
+    private final List<SingletonAssembler> members = new ArrayList<SingletonAssembler>();
+
+    @After
+    public void shutdownMembers()
+        throws Exception
+    {
+        for( SingletonAssembler member : members )
+        {
+            member.application().passivate();
+        }
+        members.clear();
+    }
+
+    @Test
+    public void givenEntityCreatedOnOneMemberWhenReadOnAnotherThenStateIsShared()
+        throws Exception
+    {
+        Module first = startMember().module();
+        Module second = startMember().module();
+
+        UnitOfWork uow = first.newUnitOfWork();
+        uow.newEntity( Counter.class, "counter" ).name().set( "shared" );
+        uow.complete();
+
+        uow = second.newUnitOfWork();
+        try
+        {
+            assertThat( uow.get( Counter.class, "counter" ).name().get(), equalTo( "shared" ) );
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    @Test
+    public void givenNearCachedEntityWhenUpdatedOnAnotherMemberThenNewStateIsRead()
+        throws Exception
+    {
+        Module first = startMember().module();
+        Module second = startMember().module();
+
+        UnitOfWork uow = first.newUnitOfWork();
+        uow.newEntity( Counter.class, "counter" );
+        uow.complete();
+        assertThat( count( second, "counter" ), equalTo( 0 ) );
+
+        uow = first.newUnitOfWork();
+        Counter counter = uow.get( Counter.class, "counter" );
+        counter.count().set( counter.count().get() + 1 );
+        uow.complete();
+
+        // Near cache invalidation is asynchronous
+        long timeout = System.currentTimeMillis() + 5000;
+        while( count( second, "counter" ) != 1 && System.currentTimeMillis() < timeout )
+        {
+            Thread.sleep( 10 );
+        }
+        assertThat( count( second, "counter" ), equalTo( 1 ) );
+    }
+
+    private SingletonAssembler startMember()
+        throws Exception
+    {
+        SingletonAssembler member = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.entities( Counter.class );
+                ModuleAssembly configModule = module.layer().module( "config" );
+                new EntityTestAssembler().assemble( configModule );
+                HazelcastConfiguration defaults = configModule.forMixin( HazelcastConfiguration.class ).declareDefaults();
+                defaults.configXmlLocation().set( "org/qi4j/entitystore/hazelcast/localCluster.xml" );
+                defaults.nearCacheMaxSize().set( 10000 );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                new HazelcastEntityStoreAssembler().withBinaryStates().withConfigIn( configModule, Visibility.layer ).assemble( module );
+            }
+        };
+        members.add( member );
+        return member;
+    }
+
+    private static int count( Module module, String identity )
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            return uow.get( Counter.class, identity ).count().get();
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    public interface Counter
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> name();
+
+        @UseDefaults
+        Property<Integer> count();
+    }
+}
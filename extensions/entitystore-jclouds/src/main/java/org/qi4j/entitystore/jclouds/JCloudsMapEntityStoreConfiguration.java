@@ -40,6 +40,10 @@ public interface JCloudsMapEntityStoreConfiguration
      * Name of the JClouds container to use. Defaults to 'qi4j-entities'.
      */
     @Optional Property<String> container();
+    /**
+     * Maximum number of blob operations run concurrently. Defaults to 8.
+     */
+    @Optional Property<Integer> concurrency();
     // END SNIPPET: config
 
 }
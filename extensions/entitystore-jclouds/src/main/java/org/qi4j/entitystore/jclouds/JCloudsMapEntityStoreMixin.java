@@ -19,22 +19,36 @@ import com.google.common.collect.Maps;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jclouds.ContextBuilder;
 import org.jclouds.apis.ApiMetadata;
 import org.jclouds.apis.Apis;
-import org.jclouds.blobstore.BlobMap;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
-import org.jclouds.blobstore.InputStreamMap;
 import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.ListContainerOptions;
 import org.jclouds.providers.ProviderMetadata;
 import org.jclouds.providers.Providers;
 import org.qi4j.api.configuration.Configuration;
@@ -50,6 +64,7 @@ import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +74,12 @@ import static com.google.common.collect.Iterables.contains;
 
 /**
  * JClouds implementation of MapEntityStore.
+ * <p>
+ * Blob operations are run by a fixed size thread pool, see
+ * {@link JCloudsMapEntityStoreConfiguration#concurrency()}. All blob operations of a UnitOfWork are issued at once,
+ * entities loaded together are fetched in parallel, and {@link #entityStates()} fetches blobs while listing the
+ * container. So that the latency of the object store is paid about once per UnitOfWork instead of once per entity.
+ * </p>
  */
 // TODO Expose Location in configuration
 //      To be done once JClouds 1.5 has stabilized their Location API.
@@ -67,7 +88,7 @@ import static com.google.common.collect.Iterables.contains;
 //      @UseDefaults Property<List<String>> geopoliticalBoundaries(); ???
 //      SEE  http://www.jclouds.org/documentation/reference/location-metadata-design
 public class JCloudsMapEntityStoreMixin
-    implements ServiceActivation, MapEntityStore
+    implements ServiceActivation, MapEntityStore, BulkMapEntityStore
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( "org.qi4j.entitystore.jclouds" );
@@ -80,11 +101,21 @@ public class JCloudsMapEntityStoreMixin
 
     private static final Set<String> allKeys = ImmutableSet.copyOf( Iterables.concat( appProviders.keySet(), allApis.keySet() ) );
 
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final long TERMINATION_TIMEOUT_SECONDS = 60;
+
     @This
     private Configuration<JCloudsMapEntityStoreConfiguration> configuration;
 
     private BlobStoreContext storeContext;
 
+    private BlobStore blobStore;
+
+    private ExecutorService executor;
+
+    private int concurrency;
+
     private String container;
 
     @Override
@@ -97,6 +128,7 @@ public class JCloudsMapEntityStoreMixin
         String credentials = configuration.get().credential().get();
         Map<String, String> properties = configuration.get().properties().get();
         container = configuration.get().container().get();
+        Integer configuredConcurrency = configuration.get().concurrency().get();
         if( provider != null )
         {
             checkArgument( contains( allKeys, provider ), "provider %s not in supported list: %s", provider, allKeys );
@@ -109,11 +141,14 @@ public class JCloudsMapEntityStoreMixin
         {
             container = "qi4j-entities";
         }
+        concurrency = configuredConcurrency == null || configuredConcurrency < 1
+                      ? DEFAULT_CONCURRENCY
+                      : configuredConcurrency;
         storeContext = ContextBuilder.newBuilder( provider ).
             credentials( identifier, credentials ).
             overrides( asProperties( properties ) ).
             buildView( BlobStoreContext.class );
-        BlobStore blobStore = storeContext.getBlobStore();
+        blobStore = createBlobStore( storeContext );
         if( !blobStore.containerExists( container ) )
         {
             if( !blobStore.createContainerInLocation( null, container ) )
@@ -125,7 +160,30 @@ public class JCloudsMapEntityStoreMixin
                 LOGGER.debug( "Created new container: {}", container );
             }
         }
-        LOGGER.info( "Activated using {} cloud provider [id:{}]", provider, identifier );
+        executor = Executors.newFixedThreadPool( concurrency, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "qi4j-entitystore-jclouds-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        LOGGER.info( "Activated using {} cloud provider [id:{}], up to {} concurrent blob operations",
+                     new Object[]{ provider, identifier, concurrency } );
+    }
+
+    /**
+     * @param context BlobStoreContext built from the configuration
+     *
+     * @return the BlobStore holding entity states
+     */
+    protected BlobStore createBlobStore( BlobStoreContext context )
+    {
+        return context.getBlobStore();
     }
 
     private Properties asProperties( Map<String, String> map )
@@ -142,10 +200,23 @@ public class JCloudsMapEntityStoreMixin
     public void passivateService()
         throws Exception
     {
+        if( executor != null )
+        {
+            executor.shutdown();
+            // In-flight reads and writes need the BlobStoreContext
+            if( !executor.awaitTermination( TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                LOGGER.warn( "Blob operations still running after {}s, closing the BlobStore anyway",
+                             TERMINATION_TIMEOUT_SECONDS );
+                executor.shutdownNow();
+            }
+            executor = null;
+        }
         if( storeContext != null )
         {
             storeContext.close();
             storeContext = null;
+            blobStore = null;
             container = null;
         }
     }
@@ -154,95 +225,123 @@ public class JCloudsMapEntityStoreMixin
     public Reader get( EntityReference entityReference )
         throws EntityStoreException
     {
-        InputStreamMap isMap = storeContext.createInputStreamMap( container );
-        InputStream input = isMap.get( entityReference.identity() );
-
-        if( input == null )
+        String state = readBlob( entityReference.identity() );
+        if( state == null )
         {
             throw new EntityNotFoundException( entityReference );
         }
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Inputs.byteBuffer( input, 4096 ).transferTo( Outputs.byteBuffer( baos ) );
-            return new StringReader( baos.toString( "UTF-8" ) );
-        }
-        catch( IOException ex )
+        return new StringReader( state );
+    }
+
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Map<EntityReference, Future<String>> reads = new LinkedHashMap<EntityReference, Future<String>>();
+        for( final EntityReference entityReference : entityReferences )
         {
-            throw new EntityStoreException( "Unable to read entity state for: " + entityReference, ex );
+            reads.put( entityReference, executor.submit( new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    return readBlob( entityReference.identity() );
+                }
+            } ) );
         }
-        finally
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        try
         {
-            try
-            {
-                input.close();
-            }
-            catch( IOException ignored )
+            awaitAll( reads.values() );
+            for( Map.Entry<EntityReference, Future<String>> eachRead : reads.entrySet() )
             {
+                String state = await( eachRead.getValue() );
+                if( state != null )
+                {
+                    states.put( eachRead.getKey(), new StringReader( state ) );
+                }
             }
         }
+        catch( IOException ex )
+        {
+            throw new EntityStoreException( "Unable to read entity states", ex );
+        }
+        return states;
     }
 
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
     {
-        final BlobMap blobMap = storeContext.createBlobMap( container );
-
-        changes.visitMap( new MapChanger()
+        final List<Future<Void>> operations = new ArrayList<Future<Void>>();
+        try
         {
-
-            @Override
-            public Writer newEntity( final EntityReference ref, EntityDescriptor entityDescriptor )
-                throws IOException
+            changes.visitMap( new MapChanger()
             {
-                return new StringWriter()
-                {
 
-                    @Override
-                    public void close()
-                        throws IOException
+                @Override
+                public Writer newEntity( final EntityReference ref, EntityDescriptor entityDescriptor )
+                    throws IOException
+                {
+                    return new StringWriter()
                     {
-                        super.close();
-                        Blob blob = blobMap.blobBuilder().payload( toString() ).build();
-                        blobMap.put( ref.identity(), blob );
-                    }
-                };
-            }
 
-            @Override
-            public Writer updateEntity( final EntityReference ref, EntityDescriptor entityDescriptor )
-                throws IOException
-            {
-                if( !blobMap.containsKey( ref.identity() ) )
-                {
-                    throw new EntityNotFoundException( ref );
+                        @Override
+                        public void close()
+                            throws IOException
+                        {
+                            super.close();
+                            operations.add( executor.submit( new BlobWrite( ref, toString(), false ) ) );
+                        }
+                    };
                 }
-                return new StringWriter()
-                {
 
-                    @Override
-                    public void close()
-                        throws IOException
+                @Override
+                public Writer updateEntity( final EntityReference ref, EntityDescriptor entityDescriptor )
+                    throws IOException
+                {
+                    return new StringWriter()
                     {
-                        super.close();
-                        Blob blob = blobMap.blobBuilder().payload( toString() ).build();
-                        blobMap.put( ref.identity(), blob );
-                    }
-                };
-            }
 
-            @Override
-            public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
-                throws EntityNotFoundException
-            {
-                if( !blobMap.containsKey( ref.identity() ) )
+                        @Override
+                        public void close()
+                            throws IOException
+                        {
+                            super.close();
+                            operations.add( executor.submit( new BlobWrite( ref, toString(), true ) ) );
+                        }
+                    };
+                }
+
+                @Override
+                public void removeEntity( final EntityReference ref, EntityDescriptor entityDescriptor )
+                    throws EntityNotFoundException
                 {
-                    throw new EntityNotFoundException( ref );
+                    operations.add( executor.submit( new Callable<Void>()
+                    {
+                        @Override
+                        public Void call()
+                        {
+                            if( !blobStore.blobExists( container, ref.identity() ) )
+                            {
+                                throw new EntityNotFoundException( ref );
+                            }
+                            blobStore.removeBlob( container, ref.identity() );
+                            return null;
+                        }
+                    } ) );
                 }
-                blobMap.remove( ref.identity() );
-            }
-        } );
+            } );
+        }
+        finally
+        {
+            // Never leave blob operations running once changes are applied, or failed to
+            awaitAll( operations );
+        }
+        for( Future<Void> operation : operations )
+        {
+            await( operation );
+        }
     }
 
     @Override
@@ -262,27 +361,178 @@ public class JCloudsMapEntityStoreMixin
                     public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super Reader, ReceiverThrowableType> receiver )
                         throws ReceiverThrowableType, IOException
                     {
-                        InputStreamMap isMap = storeContext.createInputStreamMap( container );
-                        for( InputStream eachInput : isMap.values() )
+                        // Up to two reads per thread in flight, received in listing order
+                        LinkedList<Future<String>> reads = new LinkedList<Future<String>>();
+                        try
                         {
-                            try
-                            {
-                                receiver.receive( new InputStreamReader( eachInput, "UTF-8" ) );
-                            }
-                            finally
+                            String marker = null;
+                            do
                             {
-                                try
-                                {
-                                    eachInput.close();
-                                }
-                                catch( IOException ignored )
+                                PageSet<? extends StorageMetadata> page = marker == null
+                                                                          ? blobStore.list( container )
+                                                                          : blobStore.list( container, ListContainerOptions.Builder.afterMarker( marker ) );
+                                for( StorageMetadata eachBlob : page )
                                 {
+                                    if( eachBlob.getType() != StorageType.BLOB )
+                                    {
+                                        continue;
+                                    }
+                                    final String name = eachBlob.getName();
+                                    reads.add( executor.submit( new Callable<String>()
+                                    {
+                                        @Override
+                                        public String call()
+                                        {
+                                            return readBlob( name );
+                                        }
+                                    } ) );
+                                    if( reads.size() >= 2 * concurrency )
+                                    {
+                                        receive( receiver, await( reads.removeFirst() ) );
+                                    }
                                 }
+                                marker = page.getNextMarker();
+                            }
+                            while( marker != null );
+                            while( !reads.isEmpty() )
+                            {
+                                receive( receiver, await( reads.removeFirst() ) );
+                            }
+                        }
+                        finally
+                        {
+                            for( Future<String> read : reads )
+                            {
+                                read.cancel( false );
                             }
                         }
                     }
                 } );
             }
+
+            private <ReceiverThrowableType extends Throwable> void receive( Receiver<? super Reader, ReceiverThrowableType> receiver,
+                                                                            String state )
+                throws ReceiverThrowableType
+            {
+                // Removed since listed
+                if( state != null )
+                {
+                    receiver.receive( new StringReader( state ) );
+                }
+            }
         };
     }
+
+    /**
+     * @return the blob content, or null if there is no such blob
+     */
+    private String readBlob( String name )
+        throws EntityStoreException
+    {
+        Blob blob = blobStore.getBlob( container, name );
+        if( blob == null )
+        {
+            return null;
+        }
+        InputStream input = blob.getPayload().getInput();
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Inputs.byteBuffer( input, 4096 ).transferTo( Outputs.byteBuffer( baos ) );
+            return baos.toString( "UTF-8" );
+        }
+        catch( IOException ex )
+        {
+            throw new EntityStoreException( "Unable to read entity state for: " + name, ex );
+        }
+        finally
+        {
+            try
+            {
+                input.close();
+            }
+            catch( IOException ignored )
+            {
+            }
+        }
+    }
+
+    private static void awaitAll( Iterable<? extends Future<?>> futures )
+        throws InterruptedIOException
+    {
+        for( Future<?> future : futures )
+        {
+            try
+            {
+                future.get();
+            }
+            catch( ExecutionException ignored )
+            {
+                // Reported by await()
+            }
+            catch( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while waiting for blob operations" );
+            }
+        }
+    }
+
+    private static <T> T await( Future<T> future )
+        throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for blob operations" );
+        }
+        catch( ExecutionException ex )
+        {
+            Throwable cause = ex.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            if( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException( cause );
+        }
+    }
+
+    private class BlobWrite
+        implements Callable<Void>
+    {
+        private final EntityReference ref;
+        private final String state;
+        private final boolean existing;
+
+        private BlobWrite( EntityReference ref, String state, boolean existing )
+        {
+            this.ref = ref;
+            this.state = state;
+            this.existing = existing;
+        }
+
+        @Override
+        public Void call()
+        {
+            if( existing && !blobStore.blobExists( container, ref.identity() ) )
+            {
+                throw new EntityNotFoundException( ref );
+            }
+            Blob blob = blobStore.blobBuilder( ref.identity() ).payload( state ).build();
+            blobStore.putBlob( container, blob );
+            return null;
+        }
+    }
 }
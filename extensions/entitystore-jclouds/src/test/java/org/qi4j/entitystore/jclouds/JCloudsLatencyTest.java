@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.jclouds;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Outputs;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JClouds EntityStore on the transient provider, with artificial latency added to every BlobStore call.
+ */
+public class JCloudsLatencyTest
+    extends AbstractEntityStoreTest
+{
+    private static final int LATENCY = 10;
+    private static final int CONCURRENCY = 4;
+
+    private static final AtomicInteger CONCURRENT_CALLS = new AtomicInteger();
+    private static final AtomicInteger MAX_CONCURRENT_CALLS = new AtomicInteger();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+        module.entities( Document.class );
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        new JCloudsMapEntityStoreAssembler().withConfigIn( config, Visibility.layer ).assemble( module );
+        module.services( JCloudsMapEntityStoreService.class ).withMixins( LatentBlobStoreMixin.class );
+        JCloudsMapEntityStoreConfiguration defaults = config.forMixin( JCloudsMapEntityStoreConfiguration.class ).declareDefaults();
+        defaults.container().set( "qi4j-latency-test" );
+        defaults.concurrency().set( CONCURRENCY );
+    }
+
+    @Before
+    public void resetCallCounters()
+    {
+        MAX_CONCURRENT_CALLS.set( 0 );
+    }
+
+    @Test
+    public void givenManyEntitiesInUnitOfWorkWhenCompletingThenBlobsAreWrittenConcurrently()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < 40; idx++ )
+        {
+            uow.newEntity( Document.class ).title().set( "Document " + idx );
+        }
+        uow.complete();
+
+        assertTrue( "Concurrent blob operations", MAX_CONCURRENT_CALLS.get() > 1 );
+        assertTrue( "Bounded blob operations", MAX_CONCURRENT_CALLS.get() <= CONCURRENCY );
+    }
+
+    @Test
+    public void givenManyEntitiesWhenReadingAllEntityStatesThenBlobsAreFetchedConcurrently()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        List<String> identities = new ArrayList<String>();
+        for( int idx = 0; idx < 40; idx++ )
+        {
+            Document document = uow.newEntity( Document.class );
+            document.title().set( "Document " + idx );
+            identities.add( document.identity().get() );
+        }
+        uow.complete();
+        MAX_CONCURRENT_CALLS.set( 0 );
+
+        List<EntityState> states = new ArrayList<EntityState>();
+        module.findService( EntityStore.class ).get().entityStates( module ).transferTo( Outputs.collection( states ) );
+
+        List<String> read = new ArrayList<String>();
+        for( EntityState state : states )
+        {
+            read.add( state.identity().identity() );
+        }
+        assertThat( read.containsAll( identities ), is( true ) );
+        assertTrue( "Concurrent blob operations", MAX_CONCURRENT_CALLS.get() > 1 );
+        assertTrue( "Bounded blob operations", MAX_CONCURRENT_CALLS.get() <= CONCURRENCY + 1 );
+    }
+
+    public interface Document
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> title();
+    }
+
+    public static class LatentBlobStoreMixin
+        extends JCloudsMapEntityStoreMixin
+    {
+        @Override
+        protected BlobStore createBlobStore( BlobStoreContext context )
+        {
+            final BlobStore blobStore = super.createBlobStore( context );
+            return (BlobStore) Proxy.newProxyInstance( BlobStore.class.getClassLoader(),
+                                                       new Class<?>[]{ BlobStore.class },
+                                                       new InvocationHandler()
+            {
+                @Override
+                public Object invoke( Object proxy, Method method, Object[] args )
+                    throws Throwable
+                {
+                    int concurrent = CONCURRENT_CALLS.incrementAndGet();
+                    try
+                    {
+                        int max = MAX_CONCURRENT_CALLS.get();
+                        while( concurrent > max && !MAX_CONCURRENT_CALLS.compareAndSet( max, concurrent ) )
+                        {
+                            max = MAX_CONCURRENT_CALLS.get();
+                        }
+                        Thread.sleep( LATENCY );
+                        return method.invoke( blobStore, args );
+                    }
+                    catch( InvocationTargetException e )
+                    {
+                        throw e.getCause();
+                    }
+                    finally
+                    {
+                        CONCURRENT_CALLS.decrementAndGet();
+                    }
+                }
+            } );
+        }
+    }
+}
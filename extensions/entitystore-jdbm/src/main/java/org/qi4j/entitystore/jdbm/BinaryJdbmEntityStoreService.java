@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.jdbm;
+
+import org.qi4j.api.concern.Concerns;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.library.locking.LockingAbstractComposite;
+import org.qi4j.library.locking.ReadLockConcern;
+import org.qi4j.library.locking.WriteLockConcern;
+import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.spi.entitystore.ConcurrentModificationCheckConcern;
+import org.qi4j.spi.entitystore.EntityStateVersions;
+import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.StateChangeNotificationConcern;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStoreMixin;
+import org.qi4j.spi.entitystore.helpers.JSONMapEntityStoreActivation;
+import org.qi4j.spi.entitystore.helpers.StateStore;
+
+/**
+ * EntityStore service backed by JDBM store holding binary encoded entity states.
+ * <p>Based on {@link BinaryMapEntityStoreMixin}, databases written by {@link JdbmEntityStoreService} are still read,
+ * their JSON text states being written back encoded once updated.</p>
+ * <p>The {@link org.qi4j.spi.entitystore.helpers.EntityStateCodec} and
+ * {@link org.qi4j.spi.entitystore.helpers.StateCompression} can be set as MetaInfo of the service.</p>
+ */
+@Concerns( { StateChangeNotificationConcern.class, ConcurrentModificationCheckConcern.class, ReadLockConcern.class, WriteLockConcern.class } )
+@Mixins( { BinaryMapEntityStoreMixin.class, BinaryJdbmEntityStoreMixin.class } )
+public interface BinaryJdbmEntityStoreService
+    extends JdbmEntityStoreActivation,
+            JSONMapEntityStoreActivation,
+            EntityStore,
+            EntityStateVersions,
+            StateStore,
+            BackupRestore,
+            ServiceComposite,
+            LockingAbstractComposite,
+            Configuration<JdbmConfiguration>
+{
+}
@@ -47,5 +47,93 @@ public interface JdbmConfiguration
 
    @UseDefaults
    Property<Boolean> disableTransactions();
+   // END SNIPPET: config
+
+   /**
+    * Record cache policy.
+    * <p/>
+    * Default: MRU
+    *
+    * @return the record cache policy
+    */
+   // START SNIPPET: config
+   @UseDefaults
+   Property<CacheType> cacheType();
+   // END SNIPPET: config
+
+   /**
+    * Number of records kept by the MRU cache, ignored by other cache policies.
+    * <p/>
+    * Default: 1000
+    *
+    * @return the record cache size
+    */
+   // START SNIPPET: config
+   @Optional
+   Property<Integer> cacheSize();
+
+   // Group commit
+   // END SNIPPET: config
+
+   /**
+    * Coalesce the changes of concurrently completing UnitOfWorks into a single JDBM commit.
+    * <p/>
+    * Completions still return only once their changes are committed, but they all fail if the group commit
+    * fails.
+    * <p/>
+    * Reads only see committed states. A UnitOfWork changing an Entity that another UnitOfWork of the pending
+    * group commit already changed fails with a ConcurrentEntityStateModificationException.
+    * <p/>
+    * Default: false
+    *
+    * @return true to enable group commit
+    */
+   // START SNIPPET: config
+   @UseDefaults
+   Property<Boolean> groupCommit();
+   // END SNIPPET: config
+
+   /**
+    * Time in milliseconds a group commit waits for more UnitOfWorks to join it.
+    * <p/>
+    * Default: 0, UnitOfWorks completing while a group commit is in progress join the next one.
+    *
+    * @return the group commit window in milliseconds
+    */
+   // START SNIPPET: config
+   @Optional
+   Property<Integer> groupCommitWindow();
+   // END SNIPPET: config
+
+   /**
+    * Number of UnitOfWorks after which a group commit stops waiting for more to join it.
+    * <p/>
+    * Default: 100
+    *
+    * @return the maximum group commit size
+    */
+   // START SNIPPET: config
+   @Optional
+   Property<Integer> groupCommitSize();
+
+   enum CacheType
+   {
+      /**
+       * Most recently used records, up to cacheSize.
+       */
+      MRU,
+      /**
+       * Soft references collected by the garbage collector.
+       */
+      SOFT,
+      /**
+       * MRU for heaps under 50MB, SOFT otherwise.
+       */
+      AUTO,
+      /**
+       * No record cache.
+       */
+      NONE
+   }
 }
 // END SNIPPET: config
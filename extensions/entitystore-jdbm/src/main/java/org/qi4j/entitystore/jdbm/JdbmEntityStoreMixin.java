@@ -22,6 +22,12 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.locks.ReadWriteLock;
 import jdbm.RecordManager;
@@ -33,7 +39,6 @@ import jdbm.helper.ByteArrayComparator;
 import jdbm.helper.DefaultSerializer;
 import jdbm.helper.Tuple;
 import jdbm.helper.TupleBrowser;
-import jdbm.recman.CacheRecordManager;
 import org.qi4j.api.common.Optional;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -49,17 +54,22 @@ import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.library.fileconfig.FileConfiguration;
 import org.qi4j.library.locking.ReadLock;
-import org.qi4j.library.locking.WriteLock;
 import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.spi.entitystore.ConcurrentEntityStateModificationException;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BinaryMapEntityStore;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 
 /**
  * JDBM implementation of MapEntityStore.
+ * <p>
+ * States are also accessible as bytes through {@link BinaryMapEntityStore}, see {@link BinaryJdbmEntityStoreService}.
+ * </p>
  */
 public class JdbmEntityStoreMixin
-    implements JdbmEntityStoreActivation, MapEntityStore, BackupRestore
+    implements JdbmEntityStoreActivation, MapEntityStore, BulkMapEntityStore, BinaryMapEntityStore, BackupRestore
 {
     @Optional
     @Service
@@ -78,6 +88,19 @@ public class JdbmEntityStoreMixin
     @This
     ReadWriteLock lock;
 
+    private boolean groupCommit;
+    private int groupCommitWindow;
+    private int groupCommitSize;
+
+    // Committed states of the Entities written since the last group commit, null for the ones they create.
+    // Reads are served from it so that they never see changes a failed group commit would roll back.
+    // Guarded by lock
+    private final Map<String, byte[]> committedStates = new HashMap<String, byte[]>();
+
+    // Guarded by this
+    private Batch openBatch = new Batch();
+    private boolean leading;
+
     @Override
     public void setUpJdbm()
         throws Exception
@@ -92,28 +115,54 @@ public class JdbmEntityStoreMixin
         recordManager.close();
     }
 
-    @ReadLock
     @Override
     public Reader get( EntityReference entityReference )
         throws EntityStoreException
     {
         try
         {
-            Long stateIndex = getStateIndex( entityReference.identity() );
+            return new StringReader( new String( getBinary( entityReference ), "UTF-8" ) );
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
+
+    @ReadLock
+    @Override
+    public byte[] getBinary( EntityReference entityReference )
+        throws EntityStoreException
+    {
+        try
+        {
+            byte[] serializedState = fetchCommitted( entityReference.identity() );
 
-            if( stateIndex == null )
+            if( serializedState == null )
             {
                 throw new EntityNotFoundException( entityReference );
             }
 
-            byte[] serializedState = (byte[]) recordManager.fetch( stateIndex, serializer );
+            return serializedState;
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
 
-            if( serializedState == null )
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        try
+        {
+            for( Map.Entry<EntityReference, byte[]> state : getBinaries( entityReferences ).entrySet() )
             {
-                throw new EntityNotFoundException( entityReference );
+                states.put( state.getKey(), new StringReader( new String( state.getValue(), "UTF-8" ) ) );
             }
-
-            return new StringReader( new String( serializedState, "UTF-8" ) );
+            return states;
         }
         catch( IOException e )
         {
@@ -121,77 +170,218 @@ public class JdbmEntityStoreMixin
         }
     }
 
-    @WriteLock
+    @ReadLock
     @Override
-    public void applyChanges( MapChanges changes )
-        throws IOException
+    public Map<EntityReference, byte[]> getBinaries( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
     {
+        // Read all states under a single lock acquisition
+        Map<EntityReference, byte[]> states = new LinkedHashMap<EntityReference, byte[]>();
         try
         {
-            changes.visitMap( new MapChanger()
+            for( EntityReference entityReference : entityReferences )
             {
-                @Override
-                public Writer newEntity( final EntityReference ref, EntityDescriptor descriptor )
-                    throws IOException
+                byte[] serializedState = fetchCommitted( entityReference.identity() );
+                if( serializedState != null )
                 {
-                    return new StringWriter( 1000 )
-                    {
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-
-                            byte[] stateArray = toString().getBytes( "UTF-8" );
-                            long stateIndex = recordManager.insert( stateArray, serializer );
-                            String indexKey = ref.toString();
-                            index.insert( indexKey.getBytes( "UTF-8" ), stateIndex, false );
-                        }
-                    };
+                    states.put( entityReference, serializedState );
                 }
+            }
+            return states;
+        }
+        catch( IOException e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
 
-                @Override
-                public Writer updateEntity( final EntityReference ref, EntityDescriptor descriptor )
-                    throws IOException
+    @Override
+    public void applyChanges( final MapChanges changes )
+        throws IOException
+    {
+        applyBinaryChanges( new BinaryMapChanges()
+        {
+            @Override
+            public void visitMap( final BinaryMapChanger changer )
+                throws IOException
+            {
+                changes.visitMap( new MapChanger()
                 {
-                    return new StringWriter( 1000 )
+                    @Override
+                    public Writer newEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws IOException
                     {
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-
-                            Long stateIndex = getStateIndex( ref.toString() );
-                            byte[] stateArray = toString().getBytes( "UTF-8" );
-                            recordManager.update( stateIndex, stateArray, serializer );
-                        }
-                    };
-                }
+                        return stateWriter( changer, ref, descriptor, true );
+                    }
 
-                @Override
-                public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
-                    throws EntityNotFoundException
-                {
-                    try
+                    @Override
+                    public Writer updateEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws IOException
                     {
-                        Long stateIndex = getStateIndex( ref.toString() );
-                        recordManager.delete( stateIndex );
-                        index.remove( ref.toString().getBytes( "UTF-8" ) );
+                        return stateWriter( changer, ref, descriptor, false );
                     }
-                    catch( IOException e )
+
+                    @Override
+                    public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
+                        throws EntityNotFoundException
                     {
-                        throw new EntityStoreException( e );
+                        changer.removeEntity( ref, descriptor );
                     }
+                } );
+            }
+        } );
+    }
+
+    private Writer stateWriter( final BinaryMapChanger changer,
+                                final EntityReference ref,
+                                final EntityDescriptor descriptor,
+                                final boolean newEntity
+    )
+    {
+        return new StringWriter( 1000 )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                super.close();
+                byte[] stateArray = toString().getBytes( "UTF-8" );
+                if( newEntity )
+                {
+                    changer.newEntity( ref, descriptor, stateArray );
+                }
+                else
+                {
+                    changer.updateEntity( ref, descriptor, stateArray );
+                }
+            }
+        };
+    }
+
+    @Override
+    public void applyBinaryChanges( BinaryMapChanges changes )
+        throws IOException
+    {
+        Batch batch;
+        lock.writeLock().lock();
+        try
+        {
+            batch = write( changes );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        if( batch != null )
+        {
+            awaitGroupCommit( batch );
+        }
+    }
+
+    /**
+     * Write changes, then commit them unless group commit is enabled.
+     * <p>
+     * With group commit, changes to an Entity already written by another UnitOfWork of an uncommitted batch are
+     * rejected. Reads do not see that other write, so these changes cannot be based on it.
+     * </p>
+     *
+     * @return the group commit batch the changes are part of, or null if they are already committed
+     */
+    private Batch write( BinaryMapChanges changes )
+        throws IOException
+    {
+        final List<Change> changeList = new ArrayList<Change>();
+        changes.visitMap( new BinaryMapChanger()
+        {
+            @Override
+            public void newEntity( EntityReference ref, EntityDescriptor descriptor, byte[] state )
+            {
+                changeList.add( new Change( ref, state, true ) );
+            }
+
+            @Override
+            public void updateEntity( EntityReference ref, EntityDescriptor descriptor, byte[] state )
+            {
+                changeList.add( new Change( ref, state, false ) );
+            }
+
+            @Override
+            public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
+            {
+                changeList.add( new Change( ref, null, false ) );
+            }
+        } );
+
+        if( groupCommit )
+        {
+            List<EntityReference> modified = new ArrayList<EntityReference>();
+            for( Change change : changeList )
+            {
+                if( committedStates.containsKey( change.ref.toString() ) )
+                {
+                    modified.add( change.ref );
                 }
-            } );
+            }
+            if( !modified.isEmpty() )
+            {
+                throw new ConcurrentEntityStateModificationException( modified );
+            }
+        }
 
+        try
+        {
+            for( Change change : changeList )
+            {
+                String indexKey = change.ref.toString();
+                if( groupCommit )
+                {
+                    committedStates.put( indexKey, fetch( indexKey ) );
+                }
+                if( change.newEntity )
+                {
+                    long stateIndex = recordManager.insert( change.state, serializer );
+                    index.insert( indexKey.getBytes( "UTF-8" ), stateIndex, false );
+                }
+                else if( change.state != null )
+                {
+                    Long stateIndex = getStateIndex( indexKey );
+                    recordManager.update( stateIndex, change.state, serializer );
+                }
+                else
+                {
+                    Long stateIndex = getStateIndex( indexKey );
+                    recordManager.delete( stateIndex );
+                    index.remove( indexKey.getBytes( "UTF-8" ) );
+                }
+            }
+
+            if( groupCommit )
+            {
+                synchronized( this )
+                {
+                    openBatch.size++;
+                    notifyAll();
+                    return openBatch;
+                }
+            }
             recordManager.commit();
+            return null;
         }
         catch( Exception e )
         {
             e.printStackTrace();
             recordManager.rollback();
+            if( groupCommit )
+            {
+                // The rollback discarded the changes of the other UnitOfWorks of the open batch
+                committedStates.clear();
+                synchronized( this )
+                {
+                    openBatch.complete( new IOException( "Changes rolled back by the failure of a concurrent UnitOfWork", e ) );
+                    openBatch = new Batch();
+                    notifyAll();
+                }
+            }
             if( e instanceof IOException )
             {
                 throw (IOException) e;
@@ -233,17 +423,69 @@ public class JdbmEntityStoreMixin
                             {
                                 String id = new String( (byte[]) tuple.getKey(), "UTF-8" );
 
-                                Long stateIndex = getStateIndex( id );
+                                byte[] serializedState = fetchCommitted( id );
 
-                                if( stateIndex == null )
+                                if( serializedState == null )
                                 {
                                     continue;
                                 } // Skip this one
 
-                                byte[] serializedState = (byte[]) recordManager.fetch( stateIndex, serializer );
-
                                 receiver.receive( new StringReader( new String( serializedState, "UTF-8" ) ) );
                             }
+                            for( byte[] serializedState : removedCommittedStates() )
+                            {
+                                receiver.receive( new StringReader( new String( serializedState, "UTF-8" ) ) );
+                            }
+                        }
+                    } );
+                }
+                finally
+                {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    public Input<byte[], IOException> binaryEntityStates()
+    {
+        return new Input<byte[], IOException>()
+        {
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super byte[], ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                lock.writeLock().lock();
+
+                try
+                {
+                    output.receiveFrom( new Sender<byte[], IOException>()
+                    {
+                        @Override
+                        public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super byte[], ReceiverThrowableType> receiver )
+                            throws ReceiverThrowableType, IOException
+                        {
+                            final TupleBrowser browser = index.browse();
+                            final Tuple tuple = new Tuple();
+
+                            while( browser.getNext( tuple ) )
+                            {
+                                String id = new String( (byte[]) tuple.getKey(), "UTF-8" );
+
+                                byte[] serializedState = fetchCommitted( id );
+
+                                if( serializedState == null )
+                                {
+                                    continue;
+                                } // Skip this one
+
+                                receiver.receive( serializedState );
+                            }
+                            for( byte[] serializedState : removedCommittedStates() )
+                            {
+                                receiver.receive( serializedState );
+                            }
                         }
                     } );
                 }
@@ -281,16 +523,18 @@ public class JdbmEntityStoreMixin
                             {
                                 String id = new String( (byte[]) tuple.getKey(), "UTF-8" );
 
-                                Long stateIndex = getStateIndex( id );
+                                byte[] serializedState = fetchCommitted( id );
 
-                                if( stateIndex == null )
+                                if( serializedState == null )
                                 {
                                     continue;
                                 } // Skip this one
 
-                                byte[] serializedState = (byte[]) recordManager.fetch( stateIndex, serializer );
-
-                                receiver.receive( new String( serializedState, "UTF-8" ) );
+                                receiver.receive( backupState( serializedState ) );
+                            }
+                            for( byte[] serializedState : removedCommittedStates() )
+                            {
+                                receiver.receive( backupState( serializedState ) );
                             }
                         }
                     } );
@@ -344,7 +588,7 @@ public class JdbmEntityStoreMixin
                             id = id.substring( 0, id.indexOf( '"' ) );
 
                             // Insert
-                            byte[] stateArray = item.getBytes( "UTF-8" );
+                            byte[] stateArray = restoreState( item );
                             long stateIndex = recordManager.insert( stateArray, serializer );
                             index.insert( id.getBytes( "UTF-8" ), stateIndex, false );
                         }
@@ -402,6 +646,143 @@ public class JdbmEntityStoreMixin
         };
     }
 
+    /**
+     * @param state Stored state
+     *
+     * @return the state as JSON text
+     */
+    protected String backupState( byte[] state )
+        throws IOException
+    {
+        return new String( state, "UTF-8" );
+    }
+
+    /**
+     * @param state State as JSON text
+     *
+     * @return the state to store
+     */
+    protected byte[] restoreState( String state )
+        throws IOException
+    {
+        return state.getBytes( "UTF-8" );
+    }
+
+    /**
+     * Wait until the batch is committed, committing it if no other UnitOfWork does.
+     * <p>
+     * The first waiting UnitOfWork leads the commit of the open batch, others wait for it. UnitOfWorks
+     * writing while the leader commits join the next batch, which one of them then leads.
+     * </p>
+     */
+    private void awaitGroupCommit( Batch batch )
+        throws IOException
+    {
+        boolean interrupted = false;
+        boolean lead;
+        synchronized( this )
+        {
+            while( !batch.done && leading )
+            {
+                try
+                {
+                    wait();
+                }
+                catch( InterruptedException e )
+                {
+                    // Changes are written, wait for them to be committed
+                    interrupted = true;
+                }
+            }
+            lead = !batch.done;
+            if( lead )
+            {
+                leading = true;
+                long deadline = System.currentTimeMillis() + groupCommitWindow;
+                while( openBatch == batch && batch.size < groupCommitSize && !interrupted )
+                {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if( remaining <= 0 )
+                    {
+                        break;
+                    }
+                    try
+                    {
+                        wait( remaining );
+                    }
+                    catch( InterruptedException e )
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+
+        if( lead )
+        {
+            try
+            {
+                commitOpenBatch();
+            }
+            finally
+            {
+                synchronized( this )
+                {
+                    leading = false;
+                    notifyAll();
+                }
+            }
+        }
+        if( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if( batch.failure != null )
+        {
+            throw batch.failure;
+        }
+    }
+
+    private void commitOpenBatch()
+    {
+        Batch committing;
+        IOException failure = null;
+        lock.writeLock().lock();
+        try
+        {
+            synchronized( this )
+            {
+                committing = openBatch;
+                openBatch = new Batch();
+            }
+            try
+            {
+                recordManager.commit();
+            }
+            catch( IOException e )
+            {
+                failure = e;
+                try
+                {
+                    recordManager.rollback();
+                }
+                catch( IOException rollbackFailure )
+                {
+                    // Ignore, report the commit failure
+                }
+            }
+        }
+        finally
+        {
+            committedStates.clear();
+            lock.writeLock().unlock();
+        }
+        synchronized( this )
+        {
+            committing.complete( failure );
+        }
+    }
+
     private String getDatabaseName()
     {
         String pathname = config.get().file().get();
@@ -433,6 +814,9 @@ public class JdbmEntityStoreMixin
 
         properties.put( RecordManagerOptions.AUTO_COMMIT, config.autoCommit().get().toString() );
         properties.put( RecordManagerOptions.DISABLE_TRANSACTIONS, config.disableTransactions().get().toString() );
+        properties.put( RecordManagerOptions.CACHE_TYPE, config.cacheType().get().name().toLowerCase( Locale.ENGLISH ) );
+        Integer cacheSize = config.cacheSize().get();
+        properties.put( RecordManagerOptions.CACHE_SIZE, String.valueOf( cacheSize == null ? 1000 : cacheSize ) );
 
         return properties;
     }
@@ -443,15 +827,59 @@ public class JdbmEntityStoreMixin
         return (Long) index.find( identity.getBytes( "UTF-8" ) );
     }
 
+    private byte[] fetch( String identity )
+        throws IOException
+    {
+        Long stateIndex = getStateIndex( identity );
+        return stateIndex == null ? null : (byte[]) recordManager.fetch( stateIndex, serializer );
+    }
+
+    /**
+     * @return the last committed state of the Entity, or null if there is none
+     */
+    private byte[] fetchCommitted( String identity )
+        throws IOException
+    {
+        if( committedStates.containsKey( identity ) )
+        {
+            return committedStates.get( identity );
+        }
+        return fetch( identity );
+    }
+
+    /**
+     * @return the committed states of the Entities removed since the last group commit
+     */
+    private List<byte[]> removedCommittedStates()
+        throws IOException
+    {
+        List<byte[]> states = new ArrayList<byte[]>();
+        for( Map.Entry<String, byte[]> committedState : committedStates.entrySet() )
+        {
+            if( committedState.getValue() != null && getStateIndex( committedState.getKey() ) == null )
+            {
+                states.add( committedState.getValue() );
+            }
+        }
+        return states;
+    }
+
     private void initialize()
         throws IOException
     {
         String name = getDatabaseName();
         Properties properties = getProperties();
 
+        JdbmConfiguration configuration = config.get();
+        groupCommit = configuration.groupCommit().get();
+        Integer window = configuration.groupCommitWindow().get();
+        groupCommitWindow = window == null ? 0 : Math.max( 0, window );
+        Integer size = configuration.groupCommitSize().get();
+        groupCommitSize = size == null ? 100 : Math.max( 1, size );
+
+        // The record manager is wrapped in the configured record cache
         recordManager = RecordManagerFactory.createRecordManager( name, properties );
         serializer = DefaultSerializer.INSTANCE;
-        recordManager = new CacheRecordManager( recordManager, 1000, false );
         long recid = recordManager.getNamedObject( "index" );
         if( recid != 0 )
         {
@@ -465,4 +893,37 @@ public class JdbmEntityStoreMixin
         }
         recordManager.commit();
     }
-}
\ No newline at end of file
+
+    /**
+     * Change to an Entity, a null state removes it.
+     */
+    private static final class Change
+    {
+        private final EntityReference ref;
+        private final byte[] state;
+        private final boolean newEntity;
+
+        private Change( EntityReference ref, byte[] state, boolean newEntity )
+        {
+            this.ref = ref;
+            this.state = state;
+            this.newEntity = newEntity;
+        }
+    }
+
+    /**
+     * UnitOfWorks committed together by a group commit.
+     */
+    private static final class Batch
+    {
+        private int size;
+        private boolean done;
+        private IOException failure;
+
+        private void complete( IOException failure )
+        {
+            this.failure = failure;
+            done = true;
+        }
+    }
+}
@@ -39,6 +39,7 @@ public interface JdbmEntityStoreService
             JSONMapEntityStoreActivation,
             EntityStore,
             EntityStateVersions,
+            EntityStoreVersionLookup,
             StateStore,
             BackupRestore,
             ServiceComposite,
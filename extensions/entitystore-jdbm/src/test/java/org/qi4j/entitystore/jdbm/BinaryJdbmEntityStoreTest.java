@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.jdbm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qi4j.api.activation.Activation;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Outputs;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.spi.entitystore.BackupRestore;
+import org.qi4j.spi.entitystore.helpers.StateCompression;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.entity.AbstractEntityStoreTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test of BinaryJdbmEntityStoreService compressing states.
+ */
+public class BinaryJdbmEntityStoreTest
+    extends AbstractEntityStoreTest
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+        module.services( FileConfigurationService.class );
+        module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+        module.services( BinaryJdbmEntityStoreService.class ).setMetaInfo( StateCompression.deflate().withMinimumSize( 0 ) );
+
+        // Store writing JSON text into the same database
+        ModuleAssembly legacy = module.layer().module( "legacy" );
+        legacy.entities( TestEntity.class );
+        legacy.values( TestValue.class, TestValue2.class, TjabbaValue.class );
+        legacy.services( UuidIdentityGeneratorService.class );
+        legacy.services( FileConfigurationService.class );
+        legacy.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
+        legacy.services( JdbmEntityStoreService.class );
+
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+        config.entities( JdbmConfiguration.class ).visibleIn( Visibility.layer );
+        config.forMixin( JdbmConfiguration.class ).declareDefaults()
+            .file().set( new File( tmp.getRoot(), "jdbm.data" ).getAbsolutePath() );
+    }
+
+    @Test
+    public void givenCompressedStatesWhenBackupThenStatesAreJsonText()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        String identity = createEntity( unitOfWork ).identity().get();
+        unitOfWork.complete();
+
+        BackupRestore backupRestore = module.findService( BinaryJdbmEntityStoreService.class ).get();
+        List<String> backup = new ArrayList<String>();
+        backupRestore.backup().transferTo( Outputs.collection( backup ) );
+        assertThat( backup.size(), equalTo( 1 ) );
+        assertThat( new JSONObject( backup.get( 0 ) ).getString( "identity" ), equalTo( identity ) );
+    }
+
+    @Test
+    public void givenStateStoredAsJsonTextWhenReadingThenStateIsDecoded()
+        throws Exception
+    {
+        Module legacy = application.findModule( "Layer 1", "legacy" );
+        UnitOfWork unitOfWork = legacy.newUnitOfWork();
+        EntityBuilder<TestEntity> builder = unitOfWork.newEntityBuilder( TestEntity.class, "legacy-entity" );
+        builder.instance().name().set( "Legacy" );
+        builder.instance().intValue().set( 17 );
+        builder.newInstance();
+        unitOfWork.complete();
+        // Release the database for the binary store
+        ( (Activation) legacy.findService( JdbmEntityStoreService.class ) ).passivate();
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            TestEntity entity = unitOfWork.get( TestEntity.class, "legacy-entity" );
+            assertThat( entity.name().get(), equalTo( "Legacy" ) );
+            assertThat( entity.intValue().get(), equalTo( 17 ) );
+            entity.intValue().set( 18 );
+            unitOfWork.complete();
+        }
+        finally
+        {
+            if( unitOfWork.isOpen() )
+            {
+                unitOfWork.discard();
+            }
+        }
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( TestEntity.class, "legacy-entity" ).intValue().get(), equalTo( 18 ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+}
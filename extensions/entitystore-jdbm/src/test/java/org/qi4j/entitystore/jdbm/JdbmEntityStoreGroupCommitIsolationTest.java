@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.jdbm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.jdbm.assembly.JdbmEntityStoreAssembler;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.spi.entitystore.ConcurrentEntityStateModificationException;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test that changes pending in a group commit are not visible to other UnitOfWorks.
+ */
+public class JdbmEntityStoreGroupCommitIsolationTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.entities( NamedEntity.class );
+        module.services( FileConfigurationService.class ).instantiateOnStartup();
+        new JdbmEntityStoreAssembler( Visibility.module ).assemble( module );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+
+        ModuleAssembly config = module.layer().module( "config" );
+        config.entities( JdbmConfiguration.class ).visibleIn( Visibility.layer );
+        new EntityTestAssembler().assemble( config );
+        JdbmConfiguration defaults = config.forMixin( JdbmConfiguration.class ).declareDefaults();
+        defaults.groupCommit().set( true );
+        // Keep the changes pending while the test reads
+        defaults.groupCommitWindow().set( 2000 );
+    }
+
+    @Test
+    public void givenChangesPendingInGroupCommitWhenReadingThenCommittedStateIsRead()
+        throws Exception
+    {
+        UnitOfWork unitOfWork = module.newUnitOfWork();
+        EntityBuilder<NamedEntity> builder = unitOfWork.newEntityBuilder( NamedEntity.class, "named" );
+        builder.instance().name().set( "committed" );
+        builder.newInstance();
+        unitOfWork.complete();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Void> pending = executor.submit( new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                    throws Exception
+                {
+                    UnitOfWork unitOfWork = module.newUnitOfWork();
+                    unitOfWork.get( NamedEntity.class, "named" ).name().set( "pending" );
+                    unitOfWork.complete();
+                    return null;
+                }
+            } );
+            // Let the change be written, its group commit waits for more UnitOfWorks
+            Thread.sleep( 300 );
+
+            unitOfWork = module.newUnitOfWork();
+            try
+            {
+                NamedEntity named = unitOfWork.get( NamedEntity.class, "named" );
+                assertThat( named.name().get(), equalTo( "committed" ) );
+
+                named.name().set( "concurrent" );
+                unitOfWork.complete();
+                fail( "Changing an Entity pending in a group commit should fail" );
+            }
+            catch( ConcurrentEntityStateModificationException expected )
+            {
+                // Expected
+            }
+            finally
+            {
+                if( unitOfWork.isOpen() )
+                {
+                    unitOfWork.discard();
+                }
+            }
+
+            pending.get();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        unitOfWork = module.newUnitOfWork();
+        try
+        {
+            assertThat( unitOfWork.get( NamedEntity.class, "named" ).name().get(), equalTo( "pending" ) );
+        }
+        finally
+        {
+            unitOfWork.discard();
+        }
+    }
+
+    public interface NamedEntity
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> name();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.jdbm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JdbmEntityStoreGroupCommitTest
+    extends JdbmEntityStoreTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+        JdbmConfiguration defaults = module.layer().module( "config" ).forMixin( JdbmConfiguration.class ).declareDefaults();
+        defaults.groupCommit().set( true );
+        defaults.groupCommitWindow().set( 5 );
+    }
+
+    @Test
+    public void givenConcurrentUnitOfWorksWhenCompletingThenAllChangesAreCommitted()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for( int i = 0; i < 200; i++ )
+            {
+                futures.add( executor.submit( new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                        throws Exception
+                    {
+                        UnitOfWork unitOfWork = module.newUnitOfWork();
+                        String identity = createEntity( unitOfWork ).identity().get();
+                        unitOfWork.complete();
+                        return identity;
+                    }
+                } ) );
+            }
+            List<String> identities = new ArrayList<String>();
+            for( Future<String> future : futures )
+            {
+                identities.add( future.get() );
+            }
+
+            UnitOfWork unitOfWork = module.newUnitOfWork();
+            try
+            {
+                List<String> found = new ArrayList<String>();
+                for( String identity : identities )
+                {
+                    found.add( unitOfWork.get( TestEntity.class, identity ).identity().get() );
+                }
+                Collections.sort( identities );
+                Collections.sort( found );
+                assertThat( found, equalTo( identities ) );
+            }
+            finally
+            {
+                unitOfWork.discard();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -24,11 +24,19 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBFactory;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -45,14 +53,18 @@ import org.qi4j.io.Sender;
 import org.qi4j.library.fileconfig.FileConfiguration;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.StatePartitions;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
+import org.qi4j.spi.entitystore.helpers.PartitionedMapEntityStore;
 
 /**
  * LevelDB implementation of MapEntityStore.
  */
 public class LevelDBEntityStoreMixin
-    implements ServiceActivation, MapEntityStore
+    implements ServiceActivation, MapEntityStore, BulkMapEntityStore, PartitionedMapEntityStore
 {
+    private static final int INTERPOLATED_BYTES = 7;
 
     @Service
     private FileConfiguration fileConfig;
@@ -194,8 +206,110 @@ public class LevelDBEntityStoreMixin
         return new StringReader( jsonState );
     }
 
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        // Read all states from the same snapshot
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        Snapshot snapshot = db.getSnapshot();
+        try
+        {
+            ReadOptions readOptions = new ReadOptions().snapshot( snapshot );
+            for( EntityReference entityReference : entityReferences )
+            {
+                byte[] state = db.get( entityReference.identity().getBytes( charset ), readOptions );
+                if( state != null )
+                {
+                    states.put( entityReference, new StringReader( new String( state, charset ) ) );
+                }
+            }
+            return states;
+        }
+        finally
+        {
+            try
+            {
+                snapshot.close();
+            }
+            catch( IOException e )
+            {
+                throw new EntityStoreException( e );
+            }
+        }
+    }
+
     @Override
     public Input<Reader, IOException> entityStates()
+    {
+        return new Input<Reader, IOException>()
+        {
+
+            @Override
+            public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super Reader, ReceiverThrowableType> output )
+                throws IOException, ReceiverThrowableType
+            {
+                // Read all states from the snapshot of the store when the transfer begins
+                Snapshot snapshot = db.getSnapshot();
+                try
+                {
+                    newRangeInput( snapshot, null, null ).transferTo( output );
+                }
+                finally
+                {
+                    snapshot.close();
+                }
+            }
+
+        };
+    }
+
+    @Override
+    public StatePartitions<Reader, IOException> entityStatePartitions( int partitions )
+        throws IOException
+    {
+        final Snapshot snapshot = db.getSnapshot();
+        final List<Input<Reader, IOException>> inputs = new ArrayList<Input<Reader, IOException>>();
+        byte[] start = null;
+        for( byte[] boundary : splitKeys( snapshot, partitions ) )
+        {
+            inputs.add( newRangeInput( snapshot, start, boundary ) );
+            start = boundary;
+        }
+        inputs.add( newRangeInput( snapshot, start, null ) );
+        return new StatePartitions<Reader, IOException>()
+        {
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public List<Input<Reader, IOException>> partitions()
+            {
+                return inputs;
+            }
+
+            @Override
+            public void close()
+            {
+                if( closed.compareAndSet( false, true ) )
+                {
+                    try
+                    {
+                        snapshot.close();
+                    }
+                    catch( IOException e )
+                    {
+                        throw new EntityStoreException( e );
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Input of the states whose key is in [start, end[ in the given snapshot, a null bound meaning unbounded.
+     * Scans do not fill the block cache so that they do not evict the blocks of the regular workload.
+     */
+    private Input<Reader, IOException> newRangeInput( final Snapshot snapshot, final byte[] start, final byte[] end )
     {
         return new Input<Reader, IOException>()
         {
@@ -211,13 +325,25 @@ public class LevelDBEntityStoreMixin
                     public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super Reader, ReceiverThrowableType> receiver )
                         throws ReceiverThrowableType, IOException
                     {
-                        DBIterator iterator = db.iterator();
+                        DBIterator iterator = db.iterator( new ReadOptions().snapshot( snapshot ).fillCache( false ) );
                         try
                         {
-                            for( iterator.seekToFirst(); iterator.hasNext(); iterator.next() )
+                            if( start == null )
+                            {
+                                iterator.seekToFirst();
+                            }
+                            else
+                            {
+                                iterator.seek( start );
+                            }
+                            for( ; iterator.hasNext(); iterator.next() )
                             {
-                                byte[] state = iterator.peekNext().getValue();
-                                String jsonState = new String( state, charset );
+                                Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+                                if( end != null && compareKeys( entry.getKey(), end ) >= 0 )
+                                {
+                                    break;
+                                }
+                                String jsonState = new String( entry.getValue(), charset );
                                 receiver.receive( new StringReader( jsonState ) );
                             }
                         }
@@ -233,6 +359,138 @@ public class LevelDBEntityStoreMixin
         };
     }
 
+    /**
+     * Split the key space of a snapshot in ranges.
+     * <p>
+     * Boundaries are interpolated between the first and the last keys, on the 7 bytes following their common
+     * prefix. This is cheap as it does not read the whole key space and gives balanced ranges for identities that
+     * are evenly distributed, such as the default UUID based ones. Skewed identities only give unbalanced ranges.
+     * </p>
+     *
+     * @return Ordered boundaries, partitions - 1 at most
+     */
+    private List<byte[]> splitKeys( Snapshot snapshot, int partitions )
+        throws IOException
+    {
+        List<byte[]> boundaries = new ArrayList<byte[]>();
+        if( partitions <= 1 )
+        {
+            return boundaries;
+        }
+        DBIterator iterator = db.iterator( new ReadOptions().snapshot( snapshot ).fillCache( false ) );
+        try
+        {
+            iterator.seekToFirst();
+            if( !iterator.hasNext() )
+            {
+                return boundaries;
+            }
+            byte[] first = iterator.peekNext().getKey();
+            byte[] last = lastKeyPrefix( iterator, first );
+            int prefixLength = 0;
+            while( prefixLength < first.length && prefixLength < last.length
+                   && first[ prefixLength ] == last[ prefixLength ] )
+            {
+                prefixLength++;
+            }
+            long low = interpolationValue( first, prefixLength );
+            long high = interpolationValue( last, prefixLength );
+            long step = ( high - low ) / partitions;
+            if( step == 0 )
+            {
+                return boundaries;
+            }
+            for( int partition = 1; partition < partitions; partition++ )
+            {
+                long value = low + step * partition;
+                byte[] boundary = Arrays.copyOf( first, prefixLength + INTERPOLATED_BYTES );
+                for( int idx = INTERPOLATED_BYTES - 1; idx >= 0; idx-- )
+                {
+                    boundary[ prefixLength + idx ] = (byte) value;
+                    value >>>= 8;
+                }
+                boundaries.add( boundary );
+            }
+            return boundaries;
+        }
+        finally
+        {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Find the bytes of the last key needed for interpolation by seeking, as not all LevelDB implementations can
+     * iterate backward.
+     */
+    private static byte[] lastKeyPrefix( DBIterator iterator, byte[] first )
+    {
+        byte[] prefix = new byte[ 0 ];
+        int commonLength = 0;
+        while( prefix.length < commonLength + INTERPOLATED_BYTES )
+        {
+            // Greatest next byte such that some key is greater than or equal to prefix + byte
+            byte[] probe = Arrays.copyOf( prefix, prefix.length + 1 );
+            int low = 0;
+            int high = 255;
+            int found = -1;
+            while( low <= high )
+            {
+                int mid = ( low + high ) >>> 1;
+                probe[ prefix.length ] = (byte) mid;
+                iterator.seek( probe );
+                if( iterator.hasNext() )
+                {
+                    found = mid;
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid - 1;
+                }
+            }
+            if( found < 0 )
+            {
+                // The last key is the prefix itself
+                break;
+            }
+            probe[ prefix.length ] = (byte) found;
+            prefix = probe;
+            if( commonLength == prefix.length - 1 && commonLength < first.length && first[ commonLength ] == probe[ commonLength ] )
+            {
+                commonLength++;
+            }
+        }
+        return prefix;
+    }
+
+    private static long interpolationValue( byte[] key, int offset )
+    {
+        long value = 0;
+        for( int idx = offset; idx < offset + INTERPOLATED_BYTES; idx++ )
+        {
+            value = ( value << 8 ) | ( idx < key.length ? key[ idx ] & 0xFF : 0 );
+        }
+        return value;
+    }
+
+    /**
+     * Unsigned lexicographic comparison, as done by the default LevelDB comparator.
+     */
+    private static int compareKeys( byte[] left, byte[] right )
+    {
+        int length = Math.min( left.length, right.length );
+        for( int idx = 0; idx < length; idx++ )
+        {
+            int diff = ( left[ idx ] & 0xFF ) - ( right[ idx ] & 0xFF );
+            if( diff != 0 )
+            {
+                return diff;
+            }
+        }
+        return left.length - right.length;
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
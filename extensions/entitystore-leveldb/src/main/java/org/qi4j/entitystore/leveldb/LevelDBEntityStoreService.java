@@ -26,6 +26,8 @@ import org.qi4j.library.locking.LockingAbstractComposite;
 import org.qi4j.spi.entitystore.ConcurrentModificationCheckConcern;
 import org.qi4j.spi.entitystore.EntityStateVersions;
 import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreVersionLookup;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
 import org.qi4j.spi.entitystore.StateChangeNotificationConcern;
 import org.qi4j.spi.entitystore.helpers.JSONMapEntityStoreActivation;
 import org.qi4j.spi.entitystore.helpers.JSONMapEntityStoreMixin;
@@ -47,6 +49,8 @@ import org.qi4j.spi.entitystore.helpers.JSONMapEntityStoreMixin;
 public interface LevelDBEntityStoreService
     extends EntityStore,
             EntityStateVersions,
+            EntityStoreVersionLookup,
+            PartitionedEntityStore,
             ServiceComposite,
             ServiceActivation,
             JSONMapEntityStoreActivation,
@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.leveldb;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
+import org.qi4j.spi.entitystore.StatePartitions;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class LevelDBEntityStatePartitionsTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler( Visibility.module ).assemble( config );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        module.services( FileConfigurationService.class );
+        new LevelDBEntityStoreAssembler().
+            withConfig( config, Visibility.layer ).
+            identifiedBy( "partitions-leveldb-entitystore" ).
+            assemble( module );
+        config.forMixin( LevelDBEntityStoreConfiguration.class ).declareDefaults().flavour().set( "java" );
+        module.entities( TestEntity.class );
+    }
+
+    @Test
+    public void givenEntitiesWhenTransferringPartitionsConcurrentlyExpectEachEntityOnce()
+        throws Exception
+    {
+        Set<String> expected = identities( store().entityStates( module ) );
+        expected.addAll( newEntities( 1000 ) );
+
+        StatePartitions<EntityState, EntityStoreException> partitions = partitionedStore().entityStatePartitions( module, 4 );
+        try
+        {
+            assertThat( partitions.partitions().size(), equalTo( 4 ) );
+            List<String> all = transferConcurrently( partitions.partitions() );
+            assertThat( all.size(), equalTo( expected.size() ) );
+            assertThat( new HashSet<String>( all ), equalTo( expected ) );
+        }
+        finally
+        {
+            partitions.close();
+        }
+    }
+
+    @Test
+    public void givenPartitionsWhenChangingEntitiesExpectPartitionsToReadSnapshot()
+        throws Exception
+    {
+        newEntities( 100 );
+        Set<String> expected = identities( store().entityStates( module ) );
+
+        StatePartitions<EntityState, EntityStoreException> partitions = partitionedStore().entityStatePartitions( module, 3 );
+        try
+        {
+            newEntities( 100 );
+            UnitOfWork uow = module.newUnitOfWork();
+            uow.remove( uow.get( TestEntity.class, expected.iterator().next() ) );
+            uow.complete();
+
+            assertThat( new HashSet<String>( transferConcurrently( partitions.partitions() ) ), equalTo( expected ) );
+        }
+        finally
+        {
+            partitions.close();
+        }
+    }
+
+    private EntityStore store()
+    {
+        return module.findService( EntityStore.class ).get();
+    }
+
+    private PartitionedEntityStore partitionedStore()
+    {
+        return module.findService( PartitionedEntityStore.class ).get();
+    }
+
+    private List<String> newEntities( int count )
+        throws Exception
+    {
+        List<String> identities = new ArrayList<String>();
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int i = 0; i < count; i++ )
+        {
+            identities.add( uow.newEntity( TestEntity.class ).identity().get() );
+        }
+        uow.complete();
+        return identities;
+    }
+
+    private static List<String> transferConcurrently( List<Input<EntityState, EntityStoreException>> partitions )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( partitions.size() );
+        try
+        {
+            List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+            for( final Input<EntityState, EntityStoreException> partition : partitions )
+            {
+                futures.add( executor.submit( new Callable<Set<String>>()
+                {
+                    @Override
+                    public Set<String> call()
+                        throws Exception
+                    {
+                        return identities( partition );
+                    }
+                } ) );
+            }
+            List<String> all = new ArrayList<String>();
+            for( Future<Set<String>> future : futures )
+            {
+                all.addAll( future.get() );
+            }
+            return all;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static Set<String> identities( Input<EntityState, EntityStoreException> input )
+        throws Exception
+    {
+        final Set<String> identities = new HashSet<String>();
+        input.transferTo( new Output<EntityState, RuntimeException>()
+        {
+            @Override
+            public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends EntityState, SenderThrowableType> sender )
+                throws RuntimeException, SenderThrowableType
+            {
+                sender.sendTo( new Receiver<EntityState, RuntimeException>()
+                {
+                    @Override
+                    public void receive( EntityState item )
+                    {
+                        identities.add( item.identity().identity() );
+                    }
+                } );
+            }
+        } );
+        return identities;
+    }
+
+    public interface TestEntity
+        extends EntityComposite
+    {
+    }
+}
@@ -34,7 +34,10 @@ import java.io.Writer;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.qi4j.api.configuration.Configuration;
@@ -48,6 +51,7 @@ import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,7 +60,7 @@ import org.slf4j.LoggerFactory;
  * MongoDB implementation of MapEntityStore.
  */
 public class MongoMapEntityStoreMixin
-    implements ServiceActivation, MapEntityStore, MongoAccessors
+    implements ServiceActivation, MapEntityStore, BulkMapEntityStore, MongoAccessors
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( "org.qi4j.entitystore.mongodb" );
@@ -215,6 +219,54 @@ public class MongoMapEntityStoreMixin
         return new StringReader( jsonState );
     }
 
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Map<String, EntityReference> references = new LinkedHashMap<String, EntityReference>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            references.put( entityReference.identity(), entityReference );
+        }
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        if( references.isEmpty() )
+        {
+            return states;
+        }
+
+        db.requestStart();
+
+        Map<String, String> jsonStates = new HashMap<String, String>();
+        DBObject byIdentities = new BasicDBObject( IDENTITY_COLUMN,
+                                                   new BasicDBObject( "$in", new ArrayList<String>( references.keySet() ) ) );
+        DBCursor cursor = db.getCollection( collectionName ).find( byIdentities );
+        try
+        {
+            while( cursor.hasNext() )
+            {
+                DBObject entity = cursor.next();
+                DBObject bsonState = (DBObject) entity.get( STATE_COLUMN );
+                jsonStates.put( (String) entity.get( IDENTITY_COLUMN ), JSON.serialize( bsonState ) );
+            }
+        }
+        finally
+        {
+            cursor.close();
+            db.requestDone();
+        }
+
+        // Keep the requested order
+        for( Map.Entry<String, EntityReference> reference : references.entrySet() )
+        {
+            String jsonState = jsonStates.get( reference.getKey() );
+            if( jsonState != null )
+            {
+                states.put( reference.getValue(), new StringReader( jsonState ) );
+            }
+        }
+        return states;
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
@@ -1,6 +1,7 @@
 package org.qi4j.entitystore.neo4j;
 
 import java.io.File;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.neo4j.graphdb.Direction;
@@ -138,6 +139,13 @@ public class NeoEntityStoreMixin
       return unitOfWork.entityStateOf( identity );
    }
 
+    @Override
+   public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                            Iterable<EntityReference> identities )
+   {
+      return unitOfWork.entityStatesOf( identities );
+   }
+
     @Override
    public EntityState newEntityState( EntityStoreUnitOfWork uow, EntityReference ref, EntityDescriptor descriptor )
    {
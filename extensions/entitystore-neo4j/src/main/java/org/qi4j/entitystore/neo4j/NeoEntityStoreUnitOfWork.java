@@ -1,5 +1,7 @@
 package org.qi4j.entitystore.neo4j;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
 import org.neo4j.graphdb.Node;
@@ -84,6 +86,22 @@ public class NeoEntityStoreUnitOfWork
                                    EntityStatus.LOADED );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+        throws EntityStoreException
+    {
+        Map<EntityReference, EntityState> states = new LinkedHashMap<EntityReference, EntityState>();
+        for( EntityReference identity : identities )
+        {
+            Node node = indexService.getSingleNode( ENTITY_STATE_ID, identity.identity() );
+            if( node != null )
+            {
+                states.put( identity, new NeoEntityState( valueSerialization, this, node, EntityStatus.LOADED ) );
+            }
+        }
+        return states;
+    }
+
     @Override
     public EntityState newEntityState( EntityReference anIdentity,
                                        EntityDescriptor entityDescriptor
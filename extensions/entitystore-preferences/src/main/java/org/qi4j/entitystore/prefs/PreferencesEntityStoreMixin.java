@@ -16,6 +16,7 @@ package org.qi4j.entitystore.prefs;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -211,6 +212,26 @@ public class PreferencesEntityStoreMixin
         return new DefaultEntityState( (DefaultEntityStoreUnitOfWork) unitOfWork, identity, entityDescriptor );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                             Iterable<EntityReference> identities
+    )
+    {
+        Map<EntityReference, EntityState> states = new LinkedHashMap<EntityReference, EntityState>();
+        for( EntityReference identity : identities )
+        {
+            try
+            {
+                states.put( identity, entityStateOf( unitOfWork, identity ) );
+            }
+            catch( NoSuchEntityException e )
+            {
+                // Absent from the result
+            }
+        }
+        return states;
+    }
+
     @Override
     public EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity )
     {
@@ -22,6 +22,10 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -34,6 +38,7 @@ import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.spi.entitystore.EntityNotFoundException;
 import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.helpers.BulkMapEntityStore;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -44,7 +49,7 @@ import redis.clients.jedis.Protocol;
  * Redis implementation of MapEntityStore.
  */
 public class RedisMapEntityStoreMixin
-    implements ServiceActivation, RedisAccessors, MapEntityStore
+    implements ServiceActivation, RedisAccessors, MapEntityStore, BulkMapEntityStore
 {
 
     private static final String DEFAULT_HOST = "127.0.0.1";
@@ -103,6 +108,42 @@ public class RedisMapEntityStoreMixin
         }
     }
 
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        List<EntityReference> references = new ArrayList<EntityReference>();
+        List<String> keys = new ArrayList<String>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            references.add( entityReference );
+            keys.add( entityReference.identity() );
+        }
+        Map<EntityReference, Reader> states = new LinkedHashMap<EntityReference, Reader>();
+        if( keys.isEmpty() )
+        {
+            return states;
+        }
+        Jedis jedis = pool.getResource();
+        try
+        {
+            List<String> jsonStates = jedis.mget( keys.toArray( new String[ keys.size() ] ) );
+            for( int idx = 0; idx < jsonStates.size(); idx++ )
+            {
+                String jsonState = jsonStates.get( idx );
+                if( !notFound( jsonState ) )
+                {
+                    states.put( references.get( idx ), new StringReader( jsonState ) );
+                }
+            }
+            return states;
+        }
+        finally
+        {
+            pool.returnResource( jedis );
+        }
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.sql;
+
+/**
+ * How the SQL EntityStore reads all entities, set as MetaInfo of the {@link SQLEntityStoreService}.
+ * <p>
+ * Entities are read by pages ordered by primary key, each page starting after the last key of the previous one,
+ * through a streaming cursor fetching a few rows at a time. Memory usage is then bounded whatever the table size.
+ * </p>
+ */
+public final class EntityStatesScan
+{
+    public static final EntityStatesScan DEFAULT = new EntityStatesScan( 1000, 100 );
+
+    private final int pageSize;
+    private final int fetchSize;
+
+    /**
+     * @param pageSize  Maximum number of entities read by a single query
+     * @param fetchSize Number of rows fetched from the database at once
+     */
+    public EntityStatesScan( int pageSize, int fetchSize )
+    {
+        if( pageSize < 1 || fetchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Page size and fetch size must be positive" );
+        }
+        this.pageSize = pageSize;
+        this.fetchSize = fetchSize;
+    }
+
+    public int pageSize()
+    {
+        return pageSize;
+    }
+
+    public int fetchSize()
+    {
+        return fetchSize;
+    }
+}
@@ -25,6 +25,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -43,8 +44,10 @@ import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.Structure;
 import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.injection.scope.Uses;
 import org.qi4j.api.property.PropertyDescriptor;
 import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.api.service.qualifier.Tagged;
 import org.qi4j.api.structure.Application;
 import org.qi4j.api.structure.Module;
@@ -71,8 +74,12 @@ import org.qi4j.spi.entitystore.EntityStore;
 import org.qi4j.spi.entitystore.EntityStoreException;
 import org.qi4j.spi.entitystore.EntityStoreSPI;
 import org.qi4j.spi.entitystore.EntityStoreUnitOfWork;
+import org.qi4j.spi.entitystore.EntityStoreVersionLookup;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
 import org.qi4j.spi.entitystore.StateCommitter;
+import org.qi4j.spi.entitystore.StatePartitions;
 import org.qi4j.spi.entitystore.helpers.DefaultEntityState;
+import org.qi4j.spi.entitystore.helpers.JSONEntityVersions;
 import org.qi4j.spi.entitystore.helpers.MapEntityStore;
 import org.qi4j.spi.entitystore.helpers.Migration;
 import org.qi4j.spi.entitystore.helpers.StateStore;
@@ -90,11 +97,14 @@ import static org.qi4j.functional.Iterables.first;
 //      Refactor stuff that has to do with general things than actual MapEntityStore from MapEntityStoreMixin
 //      so that this class could extend some "AbstractJSONEntityStoreMixin".
 public class SQLEntityStoreMixin
-    implements EntityStore, EntityStoreSPI, StateStore, ServiceActivation
+    implements EntityStore, EntityStoreSPI, EntityStoreVersionLookup, PartitionedEntityStore, StateStore,
+               ServiceActivation
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( SQLEntityStoreMixin.class );
 
+    private static final int GET_ENTITIES_BATCH_SIZE = 100;
+
     @Service
     private DatabaseSQLService database;
 
@@ -112,6 +122,11 @@ public class SQLEntityStoreMixin
     @Service
     private Migration migration;
 
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    private EntityStatesScan scan;
+
     private String uuid;
 
     private AtomicInteger count = new AtomicInteger();
@@ -122,6 +137,11 @@ public class SQLEntityStoreMixin
     {
         uuid = UUID.randomUUID().toString() + "-";
         count.set( 0 );
+        scan = descriptor.metaInfo( EntityStatesScan.class );
+        if( scan == null )
+        {
+            scan = EntityStatesScan.DEFAULT;
+        }
         database.startDatabase();
     }
 
@@ -241,6 +261,131 @@ public class SQLEntityStoreMixin
                                           valueResult.getEntityOptimisticLock() );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                             Iterable<EntityReference> entityRefs
+    )
+    {
+        List<EntityReference> refs = new ArrayList<EntityReference>();
+        for( EntityReference entityRef : entityRefs )
+        {
+            refs.add( entityRef );
+        }
+        Map<EntityReference, EntityState> states = new HashMap<EntityReference, EntityState>();
+        if( refs.isEmpty() )
+        {
+            return states;
+        }
+        Connection connection = null;
+        try
+        {
+            connection = database.getConnection();
+            for( int from = 0; from < refs.size(); from += GET_ENTITIES_BATCH_SIZE )
+            {
+                List<EntityReference> batch = refs.subList( from, Math.min( from + GET_ENTITIES_BATCH_SIZE, refs.size() ) );
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                try
+                {
+                    ps = database.prepareGetEntitiesStatement( connection, batch.size() );
+                    database.populateGetEntitiesStatement( ps, batch );
+                    rs = ps.executeQuery();
+                    while( rs.next() )
+                    {
+                        EntityValueResult valueResult = database.getEntityValue( rs );
+                        DefaultEntityState entityState = readEntityState( (DefaultEntityStoreUnitOfWork) unitOfWork,
+                                                                          valueResult.getReader() );
+                        states.put( entityState.identity(),
+                                    new DefaultSQLEntityState( entityState,
+                                                               valueResult.getEntityPK(),
+                                                               valueResult.getEntityOptimisticLock() ) );
+                    }
+                }
+                finally
+                {
+                    SQLUtil.closeQuietly( rs );
+                    SQLUtil.closeQuietly( ps );
+                }
+            }
+        }
+        catch( SQLException sqle )
+        {
+            throw new EntityStoreException( "Unable to get Entities " + refs, sqle );
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( connection );
+        }
+
+        // Keep the requested order
+        Map<EntityReference, EntityState> orderedStates = new LinkedHashMap<EntityReference, EntityState>();
+        for( EntityReference ref : refs )
+        {
+            EntityState state = states.get( ref );
+            if( state != null )
+            {
+                orderedStates.put( ref, state );
+            }
+        }
+        return orderedStates;
+    }
+
+    @Override
+    public Map<EntityReference, String> versionsOf( Iterable<EntityReference> references )
+    {
+        List<EntityReference> refs = new ArrayList<EntityReference>();
+        for( EntityReference ref : references )
+        {
+            refs.add( ref );
+        }
+        Map<EntityReference, String> versions = new HashMap<EntityReference, String>();
+        if( refs.isEmpty() )
+        {
+            return versions;
+        }
+        Connection connection = null;
+        try
+        {
+            connection = database.getConnection();
+            for( int from = 0; from < refs.size(); from += GET_ENTITIES_BATCH_SIZE )
+            {
+                List<EntityReference> batch = refs.subList( from, Math.min( from + GET_ENTITIES_BATCH_SIZE, refs.size() ) );
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                try
+                {
+                    ps = database.prepareGetEntitiesStatement( connection, batch.size() );
+                    database.populateGetEntitiesStatement( ps, batch );
+                    rs = ps.executeQuery();
+                    while( rs.next() )
+                    {
+                        // The IN-list does not select the identity, read it along with the version
+                        String[] identityAndVersion = JSONEntityVersions.readIdentityAndVersion( database.getEntityValue( rs ).getReader() );
+                        versions.put( new EntityReference( identityAndVersion[ 0 ] ), identityAndVersion[ 1 ] );
+                    }
+                }
+                finally
+                {
+                    SQLUtil.closeQuietly( rs );
+                    SQLUtil.closeQuietly( ps );
+                }
+            }
+            return versions;
+        }
+        catch( SQLException sqle )
+        {
+            throw new EntityStoreException( "Unable to get Entity versions " + refs, sqle );
+        }
+        catch( JSONException e )
+        {
+            throw new EntityStoreException( e );
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( connection );
+        }
+    }
+
     @Override
     public EntityState newEntityState( EntityStoreUnitOfWork unitOfWork, EntityReference entityRef, EntityDescriptor entityDescriptor )
     {
@@ -257,6 +402,46 @@ public class SQLEntityStoreMixin
 
     @Override
     public Input<EntityState, EntityStoreException> entityStates( final Module module )
+    {
+        return entityStates( module, Long.MIN_VALUE, Long.MAX_VALUE );
+    }
+
+    @Override
+    public StatePartitions<EntityState, EntityStoreException> entityStatePartitions( Module module, int partitions )
+    {
+        // Split the current PK range evenly, the first and last partitions are unbounded
+        final List<Input<EntityState, EntityStoreException>> inputs = new ArrayList<Input<EntityState, EntityStoreException>>();
+        long[] bounds = entityPKBounds();
+        long afterPK = Long.MIN_VALUE;
+        if( bounds != null && partitions > 1 )
+        {
+            long step = Math.max( 1, ( bounds[ 1 ] - bounds[ 0 ] ) / partitions + 1 );
+            for( long untilPK = bounds[ 0 ] + step - 1; untilPK < bounds[ 1 ]; untilPK += step )
+            {
+                inputs.add( entityStates( module, afterPK, untilPK ) );
+                afterPK = untilPK;
+            }
+        }
+        inputs.add( entityStates( module, afterPK, Long.MAX_VALUE ) );
+        return new StatePartitions<EntityState, EntityStoreException>()
+        {
+            @Override
+            public List<Input<EntityState, EntityStoreException>> partitions()
+            {
+                return inputs;
+            }
+
+            @Override
+            public void close()
+            {
+                // Each page is read in its own transaction, nothing to release
+            }
+        };
+    }
+
+    private Input<EntityState, EntityStoreException> entityStates( final Module module,
+                                                                   final long afterPK,
+                                                                   final long untilPK )
     {
         return new Input<EntityState, EntityStoreException>()
         {
@@ -273,7 +458,7 @@ public class SQLEntityStoreMixin
                             throws ReceiverThrowableType, EntityStoreException
                     {
 
-                        queryAllEntities( module, new EntityStatesVisitor()
+                        queryEntities( module, afterPK, untilPK, new EntityStatesVisitor()
                         {
 
                             @Override
@@ -300,39 +485,93 @@ public class SQLEntityStoreMixin
         };
     }
 
-    private void queryAllEntities( Module module, EntityStatesVisitor entityStatesVisitor )
+    /**
+     * Visit the entities whose PK is in ]afterPK, untilPK] using keyset pagination: each page is read by its own
+     * streaming query starting after the last PK of the previous page, so that neither the client nor a long
+     * running transaction hold the whole table.
+     */
+    private void queryEntities( Module module, long afterPK, long untilPK, EntityStatesVisitor entityStatesVisitor )
     {
-        Connection connection = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
         UsecaseBuilder builder = UsecaseBuilder.buildUsecase( "qi4j.entitystore.sql.visit" );
         Usecase usecase = builder.withMetaInfo( CacheOptions.NEVER ).newUsecase();
         final DefaultEntityStoreUnitOfWork uow = new DefaultEntityStoreUnitOfWork( entityStoreSPI,
                                                                                    newUnitOfWorkId(), module, usecase,
                                                                                    System.currentTimeMillis() );
-        try {
-
-            connection = database.getConnection();
-            ps = database.prepareGetAllEntitiesStatement( connection );
-            database.populateGetAllEntitiesStatement( ps );
-            rs = ps.executeQuery();
-            while ( rs.next() ) {
-                DefaultEntityState entityState = readEntityState( uow, database.getEntityValue( rs ).getReader() );
-                if ( !entityStatesVisitor.visit( entityState ) ) {
-                    return;
+        long lastPK = afterPK;
+        int pageCount = scan.pageSize();
+        while ( pageCount == scan.pageSize() && lastPK < untilPK ) {
+
+            Connection connection = null;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            pageCount = 0;
+            try {
+
+                connection = database.getConnection();
+                connection.setAutoCommit( false );
+                ps = database.prepareGetEntitiesRangeStatement( connection, scan.pageSize(), scan.fetchSize() );
+                database.populateGetEntitiesRangeStatement( ps, lastPK, untilPK );
+                rs = ps.executeQuery();
+                while ( rs.next() ) {
+                    EntityValueResult valueResult = database.getEntityValue( rs );
+                    lastPK = valueResult.getEntityPK();
+                    pageCount++;
+                    DefaultEntityState entityState = readEntityState( uow, valueResult.getReader() );
+                    if ( !entityStatesVisitor.visit( entityState ) ) {
+                        return;
+                    }
                 }
-            }
 
-        } catch ( SQLException ex ) {
+            } catch ( SQLException ex ) {
 
-            throw new EntityStoreException( ex );
+                throw new EntityStoreException( ex );
 
-        } finally {
+            } finally {
 
+                SQLUtil.closeQuietly( rs );
+                SQLUtil.closeQuietly( ps );
+                SQLUtil.rollbackQuietly( connection );
+                SQLUtil.closeQuietly( connection );
+
+            }
+        }
+    }
+
+    /**
+     * @return First and last entity PKs, null if there is no entity
+     */
+    private long[] entityPKBounds()
+    {
+        Connection connection = null;
+        PreparedStatement firstPS = null;
+        PreparedStatement lastPS = null;
+        ResultSet rs = null;
+        try
+        {
+            connection = database.getConnection();
+            firstPS = database.prepareGetFirstEntityPKStatement( connection );
+            rs = firstPS.executeQuery();
+            if( !rs.next() )
+            {
+                return null;
+            }
+            long first = rs.getLong( 1 );
             SQLUtil.closeQuietly( rs );
-            SQLUtil.closeQuietly( ps );
+            lastPS = database.prepareGetLastEntityPKStatement( connection );
+            rs = lastPS.executeQuery();
+            long last = rs.next() ? rs.getLong( 1 ) : first;
+            return new long[]{ first, last };
+        }
+        catch( SQLException sqle )
+        {
+            throw new EntityStoreException( "Unable to get Entity PK range", sqle );
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( rs );
+            SQLUtil.closeQuietly( firstPS );
+            SQLUtil.closeQuietly( lastPS );
             SQLUtil.closeQuietly( connection );
-
         }
     }
 
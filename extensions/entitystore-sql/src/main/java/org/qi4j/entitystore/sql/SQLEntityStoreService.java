@@ -20,6 +20,8 @@ import org.qi4j.api.service.ServiceComposite;
 import org.qi4j.spi.entitystore.ConcurrentModificationCheckConcern;
 import org.qi4j.spi.entitystore.EntityStateVersions;
 import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreVersionLookup;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
 import org.qi4j.spi.entitystore.StateChangeNotificationConcern;
 
 /**
@@ -28,6 +30,7 @@ import org.qi4j.spi.entitystore.StateChangeNotificationConcern;
 @Concerns( { StateChangeNotificationConcern.class, ConcurrentModificationCheckConcern.class } )
 @Mixins( { SQLEntityStoreMixin.class } )
 public interface SQLEntityStoreService
-    extends EntityStore, EntityStateVersions, ServiceComposite, ServiceActivation
+    extends EntityStore, EntityStateVersions, EntityStoreVersionLookup, PartitionedEntityStore, ServiceComposite,
+            ServiceActivation
 {
 }
@@ -19,6 +19,7 @@ import org.qi4j.api.common.Visibility;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.sql.EntityStatesScan;
 import org.qi4j.entitystore.sql.SQLEntityStoreService;
 import org.qi4j.entitystore.sql.internal.DatabaseSQLService.DatabaseSQLServiceComposite;
 import org.qi4j.entitystore.sql.internal.DatabaseSQLServiceCoreMixin;
@@ -43,6 +44,7 @@ abstract class AbstractSQLEntityStoreAssembler<T extends AbstractSQLEntityStoreA
     private Visibility visibility = Visibility.module;
     private ModuleAssembly configModule;
     private Visibility configVisibility = Visibility.module;
+    private EntityStatesScan entityStatesScan = EntityStatesScan.DEFAULT;
 
     public T identifiedBy( String identity )
     {
@@ -68,6 +70,12 @@ abstract class AbstractSQLEntityStoreAssembler<T extends AbstractSQLEntityStoreA
         return (T) this;
     }
 
+    public T withEntityStatesScan( int pageSize, int fetchSize )
+    {
+        this.entityStatesScan = new EntityStatesScan( pageSize, fetchSize );
+        return (T) this;
+    }
+
     protected SQLVendor getSQLVendor()
         throws IOException
     {
@@ -110,8 +118,10 @@ abstract class AbstractSQLEntityStoreAssembler<T extends AbstractSQLEntityStoreA
         {
             throw new AssemblyException( ioe );
         }
-        module.services( SQLEntityStoreService.class,
-                         UuidIdentityGeneratorService.class ).
+        module.services( SQLEntityStoreService.class ).
+            visibleIn( visibility ).
+            setMetaInfo( entityStatesScan );
+        module.services( UuidIdentityGeneratorService.class ).
             visibleIn( visibility );
         configModule.entities( SQLConfiguration.class ).
             visibleIn( configVisibility );
@@ -19,6 +19,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.service.ServiceComposite;
 
@@ -85,9 +86,31 @@ public interface DatabaseSQLService
     PreparedStatement prepareGetEntityStatement( Connection connection )
         throws SQLException;
 
+    PreparedStatement prepareGetEntitiesStatement( Connection connection, int count )
+        throws SQLException;
+
     PreparedStatement prepareGetAllEntitiesStatement( Connection connection )
         throws SQLException;
 
+    /**
+     * Prepare a statement reading the entities of a PK range, ordered by PK, as a forward only cursor that does not
+     * hold more than a page of entities in memory.
+     *
+     * @param connection Connection, in manual commit mode as some drivers only use cursors in transactions
+     * @param pageSize   Maximum number of entities returned by an execution of the statement
+     * @param fetchSize  Number of rows fetched from the database at once
+     *
+     * @return the statement
+     */
+    PreparedStatement prepareGetEntitiesRangeStatement( Connection connection, int pageSize, int fetchSize )
+        throws SQLException;
+
+    PreparedStatement prepareGetFirstEntityPKStatement( Connection connection )
+        throws SQLException;
+
+    PreparedStatement prepareGetLastEntityPKStatement( Connection connection )
+        throws SQLException;
+
     PreparedStatement prepareInsertEntityStatement( Connection connection )
         throws SQLException;
 
@@ -100,9 +123,20 @@ public interface DatabaseSQLService
     void populateGetEntityStatement( PreparedStatement ps, EntityReference ref )
         throws SQLException;
 
+    void populateGetEntitiesStatement( PreparedStatement ps, List<EntityReference> refs )
+        throws SQLException;
+
     void populateGetAllEntitiesStatement( PreparedStatement ps )
         throws SQLException;
 
+    /**
+     * @param ps      Statement prepared by {@link #prepareGetEntitiesRangeStatement(Connection, int, int)}
+     * @param afterPK Exclusive lower bound of the range
+     * @param untilPK Inclusive upper bound of the range
+     */
+    void populateGetEntitiesRangeStatement( PreparedStatement ps, long afterPK, long untilPK )
+        throws SQLException;
+
     void populateInsertEntityStatement( PreparedStatement ps, EntityReference ref, String entity, Long lastModified )
         throws SQLException;
 
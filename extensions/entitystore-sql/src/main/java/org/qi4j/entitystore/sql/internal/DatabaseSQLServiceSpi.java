@@ -33,6 +33,15 @@ public interface DatabaseSQLServiceSpi
     boolean tableExists( Connection connection )
             throws SQLException;
 
+    /**
+     * Implemented by each database specialization as drivers differ in how they stream result sets.
+     *
+     * @param fetchSize Wanted number of rows fetched from the database at once
+     *
+     * @return the fetch size to set on statements so that result sets are streamed
+     */
+    int streamingFetchSize( int fetchSize );
+
     @SuppressWarnings( "PublicInnerClass" )
     public abstract class CommonMixin
             implements DatabaseSQLServiceSpi
@@ -16,7 +16,9 @@ package org.qi4j.entitystore.sql.internal;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.This;
 
@@ -27,6 +29,9 @@ public abstract class DatabaseSQLServiceStatementsMixin
     @This
     private DatabaseSQLStringsBuilder sqlStrings;
 
+    @This
+    private DatabaseSQLServiceSpi spi;
+
     //
     // Used by the EntityStore, will probably remain the same even if we support several sql servers
     //
@@ -44,6 +49,42 @@ public abstract class DatabaseSQLServiceStatementsMixin
         return connection.prepareStatement( sqlStrings.buildSQLForSelectEntityStatement() );
     }
 
+    @Override
+    public PreparedStatement prepareGetEntitiesStatement( Connection connection, int count )
+            throws SQLException
+    {
+        return connection.prepareStatement( sqlStrings.buildSQLForSelectEntitiesStatement( count ) );
+    }
+
+    @Override
+    public PreparedStatement prepareGetEntitiesRangeStatement( Connection connection, int pageSize, int fetchSize )
+            throws SQLException
+    {
+        PreparedStatement ps = connection.prepareStatement( sqlStrings.buildSQLForSelectEntitiesRangeStatement(),
+                                                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+        ps.setMaxRows( pageSize );
+        ps.setFetchSize( spi.streamingFetchSize( fetchSize ) );
+        return ps;
+    }
+
+    @Override
+    public PreparedStatement prepareGetFirstEntityPKStatement( Connection connection )
+            throws SQLException
+    {
+        PreparedStatement ps = connection.prepareStatement( sqlStrings.buildSQLForSelectFirstEntityPKStatement() );
+        ps.setMaxRows( 1 );
+        return ps;
+    }
+
+    @Override
+    public PreparedStatement prepareGetLastEntityPKStatement( Connection connection )
+            throws SQLException
+    {
+        PreparedStatement ps = connection.prepareStatement( sqlStrings.buildSQLForSelectLastEntityPKStatement() );
+        ps.setMaxRows( 1 );
+        return ps;
+    }
+
     @Override
     public PreparedStatement prepareInsertEntityStatement( Connection connection )
             throws SQLException
@@ -82,6 +123,24 @@ public abstract class DatabaseSQLServiceStatementsMixin
         ps.setString( 1, ref.identity() );
     }
 
+    @Override
+    public void populateGetEntitiesStatement( PreparedStatement ps, List<EntityReference> refs )
+            throws SQLException
+    {
+        for( int idx = 0; idx < refs.size(); idx++ )
+        {
+            ps.setString( idx + 1, refs.get( idx ).identity() );
+        }
+    }
+
+    @Override
+    public void populateGetEntitiesRangeStatement( PreparedStatement ps, long afterPK, long untilPK )
+            throws SQLException
+    {
+        ps.setLong( 1, afterPK );
+        ps.setLong( 2, untilPK );
+    }
+
     @Override
     public void populateInsertEntityStatement( PreparedStatement ps, EntityReference ref, String entity, Long lastModified )
             throws SQLException
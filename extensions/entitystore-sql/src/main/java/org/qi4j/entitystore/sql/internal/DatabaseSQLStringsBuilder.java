@@ -19,8 +19,10 @@ import java.util.List;
 import org.qi4j.api.injection.scope.This;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sql.generation.api.grammar.builders.booleans.InBuilder;
 import org.sql.generation.api.grammar.builders.modification.DeleteBySearchBuilder;
 import org.sql.generation.api.grammar.builders.modification.UpdateBySearchBuilder;
+import org.sql.generation.api.grammar.builders.query.SimpleQueryBuilder;
 import org.sql.generation.api.grammar.common.SQLStatement;
 import org.sql.generation.api.grammar.common.datatypes.SQLDataType;
 import org.sql.generation.api.grammar.definition.table.AutoGenerationPolicy;
@@ -48,6 +50,14 @@ public interface DatabaseSQLStringsBuilder
 
     String buildSQLForSelectEntityStatement();
 
+    String buildSQLForSelectEntitiesStatement( int count );
+
+    String buildSQLForSelectEntitiesRangeStatement();
+
+    String buildSQLForSelectFirstEntityPKStatement();
+
+    String buildSQLForSelectLastEntityPKStatement();
+
     String buildSQLForInsertEntityStatement();
 
     String buildSQLForUpdateEntityStatement();
@@ -78,6 +88,12 @@ public interface DatabaseSQLStringsBuilder
 
         private String selectEntitySQL;
 
+        private String selectEntitiesRangeSQL;
+
+        private String selectFirstEntityPKSQL;
+
+        private String selectLastEntityPKSQL;
+
         private String insertEntitySQL;
 
         private String updateEntitySQL;
@@ -106,6 +122,15 @@ public interface DatabaseSQLStringsBuilder
             this.selectEntitySQL = this.vendor.toString( this.createSelectEntityStatement( this.vendor ) );
             LOGGER.trace( "SQL for select entity: {}", this.selectEntitySQL );
 
+            this.selectEntitiesRangeSQL = this.vendor.toString( this.createSelectEntitiesRangeStatement( this.vendor ) );
+            LOGGER.trace( "SQL for select entities range: {}", this.selectEntitiesRangeSQL );
+
+            this.selectFirstEntityPKSQL = this.vendor.toString( this.createSelectEntityPKBoundStatement( this.vendor, true ) );
+            LOGGER.trace( "SQL for select first entity PK: {}", this.selectFirstEntityPKSQL );
+
+            this.selectLastEntityPKSQL = this.vendor.toString( this.createSelectEntityPKBoundStatement( this.vendor, false ) );
+            LOGGER.trace( "SQL for select last entity PK: {}", this.selectLastEntityPKSQL );
+
             this.insertEntitySQL = this.vendor.toString( this.createInsertEntityStatement( this.vendor ) );
             LOGGER.trace( "SQL for insert entity: {}", this.insertEntitySQL );
 
@@ -227,6 +252,73 @@ public interface DatabaseSQLStringsBuilder
             // @formatter:on
         }
 
+        protected SQLStatement createSelectEntitiesStatement( SQLVendor vendor, int count )
+        {
+            QueryFactory q = vendor.getQueryFactory();
+            TableReferenceFactory t = vendor.getTableReferenceFactory();
+            BooleanFactory b = vendor.getBooleanFactory();
+            ColumnsFactory c = vendor.getColumnsFactory();
+            LiteralFactory l = vendor.getLiteralFactory();
+
+            InBuilder in = b.inBuilder( c.colName( SQLs.ENTITY_IDENTITY_COLUMN_NAME ) );
+            for( int idx = 0; idx < count; idx++ )
+            {
+                in.addValues( l.param() );
+            }
+
+            // @formatter:off
+            return q.simpleQueryBuilder()
+                .select( SQLs.ENTITY_PK_COLUMN_NAME, SQLs.ENTITY_OPTIMISTIC_LOCK_COLUMN_NAME, SQLs.ENTITY_STATE_COLUMN_NAME )
+                .from( t.tableName( this.schemaName, SQLs.TABLE_NAME ) )
+                .where( in.createExpression() )
+                .createExpression();
+            // @formatter:on
+        }
+
+        /**
+         * Entities whose PK is in ]?, ?], ordered by PK, used for keyset pagination.
+         */
+        protected SQLStatement createSelectEntitiesRangeStatement( SQLVendor vendor )
+        {
+            QueryFactory q = vendor.getQueryFactory();
+            TableReferenceFactory t = vendor.getTableReferenceFactory();
+            BooleanFactory b = vendor.getBooleanFactory();
+            ColumnsFactory c = vendor.getColumnsFactory();
+            LiteralFactory l = vendor.getLiteralFactory();
+
+            // @formatter:off
+            return q.simpleQueryBuilder()
+                .select( SQLs.ENTITY_PK_COLUMN_NAME, SQLs.ENTITY_OPTIMISTIC_LOCK_COLUMN_NAME, SQLs.ENTITY_STATE_COLUMN_NAME )
+                .from( t.tableName( this.schemaName, SQLs.TABLE_NAME ) )
+                .where( b.booleanBuilder( b.gt( c.colName( SQLs.ENTITY_PK_COLUMN_NAME ), l.param() ) )
+                    .and( b.leq( c.colName( SQLs.ENTITY_PK_COLUMN_NAME ), l.param() ) )
+                    .createExpression() )
+                .orderByAsc( SQLs.ENTITY_PK_COLUMN_NAME )
+                .createExpression();
+            // @formatter:on
+        }
+
+        protected SQLStatement createSelectEntityPKBoundStatement( SQLVendor vendor, boolean first )
+        {
+            QueryFactory q = vendor.getQueryFactory();
+            TableReferenceFactory t = vendor.getTableReferenceFactory();
+
+            // @formatter:off
+            SimpleQueryBuilder builder = q.simpleQueryBuilder()
+                .select( SQLs.ENTITY_PK_COLUMN_NAME )
+                .from( t.tableName( this.schemaName, SQLs.TABLE_NAME ) );
+            // @formatter:on
+            if( first )
+            {
+                builder.orderByAsc( SQLs.ENTITY_PK_COLUMN_NAME );
+            }
+            else
+            {
+                builder.orderByDesc( SQLs.ENTITY_PK_COLUMN_NAME );
+            }
+            return builder.createExpression();
+        }
+
         protected SQLStatement createInsertEntityStatement( SQLVendor vendor )
         {
             ModificationFactory m = vendor.getModificationFactory();
@@ -345,6 +437,30 @@ public interface DatabaseSQLStringsBuilder
             return this.selectEntitySQL;
         }
 
+        @Override
+        public String buildSQLForSelectEntitiesStatement( int count )
+        {
+            return this.vendor.toString( this.createSelectEntitiesStatement( this.vendor, count ) );
+        }
+
+        @Override
+        public String buildSQLForSelectEntitiesRangeStatement()
+        {
+            return this.selectEntitiesRangeSQL;
+        }
+
+        @Override
+        public String buildSQLForSelectFirstEntityPKStatement()
+        {
+            return this.selectFirstEntityPKSQL;
+        }
+
+        @Override
+        public String buildSQLForSelectLastEntityPKStatement()
+        {
+            return this.selectLastEntityPKSQL;
+        }
+
         @Override
         public String buildSQLForInsertEntityStatement()
         {
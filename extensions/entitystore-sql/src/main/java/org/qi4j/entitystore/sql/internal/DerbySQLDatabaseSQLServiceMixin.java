@@ -64,4 +64,10 @@ public abstract class DerbySQLDatabaseSQLServiceMixin
                 rs.getString( SQLs.ENTITY_STATE_COLUMN_NAME ) ) );
     }
 
+    @Override
+    public int streamingFetchSize( int fetchSize )
+    {
+        return fetchSize;
+    }
+
 }
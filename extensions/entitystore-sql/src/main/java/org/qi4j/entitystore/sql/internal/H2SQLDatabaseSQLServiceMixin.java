@@ -54,4 +54,10 @@ public abstract class H2SQLDatabaseSQLServiceMixin
                                       new StringReader( rs.getString( SQLs.ENTITY_STATE_COLUMN_NAME ) ) );
     }
 
+    @Override
+    public int streamingFetchSize( int fetchSize )
+    {
+        return fetchSize;
+    }
+
 }
@@ -64,4 +64,14 @@ public abstract class MySQLDatabaseSQLServiceMixin
                 rs.getString( SQLs.ENTITY_STATE_COLUMN_NAME ) ) );
     }
 
+    /**
+     * MySQL Connector/J reads whole result sets at once and only streams them, row by row, when the fetch size is
+     * Integer.MIN_VALUE, other fetch sizes being ignored unless useCursorFetch=true is set on the connection URL.
+     */
+    @Override
+    public int streamingFetchSize( int fetchSize )
+    {
+        return Integer.MIN_VALUE;
+    }
+
 }
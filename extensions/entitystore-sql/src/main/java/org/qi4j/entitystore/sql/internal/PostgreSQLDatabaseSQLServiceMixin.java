@@ -60,4 +60,14 @@ public abstract class PostgreSQLDatabaseSQLServiceMixin
                                       rs.getCharacterStream( SQLs.ENTITY_STATE_COLUMN_NAME ) );
     }
 
+    /**
+     * The PostgreSQL driver uses a server side cursor when the fetch size is positive and the connection is not in
+     * autocommit mode, and otherwise reads the whole result set at once.
+     */
+    @Override
+    public int streamingFetchSize( int fetchSize )
+    {
+        return fetchSize;
+    }
+
 }
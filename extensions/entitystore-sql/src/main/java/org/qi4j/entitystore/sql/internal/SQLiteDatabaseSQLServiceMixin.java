@@ -56,4 +56,10 @@ public abstract class SQLiteDatabaseSQLServiceMixin
                                       new StringReader( rs.getString( SQLs.ENTITY_STATE_COLUMN_NAME ) ) );
     }
 
+    @Override
+    public int streamingFetchSize( int fetchSize )
+    {
+        return fetchSize;
+    }
+
 }
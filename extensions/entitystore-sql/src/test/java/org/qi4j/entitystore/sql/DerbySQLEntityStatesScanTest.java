@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.entitystore.sql;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+import org.apache.derby.iapi.services.io.FileUtil;
+import org.junit.Test;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.sql.assembly.DerbySQLEntityStoreAssembler;
+import org.qi4j.entitystore.sql.internal.SQLs;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.library.sql.assembly.DataSourceAssembler;
+import org.qi4j.library.sql.common.SQLUtil;
+import org.qi4j.library.sql.dbcp.DBCPDataSourceServiceAssembler;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.PartitionedEntityStore;
+import org.qi4j.spi.entitystore.StatePartitions;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class DerbySQLEntityStatesScanTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        new DBCPDataSourceServiceAssembler().
+            identifiedBy( "derby-datasource-service" ).
+            visibleIn( Visibility.module ).
+            withConfig( config ).
+            withConfigVisibility( Visibility.layer ).
+            assemble( module );
+        new DataSourceAssembler().
+            withDataSourceServiceIdentity( "derby-datasource-service" ).
+            identifiedBy( "derby-datasource" ).
+            visibleIn( Visibility.module ).
+            assemble( module );
+        // Small pages so that scans span many of them
+        new DerbySQLEntityStoreAssembler().
+            withConfig( config ).
+            withConfigVisibility( Visibility.layer ).
+            withEntityStatesScan( 7, 3 ).
+            assemble( module );
+        module.entities( TestEntity.class );
+    }
+
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        if( module == null )
+        {
+            return;
+        }
+        Connection connection = module.findService( DataSource.class ).get().getConnection();
+        Statement stmt = null;
+        try
+        {
+            stmt = connection.createStatement();
+            stmt.execute( "DELETE FROM " + SQLs.DEFAULT_SCHEMA_NAME + "." + SQLs.TABLE_NAME );
+            connection.commit();
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( stmt );
+            SQLUtil.closeQuietly( connection );
+            FileUtil.removeDirectory( "target/qi4j-data" );
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void givenEntitiesOnManyPagesWhenScanningExpectEachEntityOnce()
+        throws Exception
+    {
+        List<String> expected = newEntities( 50 );
+
+        List<String> scanned = identities( module.findService( EntityStore.class ).get().entityStates( module ) );
+
+        assertThat( scanned.size(), equalTo( expected.size() ) );
+        assertThat( new HashSet<String>( scanned ), equalTo( new HashSet<String>( expected ) ) );
+    }
+
+    @Test
+    public void givenEntitiesWhenTransferringPartitionsConcurrentlyExpectEachEntityOnce()
+        throws Exception
+    {
+        List<String> expected = newEntities( 50 );
+
+        StatePartitions<EntityState, EntityStoreException> partitions =
+            module.findService( PartitionedEntityStore.class ).get().entityStatePartitions( module, 4 );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            assertThat( partitions.partitions().size(), equalTo( 4 ) );
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for( final Input<EntityState, EntityStoreException> partition : partitions.partitions() )
+            {
+                futures.add( executor.submit( new Callable<List<String>>()
+                {
+                    @Override
+                    public List<String> call()
+                        throws Exception
+                    {
+                        return identities( partition );
+                    }
+                } ) );
+            }
+            List<String> scanned = new ArrayList<String>();
+            for( Future<List<String>> future : futures )
+            {
+                scanned.addAll( future.get() );
+            }
+            assertThat( scanned.size(), equalTo( expected.size() ) );
+            assertThat( new HashSet<String>( scanned ), equalTo( new HashSet<String>( expected ) ) );
+        }
+        finally
+        {
+            executor.shutdown();
+            partitions.close();
+        }
+    }
+
+    private List<String> newEntities( int count )
+        throws Exception
+    {
+        List<String> identities = new ArrayList<String>();
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int i = 0; i < count; i++ )
+        {
+            identities.add( uow.newEntity( TestEntity.class ).identity().get() );
+        }
+        uow.complete();
+        return identities;
+    }
+
+    private static List<String> identities( Input<EntityState, EntityStoreException> input )
+        throws Exception
+    {
+        final List<String> identities = new ArrayList<String>();
+        input.transferTo( new Output<EntityState, RuntimeException>()
+        {
+            @Override
+            public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends EntityState, SenderThrowableType> sender )
+                throws RuntimeException, SenderThrowableType
+            {
+                sender.sendTo( new Receiver<EntityState, RuntimeException>()
+                {
+                    @Override
+                    public void receive( EntityState item )
+                    {
+                        identities.add( item.identity().identity() );
+                    }
+                } );
+            }
+        } );
+        return identities;
+    }
+
+    public interface TestEntity
+        extends EntityComposite
+    {
+    }
+}
@@ -46,5 +46,56 @@ public interface ElasticSearchConfiguration
      */
     @UseDefaults Property<Boolean> indexNonAggregatedAssociations();
 
+    /**
+     * Maximum number of changed Entities sent in one bulk request, larger changes are split in several requests.
+     * Defaults to 1000.
+     */
+    @Optional Property<Integer> bulkSize();
+
+    /**
+     * Maximum time in milliseconds changed Entities are buffered before being sent, so that changes made by many
+     * UnitOfWorks are sent together. Buffered changes are sent earlier once there are bulkSize of them.
+     * Defaults to 0, changes are sent as soon as they are notified.
+     */
+    @Optional Property<Long> flushInterval();
+
+    /**
+     * When sent changes become visible to queries.
+     * Defaults to 'IMMEDIATE'.
+     */
+    @Optional Property<RefreshPolicy> refreshPolicy();
+
+    /**
+     * Interval at which the index is refreshed when using the 'PERIODIC' refresh policy.
+     * Defaults to '1s'.
+     */
+    @Optional Property<String> refreshInterval();
+
+    /**
+     * Number of results fetched at once when reading large query results.
+     * Queries with a maxResults up to this size are read in one request.
+     * Defaults to 1000.
+     */
+    @Optional Property<Integer> scrollSize();
+
+    /**
+     * How long ElasticSearch keeps the results of large queries between two reads, eg. '1m'.
+     * Results that are not read until the end are released once this delay is elapsed.
+     * Defaults to '1m'.
+     */
+    @Optional Property<String> scrollKeepAlive();
+
+    enum RefreshPolicy
+    {
+        /**
+         * Refresh the index after each bulk request, changes are visible as soon as they are sent.
+         */
+        IMMEDIATE,
+        /**
+         * Let ElasticSearch refresh the index every refreshInterval, changes are visible once the index is refreshed.
+         */
+        PERIODIC
+    }
+
 }
 // END SNIPPET: config
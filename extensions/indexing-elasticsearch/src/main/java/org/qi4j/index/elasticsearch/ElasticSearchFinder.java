@@ -17,7 +17,9 @@
  */
 package org.qi4j.index.elasticsearch;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import org.elasticsearch.action.count.CountRequestBuilder;
 import org.elasticsearch.action.count.CountResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -77,14 +79,6 @@ public interface ElasticSearchFinder
 
 
             request.setQuery( filteredQuery( queryBuilder, filterBuilder ) );
-            if ( firstResult != null ) {
-                request.setFrom( firstResult );
-            }
-            if ( maxResults != null ) {
-                request.setSize( maxResults );
-            } else {
-                //request.setSize( Integer.MAX_VALUE ); // TODO Use scrolls?
-            }
             if ( orderBySegments != null ) {
                 for ( OrderBy order : orderBySegments ) {
                     request.addSort( order.property().toString(),
@@ -92,6 +86,17 @@ public interface ElasticSearchFinder
                 }
             }
 
+            if ( maxResults == null || maxResults > support.scrollSize() ) {
+                // Large results are streamed using a scroll
+                LOGGER.debug( "Will scroll Entities: {}", request );
+                return new ScrolledEntities( request, firstResult == null ? 0 : firstResult, maxResults );
+            }
+
+            if ( firstResult != null ) {
+                request.setFrom( firstResult );
+            }
+            request.setSize( maxResults );
+
             // Log
             LOGGER.debug( "Will search Entities: {}", request );
 
@@ -160,6 +165,96 @@ public interface ElasticSearchFinder
             return count.count();
         }
 
+        /**
+         * Search results read page by page, each iteration runs the search again.
+         * Scroll contexts left unread expire after scrollKeepAlive.
+         */
+        private class ScrolledEntities
+                implements Iterable<EntityReference>
+        {
+
+            private final SearchRequestBuilder request;
+
+            private final int firstResult;
+
+            private final Integer maxResults;
+
+            private ScrolledEntities( SearchRequestBuilder request, int firstResult, Integer maxResults )
+            {
+                this.request = request;
+                this.firstResult = firstResult;
+                this.maxResults = maxResults;
+            }
+
+            @Override
+            public Iterator<EntityReference> iterator()
+            {
+                final String keepAlive = support.scrollKeepAlive();
+                request.setScroll( keepAlive ).setSize( support.scrollSize() );
+
+                return new Iterator<EntityReference>()
+                {
+
+                    private SearchResponse response = request.execute().actionGet();
+
+                    private SearchHit[] hits = response.getHits().getHits();
+
+                    private int hitIndex = 0;
+
+                    private int skipped = 0;
+
+                    private int returned = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        if ( maxResults != null && returned >= maxResults ) {
+                            return false;
+                        }
+                        while ( true ) {
+                            if ( hitIndex < hits.length ) {
+                                if ( skipped < firstResult ) {
+                                    // Scrolls do not support 'from', skip first results here
+                                    skipped++;
+                                    hitIndex++;
+                                    continue;
+                                }
+                                return true;
+                            }
+                            if ( hits.length == 0 ) {
+                                return false;
+                            }
+                            // Read next page
+                            response = support.client().prepareSearchScroll( response.getScrollId() ).
+                                    setScroll( keepAlive ).
+                                    execute().
+                                    actionGet();
+                            hits = response.getHits().getHits();
+                            hitIndex = 0;
+                        }
+                    }
+
+                    @Override
+                    public EntityReference next()
+                    {
+                        if ( !hasNext() ) {
+                            throw new NoSuchElementException();
+                        }
+                        returned++;
+                        return EntityReference.parseEntityReference( hits[ hitIndex++ ].id() );
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException( "Not supported." );
+                    }
+
+                };
+            }
+
+        }
+
         private static AndFilterBuilder baseFilters( Class<?> resultType )
         {
             return andFilter( termFilter( "_types", resultType.getName() ) );
@@ -19,7 +19,12 @@ package org.qi4j.index.elasticsearch;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.json.JSONArray;
@@ -53,6 +58,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Listen to Entity state changes and index them in ElasticSearch.
  *
+ * Changes are sent in bulk requests of at most bulkSize Entities, and can be buffered up to flushInterval so that
+ * changes from many UnitOfWorks are sent together. Each changed or associated Entity is serialized once per batch.
+ *
  * QUID Use two indices, one for strict queries, one for full text and fuzzy search?
  */
 @Mixins( ElasticSearchIndexer.Mixin.class )
@@ -60,11 +68,35 @@ public interface ElasticSearchIndexer
     extends StateChangeListener
 {
 
+    /**
+     * Send buffered changes now.
+     */
+    void flush();
+
     class Mixin
-        implements StateChangeListener
+        implements ElasticSearchIndexer
     {
 
         private static final Logger LOGGER = LoggerFactory.getLogger( ElasticSearchIndexer.class );
+        private static final ScheduledThreadPoolExecutor FLUSHER = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "es-indexing-flush" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
+        static
+        {
+            FLUSHER.setKeepAliveTime( 1, TimeUnit.MINUTES );
+            FLUSHER.allowCoreThreadTimeOut( true );
+        }
+
+        private final Map<String, String> pending = new LinkedHashMap<String, String>();
+        private final Object flushLock = new Object();
         @Structure
         private Module module;
         @Service
@@ -97,60 +129,147 @@ public interface ElasticSearchIndexer
                                                                    module,
                                                                    System.currentTimeMillis() );
 
-            // Bulk index request builder
-            BulkRequestBuilder bulkBuilder = support.client().prepareBulk();
+            // JSON of the Entities serialized in this batch, associated ones included
+            Map<String, JSONObject> batchJson = new HashMap<String, JSONObject>();
+
+            // Changes to send, null values are removals
+            Map<String, String> changes = new LinkedHashMap<String, String>();
 
             // Handle changed entity states
-            for( EntityState changedState : changedStates )
+            try
             {
-                if( changedState.entityDescriptor().queryable() )
+                for( EntityState changedState : changedStates )
                 {
-                    switch( changedState.status() )
+                    if( changedState.entityDescriptor().queryable() )
                     {
-                        case REMOVED:
-                            LOGGER.trace( "Removing Entity State from Index: {}", changedState );
-                            remove( bulkBuilder, changedState.identity().identity() );
-                            break;
-                        case UPDATED:
-                            LOGGER.trace( "Updating Entity State in Index: {}", changedState );
-                            remove( bulkBuilder, changedState.identity().identity() );
-                            String updatedJson = toJSON( changedState, newStates, uow );
-                            LOGGER.trace( "Will index: {}", updatedJson );
-                            index( bulkBuilder, changedState.identity().identity(), updatedJson );
-                            break;
-                        case NEW:
-                            LOGGER.trace( "Creating Entity State in Index: {}", changedState );
-                            String newJson = toJSON( changedState, newStates, uow );
-                            LOGGER.trace( "Will index: {}", newJson );
-                            index( bulkBuilder, changedState.identity().identity(), newJson );
-                            break;
-                        case LOADED:
-                        default:
-                            // Ignored
-                            break;
+                        switch( changedState.status() )
+                        {
+                            case REMOVED:
+                                LOGGER.trace( "Removing Entity State from Index: {}", changedState );
+                                changes.put( changedState.identity().identity(), null );
+                                break;
+                            case UPDATED:
+                                LOGGER.trace( "Updating Entity State in Index: {}", changedState );
+                                // Indexing replaces the previously indexed document
+                                String updatedJson = toJSON( changedState, newStates, batchJson, uow ).toString();
+                                LOGGER.trace( "Will index: {}", updatedJson );
+                                changes.put( changedState.identity().identity(), updatedJson );
+                                break;
+                            case NEW:
+                                LOGGER.trace( "Creating Entity State in Index: {}", changedState );
+                                String newJson = toJSON( changedState, newStates, batchJson, uow ).toString();
+                                LOGGER.trace( "Will index: {}", newJson );
+                                changes.put( changedState.identity().identity(), newJson );
+                                break;
+                            case LOADED:
+                            default:
+                                // Ignored
+                                break;
+                        }
                     }
                 }
             }
+            finally
+            {
+                uow.discard();
+            }
 
-            uow.discard();
-
-            if( bulkBuilder.numberOfActions() > 0 )
+            if( changes.isEmpty() )
             {
+                return;
+            }
 
-                // Execute bulk actions
-                BulkResponse bulkResponse = bulkBuilder.execute().actionGet();
+            boolean flushNow;
+            synchronized( pending )
+            {
+                boolean wasEmpty = pending.isEmpty();
+                pending.putAll( changes );
+                flushNow = support.flushInterval() <= 0 || pending.size() >= support.bulkSize();
+                if( !flushNow && wasEmpty )
+                {
+                    // Send buffered changes at most flushInterval from now
+                    FLUSHER.schedule( new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                flush();
+                            }
+                            catch( RuntimeException ex )
+                            {
+                                LOGGER.error( "Could not index buffered Entity states", ex );
+                            }
+                        }
+                    }, support.flushInterval(), TimeUnit.MILLISECONDS );
+                }
+            }
+            if( flushNow )
+            {
+                flush();
+            }
+        }
 
-                // Handle errors
-                if( bulkResponse.hasFailures() )
+        @Override
+        public void flush()
+        {
+            // Held while sending so that changes are sent in the order they were notified
+            synchronized( flushLock )
+            {
+                Map<String, String> changes;
+                synchronized( pending )
+                {
+                    if( pending.isEmpty() )
+                    {
+                        return;
+                    }
+                    changes = new LinkedHashMap<String, String>( pending );
+                    pending.clear();
+                }
+                if( support.client() == null )
                 {
-                    throw new ElasticSearchIndexException( bulkResponse.buildFailureMessage() );
+                    LOGGER.warn( "Index/Query passivated, {} Entity states could not be indexed", changes.size() );
+                    return;
                 }
 
-                LOGGER.debug( "Indexing changed Entity states took {}ms", bulkResponse.tookInMillis() );
+                int bulkSize = support.bulkSize();
+                Iterator<Map.Entry<String, String>> iterator = changes.entrySet().iterator();
+                while( iterator.hasNext() )
+                {
+                    // Bulk index request builder
+                    BulkRequestBuilder bulkBuilder = support.client().prepareBulk();
+                    while( iterator.hasNext() && bulkBuilder.numberOfActions() < bulkSize )
+                    {
+                        Map.Entry<String, String> change = iterator.next();
+                        if( change.getValue() == null )
+                        {
+                            remove( bulkBuilder, change.getKey() );
+                        }
+                        else
+                        {
+                            index( bulkBuilder, change.getKey(), change.getValue() );
+                        }
+                    }
 
-                // Refresh index
-                support.client().admin().indices().prepareRefresh( support.index() ).execute().actionGet();
+                    // Execute bulk actions
+                    BulkResponse bulkResponse = bulkBuilder.execute().actionGet();
 
+                    // Handle errors
+                    if( bulkResponse.hasFailures() )
+                    {
+                        throw new ElasticSearchIndexException( bulkResponse.buildFailureMessage() );
+                    }
+
+                    LOGGER.debug( "Indexing {} changed Entity states took {}ms",
+                                  bulkBuilder.numberOfActions(), bulkResponse.tookInMillis() );
+                }
+
+                if( support.refreshPolicy() == ElasticSearchConfiguration.RefreshPolicy.IMMEDIATE )
+                {
+                    // Refresh index
+                    support.client().admin().indices().prepareRefresh( support.index() ).execute().actionGet();
+                }
             }
         }
 
@@ -178,11 +297,20 @@ public interface ElasticSearchIndexer
          * }
          * </pre>
          */
-        private String toJSON( EntityState state, Map<String, EntityState> newStates, EntityStoreUnitOfWork uow )
+        private JSONObject toJSON( EntityState state,
+                                   Map<String, EntityState> newStates,
+                                   Map<String, JSONObject> batchJson,
+                                   EntityStoreUnitOfWork uow )
         {
+            JSONObject json = batchJson.get( state.identity().identity() );
+            if( json != null )
+            {
+                // Already serialized in this batch, as a changed or associated Entity
+                return json;
+            }
             try
             {
-                JSONObject json = new JSONObject();
+                json = new JSONObject();
 
                 json.put( "_identity", state.identity().identity() );
                 json.put( "_types", Iterables.toList( Iterables.map( Classes.toClassName(), state.entityDescriptor().mixinTypes() ) ) );
@@ -236,15 +364,7 @@ public interface ElasticSearchIndexer
                         {
                             if( assocDesc.isAggregated() || support.indexNonAggregatedAssociations() )
                             {
-                                if( newStates.containsKey( associated.identity() ) )
-                                {
-                                    value = new JSONObject( toJSON( newStates.get( associated.identity() ), newStates, uow ) );
-                                }
-                                else
-                                {
-                                    EntityState assocState = uow.entityStateOf( EntityReference.parseEntityReference( associated.identity() ) );
-                                    value = new JSONObject( toJSON( assocState, newStates, uow ) );
-                                }
+                                value = toJSON( associated, newStates, batchJson, uow );
                             }
                             else
                             {
@@ -267,15 +387,7 @@ public interface ElasticSearchIndexer
                         {
                             if( manyAssocDesc.isAggregated() || support.indexNonAggregatedAssociations() )
                             {
-                                if( newStates.containsKey( associated.identity() ) )
-                                {
-                                    array.put( new JSONObject( toJSON( newStates.get( associated.identity() ), newStates, uow ) ) );
-                                }
-                                else
-                                {
-                                    EntityState assocState = uow.entityStateOf( EntityReference.parseEntityReference( associated.identity() ) );
-                                    array.put( new JSONObject( toJSON( assocState, newStates, uow ) ) );
-                                }
+                                array.put( toJSON( associated, newStates, batchJson, uow ) );
                             }
                             else
                             {
@@ -286,13 +398,32 @@ public interface ElasticSearchIndexer
                     }
                 }
 
-                return json.toString();
+                batchJson.put( state.identity().identity(), json );
+                return json;
             }
             catch( JSONException e )
             {
                 throw new ElasticSearchIndexException( "Could not index EntityState", e );
             }
         }
+
+        private JSONObject toJSON( EntityReference associated,
+                                   Map<String, EntityState> newStates,
+                                   Map<String, JSONObject> batchJson,
+                                   EntityStoreUnitOfWork uow )
+        {
+            JSONObject json = batchJson.get( associated.identity() );
+            if( json != null )
+            {
+                return json;
+            }
+            EntityState assocState = newStates.get( associated.identity() );
+            if( assocState == null )
+            {
+                assocState = uow.entityStateOf( EntityReference.parseEntityReference( associated.identity() ) );
+            }
+            return toJSON( assocState, newStates, batchJson, uow );
+        }
     }
 
 }
@@ -32,4 +32,14 @@ public interface ElasticSearchSupport
 
     boolean indexNonAggregatedAssociations();
 
+    int bulkSize();
+
+    long flushInterval();
+
+    ElasticSearchConfiguration.RefreshPolicy refreshPolicy();
+
+    int scrollSize();
+
+    String scrollKeepAlive();
+
 }
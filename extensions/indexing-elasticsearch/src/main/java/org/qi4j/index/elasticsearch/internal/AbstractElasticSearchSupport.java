@@ -20,6 +20,10 @@ package org.qi4j.index.elasticsearch.internal;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
+import org.qi4j.index.elasticsearch.ElasticSearchIndexer;
 import org.qi4j.index.elasticsearch.ElasticSearchSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +40,35 @@ public abstract class AbstractElasticSearchSupport
 
     protected static final String ENTITIES_TYPE = "qi4j_entities";
 
+    protected static final int DEFAULT_BULK_SIZE = 1000;
+
+    protected static final int DEFAULT_SCROLL_SIZE = 1000;
+
+    protected static final String DEFAULT_SCROLL_KEEP_ALIVE = "1m";
+
+    protected static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
+    @This
+    private ElasticSearchIndexer indexer;
+
     protected Client client;
 
     protected String index;
 
     protected boolean indexNonAggregatedAssociations;
 
+    protected int bulkSize;
+
+    protected long flushInterval;
+
+    protected RefreshPolicy refreshPolicy;
+
+    protected String refreshInterval;
+
+    protected int scrollSize;
+
+    protected String scrollKeepAlive;
+
     @Override
     public final void activateService()
             throws Exception
@@ -75,21 +102,50 @@ public abstract class AbstractElasticSearchSupport
             LOGGER.info( "Index '{}' created.", index );
         }
 
+        if ( refreshPolicy == RefreshPolicy.PERIODIC ) {
+            // Let ElasticSearch refresh the index instead of ElasticSearchIndexer
+            client.admin().indices().prepareUpdateSettings( index ).
+                    setSettings( ImmutableSettings.settingsBuilder().put( "index.refresh_interval", refreshInterval ) ).
+                    execute().
+                    actionGet();
+        }
+
         LOGGER.info( "Index/Query connected to Elastic Search" );
     }
 
     protected abstract void activateElasticSearch()
             throws Exception;
 
+    /**
+     * Read the indexing and query tuning properties, to be called by {@link #activateElasticSearch()}.
+     */
+    protected final void configureIndexing( ElasticSearchConfiguration config )
+    {
+        bulkSize = config.bulkSize().get() == null ? DEFAULT_BULK_SIZE : config.bulkSize().get();
+        flushInterval = config.flushInterval().get() == null ? 0 : config.flushInterval().get();
+        refreshPolicy = config.refreshPolicy().get() == null ? RefreshPolicy.IMMEDIATE : config.refreshPolicy().get();
+        refreshInterval = config.refreshInterval().get() == null ? DEFAULT_REFRESH_INTERVAL : config.refreshInterval().get();
+        scrollSize = config.scrollSize().get() == null ? DEFAULT_SCROLL_SIZE : config.scrollSize().get();
+        scrollKeepAlive = config.scrollKeepAlive().get() == null ? DEFAULT_SCROLL_KEEP_ALIVE : config.scrollKeepAlive().get();
+        if ( bulkSize <= 0 || scrollSize <= 0 ) {
+            throw new IllegalArgumentException( "bulkSize and scrollSize must be positive" );
+        }
+    }
+
     @Override
     public final void passivateService()
             throws Exception
     {
-        client.close();
-        client = null;
-        index = null;
-        indexNonAggregatedAssociations = false;
-        passivateElasticSearch();
+        try {
+            // Send buffered changes before disconnecting
+            indexer.flush();
+        } finally {
+            client.close();
+            client = null;
+            index = null;
+            indexNonAggregatedAssociations = false;
+            passivateElasticSearch();
+        }
     }
 
     protected void passivateElasticSearch()
@@ -122,4 +178,34 @@ public abstract class AbstractElasticSearchSupport
         return indexNonAggregatedAssociations;
     }
 
+    @Override
+    public final int bulkSize()
+    {
+        return bulkSize;
+    }
+
+    @Override
+    public final long flushInterval()
+    {
+        return flushInterval;
+    }
+
+    @Override
+    public final RefreshPolicy refreshPolicy()
+    {
+        return refreshPolicy;
+    }
+
+    @Override
+    public final int scrollSize()
+    {
+        return scrollSize;
+    }
+
+    @Override
+    public final String scrollKeepAlive()
+    {
+        return scrollKeepAlive;
+    }
+
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.elasticsearch;
+
+import java.io.File;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.index.elasticsearch.assembly.ESMemoryIndexQueryAssembler;
+import org.qi4j.library.fileconfig.FileConfigurationOverride;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class ElasticSearchBulkIndexingTest
+        extends AbstractQi4jTest
+{
+
+    @BeforeClass
+    public static void beforeClass_IBMJDK()
+    {
+        // Ignore this test on IBM JDK
+        assumeTrue( !( System.getProperty( "java.vendor" ).contains( "IBM" ) ) );
+    }
+
+    public interface Item
+            extends EntityComposite
+    {
+
+        @UseDefaults
+        Property<String> name();
+
+    }
+
+    @Override
+    public void assemble( ModuleAssembly module )
+            throws AssemblyException
+    {
+        // Config module
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().assemble( config );
+
+        // Index/Query
+        new ESMemoryIndexQueryAssembler().withIdentity( "es-indexing-bulk" ).
+                withConfigModule( config ).withConfigVisibility( Visibility.layer ).assemble( module );
+        ElasticSearchConfiguration esConfig = config.forMixin( ElasticSearchConfiguration.class ).declareDefaults();
+        esConfig.bulkSize().set( 3 );
+        esConfig.flushInterval().set( 3600000L );
+
+        // FileConfig
+        FileConfigurationOverride override = new FileConfigurationOverride().withData( new File( "build/qi4j-data" ) ).
+                withLog( new File( "build/qi4j-logs" ) ).withTemporary( new File( "build/qi4j-temp" ) );
+        module.services( FileConfigurationService.class ).
+                setMetaInfo( override );
+
+        // Entities
+        new EntityTestAssembler().assemble( module );
+        module.entities( Item.class );
+    }
+
+    @Test
+    public void givenFlushIntervalWhenChangingEntitiesThenChangesAreSentOnFlushOrOnceBulkSizeIsReached()
+            throws UnitOfWorkCompletionException
+    {
+        createItems( "item1", "item2" );
+        assertEquals( "Buffered changes are not indexed yet", 0, countItems() );
+
+        module.findService( ElasticSearchIndexer.class ).get().flush();
+        assertEquals( "Flushed changes are indexed", 2, countItems() );
+
+        createItems( "item3", "item4" );
+        assertEquals( "Buffered changes are not indexed yet", 2, countItems() );
+
+        createItems( "item5" );
+        assertEquals( "Changes are indexed once bulkSize is reached", 5, countItems() );
+    }
+
+    private void createItems( String... identities )
+            throws UnitOfWorkCompletionException
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        for ( String identity : identities ) {
+            uow.newEntity( Item.class, identity ).name().set( identity );
+        }
+        uow.complete();
+    }
+
+    private long countItems()
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try {
+            return uow.newQuery( module.newQueryBuilder( Item.class ) ).count();
+        } finally {
+            uow.discard();
+        }
+    }
+
+}
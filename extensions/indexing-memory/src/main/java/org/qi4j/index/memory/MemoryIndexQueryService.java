@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.functional.Specification;
+import org.qi4j.index.memory.internal.EntityIndex;
+import org.qi4j.index.memory.internal.IndexedEntity;
+import org.qi4j.index.memory.internal.SpecificationEvaluator;
+import org.qi4j.index.memory.internal.TypeIndex;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.StateChangeListener;
+import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.IndexExporter;
+
+/**
+ * Index/Query service holding the queryable state of Entities in heap.
+ * <p>
+ * Entity states are indexed as EntityStores notify their changes. Properties and Associations of each Entity type
+ * are hash indexed, and sorted indexed when their values are Comparable, where clauses are looked up in these
+ * indexes before being evaluated against the candidate Entities. The whole index is lost on passivation.
+ * </p>
+ */
+@Mixins( MemoryIndexQueryService.Mixin.class )
+public interface MemoryIndexQueryService
+    extends EntityFinder, StateChangeListener, IndexExporter, ServiceComposite
+{
+    class Mixin
+        implements EntityFinder, StateChangeListener, IndexExporter
+    {
+        private final EntityIndex index = new EntityIndex();
+
+        @Override
+        public void notifyChanges( Iterable<EntityState> changedStates )
+        {
+            index.update( changedStates );
+        }
+
+        @Override
+        public Iterable<EntityReference> findEntities( Class<?> resultType,
+                                                       Specification<Composite> whereClause,
+                                                       OrderBy[] orderBySegments,
+                                                       Integer firstResult,
+                                                       Integer maxResults,
+                                                       Map<String, Object> variables
+        )
+            throws EntityFinderException
+        {
+            int first = firstResult == null ? 0 : firstResult;
+            int max = maxResults == null ? Integer.MAX_VALUE : maxResults;
+            if( max <= 0 )
+            {
+                return Collections.emptyList();
+            }
+            SpecificationEvaluator evaluator = new SpecificationEvaluator( index, variables );
+            boolean ordered = orderBySegments != null && orderBySegments.length > 0;
+
+            // Unordered results are returned as found, ordered ones once all are found
+            int limit = ordered || first + max < 0 ? Integer.MAX_VALUE : first + max;
+            List<IndexedEntity> matches = new ArrayList<IndexedEntity>();
+            for( TypeIndex type : index.typesAssignableTo( resultType ) )
+            {
+                if( !collect( evaluator, whereClause, type, matches, limit ) )
+                {
+                    break;
+                }
+            }
+            if( ordered )
+            {
+                sort( evaluator, matches, orderBySegments );
+            }
+
+            List<EntityReference> references = new ArrayList<EntityReference>();
+            for( int idx = first; idx < matches.size() && references.size() < max; idx++ )
+            {
+                references.add( EntityReference.parseEntityReference( matches.get( idx ).identity() ) );
+            }
+            return references;
+        }
+
+        @Override
+        public EntityReference findEntity( Class<?> resultType,
+                                           Specification<Composite> whereClause,
+                                           Map<String, Object> variables
+        )
+            throws EntityFinderException
+        {
+            SpecificationEvaluator evaluator = new SpecificationEvaluator( index, variables );
+            List<IndexedEntity> matches = new ArrayList<IndexedEntity>( 1 );
+            for( TypeIndex type : index.typesAssignableTo( resultType ) )
+            {
+                if( !collect( evaluator, whereClause, type, matches, 1 ) )
+                {
+                    return EntityReference.parseEntityReference( matches.get( 0 ).identity() );
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public long countEntities( Class<?> resultType,
+                                   Specification<Composite> whereClause,
+                                   Map<String, Object> variables
+        )
+            throws EntityFinderException
+        {
+            SpecificationEvaluator evaluator = new SpecificationEvaluator( index, variables );
+            long count = 0;
+            for( TypeIndex type : index.typesAssignableTo( resultType ) )
+            {
+                SpecificationEvaluator.Candidates candidates = evaluator.candidates( whereClause, type );
+                if( candidates != null && candidates.isExact() )
+                {
+                    // Answered by the index alone
+                    count += candidates.size();
+                    continue;
+                }
+                Collection<String> identities = candidates == null ? type.identities() : candidates.identities();
+                for( String identity : identities )
+                {
+                    IndexedEntity entity = index.entity( identity );
+                    if( entity != null && evaluator.satisfiedBy( whereClause, entity ) )
+                    {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void exportReadableToStream( PrintStream out )
+            throws IOException, UnsupportedOperationException
+        {
+            for( TypeIndex type : index.types() )
+            {
+                out.println( type.descriptor() + " (" + type.identities().size() + " entities)" );
+                for( String identity : type.identities() )
+                {
+                    IndexedEntity entity = index.entity( identity );
+                    if( entity == null )
+                    {
+                        continue;
+                    }
+                    out.println( "  " + identity );
+                    for( Map.Entry<QualifiedName, Object> property : entity.properties().entrySet() )
+                    {
+                        out.println( "    " + property.getKey().name() + " = " + property.getValue() );
+                    }
+                    for( Map.Entry<QualifiedName, EntityReference> association : entity.associations().entrySet() )
+                    {
+                        out.println( "    " + association.getKey().name() + " -> " + association.getValue() );
+                    }
+                    for( Map.Entry<QualifiedName, List<EntityReference>> manyAssociation : entity.manyAssociations()
+                        .entrySet() )
+                    {
+                        out.println( "    " + manyAssociation.getKey().name() + " -> " + manyAssociation.getValue() );
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void exportFormalToWriter( PrintWriter out )
+            throws IOException, UnsupportedOperationException
+        {
+            throw new UnsupportedOperationException( "In-Memory Index/Query has no formal export format" );
+        }
+
+        // Collect the Entities of a type satisfying the where clause, return false once limit Entities are collected
+        private boolean collect( SpecificationEvaluator evaluator,
+                                 Specification<Composite> whereClause,
+                                 TypeIndex type,
+                                 List<IndexedEntity> matches,
+                                 int limit
+        )
+        {
+            if( matches.size() >= limit )
+            {
+                return false;
+            }
+            SpecificationEvaluator.Candidates candidates = evaluator.candidates( whereClause, type );
+            Collection<String> identities = candidates == null ? type.identities() : candidates.identities();
+            for( String identity : identities )
+            {
+                IndexedEntity entity = index.entity( identity );
+                // Candidates are evaluated again as the Entity may have changed since it was looked up
+                if( entity != null
+                    && entity.descriptor().equals( type.descriptor() )
+                    && evaluator.satisfiedBy( whereClause, entity ) )
+                {
+                    matches.add( entity );
+                    if( matches.size() >= limit )
+                    {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static void sort( final SpecificationEvaluator evaluator,
+                                  List<IndexedEntity> matches,
+                                  final OrderBy[] orderBySegments
+        )
+        {
+            // Read the ordered values once per Entity
+            List<Sortable> sortables = new ArrayList<Sortable>( matches.size() );
+            for( IndexedEntity entity : matches )
+            {
+                Object[] values = new Object[ orderBySegments.length ];
+                for( int idx = 0; idx < orderBySegments.length; idx++ )
+                {
+                    List<Object> propertyValues = evaluator.valuesOf( orderBySegments[ idx ].property(), entity );
+                    values[ idx ] = propertyValues.isEmpty() ? null : propertyValues.get( 0 );
+                }
+                sortables.add( new Sortable( entity, values ) );
+            }
+            Collections.sort( sortables, new Comparator<Sortable>()
+            {
+                @Override
+                @SuppressWarnings( "unchecked" )
+                public int compare( Sortable first, Sortable second )
+                {
+                    for( int idx = 0; idx < orderBySegments.length; idx++ )
+                    {
+                        Object firstValue = first.values[ idx ];
+                        Object secondValue = second.values[ idx ];
+                        int result;
+                        if( firstValue == null || secondValue == null )
+                        {
+                            // Entities without value come first
+                            result = firstValue == null ? ( secondValue == null ? 0 : -1 ) : 1;
+                        }
+                        else if( firstValue instanceof Comparable )
+                        {
+                            result = ( (Comparable<Object>) firstValue ).compareTo( secondValue );
+                        }
+                        else
+                        {
+                            result = firstValue.toString().compareTo( secondValue.toString() );
+                        }
+                        if( result != 0 )
+                        {
+                            return orderBySegments[ idx ].order() == OrderBy.Order.ASCENDING ? result : -result;
+                        }
+                    }
+                    return first.entity.identity().compareTo( second.entity.identity() );
+                }
+            } );
+            matches.clear();
+            for( Sortable sortable : sortables )
+            {
+                matches.add( sortable.entity );
+            }
+        }
+
+        private static final class Sortable
+        {
+            private final IndexedEntity entity;
+            private final Object[] values;
+
+            private Sortable( IndexedEntity entity, Object[] values )
+            {
+                this.entity = entity;
+                this.values = values;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.spi.entity.EntityState;
+
+/**
+ * In-heap index of the queryable state of Entities.
+ * <p>
+ * Entity states are kept as immutable snapshots, grouped by Entity type along with the indexes of their Properties
+ * and Associations. Changes are applied one at a time while queries read concurrently, a query running during a
+ * change may see some of the changed Entities in their previous state.
+ * </p>
+ */
+public final class EntityIndex
+{
+    private final ConcurrentMap<String, IndexedEntity> entities = new ConcurrentHashMap<String, IndexedEntity>();
+    private final ConcurrentMap<EntityDescriptor, TypeIndex> types = new ConcurrentHashMap<EntityDescriptor, TypeIndex>();
+
+    /**
+     * @return Snapshot of the Entity with the given identity, or null if it is not indexed
+     */
+    public IndexedEntity entity( String identity )
+    {
+        return entities.get( identity );
+    }
+
+    /**
+     * @return Indexes of the Entity types assignable to the given type
+     */
+    public List<TypeIndex> typesAssignableTo( Class<?> type )
+    {
+        List<TypeIndex> assignable = new ArrayList<TypeIndex>();
+        for( TypeIndex typeIndex : types.values() )
+        {
+            if( typeIndex.descriptor().isAssignableTo( type ) )
+            {
+                assignable.add( typeIndex );
+            }
+        }
+        return assignable;
+    }
+
+    public Iterable<TypeIndex> types()
+    {
+        return types.values();
+    }
+
+    public int size()
+    {
+        return entities.size();
+    }
+
+    public synchronized void update( Iterable<EntityState> changedStates )
+    {
+        for( EntityState state : changedStates )
+        {
+            switch( state.status() )
+            {
+                case NEW:
+                case UPDATED:
+                    if( state.entityDescriptor().queryable() )
+                    {
+                        index( IndexedEntity.snapshotOf( state ) );
+                    }
+                    break;
+                case REMOVED:
+                    remove( state.identity().identity() );
+                    break;
+                case LOADED:
+                default:
+                    // Ignored
+                    break;
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entities.clear();
+        types.clear();
+    }
+
+    private void index( IndexedEntity entity )
+    {
+        IndexedEntity previous = entities.put( entity.identity(), entity );
+        if( previous != null && previous.descriptor().equals( entity.descriptor() ) )
+        {
+            typeIndexOf( entity.descriptor() ).update( previous, entity );
+            return;
+        }
+        typeIndexOf( entity.descriptor() ).add( entity );
+        if( previous != null )
+        {
+            typeIndexOf( previous.descriptor() ).remove( previous );
+        }
+    }
+
+    private void remove( String identity )
+    {
+        IndexedEntity previous = entities.remove( identity );
+        if( previous != null )
+        {
+            typeIndexOf( previous.descriptor() ).remove( previous );
+        }
+    }
+
+    private TypeIndex typeIndexOf( EntityDescriptor descriptor )
+    {
+        TypeIndex typeIndex = types.get( descriptor );
+        if( typeIndex == null )
+        {
+            typeIndex = new TypeIndex( descriptor );
+            types.put( descriptor, typeIndex );
+        }
+        return typeIndex;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.association.AssociationDescriptor;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.property.PropertyDescriptor;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.ManyAssociationState;
+
+/**
+ * Immutable snapshot of the queryable state of an Entity.
+ */
+public final class IndexedEntity
+{
+    private final String identity;
+    private final EntityDescriptor descriptor;
+    private final Map<QualifiedName, Object> properties;
+    private final Map<QualifiedName, EntityReference> associations;
+    private final Map<QualifiedName, List<EntityReference>> manyAssociations;
+
+    public static IndexedEntity snapshotOf( EntityState state )
+    {
+        EntityDescriptor descriptor = state.entityDescriptor();
+        Map<QualifiedName, Object> properties = new HashMap<QualifiedName, Object>();
+        for( PropertyDescriptor property : descriptor.state().properties() )
+        {
+            if( property.queryable() )
+            {
+                Object value = state.propertyValueOf( property.qualifiedName() );
+                if( value != null )
+                {
+                    properties.put( property.qualifiedName(), value );
+                }
+            }
+        }
+        Map<QualifiedName, EntityReference> associations = new HashMap<QualifiedName, EntityReference>();
+        for( AssociationDescriptor association : descriptor.state().associations() )
+        {
+            if( association.queryable() )
+            {
+                EntityReference reference = state.associationValueOf( association.qualifiedName() );
+                if( reference != null )
+                {
+                    associations.put( association.qualifiedName(), reference );
+                }
+            }
+        }
+        Map<QualifiedName, List<EntityReference>> manyAssociations = new HashMap<QualifiedName, List<EntityReference>>();
+        for( AssociationDescriptor association : descriptor.state().manyAssociations() )
+        {
+            if( association.queryable() )
+            {
+                ManyAssociationState references = state.manyAssociationValueOf( association.qualifiedName() );
+                List<EntityReference> snapshot = new ArrayList<EntityReference>( references.count() );
+                for( EntityReference reference : references )
+                {
+                    snapshot.add( reference );
+                }
+                manyAssociations.put( association.qualifiedName(), Collections.unmodifiableList( snapshot ) );
+            }
+        }
+        return new IndexedEntity( state.identity().identity(), descriptor, properties, associations, manyAssociations );
+    }
+
+    private IndexedEntity( String identity,
+                           EntityDescriptor descriptor,
+                           Map<QualifiedName, Object> properties,
+                           Map<QualifiedName, EntityReference> associations,
+                           Map<QualifiedName, List<EntityReference>> manyAssociations
+    )
+    {
+        this.identity = identity;
+        this.descriptor = descriptor;
+        this.properties = properties;
+        this.associations = associations;
+        this.manyAssociations = manyAssociations;
+    }
+
+    public String identity()
+    {
+        return identity;
+    }
+
+    public EntityDescriptor descriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * @return Non null Property values
+     */
+    public Map<QualifiedName, Object> properties()
+    {
+        return Collections.unmodifiableMap( properties );
+    }
+
+    /**
+     * @return Non null Association references
+     */
+    public Map<QualifiedName, EntityReference> associations()
+    {
+        return Collections.unmodifiableMap( associations );
+    }
+
+    public Map<QualifiedName, List<EntityReference>> manyAssociations()
+    {
+        return Collections.unmodifiableMap( manyAssociations );
+    }
+
+    public Object propertyValueOf( QualifiedName name )
+    {
+        return properties.get( name );
+    }
+
+    public EntityReference associationValueOf( QualifiedName name )
+    {
+        return associations.get( name );
+    }
+
+    public List<EntityReference> manyAssociationValueOf( QualifiedName name )
+    {
+        List<EntityReference> references = manyAssociations.get( name );
+        if( references == null )
+        {
+            return Collections.emptyList();
+        }
+        return references;
+    }
+
+    @Override
+    public String toString()
+    {
+        return identity + "(" + descriptor + ")";
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.qi4j.api.composite.Composite;
+
+/**
+ * Hash and sorted index of the values of one Property, or of the references of one Association, of the Entities of a
+ * type.
+ * <p>
+ * Values are hashed when they are neither Composites, Collections nor Maps, whose equality depends on the Module
+ * they were built in, and also sorted when they are {@link Comparable} with each other. Writes must be serialized by
+ * the caller, reads may happen concurrently.
+ * </p>
+ */
+public final class PropertyIndex
+{
+    private final ConcurrentMap<Object, Set<String>> hash = new ConcurrentHashMap<Object, Set<String>>();
+    private final ConcurrentNavigableMap<Object, Set<String>> sorted = new ConcurrentSkipListMap<Object, Set<String>>();
+    private volatile boolean isSorted = true;
+
+    public static boolean isIndexable( Object value )
+    {
+        return value != null
+               && !( value instanceof Composite )
+               && !( value instanceof Collection )
+               && !( value instanceof Map );
+    }
+
+    /**
+     * @return true if values are sorted, so that {@link #range} can be used
+     */
+    public boolean isSorted()
+    {
+        return isSorted;
+    }
+
+    /**
+     * @return Identities of the Entities having the given value
+     */
+    public Set<String> lookup( Object value )
+    {
+        Set<String> identities = hash.get( value );
+        if( identities == null )
+        {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet( identities );
+    }
+
+    /**
+     * @return Identities of the Entities whose value is in the given range, or null if the range cannot be looked up
+     */
+    public Collection<String> range( Object from, boolean fromInclusive, Object to, boolean toInclusive )
+    {
+        if( !isSorted )
+        {
+            return null;
+        }
+        try
+        {
+            ConcurrentNavigableMap<Object, Set<String>> range = sorted;
+            if( from != null )
+            {
+                range = range.tailMap( from, fromInclusive );
+            }
+            if( to != null )
+            {
+                range = range.headMap( to, toInclusive );
+            }
+            List<String> identities = new ArrayList<String>();
+            for( Set<String> bucket : range.values() )
+            {
+                identities.addAll( bucket );
+            }
+            return identities;
+        }
+        catch( ClassCastException e )
+        {
+            // Bounds not comparable to the indexed values
+            return null;
+        }
+    }
+
+    void add( Object value, String identity )
+    {
+        Set<String> identities = hash.get( value );
+        if( identities == null )
+        {
+            identities = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+            hash.put( value, identities );
+            if( isSorted )
+            {
+                try
+                {
+                    if( !( value instanceof Comparable ) )
+                    {
+                        throw new ClassCastException( value.getClass().getName() );
+                    }
+                    sorted.put( value, identities );
+                }
+                catch( ClassCastException e )
+                {
+                    // Values not comparable with each other, only hash them from now on
+                    isSorted = false;
+                    sorted.clear();
+                }
+            }
+        }
+        identities.add( identity );
+    }
+
+    void remove( Object value, String identity )
+    {
+        Set<String> identities = hash.get( value );
+        if( identities == null )
+        {
+            return;
+        }
+        identities.remove( identity );
+        if( identities.isEmpty() )
+        {
+            hash.remove( value );
+            if( isSorted )
+            {
+                sorted.remove( value );
+            }
+        }
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory.internal;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.qi4j.api.Qi4j;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.entity.Identity;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.AndSpecification;
+import org.qi4j.api.query.grammar.AssociationFunction;
+import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
+import org.qi4j.api.query.grammar.AssociationNullSpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.ContainsAllSpecification;
+import org.qi4j.api.query.grammar.ContainsSpecification;
+import org.qi4j.api.query.grammar.EqSpecification;
+import org.qi4j.api.query.grammar.GeSpecification;
+import org.qi4j.api.query.grammar.GtSpecification;
+import org.qi4j.api.query.grammar.LeSpecification;
+import org.qi4j.api.query.grammar.LtSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationFunction;
+import org.qi4j.api.query.grammar.MatchesSpecification;
+import org.qi4j.api.query.grammar.NeSpecification;
+import org.qi4j.api.query.grammar.NotSpecification;
+import org.qi4j.api.query.grammar.OrSpecification;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.query.grammar.PropertyNotNullSpecification;
+import org.qi4j.api.query.grammar.PropertyNullSpecification;
+import org.qi4j.api.query.grammar.Variable;
+import org.qi4j.functional.Specification;
+
+/**
+ * Evaluate where clauses against the Entity snapshots of an {@link EntityIndex}, using the indexes of each Entity type
+ * to narrow down the Entities to evaluate.
+ * <p>
+ * Properties reached through a ManyAssociation have as many values as there are associated Entities, a where clause
+ * on such a Property is satisfied when it is satisfied by any of them.
+ * </p>
+ */
+public final class SpecificationEvaluator
+{
+    private static final PropertyIndex EMPTY = new PropertyIndex();
+
+    private final EntityIndex index;
+    private final Map<String, Object> variables;
+    private final Map<String, Pattern> patterns = new HashMap<String, Pattern>();
+
+    public SpecificationEvaluator( EntityIndex index, Map<String, Object> variables )
+    {
+        this.index = index;
+        this.variables = variables;
+    }
+
+    /**
+     * @param whereClause Where clause, or null
+     * @param entity      Entity snapshot
+     *
+     * @return true if the Entity satisfies the where clause
+     */
+    public boolean satisfiedBy( Specification<Composite> whereClause, IndexedEntity entity )
+    {
+        if( whereClause == null )
+        {
+            return true;
+        }
+        if( whereClause instanceof AndSpecification )
+        {
+            for( Specification<Composite> operand : ( (AndSpecification) whereClause ).operands() )
+            {
+                if( !satisfiedBy( operand, entity ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if( whereClause instanceof OrSpecification )
+        {
+            for( Specification<Composite> operand : ( (OrSpecification) whereClause ).operands() )
+            {
+                if( satisfiedBy( operand, entity ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if( whereClause instanceof NotSpecification )
+        {
+            return !satisfiedBy( ( (NotSpecification) whereClause ).operand(), entity );
+        }
+        if( whereClause instanceof ComparisonSpecification )
+        {
+            ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) whereClause;
+            Object value = resolve( comparison.value() );
+            for( Object propertyValue : valuesOf( comparison.property(), entity ) )
+            {
+                if( compare( comparison, propertyValue, value ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if( whereClause instanceof ContainsAllSpecification )
+        {
+            ContainsAllSpecification<?> containsAll = (ContainsAllSpecification<?>) whereClause;
+            List<Object> values = new ArrayList<Object>();
+            for( Object value : containsAll.containedValues() )
+            {
+                values.add( resolve( value ) );
+            }
+            for( Object propertyValue : valuesOf( containsAll.collectionProperty(), entity ) )
+            {
+                if( propertyValue instanceof Collection && ( (Collection<?>) propertyValue ).containsAll( values ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if( whereClause instanceof ContainsSpecification )
+        {
+            ContainsSpecification<?> contains = (ContainsSpecification<?>) whereClause;
+            Object value = resolve( contains.value() );
+            for( Object propertyValue : valuesOf( contains.collectionProperty(), entity ) )
+            {
+                if( propertyValue instanceof Collection && ( (Collection<?>) propertyValue ).contains( value ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if( whereClause instanceof MatchesSpecification )
+        {
+            MatchesSpecification matches = (MatchesSpecification) whereClause;
+            Pattern pattern = pattern( resolve( matches.value() ).toString() );
+            for( Object propertyValue : valuesOf( matches.property(), entity ) )
+            {
+                if( pattern.matcher( propertyValue.toString() ).matches() )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if( whereClause instanceof PropertyNotNullSpecification )
+        {
+            return !valuesOf( ( (PropertyNotNullSpecification<?>) whereClause ).property(), entity ).isEmpty();
+        }
+        if( whereClause instanceof PropertyNullSpecification )
+        {
+            return valuesOf( ( (PropertyNullSpecification<?>) whereClause ).property(), entity ).isEmpty();
+        }
+        if( whereClause instanceof AssociationNotNullSpecification )
+        {
+            return !referencesOf( ( (AssociationNotNullSpecification<?>) whereClause ).association(), entity ).isEmpty();
+        }
+        if( whereClause instanceof AssociationNullSpecification )
+        {
+            return referencesOf( ( (AssociationNullSpecification<?>) whereClause ).association(), entity ).isEmpty();
+        }
+        if( whereClause instanceof ManyAssociationContainsSpecification )
+        {
+            ManyAssociationContainsSpecification<?> contains = (ManyAssociationContainsSpecification<?>) whereClause;
+            EntityReference reference = referenceOf( resolve( contains.value() ) );
+            return referencesOf( contains.manyAssociation(), entity ).contains( reference );
+        }
+        throw new UnsupportedOperationException( "Query specification unsupported by In-Memory Index/Query: "
+                                                 + whereClause.getClass() + ": " + whereClause );
+    }
+
+    /**
+     * Look up the Entities of a type that may satisfy a where clause in its indexes.
+     *
+     * @param whereClause Where clause, or null
+     * @param type        Index of the Entity type
+     *
+     * @return the candidate Entities, or null if the where clause cannot be looked up and all Entities of the type
+     *         must be evaluated
+     */
+    public Candidates candidates( Specification<Composite> whereClause, TypeIndex type )
+    {
+        if( whereClause == null )
+        {
+            return new Candidates( type.identities(), true );
+        }
+        if( whereClause instanceof AndSpecification )
+        {
+            // Evaluate the smallest operand candidates
+            Candidates smallest = null;
+            int operands = 0;
+            for( Specification<Composite> operand : ( (AndSpecification) whereClause ).operands() )
+            {
+                operands++;
+                Candidates candidates = candidates( operand, type );
+                if( candidates != null && ( smallest == null || candidates.size() < smallest.size() ) )
+                {
+                    smallest = candidates;
+                }
+            }
+            if( smallest == null || operands == 1 )
+            {
+                return smallest;
+            }
+            return new Candidates( smallest.identities(), false );
+        }
+        if( whereClause instanceof OrSpecification )
+        {
+            Set<String> union = new LinkedHashSet<String>();
+            boolean exact = true;
+            for( Specification<Composite> operand : ( (OrSpecification) whereClause ).operands() )
+            {
+                Candidates candidates = candidates( operand, type );
+                if( candidates == null )
+                {
+                    return null;
+                }
+                union.addAll( candidates.identities() );
+                exact &= candidates.isExact();
+            }
+            return new Candidates( union, exact );
+        }
+        if( whereClause instanceof ComparisonSpecification && !( whereClause instanceof NeSpecification ) )
+        {
+            ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) whereClause;
+            PropertyIndex propertyIndex = indexOf( comparison.property(), type );
+            Object value = resolve( comparison.value() );
+            if( propertyIndex == null || !PropertyIndex.isIndexable( value ) )
+            {
+                return null;
+            }
+            Collection<String> identities;
+            if( comparison instanceof EqSpecification )
+            {
+                identities = propertyIndex.lookup( value );
+            }
+            else if( comparison instanceof GeSpecification )
+            {
+                identities = propertyIndex.range( value, true, null, false );
+            }
+            else if( comparison instanceof GtSpecification )
+            {
+                identities = propertyIndex.range( value, false, null, false );
+            }
+            else if( comparison instanceof LeSpecification )
+            {
+                identities = propertyIndex.range( null, false, value, true );
+            }
+            else if( comparison instanceof LtSpecification )
+            {
+                identities = propertyIndex.range( null, false, value, false );
+            }
+            else
+            {
+                return null;
+            }
+            return identities == null ? null : new Candidates( identities, true );
+        }
+        if( whereClause instanceof ManyAssociationContainsSpecification )
+        {
+            ManyAssociationFunction<?> manyAssociation = ( (ManyAssociationContainsSpecification<?>) whereClause ).manyAssociation();
+            if( manyAssociation.traversedAssociation() != null || manyAssociation.traversedManyAssociation() != null )
+            {
+                return null;
+            }
+            PropertyIndex associationIndex = type.association( QualifiedName.fromAccessor( manyAssociation.accessor() ) );
+            if( associationIndex == null )
+            {
+                return new Candidates( Collections.<String>emptySet(), true );
+            }
+            Object value = resolve( ( (ManyAssociationContainsSpecification<?>) whereClause ).value() );
+            return new Candidates( associationIndex.lookup( referenceOf( value ).identity() ), true );
+        }
+        return null;
+    }
+
+    /**
+     * @param property Property, possibly reached through other Properties or Associations
+     * @param entity   Entity snapshot
+     *
+     * @return the non null values of the Property
+     */
+    public List<Object> valuesOf( PropertyFunction<?> property, IndexedEntity entity )
+    {
+        List<Object> values = new ArrayList<Object>( 1 );
+        AccessibleObject accessor = property.accessor();
+        if( property.traversedProperty() != null )
+        {
+            for( Object owner : valuesOf( property.traversedProperty(), entity ) )
+            {
+                if( owner instanceof Composite )
+                {
+                    addIfNotNull( values, compositePropertyValueOf( (Composite) owner, accessor ) );
+                }
+            }
+        }
+        else if( isIdentity( accessor ) && property.traversedAssociation() != null )
+        {
+            // Identity of associated Entities is known without loading them
+            for( EntityReference reference : referencesOf( property.traversedAssociation(), entity ) )
+            {
+                values.add( reference.identity() );
+            }
+        }
+        else if( isIdentity( accessor ) && property.traversedManyAssociation() != null )
+        {
+            for( EntityReference reference : referencesOf( property.traversedManyAssociation(), entity ) )
+            {
+                values.add( reference.identity() );
+            }
+        }
+        else
+        {
+            QualifiedName name = QualifiedName.fromAccessor( accessor );
+            for( IndexedEntity owner : ownersOf( property.traversedAssociation(),
+                                                 property.traversedManyAssociation(),
+                                                 entity ) )
+            {
+                addIfNotNull( values, isIdentity( accessor ) ? owner.identity() : owner.propertyValueOf( name ) );
+            }
+        }
+        return values;
+    }
+
+    private List<EntityReference> referencesOf( AssociationFunction<?> association, IndexedEntity entity )
+    {
+        QualifiedName name = QualifiedName.fromAccessor( association.accessor() );
+        List<EntityReference> references = new ArrayList<EntityReference>( 1 );
+        for( IndexedEntity owner : ownersOf( association.traversedAssociation(),
+                                             association.traversedManyAssociation(),
+                                             entity ) )
+        {
+            EntityReference reference = owner.associationValueOf( name );
+            if( reference != null )
+            {
+                references.add( reference );
+            }
+        }
+        return references;
+    }
+
+    private List<EntityReference> referencesOf( ManyAssociationFunction<?> manyAssociation, IndexedEntity entity )
+    {
+        QualifiedName name = QualifiedName.fromAccessor( manyAssociation.accessor() );
+        List<IndexedEntity> owners = ownersOf( manyAssociation.traversedAssociation(),
+                                               manyAssociation.traversedManyAssociation(),
+                                               entity );
+        if( owners.size() == 1 )
+        {
+            return owners.get( 0 ).manyAssociationValueOf( name );
+        }
+        List<EntityReference> references = new ArrayList<EntityReference>();
+        for( IndexedEntity owner : owners )
+        {
+            references.addAll( owner.manyAssociationValueOf( name ) );
+        }
+        return references;
+    }
+
+    // Entities whose state is read, the given one or those reached through an Association or ManyAssociation
+    private List<IndexedEntity> ownersOf( AssociationFunction<?> traversedAssociation,
+                                          ManyAssociationFunction<?> traversedManyAssociation,
+                                          IndexedEntity entity )
+    {
+        List<EntityReference> references;
+        if( traversedAssociation != null )
+        {
+            references = referencesOf( traversedAssociation, entity );
+        }
+        else if( traversedManyAssociation != null )
+        {
+            references = referencesOf( traversedManyAssociation, entity );
+        }
+        else
+        {
+            return Collections.singletonList( entity );
+        }
+        List<IndexedEntity> owners = new ArrayList<IndexedEntity>( references.size() );
+        for( EntityReference reference : references )
+        {
+            IndexedEntity owner = index.entity( reference.identity() );
+            if( owner != null )
+            {
+                owners.add( owner );
+            }
+        }
+        return owners;
+    }
+
+    private PropertyIndex indexOf( PropertyFunction<?> property, TypeIndex type )
+    {
+        if( property.traversedProperty() != null || property.traversedManyAssociation() != null )
+        {
+            return null;
+        }
+        AssociationFunction<?> association = property.traversedAssociation();
+        if( association == null )
+        {
+            return isIdentity( property.accessor() )
+                   ? null
+                   : indexOrEmpty( type.property( QualifiedName.fromAccessor( property.accessor() ) ) );
+        }
+        if( isIdentity( property.accessor() )
+            && association.traversedAssociation() == null
+            && association.traversedManyAssociation() == null )
+        {
+            return indexOrEmpty( type.association( QualifiedName.fromAccessor( association.accessor() ) ) );
+        }
+        return null;
+    }
+
+    private Object resolve( Object value )
+    {
+        if( value instanceof Variable )
+        {
+            String name = ( (Variable) value ).variableName();
+            Object bound = variables == null ? null : variables.get( name );
+            if( bound == null )
+            {
+                throw new IllegalArgumentException( "Variable " + name + " not bound" );
+            }
+            return bound;
+        }
+        return value;
+    }
+
+    private Pattern pattern( String regexp )
+    {
+        Pattern pattern = patterns.get( regexp );
+        if( pattern == null )
+        {
+            pattern = Pattern.compile( regexp );
+            patterns.put( regexp, pattern );
+        }
+        return pattern;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static boolean compare( ComparisonSpecification<?> comparison, Object propertyValue, Object value )
+    {
+        if( comparison instanceof EqSpecification )
+        {
+            return propertyValue.equals( value );
+        }
+        if( comparison instanceof NeSpecification )
+        {
+            return !propertyValue.equals( value );
+        }
+        if( !( propertyValue instanceof Comparable ) || value == null )
+        {
+            return false;
+        }
+        int result;
+        try
+        {
+            result = ( (Comparable<Object>) propertyValue ).compareTo( value );
+        }
+        catch( ClassCastException e )
+        {
+            return false;
+        }
+        if( comparison instanceof GeSpecification )
+        {
+            return result >= 0;
+        }
+        if( comparison instanceof GtSpecification )
+        {
+            return result > 0;
+        }
+        if( comparison instanceof LeSpecification )
+        {
+            return result <= 0;
+        }
+        if( comparison instanceof LtSpecification )
+        {
+            return result < 0;
+        }
+        throw new UnsupportedOperationException( "Query specification unsupported by In-Memory Index/Query: "
+                                                 + comparison.getClass() + ": " + comparison );
+    }
+
+    private static Object compositePropertyValueOf( Composite composite, AccessibleObject accessor )
+    {
+        try
+        {
+            Property<?> property = Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( composite ).state().propertyFor( accessor );
+            return property == null ? null : property.get();
+        }
+        catch( IllegalArgumentException e )
+        {
+            // Composite without this Property
+            return null;
+        }
+    }
+
+    private static EntityReference referenceOf( Object value )
+    {
+        if( value instanceof EntityReference )
+        {
+            return (EntityReference) value;
+        }
+        if( value instanceof String )
+        {
+            return EntityReference.parseEntityReference( (String) value );
+        }
+        return EntityReference.entityReferenceFor( value );
+    }
+
+    private static boolean isIdentity( AccessibleObject accessor )
+    {
+        return Identity.class.equals( ( (Member) accessor ).getDeclaringClass() );
+    }
+
+    private static PropertyIndex indexOrEmpty( PropertyIndex propertyIndex )
+    {
+        // No Entity of the type has a value yet
+        return propertyIndex == null ? EMPTY : propertyIndex;
+    }
+
+    private static void addIfNotNull( List<Object> values, Object value )
+    {
+        if( value != null )
+        {
+            values.add( value );
+        }
+    }
+
+    /**
+     * Entities of a type that may satisfy a where clause.
+     */
+    public static final class Candidates
+    {
+        private final Collection<String> identities;
+        private final boolean exact;
+
+        private Candidates( Collection<String> identities, boolean exact )
+        {
+            this.identities = identities;
+            this.exact = exact;
+        }
+
+        /**
+         * @return Identities of the candidate Entities, some may since have been removed from the index
+         */
+        public Collection<String> identities()
+        {
+            return identities;
+        }
+
+        /**
+         * @return true if all candidate Entities satisfy the where clause, so that they can be counted without
+         *         being evaluated
+         */
+        public boolean isExact()
+        {
+            return exact;
+        }
+
+        public int size()
+        {
+            return identities.size();
+        }
+    }
+}
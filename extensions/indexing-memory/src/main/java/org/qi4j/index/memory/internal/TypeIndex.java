@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+
+/**
+ * Identities of the Entities of one type, and indexes of their Properties and Associations.
+ * <p>
+ * Writes must be serialized by the caller, reads may happen concurrently.
+ * </p>
+ */
+public final class TypeIndex
+{
+    private final EntityDescriptor descriptor;
+    private final Set<String> identities = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    private final ConcurrentMap<QualifiedName, PropertyIndex> properties = new ConcurrentHashMap<QualifiedName, PropertyIndex>();
+    private final ConcurrentMap<QualifiedName, PropertyIndex> associations = new ConcurrentHashMap<QualifiedName, PropertyIndex>();
+
+    TypeIndex( EntityDescriptor descriptor )
+    {
+        this.descriptor = descriptor;
+    }
+
+    public EntityDescriptor descriptor()
+    {
+        return descriptor;
+    }
+
+    public Set<String> identities()
+    {
+        return Collections.unmodifiableSet( identities );
+    }
+
+    /**
+     * @return Index of the values of the given Property, or null if no Entity of this type has a value for it
+     */
+    public PropertyIndex property( QualifiedName name )
+    {
+        return properties.get( name );
+    }
+
+    /**
+     * @return Index of the identities referenced by the given Association or ManyAssociation, or null if no Entity of
+     *         this type references any Entity through it
+     */
+    public PropertyIndex association( QualifiedName name )
+    {
+        return associations.get( name );
+    }
+
+    void add( IndexedEntity entity )
+    {
+        String identity = entity.identity();
+        for( Map.Entry<QualifiedName, Object> property : entity.properties().entrySet() )
+        {
+            if( PropertyIndex.isIndexable( property.getValue() ) )
+            {
+                indexOf( properties, property.getKey() ).add( property.getValue(), identity );
+            }
+        }
+        for( Map.Entry<QualifiedName, EntityReference> association : entity.associations().entrySet() )
+        {
+            indexOf( associations, association.getKey() ).add( association.getValue().identity(), identity );
+        }
+        for( Map.Entry<QualifiedName, List<EntityReference>> manyAssociation : entity.manyAssociations().entrySet() )
+        {
+            for( EntityReference reference : manyAssociation.getValue() )
+            {
+                indexOf( associations, manyAssociation.getKey() ).add( reference.identity(), identity );
+            }
+        }
+        identities.add( identity );
+    }
+
+    void remove( IndexedEntity entity )
+    {
+        identities.remove( entity.identity() );
+        removeExcept( entity, null );
+    }
+
+    /**
+     * Replace the index entries of an Entity by those of its new state. Entries present in both states are kept
+     * so that concurrent readers always find the Entity.
+     */
+    void update( IndexedEntity previous, IndexedEntity entity )
+    {
+        add( entity );
+        removeExcept( previous, entity );
+    }
+
+    private void removeExcept( IndexedEntity entity, IndexedEntity retained )
+    {
+        String identity = entity.identity();
+        for( Map.Entry<QualifiedName, Object> property : entity.properties().entrySet() )
+        {
+            PropertyIndex index = properties.get( property.getKey() );
+            if( index != null
+                && PropertyIndex.isIndexable( property.getValue() )
+                && ( retained == null || !property.getValue().equals( retained.propertyValueOf( property.getKey() ) ) ) )
+            {
+                index.remove( property.getValue(), identity );
+            }
+        }
+        for( Map.Entry<QualifiedName, EntityReference> association : entity.associations().entrySet() )
+        {
+            PropertyIndex index = associations.get( association.getKey() );
+            if( index != null
+                && ( retained == null || !association.getValue().equals( retained.associationValueOf( association.getKey() ) ) ) )
+            {
+                index.remove( association.getValue().identity(), identity );
+            }
+        }
+        for( Map.Entry<QualifiedName, List<EntityReference>> manyAssociation : entity.manyAssociations().entrySet() )
+        {
+            PropertyIndex index = associations.get( manyAssociation.getKey() );
+            if( index == null )
+            {
+                continue;
+            }
+            for( EntityReference reference : manyAssociation.getValue() )
+            {
+                if( retained == null || !retained.manyAssociationValueOf( manyAssociation.getKey() ).contains( reference ) )
+                {
+                    index.remove( reference.identity(), identity );
+                }
+            }
+        }
+    }
+
+    private static PropertyIndex indexOf( ConcurrentMap<QualifiedName, PropertyIndex> indexes, QualifiedName name )
+    {
+        PropertyIndex index = indexes.get( name );
+        if( index == null )
+        {
+            index = new PropertyIndex();
+            indexes.put( name, index );
+        }
+        return index;
+    }
+}
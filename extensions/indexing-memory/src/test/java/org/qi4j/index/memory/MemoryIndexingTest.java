@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.memory;
+
+import org.junit.Test;
+import org.qi4j.api.association.ManyAssociation;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.Query;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.functional.Specification;
+import org.qi4j.index.memory.assembly.MemoryIndexQueryAssembler;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.contains;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.gt;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+public class MemoryIndexingTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        new MemoryIndexQueryAssembler().assemble( module );
+        module.entities( Item.class );
+    }
+
+    @Test
+    public void givenUpdatedAndRemovedEntitiesWhenQueryingThenIndexReflectsChanges()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < 10; idx++ )
+        {
+            Item item = uow.newEntity( Item.class, "item" + idx );
+            item.category().set( idx % 2 == 0 ? "even" : "odd" );
+            item.rank().set( idx );
+        }
+        uow.get( Item.class, "item0" ).related().add( uow.get( Item.class, "item1" ) );
+        uow.complete();
+
+        Item template = templateFor( Item.class );
+        assertThat( count( eq( template.category(), "even" ) ), equalTo( 5L ) );
+        assertThat( count( gt( template.rank(), 6 ) ), equalTo( 3L ) );
+
+        uow = module.newUnitOfWork();
+        uow.get( Item.class, "item2" ).category().set( "odd" );
+        uow.get( Item.class, "item3" ).rank().set( 3 );
+        uow.remove( uow.get( Item.class, "item8" ) );
+        uow.complete();
+
+        assertThat( count( eq( template.category(), "even" ) ), equalTo( 3L ) );
+        assertThat( count( eq( template.category(), "odd" ) ), equalTo( 6L ) );
+        assertThat( count( gt( template.rank(), 6 ) ), equalTo( 2L ) );
+
+        uow = module.newUnitOfWork();
+        Item item1 = uow.get( Item.class, "item1" );
+        Query<Item> query = uow.newQuery( module.newQueryBuilder( Item.class )
+                                              .where( contains( template.related(), item1 ) ) );
+        assertThat( query.count(), equalTo( 1L ) );
+        assertThat( query.find().identity().get(), equalTo( "item0" ) );
+        uow.get( Item.class, "item0" ).related().remove( item1 );
+        uow.complete();
+
+        assertThat( count( contains( template.related(), item1 ) ), equalTo( 0L ) );
+    }
+
+    private long count( Specification<Composite> whereClause )
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            return uow.newQuery( module.newQueryBuilder( Item.class ).where( whereClause ) ).count();
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    public interface Item
+        extends EntityComposite
+    {
+        @Optional
+        Property<String> category();
+
+        @Optional
+        Property<Integer> rank();
+
+        ManyAssociation<Item> related();
+    }
+}
@@ -25,6 +25,12 @@ import org.qi4j.functional.Specification;
 
 public interface RdfQueryParser
 {
+    /**
+     * @param variables Values of the query Variables, or null to construct a query independent of their values,
+     *                  in which Variables are SPARQL variables to be bound when evaluating the query
+     *
+     * @return the SPARQL query
+     */
     String constructQuery( Class<?> resultType,
                            Specification<Composite> whereClause,
                            OrderBy[] orderBySegments,
@@ -32,4 +38,14 @@ public interface RdfQueryParser
                            Integer maxResults,
                            Map<String, Object> variables
     );
+
+    /**
+     * @param variables Values of the query Variables, or null, see {@link #constructQuery}
+     *
+     * @return the SPARQL query counting the matching entities, or null if it cannot be counted by the query itself
+     */
+    String constructCountQuery( Class<?> resultType,
+                                Specification<Composite> whereClause,
+                                Map<String, Object> variables
+    );
 }
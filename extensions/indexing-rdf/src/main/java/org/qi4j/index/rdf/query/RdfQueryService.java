@@ -17,19 +17,34 @@
  */
 package org.qi4j.index.rdf.query;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.query.QueryLanguage;
+import org.qi4j.api.common.Optional;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.mixin.Initializable;
 import org.qi4j.api.mixin.Mixins;
 import org.qi4j.api.query.grammar.OrderBy;
 import org.qi4j.api.query.grammar.QuerySpecification;
 import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.functional.Specification;
+import org.qi4j.index.rdf.query.internal.RdfQueryParserImpl2;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.QueryPlanCache;
+import org.slf4j.LoggerFactory;
+
+import static org.qi4j.functional.Iterables.first;
 
 /**
  * JAVADOC Add JavaDoc
@@ -39,20 +54,65 @@ public interface RdfQueryService
     extends EntityFinder, RdfQueryParserFactory, ServiceComposite
 {
     /**
-     * JAVADOC Add JavaDoc
+     * EntityFinder translating queries to SPARQL.
+     * <p>
+     * Translated queries are cached by shape, see {@link QueryPlanCache}. Their Variables are SPARQL variables
+     * bound at each execution, so that executions of a query differing only by the values of its Variables reuse
+     * the same SPARQL query.
+     * </p>
+     * <p>
+     * Results of SPARQL queries limited to more than {@link #READ_AT_ONCE} results, or not limited, are streamed:
+     * the query is evaluated once and its results are read from the open query result as they are iterated, see
+     * {@link TupleQueryExecutor#streamTupleQuery} for the locks and connection held meanwhile. Results of other
+     * queries are read at once. Counts are computed by the SPARQL engine with COUNT, without reading the matching
+     * entities.
+     * </p>
      */
     public static class RdfEntityFinderMixin
-        implements EntityFinder
+        implements EntityFinder, Initializable
     {
 
         private static final QueryLanguage language = QueryLanguage.SPARQL;
 
+        /**
+         * Maximum number of results of a query read at once, so that the repository is released before returning
+         * them. Results of queries limited to more results or not limited are streamed.
+         */
+        private static final int READ_AT_ONCE = 1000;
+
         @Service
         private RdfQueryParserFactory queryParserFactory;
 
         @This
         TupleQueryExecutor tupleExecutor;
 
+        @Optional
+        @Service
+        private MetricsProvider metrics;
+
+        @Uses
+        private ServiceDescriptor descriptor;
+
+        private final QueryPlanCache<QueryPlan> plans = new QueryPlanCache<QueryPlan>();
+
+        @Override
+        public void initialize()
+        {
+            if( metrics == null )
+            {
+                return;
+            }
+            try
+            {
+                plans.registerMetrics( metrics, first( descriptor.types() ) );
+            }
+            catch( MetricsNotSupportedException e )
+            {
+                LoggerFactory.getLogger( RdfQueryService.class )
+                    .debug( "Metrics not supported by {}, query plan cache metrics disabled", metrics );
+            }
+        }
+
         @Override
         public Iterable<EntityReference> findEntities( Class<?> resultType,
                                                        Specification<Composite> whereClause,
@@ -70,15 +130,15 @@ public interface RdfQueryService
                 String query = ((QuerySpecification)whereClause).query();
                 tupleExecutor.performTupleQuery( QueryLanguage.SERQL, query, variables, collectingCallback );
                 return collectingCallback.entities();
+            }
 
-            } else
+            QueryPlan plan = plan( resultType, whereClause, orderBySegments, firstResult, maxResults );
+            if( maxResults == null || maxResults > READ_AT_ONCE )
             {
-                RdfQueryParser rdfQueryParser = queryParserFactory.newQueryParser( language );
-                String query = rdfQueryParser.constructQuery( resultType, whereClause, orderBySegments, firstResult, maxResults, variables );
-
-                tupleExecutor.performTupleQuery( language, query, variables, collectingCallback );
-                return collectingCallback.entities();
+                return tupleExecutor.streamTupleQuery( language, plan.query, plan.bindings( variables ) );
             }
+            tupleExecutor.performTupleQuery( language, plan.query, plan.bindings( variables ), collectingCallback );
+            return collectingCallback.entities();
         }
 
         @Override
@@ -94,9 +154,8 @@ public interface RdfQueryService
                 return singleCallback.qualifiedIdentity();
             } else
             {
-                RdfQueryParser rdfQueryParser = queryParserFactory.newQueryParser( language );
-                String query = rdfQueryParser.constructQuery( resultType, whereClause, null, null, null, variables );
-                tupleExecutor.performTupleQuery( QueryLanguage.SPARQL, query, variables, singleCallback );
+                QueryPlan plan = plan( resultType, whereClause, null, null, null );
+                tupleExecutor.performTupleQuery( QueryLanguage.SPARQL, plan.query, plan.bindings( variables ), singleCallback );
                 return singleCallback.qualifiedIdentity();
             }
         }
@@ -111,11 +170,128 @@ public interface RdfQueryService
                 return tupleExecutor.performTupleQuery( QueryLanguage.SERQL, query, variables, null );
 
             } else
+            {
+                QueryPlan plan = countPlan( resultType, whereClause );
+                if( plan.query == null )
+                {
+                    // Custom SPARQL, count the rows
+                    plan = plan( resultType, whereClause, null, null, null );
+                    return tupleExecutor.performTupleQuery( language, plan.query, plan.bindings( variables ), null );
+                }
+                return tupleExecutor.performCountQuery( plan.query, plan.bindings( variables ),
+                                                        RdfQueryParserImpl2.COUNT_BINDING );
+            }
+        }
+
+        private QueryPlan plan( Class<?> resultType,
+                                Specification<Composite> whereClause,
+                                OrderBy[] orderBySegments,
+                                Integer firstResult,
+                                Integer maxResults
+        )
+        {
+            String shape = QueryPlanCache.shapeOf( resultType, whereClause, orderBySegments, firstResult, maxResults );
+            QueryPlan plan = plans.get( shape );
+            if( plan == null )
             {
                 RdfQueryParser rdfQueryParser = queryParserFactory.newQueryParser( language );
-                String query = rdfQueryParser.constructQuery( resultType, whereClause, null, null, null, variables );
-                return tupleExecutor.performTupleQuery( language, query, variables, null );
+                String query = rdfQueryParser.constructQuery( resultType, whereClause, orderBySegments, firstResult, maxResults, null );
+                if( QuerySpecification.isQueryLanguage( "SPARQL", whereClause ) )
+                {
+                    // Custom SPARQL, bound to the Variables as they are
+                    plan = new QueryPlan( query, null );
+                }
+                else
+                {
+                    plan = new QueryPlan( query, QueryPlanCache.variableNamesOf( whereClause ) );
+                }
+                plans.put( shape, plan );
+            }
+            return plan;
+        }
+
+        private QueryPlan countPlan( Class<?> resultType, Specification<Composite> whereClause )
+        {
+            String shape = "COUNT " + QueryPlanCache.shapeOf( resultType, whereClause, null, null, null );
+            QueryPlan plan = plans.get( shape );
+            if( plan == null )
+            {
+                RdfQueryParser rdfQueryParser = queryParserFactory.newQueryParser( language );
+                String query = rdfQueryParser.constructCountQuery( resultType, whereClause, null );
+                plan = new QueryPlan( query, QueryPlanCache.variableNamesOf( whereClause ) );
+                plans.put( shape, plan );
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * SPARQL query and the names of the Variables it must be bound to.
+     */
+    final class QueryPlan
+    {
+        private final String query;
+        private final Set<String> variableNames;
+        private final Set<String> entityVariableNames;
+
+        private QueryPlan( String query, Set<String> variableNames )
+        {
+            this.query = query;
+            this.variableNames = variableNames;
+            entityVariableNames = new HashSet<String>();
+            if( variableNames != null )
+            {
+                for( String variableName : variableNames )
+                {
+                    if( mentions( query, RdfQueryParserImpl2.entityBindingName( variableName ) ) )
+                    {
+                        entityVariableNames.add( variableName );
+                    }
+                }
+            }
+        }
+
+        private Map<String, Object> bindings( Map<String, Object> variables )
+        {
+            if( variableNames == null )
+            {
+                return variables;
+            }
+            Map<String, Object> bindings = new HashMap<String, Object>();
+            for( String variableName : variableNames )
+            {
+                Object value = variables == null ? null : variables.get( variableName );
+                if( value == null )
+                {
+                    throw new IllegalArgumentException( "Variable " + variableName + " not bound" );
+                }
+                bindings.put( RdfQueryParserImpl2.bindingName( variableName ), RdfQueryParserImpl2.bindingValue( value ) );
+                if( entityVariableNames.contains( variableName ) )
+                {
+                    bindings.put( RdfQueryParserImpl2.entityBindingName( variableName ),
+                                  ValueFactoryImpl.getInstance().createURI( RdfQueryParserImpl2.entityBindingValue( value ) ) );
+                }
+            }
+            return bindings;
+        }
+
+        /**
+         * @return true if the SPARQL variable is used in the query
+         */
+        private static boolean mentions( String query, String bindingName )
+        {
+            String variable = "?" + bindingName;
+            int idx = query.indexOf( variable );
+            while( idx >= 0 )
+            {
+                int end = idx + variable.length();
+                if( end == query.length() || !( Character.isLetterOrDigit( query.charAt( end ) ) || query.charAt( end ) == '_' ) )
+                {
+                    return true;
+                }
+                idx = query.indexOf( variable, end );
             }
+            return false;
         }
     }
 }
@@ -17,8 +17,12 @@
  */
 package org.qi4j.index.rdf.query;
 
+import java.io.Closeable;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.query.*;
@@ -29,6 +33,7 @@ import org.qi4j.api.common.Optional;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.query.QueryExecutionException;
 import org.qi4j.spi.query.EntityFinderException;
 
 @Mixins( TupleQueryExecutor.TupleQueryExecutorMixin.class )
@@ -37,6 +42,28 @@ public interface TupleQueryExecutor
     long performTupleQuery( QueryLanguage language, String query, @Optional Map<String, Object> bindings, @Optional QualifiedIdentityResultCallback callback )
         throws EntityFinderException;
 
+    /**
+     * Evaluate a query each time its results are iterated, reading them from the query result as they are iterated.
+     * <p>
+     * Each iterator keeps a repository connection and the query result open until it is iterated to the end, fails,
+     * or is closed as the {@link Closeable} it is. Meanwhile, repositories such as the memory and native stores
+     * hold a read lock that blocks writes to the index, including the indexing of UnitOfWorks completed by the
+     * iterating thread itself. An iterator that is neither iterated to the end nor closed leaks its connection.
+     * </p>
+     *
+     * @return the references of the entities bound to {@code identity}, in the order of the query result
+     */
+    Iterable<EntityReference> streamTupleQuery( QueryLanguage language, String query, @Optional Map<String, Object> bindings );
+
+    /**
+     * @param query    SPARQL query with a single result row, binding the count to {@code countBinding}
+     * @param bindings Values of the query bindings
+     *
+     * @return the count
+     */
+    long performCountQuery( String query, @Optional Map<String, Object> bindings, String countBinding )
+        throws EntityFinderException;
+
     class TupleQueryExecutorMixin
         implements TupleQueryExecutor
     {
@@ -104,6 +131,64 @@ public interface TupleQueryExecutor
             }
         }
 
+        @Override
+        public Iterable<EntityReference> streamTupleQuery( final QueryLanguage language,
+                                                           final String query,
+                                                           final Map<String, Object> bindings
+        )
+        {
+            return new Iterable<EntityReference>()
+            {
+                @Override
+                public Iterator<EntityReference> iterator()
+                {
+                    return new StreamedResultIterator( language, query, bindings );
+                }
+            };
+        }
+
+        @Override
+        public long performCountQuery( String query, Map<String, Object> bindings, String countBinding )
+            throws EntityFinderException
+        {
+            try
+            {
+                RepositoryConnection connection = repository.getConnection();
+                TupleQueryResult result = null;
+                try
+                {
+                    TupleQuery tupleQuery = connection.prepareTupleQuery( QueryLanguage.SPARQL, query );
+                    if( bindings != null )
+                    {
+                        for( Map.Entry<String, Value> stringValueEntry : getBindings( bindings ).entrySet() )
+                        {
+                            tupleQuery.setBinding( stringValueEntry.getKey(), stringValueEntry.getValue() );
+                        }
+                    }
+                    tupleQuery.setIncludeInferred( false );
+                    result = tupleQuery.evaluate();
+                    if( !result.hasNext() )
+                    {
+                        return 0;
+                    }
+                    Value count = result.next().getValue( countBinding );
+                    return count == null ? 0 : ( (Literal) count ).longValue();
+                }
+                finally
+                {
+                    if( result != null )
+                    {
+                        result.close();
+                    }
+                    connection.close();
+                }
+            }
+            catch( Exception e )
+            {
+                throw new EntityFinderException( e );
+            }
+        }
+
         private boolean handleCallbacks( QualifiedIdentityResultCallback callback, TupleQueryResult result, long row )
             throws Exception
         {
@@ -136,13 +221,140 @@ public interface TupleQueryExecutor
 
         private Map<String, Value> getBindings(Map<String, Object> variables)
         {
+            if( variables == null )
+            {
+                return new HashMap<String, Value>();
+            }
             Map<String, Value> bindings = new HashMap<String, Value>();
             for (Map.Entry<String, Object> stringObjectEntry : variables.entrySet())
             {
-                if (!stringObjectEntry.getValue().getClass().equals(Object.class))
+                if( stringObjectEntry.getValue() instanceof Value )
+                {
+                    // Already an RDF value, such as the URI of an Entity
+                    bindings.put( stringObjectEntry.getKey(), (Value) stringObjectEntry.getValue() );
+                }
+                else if (!stringObjectEntry.getValue().getClass().equals(Object.class))
                     bindings.put(stringObjectEntry.getKey(), ValueFactoryImpl.getInstance().createLiteral(stringObjectEntry.getValue().toString()));
             }
             return bindings;
         }
+
+        /**
+         * Entity references read from an open query result, closed once the last one is read.
+         */
+        private class StreamedResultIterator
+            implements Iterator<EntityReference>, Closeable
+        {
+            private final RepositoryConnection connection;
+            private final TupleQueryResult result;
+            private EntityReference next;
+            private boolean closed;
+
+            private StreamedResultIterator( QueryLanguage language, String query, Map<String, Object> bindings )
+            {
+                try
+                {
+                    connection = repository.getConnection();
+                }
+                catch( RepositoryException e )
+                {
+                    throw new QueryExecutionException( "Could not evaluate query", e );
+                }
+                try
+                {
+                    TupleQuery tupleQuery = connection.prepareTupleQuery( language, query );
+                    for( Map.Entry<String, Value> binding : getBindings( bindings ).entrySet() )
+                    {
+                        tupleQuery.setBinding( binding.getKey(), binding.getValue() );
+                    }
+                    tupleQuery.setIncludeInferred( false );
+                    result = tupleQuery.evaluate();
+                }
+                catch( Exception e )
+                {
+                    closeConnection();
+                    throw new QueryExecutionException( "Could not evaluate query", e );
+                }
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                try
+                {
+                    while( next == null && !closed && result.hasNext() )
+                    {
+                        Value identifier = result.next().getValue( "identity" );
+                        if( identifier != null )
+                        {
+                            next = new EntityReference( identifier.stringValue() );
+                        }
+                    }
+                }
+                catch( QueryEvaluationException e )
+                {
+                    close();
+                    throw new QueryExecutionException( "Could not read query results", e );
+                }
+                if( next == null )
+                {
+                    close();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public EntityReference next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                EntityReference reference = next;
+                next = null;
+                return reference;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close()
+            {
+                if( closed )
+                {
+                    return;
+                }
+                closed = true;
+                try
+                {
+                    result.close();
+                }
+                catch( QueryEvaluationException e )
+                {
+                    throw new QueryExecutionException( "Could not close query results", e );
+                }
+                finally
+                {
+                    closeConnection();
+                }
+            }
+
+            private void closeConnection()
+            {
+                try
+                {
+                    connection.close();
+                }
+                catch( RepositoryException e )
+                {
+                    throw new QueryExecutionException( "Could not close repository connection", e );
+                }
+            }
+        }
     }
 }
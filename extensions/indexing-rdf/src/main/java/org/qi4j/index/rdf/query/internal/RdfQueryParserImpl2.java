@@ -30,6 +30,7 @@ import java.util.TimeZone;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.query.grammar.AndSpecification;
 import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
 import org.qi4j.api.query.grammar.AssociationNullSpecification;
@@ -78,6 +79,22 @@ public class RdfQueryParserImpl2
         }
     };
 
+    /**
+     * Prefix of the SPARQL variables standing for query Variables, see {@link #bindingName(String)}.
+     */
+    public static final String BINDING_PREFIX = "qi4jvar_";
+
+    /**
+     * Prefix of the SPARQL variables standing for query Variables bound to Entities, see
+     * {@link #entityBindingName(String)}.
+     */
+    public static final String ENTITY_BINDING_PREFIX = "qi4jentity_";
+
+    /**
+     * Name of the SPARQL variable holding the result of count queries, see {@link #constructCountQuery}.
+     */
+    public static final String COUNT_BINDING = "count";
+
     private static final Map<Class<? extends ComparisonSpecification>, String> operators;
     private static final Set<Character> reservedChars;
     private static final Set<Character> reservedJsonChars;
@@ -121,6 +138,33 @@ public class RdfQueryParserImpl2
                                   final Integer maxResults,
                                   final Map<String, Object> variables
     )
+    {
+        return constructQuery( resultType, specification, orderBySegments, firstResult, maxResults, variables,
+                               "SELECT DISTINCT ?identity\n" );
+    }
+
+    @Override
+    public String constructCountQuery( final Class<?> resultType,
+                                       final Specification<Composite> specification,
+                                       final Map<String, Object> variables
+    )
+    {
+        if( QuerySpecification.isQueryLanguage( "SPARQL", specification ) )
+        {
+            return null;
+        }
+        return constructQuery( resultType, specification, null, null, null, variables,
+                               "SELECT (COUNT(DISTINCT ?identity) AS ?" + COUNT_BINDING + ")\n" );
+    }
+
+    private String constructQuery( final Class<?> resultType,
+                                   final Specification<Composite> specification,
+                                   final OrderBy[] orderBySegments,
+                                   final Integer firstResult,
+                                   final Integer maxResults,
+                                   final Map<String, Object> variables,
+                                   final String projection
+    )
     {
         this.variables = variables;
 
@@ -166,7 +210,7 @@ public class RdfQueryParserImpl2
         {
             query.append( format( "PREFIX %s: <%s> %n", namespaces.namespacePrefix( namespace ), namespace ) );
         }
-        query.append( "SELECT DISTINCT ?identity\n" );
+        query.append( projection );
         if( triples.hasTriples() )
         {
             query.append( "WHERE {\n" );
@@ -442,7 +486,14 @@ public class RdfQueryParserImpl2
     private void processMatchesPredicate( final MatchesSpecification predicate, StringBuilder builder )
     {
         String valueVariable = triples.addTriple( predicate.property(), false ).value();
-        builder.append( format( "regex(%s,\"%s\")", valueVariable, predicate.regexp() ) );
+        if( isBinding( predicate.value() ) )
+        {
+            builder.append( format( "regex(%s,%s)", valueVariable, literal( predicate.value() ) ) );
+        }
+        else
+        {
+            builder.append( format( "regex(%s,\"%s\")", valueVariable, predicate.regexp() ) );
+        }
     }
 
     private void processComparisonPredicate( final Specification<Composite> predicate,
@@ -458,13 +509,13 @@ public class RdfQueryParserImpl2
             // Don't use FILTER for equals-comparison. Do direct match instead
             if( predicate instanceof EqSpecification && allowInline )
             {
-                triple.setValue( "\"" + toString( comparisonSpecification.value() ) + "\"" );
+                triple.setValue( literal( comparisonSpecification.value() ) );
             }
             else
             {
                 String valueVariable = triple.value();
-                builder.append( String.format( "(%s %s \"%s\")", valueVariable, getOperator( comparisonSpecification.getClass() ), toString( comparisonSpecification
-                                                                                                                                                 .value() ) ) );
+                builder.append( String.format( "(%s %s %s)", valueVariable, getOperator( comparisonSpecification.getClass() ), literal( comparisonSpecification
+                                                                                                                                           .value() ) ) );
             }
         }
         else
@@ -504,14 +555,24 @@ public class RdfQueryParserImpl2
     {
         Triples.Triple triple = triples.addTripleManyAssociation( predicate.manyAssociation(), false );
 
+        String value;
+        if( isBinding( predicate.value() ) )
+        {
+            // Bound to the URI of the Entity
+            value = "?" + entityBindingName( ( (Variable) predicate.value() ).variableName() );
+        }
+        else
+        {
+            value = "<" + toString( predicate.value() ) + ">";
+        }
         if( allowInline )
         {
-            triple.setValue( "<" + toString( predicate.value() ) + ">" );
+            triple.setValue( value );
         }
         else
         {
             String valueVariable = triple.value();
-            builder.append( String.format( "(%s %s <%s>)", valueVariable, "=", toString( predicate.value() ) ) );
+            builder.append( String.format( "(%s %s %s)", valueVariable, "=", value ) );
         }
     }
 
@@ -552,13 +613,52 @@ public class RdfQueryParserImpl2
         return operator;
     }
 
-    private String toString( Object value )
+    /**
+     * @param variableName Name of a query {@link Variable}
+     *
+     * @return Name of the SPARQL variable standing for the query Variable in queries constructed without variables
+     */
+    public static String bindingName( String variableName )
     {
-        if( value == null )
+        return escapedName( BINDING_PREFIX, variableName );
+    }
+
+    /**
+     * @param variableName Name of a query {@link Variable}
+     *
+     * @return Name of the SPARQL variable standing for the query Variable where it must be bound to the URI of an
+     *         Entity, see {@link #entityBindingValue(Object)}
+     */
+    public static String entityBindingName( String variableName )
+    {
+        return escapedName( ENTITY_BINDING_PREFIX, variableName );
+    }
+
+    private static String escapedName( String prefix, String variableName )
+    {
+        StringBuilder name = new StringBuilder( prefix );
+        for( int idx = 0; idx < variableName.length(); idx++ )
         {
-            return null;
+            char ch = variableName.charAt( idx );
+            if( ( ch >= 'a' && ch <= 'z' ) || ( ch >= 'A' && ch <= 'Z' ) || ( ch >= '0' && ch <= '9' ) )
+            {
+                name.append( ch );
+            }
+            else
+            {
+                name.append( '_' ).append( Integer.toHexString( ch ) ).append( '_' );
+            }
         }
+        return name.toString();
+    }
 
+    /**
+     * @param value Value of a query {@link Variable}
+     *
+     * @return the literal value to bind to the SPARQL variable standing for the query Variable
+     */
+    public static String bindingValue( Object value )
+    {
         if( value instanceof Date )
         {
             return ISO8601_UTC.get().format( (Date) value );
@@ -567,7 +667,49 @@ public class RdfQueryParserImpl2
         {
             return "urn:qi4j:entity:" + value.toString();
         }
-        else if( value instanceof Variable )
+        return value.toString();
+    }
+
+    /**
+     * @param value Value of a query {@link Variable}, an Entity, an EntityReference or an identity
+     *
+     * @return the URI of the Entity to bind to the SPARQL variable standing for the query Variable
+     */
+    public static String entityBindingValue( Object value )
+    {
+        if( value instanceof EntityReference )
+        {
+            return ( (EntityReference) value ).toURI();
+        }
+        else if( value instanceof EntityComposite )
+        {
+            return EntityReference.entityReferenceFor( value ).toURI();
+        }
+        return new EntityReference( value.toString() ).toURI();
+    }
+
+    private boolean isBinding( Object value )
+    {
+        return variables == null && value instanceof Variable;
+    }
+
+    private String literal( Object value )
+    {
+        if( isBinding( value ) )
+        {
+            return "?" + bindingName( ( (Variable) value ).variableName() );
+        }
+        return "\"" + toString( value ) + "\"";
+    }
+
+    private String toString( Object value )
+    {
+        if( value == null )
+        {
+            return null;
+        }
+
+        if( value instanceof Variable )
         {
             Object realValue = variables.get( ( (Variable) value ).variableName() );
 
@@ -580,7 +722,7 @@ public class RdfQueryParserImpl2
         }
         else
         {
-            return value.toString();
+            return bindingValue( value );
         }
     }
 }
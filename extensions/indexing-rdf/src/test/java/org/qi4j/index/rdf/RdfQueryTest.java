@@ -18,8 +18,15 @@
  */
 package org.qi4j.index.rdf;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.junit.After;
+import org.junit.Test;
 import org.qi4j.api.common.Visibility;
+import org.qi4j.api.query.Query;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
 import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
@@ -31,8 +38,18 @@ import org.qi4j.library.rdf.repository.NativeConfiguration;
 import org.qi4j.library.rdf.repository.NativeRepositoryService;
 import org.qi4j.test.EntityTestAssembler;
 import org.qi4j.test.indexing.AbstractQueryTest;
+import org.qi4j.test.indexing.model.Domain;
+import org.qi4j.test.indexing.model.Person;
 import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.manyAssociation;
+import static org.qi4j.api.query.QueryExpressions.or;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+import static org.qi4j.api.query.QueryExpressions.variable;
+
 //@Ignore("Getting failures when running under Gradle and new OpenRDF version." )
 public class RdfQueryTest extends AbstractQueryTest
 {
@@ -53,6 +70,37 @@ public class RdfQueryTest extends AbstractQueryTest
         new EntityTestAssembler().assemble( config );
     }
 
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void givenVariableBoundToEntityWhenQueryingManyAssociationContainsThenEntityIsMatched()
+    {
+        Person person = templateFor( Person.class );
+        ManyAssociationContainsSpecification<Domain> containsDomain = new ManyAssociationContainsSpecification(
+            manyAssociation( person.interests() ), variable( "domain" ) );
+        Domain gaming = unitOfWork.get( Domain.class, "Gaming" );
+
+        Query<Person> query = unitOfWork.newQuery( module.newQueryBuilder( Person.class ).where( containsDomain ) );
+        query.setVariable( "domain", gaming );
+        assertThat( names( query ), equalTo( Arrays.asList( "Joe Doe" ) ) );
+
+        // Not inlined in the triple pattern
+        query = unitOfWork.newQuery( module.newQueryBuilder( Person.class )
+                                         .where( or( containsDomain, eq( person.name(), "Ann Doe" ) ) ) );
+        query.setVariable( "domain", gaming );
+        assertThat( names( query ), equalTo( Arrays.asList( "Ann Doe", "Joe Doe" ) ) );
+    }
+
+    private static List<String> names( Query<Person> query )
+    {
+        List<String> names = new ArrayList<String>();
+        for( Person person : query )
+        {
+            names.add( person.name().get() );
+        }
+        Collections.sort( names );
+        return names;
+    }
+
     @Override
     @After
     public void tearDown()
@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.index.rdf;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.Query;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.index.rdf.assembly.RdfMemoryStoreAssembler;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * Test queries whose results are streamed, not limited to the number of results read at once.
+ */
+public class RdfStreamedQueryTest
+    extends AbstractQi4jTest
+{
+    private static final int ITEMS = 2500;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.entities( ItemEntity.class );
+        new RdfMemoryStoreAssembler().assemble( module );
+        new EntityTestAssembler().assemble( module );
+    }
+
+    @Before
+    public void createItems()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < ITEMS; idx++ )
+        {
+            EntityBuilder<ItemEntity> builder = uow.newEntityBuilder( ItemEntity.class, identity( idx ) );
+            builder.instance().category().set( idx % 2 == 0 ? "even" : "odd" );
+            builder.newInstance();
+        }
+        uow.complete();
+    }
+
+    @Test
+    public void givenMoreMatchesThanReadAtOnceWhenIteratingThenReturnEachMatchOnce()
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            ItemEntity template = templateFor( ItemEntity.class );
+            Query<ItemEntity> query = uow.newQuery( module.newQueryBuilder( ItemEntity.class )
+                                                        .where( eq( template.category(), "even" ) ) );
+
+            Set<String> expected = new HashSet<String>();
+            for( int idx = 0; idx < ITEMS; idx += 2 )
+            {
+                expected.add( identity( idx ) );
+            }
+            List<String> identities = identities( query );
+            assertThat( identities.size(), equalTo( expected.size() ) );
+            assertThat( new HashSet<String>( identities ), equalTo( expected ) );
+            assertThat( query.count(), equalTo( (long) expected.size() ) );
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    @Test
+    public void givenStreamedResultsWhenIteratedToTheEndThenRepositoryIsReleasedForIndexing()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            int read = identities( uow.newQuery( module.newQueryBuilder( ItemEntity.class ) ) ).size();
+            assertThat( read, equalTo( ITEMS ) );
+            uow.newEntityBuilder( ItemEntity.class, identity( ITEMS ) ).newInstance();
+            uow.complete();
+        }
+        finally
+        {
+            if( uow.isOpen() )
+            {
+                uow.discard();
+            }
+        }
+
+        uow = module.newUnitOfWork();
+        try
+        {
+            assertThat( uow.newQuery( module.newQueryBuilder( ItemEntity.class ) ).count(), equalTo( ITEMS + 1L ) );
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    @Test
+    public void givenFirstAndMaxResultsAboveReadAtOnceWhenIteratingThenReturnTheRequestedNumberOfMatches()
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            Query<ItemEntity> query = uow.newQuery( module.newQueryBuilder( ItemEntity.class ) );
+            query.firstResult( 900 );
+            query.maxResults( 1100 );
+
+            List<String> identities = identities( query );
+            assertThat( identities.size(), equalTo( 1100 ) );
+            assertThat( new HashSet<String>( identities ).size(), equalTo( 1100 ) );
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
+
+    private static String identity( int idx )
+    {
+        return String.format( "item-%04d", idx );
+    }
+
+    private static List<String> identities( Query<ItemEntity> query )
+    {
+        List<String> identities = new ArrayList<String>();
+        for( ItemEntity item : query )
+        {
+            identities.add( item.identity().get() );
+        }
+        return identities;
+    }
+
+    public interface ItemEntity
+        extends EntityComposite
+    {
+        Property<String> category();
+    }
+}
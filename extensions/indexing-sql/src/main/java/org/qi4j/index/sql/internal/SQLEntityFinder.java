@@ -15,11 +15,15 @@
 
 package org.qi4j.index.sql.internal;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.sql.DataSource;
@@ -27,15 +31,34 @@ import org.qi4j.api.common.Optional;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsNotSupportedException;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.mixin.Initializable;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.functional.Specification;
 import org.qi4j.index.sql.support.api.SQLQuerying;
 import org.qi4j.library.sql.common.SQLUtil;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.QueryPlanCache;
+import org.slf4j.LoggerFactory;
 
+import static org.qi4j.functional.Iterables.first;
+
+/**
+ * EntityFinder executing queries as SQL prepared statements.
+ * <p>
+ * Constructed SQL and parameters are cached by query shape, see {@link QueryPlanCache}, so that executions of a
+ * query differing only by the values of its Variables skip query construction. Queries whose Variables are bound to
+ * collections, enums, value composites, null or other values that change the structure of the SQL are constructed
+ * at each execution. Prepared statements themselves are not kept across executions as each one uses its own
+ * connection, use a connection pool caching prepared statements for that.
+ * </p>
+ */
 public class SQLEntityFinder
-    implements EntityFinder
+    implements EntityFinder, Initializable
 {
     @Service
     private SQLQuerying parser;
@@ -43,6 +66,33 @@ public class SQLEntityFinder
     @Service
     private DataSource _dataSource;
 
+    @Optional
+    @Service
+    private MetricsProvider metrics;
+
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    private final QueryPlanCache<QueryPlan> plans = new QueryPlanCache<QueryPlan>();
+
+    @Override
+    public void initialize()
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        try
+        {
+            plans.registerMetrics( metrics, first( descriptor.types() ) );
+        }
+        catch( MetricsNotSupportedException e )
+        {
+            LoggerFactory.getLogger( SQLEntityFinder.class )
+                .debug( "Metrics not supported by {}, query plan cache metrics disabled", metrics );
+        }
+    }
+
     /**
      * Helper interface to perform some SQL query. Using this simplifies the structure of some of the methods.
      *
@@ -57,10 +107,10 @@ public class SQLEntityFinder
     @Override
     public long countEntities( Class<?> resultType, @Optional Specification<Composite> whereClause, Map<String, Object> variables ) throws EntityFinderException
     {
-        final List<Object> values = new ArrayList<Object>();
-        final List<Integer> valueSQLTypes = new ArrayList<Integer>();
-        final String query = this.parser.constructQuery( resultType, whereClause, null, null, null, variables, values,
-            valueSQLTypes, true );
+        QueryPlan plan = this.plan( resultType, whereClause, null, null, null, variables, true );
+        final String query = plan.query;
+        final List<Object> values = plan.values( variables );
+        final List<Integer> valueSQLTypes = plan.valueSQLTypes;
 
         return this.performQuery( new DoQuery<Long>()
         {
@@ -95,10 +145,11 @@ public class SQLEntityFinder
         Iterable<EntityReference> result;
         if( maxResults == null || maxResults > 0 )
         {
-            final List<Object> values = new ArrayList<Object>();
-            final List<Integer> valueSQLTypes = new ArrayList<Integer>();
-            final String query = this.parser.constructQuery( resultType, whereClause, orderBySegments, firstResult,
-                maxResults, variables, values, valueSQLTypes, false );
+            QueryPlan plan = this.plan( resultType, whereClause, orderBySegments, firstResult, maxResults, variables,
+                false );
+            final String query = plan.query;
+            final List<Object> values = plan.values( variables );
+            final List<Integer> valueSQLTypes = plan.valueSQLTypes;
 
             result = this.performQuery( new DoQuery<Iterable<EntityReference>>()
             {
@@ -152,10 +203,10 @@ public class SQLEntityFinder
     @Override
     public EntityReference findEntity( Class<?> resultType, @Optional Specification<Composite> whereClause, Map<String, Object> variables ) throws EntityFinderException
     {
-        final List<Object> values = new ArrayList<Object>();
-        final List<Integer> valueSQLTypes = new ArrayList<Integer>();
-        final String query = this.parser.constructQuery( resultType, whereClause, null, null, null, variables, values,
-            valueSQLTypes, false );
+        QueryPlan plan = this.plan( resultType, whereClause, null, null, null, variables, false );
+        final String query = plan.query;
+        final List<Object> values = plan.values( variables );
+        final List<Integer> valueSQLTypes = plan.valueSQLTypes;
 
         return this.performQuery( new DoQuery<EntityReference>()
         {
@@ -188,6 +239,165 @@ public class SQLEntityFinder
         } );
     }
 
+    private QueryPlan plan( Class<?> resultType, Specification<Composite> whereClause, OrderBy[] orderBySegments,
+        Integer firstResult, Integer maxResults, Map<String, Object> variables, boolean countOnly )
+        throws EntityFinderException
+    {
+        // Variable values are replaced by copies, their positions among the values of the constructed query then
+        // tell which parameters are bound to which Variable
+        Map<String, Object> copies = new HashMap<String, Object>();
+        StringBuilder shape = new StringBuilder( QueryPlanCache.shapeOf( resultType, whereClause, orderBySegments,
+            firstResult, maxResults ) ).append( '|' ).append( countOnly );
+        for( String variableName : QueryPlanCache.variableNamesOf( whereClause ) )
+        {
+            Object value = variables == null ? null : variables.get( variableName );
+            Object copy = copyOf( value );
+            if( copy == null )
+            {
+                shape = null;
+                break;
+            }
+            copies.put( variableName, copy );
+            // Types of Variable values drive the SQL types of parameters
+            shape.append( '|' ).append( variableName ).append( '=' ).append( value.getClass().getName() );
+        }
+
+        List<Object> values = new ArrayList<Object>();
+        List<Integer> valueSQLTypes = new ArrayList<Integer>();
+        if( shape == null )
+        {
+            String query = this.parser.constructQuery( resultType, whereClause, orderBySegments, firstResult,
+                maxResults, variables, values, valueSQLTypes, countOnly );
+            return new QueryPlan( query, values, valueSQLTypes, null );
+        }
+
+        String key = shape.toString();
+        QueryPlan plan = this.plans.get( key );
+        if( plan == null )
+        {
+            String query = this.parser.constructQuery( resultType, whereClause, orderBySegments, firstResult,
+                maxResults, copies, values, valueSQLTypes, countOnly );
+            String[] parameterVariables = new String[ values.size() ];
+            int boundParameters = 0;
+            for( int idx = 0; idx < values.size(); idx++ )
+            {
+                for( Map.Entry<String, Object> copy : copies.entrySet() )
+                {
+                    if( values.get( idx ) == copy.getValue() )
+                    {
+                        parameterVariables[ idx ] = copy.getKey();
+                        boundParameters++;
+                        break;
+                    }
+                }
+            }
+            plan = new QueryPlan( query, values, valueSQLTypes, parameterVariables );
+            // Variables whose values were transformed while constructing the query cannot be rebound
+            if( boundParameters == QueryPlanCache.variableOccurrencesOf( whereClause ).size() )
+            {
+                this.plans.put( key, plan );
+            }
+        }
+        return plan;
+    }
+
+    private static Object copyOf( Object value )
+    {
+        if( value == null )
+        {
+            return null;
+        }
+        Class<?> type = value.getClass();
+        if( type == String.class )
+        {
+            return new String( (String) value );
+        }
+        else if( type == Integer.class )
+        {
+            return new Integer( (Integer) value );
+        }
+        else if( type == Long.class )
+        {
+            return new Long( (Long) value );
+        }
+        else if( type == Short.class )
+        {
+            return new Short( (Short) value );
+        }
+        else if( type == Byte.class )
+        {
+            return new Byte( (Byte) value );
+        }
+        else if( type == Double.class )
+        {
+            return new Double( (Double) value );
+        }
+        else if( type == Float.class )
+        {
+            return new Float( (Float) value );
+        }
+        else if( type == Boolean.class )
+        {
+            return new Boolean( (Boolean) value );
+        }
+        else if( type == Character.class )
+        {
+            return new Character( (Character) value );
+        }
+        else if( type == BigInteger.class )
+        {
+            return new BigInteger( ( (BigInteger) value ).toByteArray() );
+        }
+        else if( type == BigDecimal.class )
+        {
+            BigDecimal decimal = (BigDecimal) value;
+            return new BigDecimal( decimal.unscaledValue(), decimal.scale() );
+        }
+        else if( type == Date.class )
+        {
+            return new Date( ( (Date) value ).getTime() );
+        }
+        // Not a plain SQL value, the structure of the query may depend on it
+        return null;
+    }
+
+    /**
+     * Constructed SQL query, its parameter values and types, and the Variables its parameters are bound to.
+     */
+    private static final class QueryPlan
+    {
+        private final String query;
+        private final List<Object> values;
+        private final List<Integer> valueSQLTypes;
+        private final String[] parameterVariables;
+
+        private QueryPlan( String query, List<Object> values, List<Integer> valueSQLTypes,
+            String[] parameterVariables )
+        {
+            this.query = query;
+            this.values = values;
+            this.valueSQLTypes = valueSQLTypes;
+            this.parameterVariables = parameterVariables;
+        }
+
+        private List<Object> values( Map<String, Object> variables )
+        {
+            if( parameterVariables == null )
+            {
+                return values;
+            }
+            List<Object> bound = new ArrayList<Object>( values );
+            for( int idx = 0; idx < parameterVariables.length; idx++ )
+            {
+                if( parameterVariables[ idx ] != null )
+                {
+                    bound.set( idx, variables.get( parameterVariables[ idx ] ) );
+                }
+            }
+            return bound;
+        }
+    }
+
     private PreparedStatement createPS( Connection connection, String query, List<Object> values, List<Integer> valueSQLTypes )
         throws SQLException
     {
@@ -21,14 +21,12 @@ package org.qi4j.lang.scala;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
 import org.qi4j.api.Qi4j;
 import org.qi4j.api.common.AppliesTo;
 import org.qi4j.api.common.AppliesToFilter;
 import org.qi4j.api.composite.Composite;
-import org.qi4j.api.composite.CompositeInstance;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.service.ServiceReference;
@@ -80,7 +78,7 @@ public class ScalaTraitMixin
                             @Override
                             public Object invoke( Object composite, Method method, Object[] objects ) throws Throwable
                             {
-                                return ((CompositeInstance)Proxy.getInvocationHandler( composite )).module().findService( method.getReturnType() );
+                                return Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) composite ).module().findService( method.getReturnType() );
                             }
                         };
                         getHandlers( compositeType ).put( method, handler );
@@ -91,7 +89,7 @@ public class ScalaTraitMixin
                             @Override
                             public Object invoke( Object composite, Method method, Object[] objects ) throws Throwable
                             {
-                                return ((CompositeInstance)Proxy.getInvocationHandler( composite )).module().findService( method.getReturnType() ).get();
+                                return Qi4j.FUNCTION_COMPOSITE_INSTANCE_OF.map( (Composite) composite ).module().findService( method.getReturnType() ).get();
                             }
                         };
                         getHandlers( compositeType ).put( method, handler );
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.file;
+
+import java.io.File;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.Assembler;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.file.FileEntityStoreConfiguration;
+import org.qi4j.entitystore.file.assembly.SegmentedFileEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.performance.entitystore.model.AbstractEntityStorePerformanceTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * Performance test for SegmentedFileEntityStoreService, to compare with FileEntityStorePerformanceTest.
+ */
+public class SegmentedFileEntityStorePerformanceTest
+    extends AbstractEntityStorePerformanceTest
+{
+    public SegmentedFileEntityStorePerformanceTest()
+    {
+        super( "SegmentedFileEntityStore", createAssembler() );
+    }
+
+    private static Assembler createAssembler()
+    {
+        return new Assembler()
+        {
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                new SegmentedFileEntityStoreAssembler( Visibility.module ).assemble( module );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                ModuleAssembly configModule = module.layer().module( "Config" );
+                configModule.entities( FileEntityStoreConfiguration.class ).visibleIn( Visibility.layer );
+                configModule.forMixin( FileEntityStoreConfiguration.class ).declareDefaults()
+                    .directory().set( FileEntityStorePerformanceTest.DIRECTORY );
+                new EntityTestAssembler( Visibility.module ).assemble( configModule );
+            }
+        };
+    }
+
+    @Override
+    public void cleanUp()
+        throws Exception
+    {
+        super.cleanUp();
+        FileEntityStorePerformanceTest.delete( new File( FileEntityStorePerformanceTest.DIRECTORY ) );
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.hazelcast;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.entitystore.hazelcast.HazelcastConfiguration;
+import org.qi4j.entitystore.hazelcast.assembly.HazelcastEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * Entity creation and read throughput of the HazelcastEntityStore for growing numbers of members of the same
+ * cluster, each embedded in its own Qi4j application in this JVM.
+ */
+public class HazelcastMultiMemberPerformanceTest
+{
+    private static final int ENTITIES = 2000;
+    private static final int READS = 20000;
+    private static final int BATCH = 50;
+
+    private final List<SingletonAssembler> members = new ArrayList<SingletonAssembler>();
+
+    @After
+    public void shutdownMembers()
+        throws Exception
+    {
+        for( SingletonAssembler member : members )
+        {
+            member.application().passivate();
+        }
+        members.clear();
+    }
+
+    @Test
+    public void whenCreatingAndReadingEntitiesThenRecordThroughputPerMemberCount()
+        throws Exception
+    {
+        NumberFormat format = NumberFormat.getIntegerInstance();
+        for( int memberCount = 1; memberCount <= 3; memberCount++ )
+        {
+            final List<Module> modules = new ArrayList<Module>();
+            for( int idx = 0; idx < memberCount; idx++ )
+            {
+                modules.add( startMember().module() );
+            }
+
+            final String prefix = memberCount + "-";
+            long start = System.nanoTime();
+            runOnEachMember( modules, new MemberTask()
+            {
+                @Override
+                public void run( Module module, int member, int memberCount )
+                    throws Exception
+                {
+                    for( int batch = member * BATCH; batch < ENTITIES; batch += memberCount * BATCH )
+                    {
+                        UnitOfWork uow = module.newUnitOfWork();
+                        for( int idx = batch; idx < Math.min( batch + BATCH, ENTITIES ); idx++ )
+                        {
+                            uow.newEntity( Counter.class, prefix + idx ).name().set( "Counter " + idx );
+                        }
+                        uow.complete();
+                    }
+                }
+            } );
+            long writesPerSecond = ENTITIES * 1000000000L / Math.max( 1L, System.nanoTime() - start );
+
+            start = System.nanoTime();
+            runOnEachMember( modules, new MemberTask()
+            {
+                @Override
+                public void run( Module module, int member, int memberCount )
+                    throws Exception
+                {
+                    for( int read = member; read < READS; read += memberCount )
+                    {
+                        UnitOfWork uow = module.newUnitOfWork();
+                        try
+                        {
+                            // Skewed towards the first entities, as most workloads are
+                            int idx = ( read * read ) % ( ENTITIES / 10 );
+                            uow.get( Counter.class, prefix + idx ).name().get();
+                        }
+                        finally
+                        {
+                            uow.discard();
+                        }
+                    }
+                }
+            } );
+            long readsPerSecond = READS * 1000000000L / Math.max( 1L, System.nanoTime() - start );
+
+            System.out.println( memberCount + " members, entities created per second: " + format.format( writesPerSecond )
+                                + ", entities read per second: " + format.format( readsPerSecond ) );
+            shutdownMembers();
+        }
+    }
+
+    private SingletonAssembler startMember()
+        throws Exception
+    {
+        SingletonAssembler member = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.entities( Counter.class );
+                ModuleAssembly configModule = module.layer().module( "config" );
+                new EntityTestAssembler().assemble( configModule );
+                HazelcastConfiguration defaults = configModule.forMixin( HazelcastConfiguration.class ).declareDefaults();
+                defaults.configXmlLocation().set( "org/qi4j/test/performance/entitystore/hazelcast/localCluster.xml" );
+                defaults.nearCacheMaxSize().set( 10000 );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                new HazelcastEntityStoreAssembler().withBinaryStates().withConfigIn( configModule, Visibility.layer ).assemble( module );
+            }
+        };
+        members.add( member );
+        return member;
+    }
+
+    private static void runOnEachMember( final List<Module> modules, final MemberTask task )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( modules.size() );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for( int idx = 0; idx < modules.size(); idx++ )
+            {
+                final int member = idx;
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        task.run( modules.get( member ), member, modules.size() );
+                        return null;
+                    }
+                } ) );
+            }
+            for( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private interface MemberTask
+    {
+        void run( Module module, int member, int memberCount )
+            throws Exception;
+    }
+
+    public interface Counter
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> name();
+
+        @UseDefaults
+        Property<Integer> count();
+    }
+}
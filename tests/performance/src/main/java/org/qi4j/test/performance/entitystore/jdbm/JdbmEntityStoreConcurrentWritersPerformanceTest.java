@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.jdbm;
+
+import java.io.File;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.entitystore.jdbm.JdbmConfiguration;
+import org.qi4j.entitystore.jdbm.assembly.JdbmEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * Concurrent UnitOfWork completions on the JdbmEntityStore, with one JDBM commit per UnitOfWork and with
+ * group commit.
+ */
+public class JdbmEntityStoreConcurrentWritersPerformanceTest
+{
+    private static final String DIRECTORY = "build/jdbm-concurrent-writers";
+    private static final int WRITERS = 16;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void whenCompletingConcurrentlyWithCommitPerUnitOfWorkThenRecordIterationsPerSecond()
+        throws Exception
+    {
+        recordThroughput( false );
+    }
+
+    @Test
+    public void whenCompletingConcurrentlyWithGroupCommitThenRecordIterationsPerSecond()
+        throws Exception
+    {
+        recordThroughput( true );
+    }
+
+    @After
+    public void cleanUp()
+    {
+        File[] files = new File( DIRECTORY ).listFiles();
+        if( files != null )
+        {
+            for( File file : files )
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private void recordThroughput( final boolean groupCommit )
+        throws Exception
+    {
+        SingletonAssembler assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                new JdbmEntityStoreAssembler( Visibility.module ).assemble( module );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                module.entities( Counter.class );
+                ModuleAssembly configModule = module.layer().module( "Config" );
+                configModule.entities( JdbmConfiguration.class ).visibleIn( Visibility.layer );
+                new EntityTestAssembler( Visibility.module ).assemble( configModule );
+                JdbmConfiguration defaults = configModule.forMixin( JdbmConfiguration.class ).declareDefaults();
+                defaults.file().set( DIRECTORY + "/jdbm.data" );
+                defaults.groupCommit().set( groupCommit );
+            }
+        };
+        final Module module = assembler.module();
+        ExecutorService executor = Executors.newFixedThreadPool( WRITERS );
+        try
+        {
+            List<Callable<Void>> writers = new ArrayList<Callable<Void>>();
+            for( int writer = 0; writer < WRITERS; writer++ )
+            {
+                writers.add( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        for( int i = 0; i < ITERATIONS; i++ )
+                        {
+                            UnitOfWork uow = module.newUnitOfWork();
+                            uow.newEntity( Counter.class ).count().set( i );
+                            uow.complete();
+                        }
+                        return null;
+                    }
+                } );
+            }
+
+            long start = System.currentTimeMillis();
+            for( Future<Void> future : executor.invokeAll( writers ) )
+            {
+                future.get();
+            }
+            long end = System.currentTimeMillis();
+
+            long time = Math.max( 1, end - start );
+            long perSecond = ( WRITERS * ITERATIONS * 1000L ) / time;
+            System.out.println( ( groupCommit ? "Group commit" : "Commit per UnitOfWork" ) + ", " + WRITERS
+                                + " writers: " + NumberFormat.getIntegerInstance().format( perSecond )
+                                + " UnitOfWorks per second" );
+        }
+        finally
+        {
+            executor.shutdown();
+            assembler.application().passivate();
+        }
+    }
+
+    public interface Counter
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<Integer> count();
+    }
+}
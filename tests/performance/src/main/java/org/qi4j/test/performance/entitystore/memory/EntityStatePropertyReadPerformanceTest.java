@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.memory;
+
+import java.text.NumberFormat;
+import org.junit.Test;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.api.value.ValueComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.memory.MemoryEntityStoreService;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * Repeated property reads on loaded EntityStates performance test. Don't forget to add VM value "-server"
+ * before running this test!
+ * <p/>
+ * Each round loads the entities in a fresh UnitOfWork and reads the same ValueComposite property
+ * several times from their EntityState, as indexers and StateChangeListeners do.
+ */
+public class EntityStatePropertyReadPerformanceTest
+    extends AbstractQi4jTest
+{
+    private static final int ENTITIES = 1000;
+    private static final int READS_PER_ENTITY = 10;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.services( MemoryEntityStoreService.class );
+        module.services( UuidIdentityGeneratorService.class );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        module.entities( Order.class );
+        module.values( Address.class );
+    }
+
+    @Test
+    public void whenReadingValuePropertyRepeatedlyThenRecordReadsPerSecond()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int i = 0; i < ENTITIES; i++ )
+        {
+            ValueBuilder<Address> builder = module.newValueBuilder( Address.class );
+            builder.prototype().street().set( "Street " + i );
+            builder.prototype().city().set( "City " + i );
+            Order order = uow.newEntity( Order.class, "order" + i );
+            order.shippingAddress().set( builder.newInstance() );
+        }
+        uow.complete();
+
+        QualifiedName shippingAddress = QualifiedName.fromAccessor( Order.class.getMethod( "shippingAddress" ) );
+
+        // Warmup
+        performanceCheck( shippingAddress );
+
+        int rounds = 5;
+        for( int i = 0; i < rounds; i++ )
+        {
+            System.gc();
+            performanceCheck( shippingAddress );
+        }
+    }
+
+    private void performanceCheck( QualifiedName stateName )
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                EntityState state = spi.entityStateOf( uow.get( Order.class, "order" + i ) );
+                for( int read = 0; read < READS_PER_ENTITY; read++ )
+                {
+                    state.propertyValueOf( stateName );
+                }
+            }
+        }
+        finally
+        {
+            uow.discard();
+        }
+        long end = System.currentTimeMillis();
+        long time = Math.max( 1, end - start );
+        long readsPerSecond = ( ENTITIES * READS_PER_ENTITY * 1000L ) / time;
+        System.out.println( "Property reads per second: " + NumberFormat.getIntegerInstance().format( readsPerSecond ) );
+    }
+
+    public interface Order
+        extends EntityComposite
+    {
+        @Optional
+        Property<Address> shippingAddress();
+    }
+
+    public interface Address
+        extends ValueComposite
+    {
+        @UseDefaults
+        Property<String> street();
+
+        @UseDefaults
+        Property<String> city();
+    }
+}
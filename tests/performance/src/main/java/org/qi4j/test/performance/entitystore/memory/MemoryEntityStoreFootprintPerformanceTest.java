@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.entitystore.memory;
+
+import java.lang.management.ManagementFactory;
+import java.text.NumberFormat;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.entitystore.memory.MemoryEntityStoreService;
+import org.qi4j.entitystore.memory.MemoryStorage;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * Memory footprint of 1 million entities in the MemoryEntityStoreService, with states kept on the heap and
+ * off-heap. Run with a heap of at least 2GB, and -XX:MaxDirectMemorySize=1g for the off-heap storage.
+ */
+public class MemoryEntityStoreFootprintPerformanceTest
+{
+    private static final int ENTITIES = 1000000;
+    private static final int BATCH_SIZE = 10000;
+
+    @Test
+    public void whenStoringOneMillionEntitiesOnHeapThenRecordFootprint()
+        throws Exception
+    {
+        recordFootprint( MemoryStorage.HEAP );
+    }
+
+    @Test
+    public void whenStoringOneMillionEntitiesOffHeapThenRecordFootprint()
+        throws Exception
+    {
+        recordFootprint( MemoryStorage.OFF_HEAP );
+    }
+
+    private void recordFootprint( final MemoryStorage storage )
+        throws Exception
+    {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirectMemory();
+
+        SingletonAssembler assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.services( MemoryEntityStoreService.class ).setMetaInfo( storage );
+                module.services( UuidIdentityGeneratorService.class );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                module.entities( ReferenceData.class );
+            }
+        };
+        Module module = assembler.module();
+        try
+        {
+            long start = System.currentTimeMillis();
+            for( int batch = 0; batch < ENTITIES / BATCH_SIZE; batch++ )
+            {
+                UnitOfWork uow = module.newUnitOfWork();
+                for( int i = 0; i < BATCH_SIZE; i++ )
+                {
+                    int index = batch * BATCH_SIZE + i;
+                    EntityBuilder<ReferenceData> builder = uow.newEntityBuilder( ReferenceData.class, "ref" + index );
+                    builder.instance().code().set( "CODE-" + index );
+                    builder.instance().description().set( "Reference data entry number " + index );
+                    builder.instance().rank().set( index );
+                    builder.newInstance();
+                }
+                uow.complete();
+            }
+            long end = System.currentTimeMillis();
+
+            NumberFormat format = NumberFormat.getIntegerInstance();
+            long heap = usedHeap() - heapBefore;
+            long direct = usedDirectMemory() - directBefore;
+            System.out.println( storage + " storage of " + format.format( ENTITIES ) + " entities in "
+                                + format.format( end - start ) + "ms" );
+            System.out.println( "  Heap used: " + format.format( heap / 1024 ) + "KB, "
+                                + format.format( heap / ENTITIES ) + " bytes per entity" );
+            System.out.println( "  Direct memory used: " + format.format( direct / 1024 ) + "KB, "
+                                + format.format( direct / ENTITIES ) + " bytes per entity" );
+        }
+        finally
+        {
+            assembler.application().passivate();
+        }
+    }
+
+    private static long usedHeap()
+        throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 3; i++ )
+        {
+            System.gc();
+            Thread.sleep( 100 );
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory()
+    {
+        try
+        {
+            // BufferPoolMXBean is not available in Java 6, so read it through JMX
+            Object used = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute( new ObjectName( "java.nio:type=BufferPool,name=direct" ), "MemoryUsed" );
+            return (Long) used;
+        }
+        catch( Exception e )
+        {
+            return 0;
+        }
+    }
+
+    public interface ReferenceData
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> code();
+
+        @UseDefaults
+        Property<String> description();
+
+        @UseDefaults
+        Property<Integer> rank();
+    }
+}
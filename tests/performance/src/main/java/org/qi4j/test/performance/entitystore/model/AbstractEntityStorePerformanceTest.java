@@ -13,7 +13,13 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -349,6 +355,119 @@ public abstract class AbstractEntityStorePerformanceTest
         }
     }
 
+    @Test
+    public void whenReadEntityWithComplexTypeConcurrentlyThenRecordIterationsPerSecond()
+        throws Exception
+    {
+        try
+        {
+            Assembler assembler = new Assembler()
+            {
+                public void assemble( ModuleAssembly module )
+                    throws AssemblyException
+                {
+                    module.entities( ComplexProduct.class );
+                }
+            };
+            createQi4jRuntime( assembler );
+            {
+                UnitOfWork uow = unitOfWorkFactory.newUnitOfWork();
+                for( int i = 0; i < ITERATIONS; i++ )
+                {
+                    ComplexProduct product = uow.newEntity( ComplexProduct.class, "product" + i );
+                    product.name().set( "Product " + i );
+
+                    if( i % 1000 == 0 )
+                    {
+                        uow.complete();
+                        uow = unitOfWorkFactory.newUnitOfWork();
+                    }
+                }
+                uow.complete();
+            }
+
+            profile( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Report report = new Report( storeName );
+                        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+                        long singleThreaded = 0;
+                        for( int threads = 1; threads <= maxThreads; threads *= 2 )
+                        {
+                            String type = "readEntityWithComplexTypeConcurrently-" + threads + "threads";
+                            report.start( type );
+                            readConcurrently( threads );
+                            report.stop( threads * ITERATIONS );
+                            if( threads == 1 )
+                            {
+                                singleThreaded = report.duration( type );
+                            }
+                            Logger.getLogger( getClass().getName() ).info(
+                                threads + " threads: " + report.duration( type ) + " reads/s, scaling x"
+                                + ( report.duration( type ) / (double) singleThreaded ) );
+                        }
+                        writeReport( report );
+                    }
+                    catch( Exception e )
+                    {
+                        e.printStackTrace();
+                    }
+                }
+            } );
+        }
+        finally
+        {
+            cleanUp();
+        }
+    }
+
+    private void readConcurrently( int threads )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Void>> readers = new ArrayList<Future<Void>>();
+            for( int thread = 0; thread < threads; thread++ )
+            {
+                readers.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws Exception
+                    {
+                        Random rnd = new Random();
+                        UnitOfWork uow = unitOfWorkFactory.newUnitOfWork();
+                        for( int i = 0; i < ITERATIONS; i++ )
+                        {
+                            ComplexProduct product = uow.get( ComplexProduct.class, "product" + rnd.nextInt( ITERATIONS ) );
+
+                            String name = product.name().get();
+
+                            if( i % 100 == 0 )
+                            {
+                                uow.discard();
+                                uow = unitOfWorkFactory.newUnitOfWork();
+                            }
+                        }
+                        uow.discard();
+                        return null;
+                    }
+                } ) );
+            }
+            for( Future<Void> reader : readers )
+            {
+                reader.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     // If you want to profile this test, then tell profiler to only check
     // below this method call
 
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.indexing.memory;
+
+import java.text.NumberFormat;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.Query;
+import org.qi4j.api.query.QueryBuilder;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.Assembler;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.index.memory.assembly.MemoryIndexQueryAssembler;
+import org.qi4j.index.rdf.assembly.RdfMemoryStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.junit.Assert.assertEquals;
+import static org.qi4j.api.query.QueryExpressions.and;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.ge;
+import static org.qi4j.api.query.QueryExpressions.lt;
+import static org.qi4j.api.query.QueryExpressions.orderBy;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * Indexing, query and count times of the In-Memory Index/Query compared to the RDF Index/Query on a Sesame memory
+ * store.
+ */
+public class MemoryIndexingPerformanceTest
+{
+    private static final int ENTITIES = 50000;
+    private static final int BATCH_SIZE = 5000;
+    private static final int QUERIES = 100;
+
+    @Test
+    public void givenRdfMemoryStoreWhenQueryingThenRecordTimes()
+        throws Exception
+    {
+        benchmark( "RDF Memory Store", new RdfMemoryStoreAssembler() );
+    }
+
+    @Test
+    public void givenMemoryIndexWhenQueryingThenRecordTimes()
+        throws Exception
+    {
+        benchmark( "In-Memory Index", new MemoryIndexQueryAssembler() );
+    }
+
+    private void benchmark( String name, final Assembler indexing )
+        throws Exception
+    {
+        SingletonAssembler assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                indexing.assemble( module );
+                new EntityTestAssembler().assemble( module );
+                module.entities( Lead.class );
+            }
+        };
+        try
+        {
+            Module module = assembler.module();
+            NumberFormat format = NumberFormat.getIntegerInstance();
+
+            long start = System.nanoTime();
+            for( int batch = 0; batch < ENTITIES / BATCH_SIZE; batch++ )
+            {
+                UnitOfWork uow = module.newUnitOfWork();
+                for( int i = 0; i < BATCH_SIZE; i++ )
+                {
+                    int index = batch * BATCH_SIZE + i;
+                    Lead lead = uow.newEntity( Lead.class, "lead" + index );
+                    lead.name().set( "Lead" + index );
+                    lead.region().set( "Region" + index % 100 );
+                    lead.rank().set( index );
+                }
+                uow.complete();
+            }
+            System.out.println( name + ": indexed " + format.format( ENTITIES ) + " entities in "
+                                + format.format( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+
+            Lead template = templateFor( Lead.class );
+            UnitOfWork uow = module.newUnitOfWork();
+            try
+            {
+                start = System.nanoTime();
+                for( int i = 0; i < QUERIES; i++ )
+                {
+                    QueryBuilder<Lead> builder = module.newQueryBuilder( Lead.class )
+                        .where( eq( template.name(), "Lead" + i * ( ENTITIES / QUERIES ) ) );
+                    assertEquals( 1, count( uow.newQuery( builder ) ) );
+                }
+                System.out.println( name + ": " + QUERIES + " equality queries in "
+                                    + format.format( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+
+                start = System.nanoTime();
+                for( int i = 0; i < QUERIES; i++ )
+                {
+                    QueryBuilder<Lead> builder = module.newQueryBuilder( Lead.class )
+                        .where( and( eq( template.region(), "Region" + i ),
+                                     ge( template.rank(), 1000 ),
+                                     lt( template.rank(), 11000 ) ) );
+                    Query<Lead> query = uow.newQuery( builder );
+                    query.orderBy( orderBy( template.rank() ) );
+                    assertEquals( 100, count( query ) );
+                }
+                System.out.println( name + ": " + QUERIES + " range queries in "
+                                    + format.format( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+
+                start = System.nanoTime();
+                for( int i = 0; i < QUERIES; i++ )
+                {
+                    QueryBuilder<Lead> builder = module.newQueryBuilder( Lead.class )
+                        .where( eq( template.region(), "Region" + i ) );
+                    assertEquals( ENTITIES / 100, uow.newQuery( builder ).count() );
+                }
+                System.out.println( name + ": " + QUERIES + " counts in "
+                                    + format.format( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+            }
+            finally
+            {
+                uow.discard();
+            }
+        }
+        finally
+        {
+            assembler.application().passivate();
+        }
+    }
+
+    private static int count( Query<Lead> query )
+    {
+        int count = 0;
+        for( Lead ignored : query )
+        {
+            count++;
+        }
+        return count;
+    }
+
+    public interface Lead
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> name();
+
+        @UseDefaults
+        Property<String> region();
+
+        @UseDefaults
+        Property<Integer> rank();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.indexing.rdf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.functional.Specification;
+import org.qi4j.index.rdf.assembly.RdfMemoryStoreAssembler;
+import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.junit.Assert.assertEquals;
+import static org.qi4j.api.query.QueryExpressions.gt;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * Time to first result and heap used while reading large RDF query results, compared to buffering all of them.
+ * Run with a heap of at least 1GB.
+ */
+public class QueryResultMemoryPerformanceTest
+{
+    private static final int ENTITIES = 100000;
+    private static final int BATCH_SIZE = 10000;
+
+    private SingletonAssembler assembler;
+    private EntityFinder entityFinder;
+
+    @Before
+    public void populate()
+        throws Exception
+    {
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                new RdfMemoryStoreAssembler().assemble( module );
+                new EntityTestAssembler().assemble( module );
+                module.entities( Lead.class );
+            }
+        };
+        for( int batch = 0; batch < ENTITIES / BATCH_SIZE; batch++ )
+        {
+            UnitOfWork uow = assembler.module().newUnitOfWork();
+            for( int i = 0; i < BATCH_SIZE; i++ )
+            {
+                int index = batch * BATCH_SIZE + i;
+                Lead lead = uow.newEntity( Lead.class, "lead" + index );
+                lead.name().set( "Lead" + index );
+                lead.rank().set( index );
+            }
+            uow.complete();
+        }
+        entityFinder = assembler.module().findService( EntityFinder.class ).get();
+    }
+
+    @After
+    public void passivate()
+        throws Exception
+    {
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void whenReadingAllResultsThenRecordTimeToFirstResultAndHeapUsage()
+        throws Exception
+    {
+        Lead template = templateFor( Lead.class );
+        Specification<Composite> whereClause = gt( template.rank(), -1 );
+        NumberFormat format = NumberFormat.getIntegerInstance();
+
+        // Streamed, references are dropped once read
+        long heapBefore = usedHeap();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        Iterator<EntityReference> references = entityFinder.findEntities( Lead.class, whereClause, null, null, null,
+                                                                          Collections.<String, Object>emptyMap() )
+            .iterator();
+        references.next();
+        long firstResult = System.nanoTime() - start;
+        int count = 1;
+        while( references.hasNext() )
+        {
+            references.next();
+            count++;
+        }
+        long all = System.nanoTime() - start;
+        assertEquals( ENTITIES, count );
+        System.out.println( "Streamed " + format.format( count ) + " references, first after "
+                            + format.format( firstResult / 1000000 ) + "ms, all after "
+                            + format.format( all / 1000000 ) + "ms, peak heap growth "
+                            + format.format( ( peakHeap() - heapBefore ) / 1024 ) + "KB" );
+
+        // Buffered, as results were read before they were streamed
+        heapBefore = usedHeap();
+        resetPeakHeap();
+        start = System.nanoTime();
+        List<EntityReference> buffered = new ArrayList<EntityReference>();
+        for( EntityReference reference : entityFinder.findEntities( Lead.class, whereClause, null, null, null,
+                                                                    Collections.<String, Object>emptyMap() ) )
+        {
+            buffered.add( reference );
+        }
+        all = System.nanoTime() - start;
+        assertEquals( ENTITIES, buffered.size() );
+        System.out.println( "Buffered " + format.format( buffered.size() ) + " references after "
+                            + format.format( all / 1000000 ) + "ms, peak heap growth "
+                            + format.format( ( peakHeap() - heapBefore ) / 1024 ) + "KB, retained "
+                            + format.format( ( usedHeap() - heapBefore ) / 1024 ) + "KB" );
+
+        start = System.nanoTime();
+        long counted = entityFinder.countEntities( Lead.class, whereClause, Collections.<String, Object>emptyMap() );
+        assertEquals( ENTITIES, counted );
+        System.out.println( "Counted " + format.format( counted ) + " entities in "
+                            + format.format( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+    }
+
+    private static long usedHeap()
+        throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 3; i++ )
+        {
+            System.gc();
+            Thread.sleep( 100 );
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetPeakHeap()
+    {
+        for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if( pool.getType() == MemoryType.HEAP )
+            {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap()
+    {
+        long peak = 0;
+        for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if( pool.getType() == MemoryType.HEAP )
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    public interface Lead
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> name();
+
+        @UseDefaults
+        Property<Integer> rank();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.qi4j.test.performance.runtime.unitofwork;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.text.NumberFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.entitystore.memory.MemoryEntityStoreService;
+import org.qi4j.spi.uuid.UuidIdentityGeneratorService;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * UnitOfWork creation performance test, run by as many threads as there are processors, at least four.
+ * <p/>
+ * Each round creates UnitOfWorks, Entities and Values concurrently, which resolves the EntityStore,
+ * IdentityGenerator, ValueSerialization and MetricsProvider of the Module over and over. Worker threads are sampled
+ * while running and the monitors they were found BLOCKED on are printed after each round. After warm-up, none of
+ * them may be BLOCKED on the Module or on a service reference.
+ */
+public class UnitOfWorkCreationPerformanceTest
+    extends AbstractQi4jTest
+{
+    private static final int ITERATIONS = 10000;
+
+    // Monitors no thread may be BLOCKED on once warmed up
+    private static final String[] UNCONTENDED_MONITORS = {
+        "org.qi4j.runtime.structure.ModuleInstance",
+        "org.qi4j.runtime.service.ServiceReferenceInstance"
+    };
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.entities( SimpleEntity.class );
+        module.values( SimpleValue.class );
+        module.services( MemoryEntityStoreService.class );
+        module.services( UuidIdentityGeneratorService.class );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+    }
+
+    @Test
+    public void testConcurrentUnitOfWorkCreation()
+        throws Exception
+    {
+        int threads = Math.max( 4, Runtime.getRuntime().availableProcessors() );
+
+        // Warmup
+        performanceCheck( threads, ITERATIONS / 10 );
+
+        int rounds = 5;
+        for( int i = 0; i < rounds; i++ )
+        {
+            System.gc();
+            Map<String, Integer> blockedSamples = performanceCheck( threads, ITERATIONS );
+            for( String monitor : UNCONTENDED_MONITORS )
+            {
+                assertThat( "Threads BLOCKED on " + monitor, blockedSamples.get( monitor ), nullValue() );
+            }
+        }
+    }
+
+    /**
+     * @return the number of samples of the threads found BLOCKED, by monitor class
+     */
+    private Map<String, Integer> performanceCheck( int threadCount, final int iterations )
+        throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( threadCount );
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread[] threads = new Thread[ threadCount ];
+        for( int i = 0; i < threadCount; i++ )
+        {
+            threads[ i ] = new Thread( "UnitOfWork creator " + i )
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for( int j = 0; j < iterations; j++ )
+                        {
+                            createUnitOfWork();
+                        }
+                    }
+                    catch( Exception e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            };
+            threads[ i ].start();
+        }
+
+        ContentionSampler sampler = new ContentionSampler( threads );
+        long begin = System.currentTimeMillis();
+        start.countDown();
+        sampler.sampleUntil( done );
+        long time = Math.max( 1, System.currentTimeMillis() - begin );
+        if( failure.get() != null )
+        {
+            throw failure.get();
+        }
+
+        long count = (long) threadCount * iterations;
+        long uowPerSecond = ( count / time ) * 1000;
+        System.out.println( threadCount + " threads, UnitOfWorks per second: "
+                            + NumberFormat.getIntegerInstance().format( uowPerSecond )
+                            + ", blocked samples by monitor: " + sampler.blockedSamples() );
+        return sampler.blockedSamples();
+    }
+
+    private void createUnitOfWork()
+        throws Exception
+    {
+        UnitOfWork uow = module.newUnitOfWork();
+        try
+        {
+            EntityBuilder<SimpleEntity> builder = uow.newEntityBuilder( SimpleEntity.class );
+            builder.instance().name().set( module.newValue( SimpleValue.class ).toString() );
+            builder.newInstance();
+            uow.complete();
+        }
+        finally
+        {
+            if( uow.isOpen() )
+            {
+                uow.discard();
+            }
+        }
+    }
+
+    /**
+     * Samples the state of the given threads and counts the monitors they are BLOCKED on, by class.
+     */
+    private static class ContentionSampler
+    {
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final long[] threadIds;
+        private final Map<String, Integer> blocked = new TreeMap<String, Integer>();
+
+        private ContentionSampler( Thread[] threads )
+        {
+            threadIds = new long[ threads.length ];
+            for( int i = 0; i < threads.length; i++ )
+            {
+                threadIds[ i ] = threads[ i ].getId();
+            }
+        }
+
+        private void sampleUntil( CountDownLatch done )
+            throws InterruptedException
+        {
+            while( !done.await( 1, TimeUnit.MILLISECONDS ) )
+            {
+                for( ThreadInfo info : threadMXBean.getThreadInfo( threadIds ) )
+                {
+                    if( info != null && info.getThreadState() == Thread.State.BLOCKED && info.getLockName() != null )
+                    {
+                        String lock = info.getLockName();
+                        String lockClass = lock.substring( 0, lock.lastIndexOf( '@' ) );
+                        Integer samples = blocked.get( lockClass );
+                        blocked.put( lockClass, samples == null ? 1 : samples + 1 );
+                    }
+                }
+            }
+        }
+
+        private Map<String, Integer> blockedSamples()
+        {
+            return blocked;
+        }
+    }
+
+    public interface SimpleEntity
+        extends EntityComposite
+    {
+        Property<String> name();
+    }
+
+    public interface SimpleValue
+        extends ValueComposite
+    {
+        @UseDefaults
+        Property<String> text();
+    }
+}